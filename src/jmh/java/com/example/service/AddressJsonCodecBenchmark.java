@@ -0,0 +1,62 @@
+package com.example.service;
+
+import com.example.model.Address;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link AddressJsonCodec} with the reflective Gson path it replaced, on addresses whose properties are
+ * NULL with the chance {@code nullDensity} (Gson and the codec omit those).
+ * Run with the GC profiler ({@code -prof gc}) to compare allocation per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AddressJsonCodecBenchmark {
+
+    @Param({"1", "3", "10"})
+    public int addressCount;
+
+    @Param({"0.0", "0.5"})
+    public double nullDensity;
+
+    private final Gson gson = new Gson();
+    private final Type addressListType = new TypeToken<ArrayList<Address>>() {}.getType();
+    private List<Address> addresses;
+    private String json;
+
+    @Setup
+    public void setUp() {
+        addresses = UserProfileFixtures.profiles(1, addressCount, nullDensity).get(0).getAddresses();
+        json = gson.toJson(addresses);
+    }
+
+    @Benchmark
+    public List<Address> decodeGson() {
+        return gson.fromJson(json, addressListType);
+    }
+
+    @Benchmark
+    public List<Address> decodeCodec() {
+        return AddressJsonCodec.decode(json);
+    }
+
+    @Benchmark
+    public String encodeGson() {
+        return gson.toJson(addresses);
+    }
+
+    @Benchmark
+    public String encodeCodec() {
+        return AddressJsonCodec.encode(addresses);
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.service;
+
+import com.example.model.UserProfile;
+import com.google.cloud.bigquery.FieldValueList;
+import com.google.cloud.bigquery.QueryJobConfiguration;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the embedded backend ({@link EmbeddedUserProfileRepository}) with the BigQuery backend
+ * ({@link UserProfileService}) on lookups by ID and saves of {@value UserProfileFixtures#BENCHMARK_ROW_COUNT} synthetic
+ * profiles.
+ *
+ * The embedded benchmarks run the whole call against a store in a temporary file. The BigQuery benchmarks run what
+ * the service does around the job: building the job configuration and, for lookups, mapping the result row with its
+ * addresses. The job round trip itself cannot run offline and is not included. It typically adds tens to hundreds of
+ * milliseconds, so these figures are the lower bound of a BigQuery call.
+ * Run with the GC profiler ({@code -prof gc}) for allocation per call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserProfileBackendBenchmark {
+
+    @Param({"1", "3"})
+    public int addressCount;
+
+    @Param({"0.0", "0.2"})
+    public double nullDensity;
+
+    private Path storePath;
+    private EmbeddedUserProfileRepository embedded;
+    private UserProfileService service;
+    private UserProfile[] profiles;
+    private FieldValueList[] rows;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<UserProfile> fixtures = UserProfileFixtures.profiles(UserProfileFixtures.BENCHMARK_ROW_COUNT, addressCount, nullDensity);
+        profiles = fixtures.toArray(new UserProfile[0]);
+        rows = UserProfileFixtures.dualRows(fixtures).toArray(new FieldValueList[0]);
+
+        storePath = Files.createTempFile("userprofile-benchmark", ".log");
+        // Saves overwrite the same profiles, so compaction runs now and then like it would in use
+        embedded = new EmbeddedUserProfileRepository(storePath, false, 16L << 20, 0.5);
+        embedded.saveAll(fixtures);
+        // Building configurations and mapping rows never reaches BigQuery, so the service needs no client
+        service = new UserProfileService(null, "benchmark-project", "benchmark_dataset", "user_profiles");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        embedded.close();
+        Files.deleteIfExists(storePath);
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = (next + 1) & (profiles.length - 1);
+        return index;
+    }
+
+    @Benchmark
+    public void embeddedFindById(Blackhole blackhole) {
+        Optional<UserProfile> profile = embedded.findUserProfileById(profiles[nextIndex()].getId());
+        blackhole.consume(profile.orElseThrow().getAddresses());
+    }
+
+    /**
+     * The select by ID configuration and the mapping of the row BigQuery would answer with.
+     */
+    @Benchmark
+    public void bigQueryFindById(Blackhole blackhole) {
+        int index = nextIndex();
+        blackhole.consume(service.selectByIdConfig(profiles[index].getId(), UserProfileField.ALL));
+        blackhole.consume(service.mapRowToUserProfile(rows[index], UserProfileField.ALL).getAddresses());
+    }
+
+    @Benchmark
+    public UserProfile embeddedSave() {
+        return embedded.saveUserProfile(profiles[nextIndex()]);
+    }
+
+    /**
+     * The INSERT configuration the service submits.
+     */
+    @Benchmark
+    public QueryJobConfiguration bigQuerySave() {
+        return service.insertConfig(profiles[nextIndex()]);
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.service;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the user profile benchmarks with the GC profiler, so throughput, latency and allocation per operation are
+ * reported together. Every benchmark works on synthetic fixtures and none connects to BigQuery, so they run offline.
+ * The optional argument is a regular expression selecting the benchmarks, e.g. {@code RowMapping}.
+ * The fixtures are the tests' {@link UserProfileFixtures}, so the {@code jmh} source set compiles against the test
+ * classes, as the Gradle JMH plugin sets it up by default.
+ */
+public final class UserProfileBenchmarks {
+
+    private UserProfileBenchmarks() {
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : "com\\.example\\.service\\.(UserProfile|AddressJsonCodec).*Benchmark";
+        Options options = new OptionsBuilder()
+                .include(include)
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
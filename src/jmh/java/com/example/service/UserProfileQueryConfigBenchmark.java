@@ -0,0 +1,68 @@
+package com.example.service;
+
+import com.example.model.UserProfile;
+import com.google.cloud.bigquery.QueryJobConfiguration;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building the query job configurations {@link UserProfileService} submits: the SQL text, where it is not
+ * a prebuilt template, and the named parameters, including the addresses in the configured column format.
+ * Batch statements are built for {@code batchSize} profiles, single-row statements for one.
+ * Run with the GC profiler ({@code -prof gc}) for allocation per statement.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserProfileQueryConfigBenchmark {
+
+    @Param({"1", "3"})
+    public int addressCount;
+
+    @Param({"0.0", "0.5"})
+    public double nullDensity;
+
+    @Param({"JSON", "RECORD"})
+    public AddressStorageFormat addressFormat;
+
+    @Param({"10", "500"})
+    public int batchSize;
+
+    private UserProfileService service;
+    private List<UserProfile> batch;
+    private UserProfile profile;
+
+    @Setup
+    public void setUp() {
+        // Building configurations never reaches BigQuery, so the service needs no client
+        service = new UserProfileService(null, "benchmark-project", "benchmark_dataset", "user_profiles",
+                UserProfileServiceOptions.newBuilder().setAddressFormat(addressFormat).setUseQueryCache(false).build());
+        batch = UserProfileFixtures.profiles(batchSize, addressCount, nullDensity);
+        profile = batch.get(0);
+    }
+
+    @Benchmark
+    public QueryJobConfiguration insert() {
+        return service.insertConfig(profile);
+    }
+
+    @Benchmark
+    public QueryJobConfiguration bulkInsert() {
+        return service.bulkInsertConfig(batch);
+    }
+
+    @Benchmark
+    public QueryJobConfiguration upsert() {
+        return service.upsertConfig(batch);
+    }
+
+    @Benchmark
+    public QueryJobConfiguration selectById() {
+        return service.selectByIdConfig(profile.getId(), UserProfileField.ALL);
+    }
+}
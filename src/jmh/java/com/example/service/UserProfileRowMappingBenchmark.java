@@ -0,0 +1,76 @@
+package com.example.service;
+
+import com.example.model.UserProfile;
+import com.google.cloud.bigquery.FieldValueList;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link UserProfileService#mapRowToUserProfile(FieldValueList, java.util.Set)}: building profiles from query
+ * result rows, with and without decoding the addresses, from either address column.
+ * Each invocation maps the next of {@value UserProfileFixtures#BENCHMARK_ROW_COUNT} synthetic rows.
+ * Throughput and sampled latency are reported; run with the GC profiler ({@code -prof gc}) for allocation per row.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserProfileRowMappingBenchmark {
+
+    @Param({"0", "1", "3", "10"})
+    public int addressCount;
+
+    @Param({"0.0", "0.2", "0.5"})
+    public double nullDensity;
+
+    @Param({"JSON", "RECORD"})
+    public AddressStorageFormat addressFormat;
+
+    private UserProfileService service;
+    private FieldValueList[] rows;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        // Mapping never reaches BigQuery, so the service needs no client
+        service = new UserProfileService(null, "benchmark-project", "benchmark_dataset", "user_profiles",
+                UserProfileServiceOptions.newBuilder().setAddressFormat(addressFormat).setUseQueryCache(false).build());
+        List<FieldValueList> fixtures = UserProfileFixtures.dualRows(
+                UserProfileFixtures.profiles(UserProfileFixtures.BENCHMARK_ROW_COUNT, addressCount, nullDensity));
+        rows = fixtures.toArray(new FieldValueList[0]);
+    }
+
+    private FieldValueList nextRow() {
+        FieldValueList row = rows[next];
+        next = (next + 1) & (rows.length - 1);
+        return row;
+    }
+
+    /**
+     * Full profile with its addresses decoded, as callers reading every field see it.
+     */
+    @Benchmark
+    public void mapAll(Blackhole blackhole) {
+        UserProfile profile = service.mapRowToUserProfile(nextRow(), UserProfileField.ALL);
+        blackhole.consume(profile.getAddresses());
+        blackhole.consume(profile);
+    }
+
+    /**
+     * Full profile whose addresses are never read, so their lazy decoding is skipped.
+     */
+    @Benchmark
+    public UserProfile mapAllAddressesUnread() {
+        return service.mapRowToUserProfile(nextRow(), UserProfileField.ALL);
+    }
+
+    @Benchmark
+    public UserProfile mapSummary() {
+        return service.mapRowToUserProfile(nextRow(), UserProfileField.SUMMARY);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.service;
+
+import com.example.model.UserProfile;
+import com.google.cloud.bigquery.FieldValueList;
+import org.apache.avro.Schema;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the two full-table scan engines on the same {@value UserProfileFixtures#BENCHMARK_ROW_COUNT} synthetic
+ * profiles: mapping table data rows ({@link UserProfileScanMode#TABLE_DATA}, the existing path) against decoding one
+ * Avro response of the Storage Read API ({@link UserProfileScanMode#STORAGE_READ}). Each invocation turns the whole
+ * batch into profiles with their addresses decoded; network transfer is not part of either measurement.
+ * Run with the GC profiler ({@code -prof gc}) for allocation per batch.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserProfileScanDecodingBenchmark {
+
+    @Param({"0", "3"})
+    public int addressCount;
+
+    @Param({"0.0", "0.2"})
+    public double nullDensity;
+
+    private UserProfileService service;
+    private FieldValueList[] rows;
+    private UserProfileAvroDecoder avroDecoder;
+    private byte[] avroRows;
+
+    @Setup
+    public void setUp() {
+        // Neither path reaches BigQuery, so the service needs no client
+        service = new UserProfileService(null, "benchmark-project", "benchmark_dataset", "user_profiles",
+                UserProfileServiceOptions.newBuilder().setUseQueryCache(false).build());
+        List<UserProfile> profiles = UserProfileFixtures.profiles(UserProfileFixtures.BENCHMARK_ROW_COUNT, addressCount, nullDensity);
+        rows = UserProfileFixtures.dualRows(profiles).toArray(new FieldValueList[0]);
+        avroDecoder = new UserProfileAvroDecoder(new Schema.Parser().parse(UserProfileFixtures.AVRO_ROW_SCHEMA),
+                AddressJsonCodec::decode);
+        avroRows = UserProfileFixtures.avroRows(profiles);
+    }
+
+    @Benchmark
+    public void tableData(Blackhole blackhole) {
+        for (FieldValueList row : rows) {
+            UserProfile profile = service.mapRowToUserProfile(row, UserProfileField.ALL);
+            blackhole.consume(profile.getAddresses());
+            blackhole.consume(profile);
+        }
+    }
+
+    @Benchmark
+    public void storageRead(Blackhole blackhole) {
+        for (UserProfile profile : avroDecoder.decode(avroRows, rows.length)) {
+            blackhole.consume(profile.getAddresses());
+            blackhole.consume(profile);
+        }
+    }
+}
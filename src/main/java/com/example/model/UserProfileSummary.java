@@ -0,0 +1,58 @@
+package com.example.model;
+
+import io.micronaut.core.annotation.Introspected;
+import java.time.LocalDate;
+
+/**
+ * The scalar columns of a {@link UserProfile}, without its addresses.
+ */
+@Introspected
+public class UserProfileSummary {
+
+    private String id;
+    private String firstName;
+    private String lastName;
+    private LocalDate dob;
+
+    public UserProfileSummary() {
+    }
+
+    public UserProfileSummary(String id, String firstName, String lastName, LocalDate dob) {
+        this.id = id;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.dob = dob;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public void setFirstName(String firstName) {
+        this.firstName = firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public void setLastName(String lastName) {
+        this.lastName = lastName;
+    }
+
+    public LocalDate getDob() {
+        return dob;
+    }
+
+    public void setDob(LocalDate dob) {
+        this.dob = dob;
+    }
+}
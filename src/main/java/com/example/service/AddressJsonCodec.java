@@ -0,0 +1,412 @@
+package com.example.service;
+
+import com.example.model.Address;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hand-written JSON codec for the {@code addresses_json} column.
+ * Reads and writes the same document Gson produces for a {@code List<Address>} without reflection: field names are
+ * matched in place against the known {@link Address} properties and values are copied out of the input once.
+ * The low-cardinality {@code status} and {@code state} values are interned through a small lock-free table so that
+ * scans share one String instance per distinct value instead of allocating one per row.
+ */
+final class AddressJsonCodec {
+
+    private static final int INTERN_TABLE_SIZE = 1024; // power of two
+    private static final int MAX_INTERNED_LENGTH = 32;
+    // Racy by design: a lost update only costs an extra allocation
+    private static final String[] INTERNED = new String[INTERN_TABLE_SIZE];
+
+    private AddressJsonCodec() {
+    }
+
+    /**
+     * @return The JSON array for the addresses, or {@code null} (the JSON literal) when the list is null.
+     */
+    static String encode(List<Address> addresses) {
+        if (addresses == null) {
+            return "null";
+        }
+        StringBuilder json = new StringBuilder(addresses.size() * 128 + 2);
+        json.append('[');
+        for (int i = 0; i < addresses.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            Address address = addresses.get(i);
+            if (address == null) {
+                json.append("null");
+                continue;
+            }
+            json.append('{');
+            boolean first = true;
+            first = writeField(json, "status", address.getStatus(), first);
+            first = writeField(json, "address", address.getAddress(), first);
+            first = writeField(json, "city", address.getCity(), first);
+            first = writeField(json, "state", address.getState(), first);
+            first = writeField(json, "zip", address.getZip(), first);
+            writeField(json, "numberOfYears", address.getNumberOfYears(), first);
+            json.append('}');
+        }
+        return json.append(']').toString();
+    }
+
+    /**
+     * @param json A JSON array of address objects, or the {@code null} literal.
+     * @return The number of address objects, counted by their opening braces without decoding them. A brace inside
+     * a value counts as one more address, which is close enough to size a cache entry.
+     */
+    static int count(String json) {
+        int count = 0;
+        for (int i = 0; i < json.length(); i++) {
+            if (json.charAt(i) == '{') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param json A JSON array of address objects, or the {@code null} literal.
+     * @return The decoded addresses; null for the {@code null} literal, like Gson.
+     * @throws IllegalArgumentException if the input is not such a document.
+     */
+    static List<Address> decode(String json) {
+        return new Parser(json).parseAddresses();
+    }
+
+    private static boolean writeField(StringBuilder json, String name, String value, boolean first) {
+        // Gson omits null fields
+        if (value == null) {
+            return first;
+        }
+        if (!first) {
+            json.append(',');
+        }
+        json.append('"').append(name).append("\":");
+        writeString(json, value);
+        return false;
+    }
+
+    private static void writeString(StringBuilder json, String value) {
+        json.append('"');
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\' || c < 0x20 || c == '<' || c == '>' || c == '&' || c == '=' || c == '\''
+                    || c == '\u2028' || c == '\u2029') {
+                // Same characters Gson escapes by default
+                json.append(value, start, i);
+                switch (c) {
+                    case '"':
+                        json.append("\\\"");
+                        break;
+                    case '\\':
+                        json.append("\\\\");
+                        break;
+                    case '\n':
+                        json.append("\\n");
+                        break;
+                    case '\r':
+                        json.append("\\r");
+                        break;
+                    case '\t':
+                        json.append("\\t");
+                        break;
+                    case '\b':
+                        json.append("\\b");
+                        break;
+                    case '\f':
+                        json.append("\\f");
+                        break;
+                    default:
+                        json.append(String.format("\\u%04x", (int) c));
+                }
+                start = i + 1;
+            }
+        }
+        json.append(value, start, value.length()).append('"');
+    }
+
+    private static String intern(CharSequence source, int start, int end) {
+        int length = end - start;
+        if (length > MAX_INTERNED_LENGTH) {
+            return source.subSequence(start, end).toString();
+        }
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + source.charAt(i);
+        }
+        int slot = (hash ^ (hash >>> 16)) & (INTERN_TABLE_SIZE - 1);
+        String candidate = INTERNED[slot];
+        if (candidate != null && candidate.length() == length && contentEquals(candidate, source, start)) {
+            return candidate;
+        }
+        String value = source.subSequence(start, end).toString();
+        INTERNED[slot] = value;
+        return value;
+    }
+
+    private static boolean contentEquals(String candidate, CharSequence source, int start) {
+        for (int i = 0; i < candidate.length(); i++) {
+            if (candidate.charAt(i) != source.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Parser {
+
+        private final String json;
+        private int pos;
+        // Holds the current value when it contained escapes
+        private StringBuilder unescaped;
+
+        private Parser(String json) {
+            this.json = json;
+        }
+
+        private List<Address> parseAddresses() {
+            skipWhitespace();
+            if (consumeLiteral("null")) {
+                expectEnd();
+                return null;
+            }
+            expect('[');
+            List<Address> addresses = new ArrayList<>();
+            skipWhitespace();
+            if (peek() == ']') {
+                pos++;
+                expectEnd();
+                return addresses;
+            }
+            while (true) {
+                skipWhitespace();
+                addresses.add(consumeLiteral("null") ? null : parseAddress());
+                skipWhitespace();
+                char c = next();
+                if (c == ']') {
+                    break;
+                }
+                if (c != ',') {
+                    throw error("Expected ',' or ']'");
+                }
+            }
+            expectEnd();
+            return addresses;
+        }
+
+        private Address parseAddress() {
+            expect('{');
+            Address address = new Address();
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+                return address;
+            }
+            while (true) {
+                skipWhitespace();
+                expect('"');
+                int nameStart = pos;
+                int nameEnd = json.indexOf('"', nameStart);
+                if (nameEnd < 0) {
+                    throw error("Unterminated field name");
+                }
+                pos = nameEnd + 1;
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                setField(address, nameStart, nameEnd - nameStart);
+                skipWhitespace();
+                char c = next();
+                if (c == '}') {
+                    return address;
+                }
+                if (c != ',') {
+                    throw error("Expected ',' or '}'");
+                }
+            }
+        }
+
+        private void setField(Address address, int nameStart, int nameLength) {
+            if (isName("status", nameStart, nameLength)) {
+                address.setStatus(parseValue(true));
+            } else if (isName("address", nameStart, nameLength)) {
+                address.setAddress(parseValue(false));
+            } else if (isName("city", nameStart, nameLength)) {
+                address.setCity(parseValue(false));
+            } else if (isName("state", nameStart, nameLength)) {
+                address.setState(parseValue(true));
+            } else if (isName("zip", nameStart, nameLength)) {
+                address.setZip(parseValue(false));
+            } else if (isName("numberOfYears", nameStart, nameLength)) {
+                address.setNumberOfYears(parseValue(false));
+            } else {
+                skipValue();
+            }
+        }
+
+        private boolean isName(String name, int nameStart, int nameLength) {
+            return name.length() == nameLength && json.startsWith(name, nameStart);
+        }
+
+        /**
+         * Reads a string, number or boolean as a String, like Gson does for String properties.
+         */
+        private String parseValue(boolean intern) {
+            char c = peek();
+            if (c == '"') {
+                return parseString(intern);
+            }
+            if (consumeLiteral("null")) {
+                return null;
+            }
+            int start = pos;
+            while (pos < json.length() && ",}] \t\r\n".indexOf(json.charAt(pos)) < 0) {
+                pos++;
+            }
+            if (start == pos) {
+                throw error("Expected a value");
+            }
+            return json.substring(start, pos);
+        }
+
+        private String parseString(boolean intern) {
+            expect('"');
+            int start = pos;
+            while (pos < json.length()) {
+                char c = json.charAt(pos);
+                if (c == '"') {
+                    pos++;
+                    return intern ? intern(json, start, pos - 1) : json.substring(start, pos - 1);
+                }
+                if (c == '\\') {
+                    return parseEscapedString(start, intern);
+                }
+                pos++;
+            }
+            throw error("Unterminated string");
+        }
+
+        private String parseEscapedString(int start, boolean intern) {
+            if (unescaped == null) {
+                unescaped = new StringBuilder();
+            }
+            unescaped.setLength(0);
+            unescaped.append(json, start, pos);
+            while (pos < json.length()) {
+                char c = json.charAt(pos++);
+                if (c == '"') {
+                    return intern ? intern(unescaped, 0, unescaped.length()) : unescaped.toString();
+                }
+                if (c != '\\') {
+                    unescaped.append(c);
+                    continue;
+                }
+                if (pos >= json.length()) {
+                    break;
+                }
+                char escape = json.charAt(pos++);
+                switch (escape) {
+                    case 'n':
+                        unescaped.append('\n');
+                        break;
+                    case 'r':
+                        unescaped.append('\r');
+                        break;
+                    case 't':
+                        unescaped.append('\t');
+                        break;
+                    case 'b':
+                        unescaped.append('\b');
+                        break;
+                    case 'f':
+                        unescaped.append('\f');
+                        break;
+                    case 'u':
+                        if (pos + 4 > json.length()) {
+                            throw error("Truncated unicode escape");
+                        }
+                        unescaped.append((char) Integer.parseInt(json, pos, pos + 4, 16));
+                        pos += 4;
+                        break;
+                    default:
+                        // \" \\ \/
+                        unescaped.append(escape);
+                }
+            }
+            throw error("Unterminated string");
+        }
+
+        private void skipValue() {
+            char c = peek();
+            if (c == '"') {
+                parseString(false);
+                return;
+            }
+            if (c == '{' || c == '[') {
+                int depth = 0;
+                do {
+                    c = next();
+                    if (c == '"') {
+                        pos--;
+                        parseString(false);
+                    } else if (c == '{' || c == '[') {
+                        depth++;
+                    } else if (c == '}' || c == ']') {
+                        depth--;
+                    }
+                } while (depth > 0);
+                return;
+            }
+            parseValue(false);
+        }
+
+        private boolean consumeLiteral(String literal) {
+            if (json.startsWith(literal, pos)) {
+                pos += literal.length();
+                return true;
+            }
+            return false;
+        }
+
+        private void skipWhitespace() {
+            while (pos < json.length() && Character.isWhitespace(json.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private char peek() {
+            if (pos >= json.length()) {
+                throw error("Unexpected end of input");
+            }
+            return json.charAt(pos);
+        }
+
+        private char next() {
+            char c = peek();
+            pos++;
+            return c;
+        }
+
+        private void expect(char expected) {
+            if (next() != expected) {
+                throw error("Expected '" + expected + "'");
+            }
+        }
+
+        private void expectEnd() {
+            skipWhitespace();
+            if (pos != json.length()) {
+                throw error("Unexpected trailing content");
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + pos + " of addresses JSON");
+        }
+    }
+}
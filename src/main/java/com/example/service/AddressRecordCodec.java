@@ -0,0 +1,138 @@
+package com.example.service;
+
+import com.example.model.Address;
+import com.google.cloud.bigquery.FieldValue;
+import com.google.cloud.bigquery.FieldValueList;
+import com.google.cloud.bigquery.QueryParameterValue;
+import com.google.cloud.bigquery.StandardSQLTypeName;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps addresses to and from the native {@code addresses} column, a {@code REPEATED RECORD} with one STRING field per
+ * {@link Address} property. Unlike {@link AddressJsonCodec} nothing is parsed or printed: rows carry the fields as
+ * structured {@code FieldValue}s and queries receive them as a typed array of STRUCT parameters.
+ * Arrays cannot hold NULL in BigQuery, so null addresses are dropped on write.
+ */
+final class AddressRecordCodec {
+
+    static final String SQL_TYPE =
+            "ARRAY<STRUCT<status STRING, address STRING, city STRING, state STRING, zip STRING, numberOfYears STRING>>";
+    // BigQuery cannot infer the struct type of an empty array parameter, so empty lists are written as a typed literal
+    static final String EMPTY_SQL = "CAST([] AS " + SQL_TYPE + ")";
+
+    private AddressRecordCodec() {
+    }
+
+    /**
+     * @return SQL converting the JSON document of {@code jsonExpression} into the record column's value.
+     */
+    static String fromJsonSql(String jsonExpression) {
+        return "ARRAY(SELECT AS STRUCT JSON_VALUE(a, '$.status') AS status, JSON_VALUE(a, '$.address') AS address, "
+                + "JSON_VALUE(a, '$.city') AS city, JSON_VALUE(a, '$.state') AS state, JSON_VALUE(a, '$.zip') AS zip, "
+                + "JSON_VALUE(a, '$.numberOfYears') AS numberOfYears "
+                + "FROM UNNEST(JSON_QUERY_ARRAY(" + jsonExpression + ")) AS a)";
+    }
+
+    /**
+     * @param value The {@code addresses} cell of a row; a missing or NULL cell reads as no addresses.
+     * @return The addresses, in column order.
+     */
+    static List<Address> decode(FieldValue value) {
+        if (value == null || value.isNull()) {
+            return new ArrayList<>();
+        }
+        List<FieldValue> records = value.getRepeatedValue();
+        List<Address> addresses = new ArrayList<>(records.size());
+        for (FieldValue record : records) {
+            FieldValueList fields = record.getRecordValue();
+            addresses.add(new Address(
+                    string(fields, "status"),
+                    string(fields, "address"),
+                    string(fields, "city"),
+                    string(fields, "state"),
+                    string(fields, "zip"),
+                    string(fields, "numberOfYears")));
+        }
+        return addresses;
+    }
+
+    /**
+     * @return True if the list has no address to write, in which case {@link #EMPTY_SQL} stands in for the parameter.
+     */
+    static boolean isEmpty(List<Address> addresses) {
+        if (addresses != null) {
+            for (Address address : addresses) {
+                if (address != null) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param addresses Addresses with at least one non-null element, see {@link #isEmpty(List)}.
+     * @return An {@code ARRAY<STRUCT<...>>} query parameter holding the addresses.
+     */
+    static QueryParameterValue toParameter(List<Address> addresses) {
+        List<QueryParameterValue> records = new ArrayList<>(addresses.size());
+        for (Address address : addresses) {
+            if (address == null) {
+                continue;
+            }
+            Map<String, QueryParameterValue> fields = new LinkedHashMap<>();
+            fields.put("status", QueryParameterValue.string(address.getStatus()));
+            fields.put("address", QueryParameterValue.string(address.getAddress()));
+            fields.put("city", QueryParameterValue.string(address.getCity()));
+            fields.put("state", QueryParameterValue.string(address.getState()));
+            fields.put("zip", QueryParameterValue.string(address.getZip()));
+            fields.put("numberOfYears", QueryParameterValue.string(address.getNumberOfYears()));
+            records.add(QueryParameterValue.struct(fields));
+        }
+        return QueryParameterValue.newBuilder()
+                .setType(StandardSQLTypeName.ARRAY)
+                .setArrayType(StandardSQLTypeName.STRUCT)
+                .setArrayValues(records)
+                .build();
+    }
+
+    /**
+     * @return The addresses as {@code insertAll} row content, one map per record with null fields omitted.
+     */
+    static List<Map<String, Object>> toRowContent(List<Address> addresses) {
+        if (addresses == null) {
+            return new ArrayList<>();
+        }
+        List<Map<String, Object>> records = new ArrayList<>(addresses.size());
+        for (Address address : addresses) {
+            if (address == null) {
+                continue;
+            }
+            Map<String, Object> record = new HashMap<>();
+            putIfNotNull(record, "status", address.getStatus());
+            putIfNotNull(record, "address", address.getAddress());
+            putIfNotNull(record, "city", address.getCity());
+            putIfNotNull(record, "state", address.getState());
+            putIfNotNull(record, "zip", address.getZip());
+            putIfNotNull(record, "numberOfYears", address.getNumberOfYears());
+            records.add(record);
+        }
+        return records;
+    }
+
+    private static String string(FieldValueList fields, String name) {
+        FieldValue value = fields.get(name);
+        return value.isNull() ? null : value.getStringValue();
+    }
+
+    private static void putIfNotNull(Map<String, Object> record, String name, String value) {
+        if (value != null) {
+            record.put(name, value);
+        }
+    }
+}
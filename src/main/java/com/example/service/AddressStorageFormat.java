@@ -0,0 +1,42 @@
+package com.example.service;
+
+import java.util.List;
+
+/**
+ * How {@code UserProfile.addresses} are stored in the user profile table, selected by {@code gcp.addresses-format.userprofile}.
+ */
+public enum AddressStorageFormat {
+
+    /**
+     * A JSON document in the STRING column {@code addresses_json}.
+     */
+    JSON(List.of(AddressStorageFormat.JSON_COLUMN)),
+
+    /**
+     * The native {@code REPEATED RECORD} column {@code addresses}. Rows are read without JSON parsing and
+     * BigQuery can filter on address fields such as city and state.
+     */
+    RECORD(List.of(AddressStorageFormat.RECORD_COLUMN)),
+
+    /**
+     * Migration mode: writes both columns and reads {@code addresses}, falling back to {@code addresses_json}
+     * for rows that {@link UserProfileAddressBackfill} has not rewritten yet.
+     */
+    DUAL(List.of(AddressStorageFormat.JSON_COLUMN, AddressStorageFormat.RECORD_COLUMN));
+
+    static final String JSON_COLUMN = "addresses_json";
+    static final String RECORD_COLUMN = "addresses";
+
+    private final List<String> columns;
+
+    AddressStorageFormat(List<String> columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * @return The address columns read and written in this format.
+     */
+    List<String> columns() {
+        return columns;
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.service;
+
+import com.example.model.UserProfile;
+import com.example.model.UserProfileSummary;
+import com.google.cloud.bigquery.BigQuery;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.scheduling.TaskExecutors;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking counterpart of {@link UserProfileService}. Every method returns at once and runs the blocking call on
+ * Micronaut's blocking executor (virtual threads where the JVM supports them), so event-loop and IO threads are never
+ * parked for the duration of a BigQuery job.
+ *
+ * At most {@code gcp.async.userprofile.max-concurrent-calls} calls run against the user profile table at a time; the
+ * others wait in a queue without holding a thread. Cancelling a returned future cancels the BigQuery jobs the call
+ * has started and interrupts it; a call cancelled while still queued never runs.
+ */
+@Singleton
+@Requires(beans = UserProfileService.class)
+public class AsyncUserProfileService {
+
+    private final UserProfileService userProfileService;
+    private final BigQuery bigquery;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final Queue<AsyncCall<?>> waiting = new ConcurrentLinkedQueue<>();
+
+    @Inject
+    public AsyncUserProfileService(
+            UserProfileService userProfileService,
+            BigQuery bigquery,
+            @Named(TaskExecutors.BLOCKING) ExecutorService executor,
+            @Value("${gcp.async.userprofile.max-concurrent-calls:16}") int maxConcurrentCalls) {
+        if (maxConcurrentCalls <= 0) {
+            throw new IllegalArgumentException("Max concurrent calls must be positive.");
+        }
+        this.userProfileService = userProfileService;
+        this.bigquery = bigquery;
+        this.executor = executor;
+        this.permits = new Semaphore(maxConcurrentCalls);
+    }
+
+    public CompletableFuture<UserProfile> saveUserProfile(UserProfile userProfile) {
+        return submit(() -> userProfileService.saveUserProfile(userProfile));
+    }
+
+    public CompletableFuture<List<UserProfile>> saveAll(Collection<UserProfile> userProfiles) {
+        return submit(() -> userProfileService.saveAll(userProfiles));
+    }
+
+    public CompletableFuture<Optional<UserProfile>> findUserProfileById(String id) {
+        return submit(() -> userProfileService.findUserProfileById(id));
+    }
+
+    public CompletableFuture<List<UserProfile>> findAllByIds(Collection<String> ids) {
+        return submit(() -> userProfileService.findAllByIds(ids));
+    }
+
+    public CompletableFuture<List<UserProfileSummary>> findUserProfileSummariesByIds(Collection<String> ids) {
+        return submit(() -> userProfileService.findUserProfileSummariesByIds(ids));
+    }
+
+    public CompletableFuture<List<UserProfile>> findByLastNamePrefix(String lastNamePrefix) {
+        return submit(() -> userProfileService.findByLastNamePrefix(lastNamePrefix));
+    }
+
+    public CompletableFuture<List<UserProfile>> findByDobBetween(LocalDate from, LocalDate to) {
+        return submit(() -> userProfileService.findByDobBetween(from, to));
+    }
+
+    public CompletableFuture<List<UserProfile>> findByAddressCity(String city, @Nullable String state) {
+        return submit(() -> userProfileService.findByAddressCity(city, state));
+    }
+
+    public CompletableFuture<List<UserProfile>> getAllUserProfiles() {
+        return submit(userProfileService::getAllUserProfiles);
+    }
+
+    public CompletableFuture<List<UserProfileSummary>> getAllUserProfileSummaries() {
+        return submit(userProfileService::getAllUserProfileSummaries);
+    }
+
+    public CompletableFuture<UserProfilePage> getUserProfilesPage(@Nullable String pageToken, int pageSize) {
+        return submit(() -> userProfileService.getUserProfilesPage(pageToken, pageSize));
+    }
+
+    public CompletableFuture<UserProfile> updateUserProfile(UserProfile userProfile) {
+        return submit(() -> userProfileService.updateUserProfile(userProfile));
+    }
+
+    public CompletableFuture<List<UserProfile>> upsertAll(Collection<UserProfile> userProfiles) {
+        return submit(() -> userProfileService.upsertAll(userProfiles));
+    }
+
+    public CompletableFuture<Void> deleteUserProfileById(String id) {
+        return submit(() -> {
+            userProfileService.deleteUserProfileById(id);
+            return null;
+        });
+    }
+
+    /**
+     * Same as {@link UserProfileService#publishAllUserProfiles()}, which already scans on its own thread.
+     */
+    public Flow.Publisher<UserProfile> publishAllUserProfiles() {
+        return userProfileService.publishAllUserProfiles();
+    }
+
+    /**
+     * @return Calls queued because {@code max-concurrent-calls} calls are already running.
+     */
+    public int waitingCount() {
+        return waiting.size();
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> call) {
+        AsyncCall<T> asyncCall = new AsyncCall<>(call);
+        waiting.add(asyncCall);
+        dispatch();
+        return asyncCall;
+    }
+
+    // Called after every enqueue and every completed call, so a queued call cannot miss a released permit
+    private void dispatch() {
+        while (!waiting.isEmpty() && permits.tryAcquire()) {
+            AsyncCall<?> next = waiting.poll();
+            if (next == null || next.isDone()) {
+                // Taken by a concurrent dispatch, or cancelled while queued
+                permits.release();
+                continue;
+            }
+            try {
+                executor.execute(next);
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                next.completeExceptionally(e);
+            }
+        }
+    }
+
+    private final class AsyncCall<T> extends CompletableFuture<T> implements Runnable {
+
+        private final Supplier<T> call;
+        private final QueryJobScope scope = new QueryJobScope(bigquery);
+        private final Object workerLock = new Object();
+        // Guarded by workerLock
+        private Thread worker;
+
+        private AsyncCall(Supplier<T> call) {
+            this.call = call;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (!isDone()) {
+                    synchronized (workerLock) {
+                        worker = Thread.currentThread();
+                    }
+                    try {
+                        complete(scope.run(call));
+                    } catch (RuntimeException | Error e) {
+                        completeExceptionally(e);
+                    } finally {
+                        synchronized (workerLock) {
+                            worker = null;
+                            // Clear an interrupt from a cancel() that raced with completion, so it cannot leak into the next task
+                            Thread.interrupted();
+                        }
+                    }
+                }
+            } finally {
+                permits.release();
+                dispatch();
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                waiting.remove(this);
+                scope.cancel();
+                synchronized (workerLock) {
+                    if (worker != null) {
+                        worker.interrupt();
+                    }
+                }
+            }
+            return cancelled;
+        }
+    }
+}
@@ -0,0 +1,526 @@
+package com.example.service;
+
+import com.example.model.UserProfile;
+import com.example.model.UserProfileSummary;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.core.annotation.Nullable;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * User profile store kept in a local memory-mapped file, for development, CI and load tests without BigQuery, and as
+ * the baseline BigQuery timings are compared against. Selected with {@code gcp.backend.userprofile: embedded}.
+ *
+ * The file is an append-only log of records, each a body length, the CRC32 of the body and the body itself (see
+ * {@link UserProfileRecordCodec}); a write appends the new version of a profile, a delete appends a tombstone. An
+ * in-memory index maps every ID to the offset of its latest version, so a lookup reads a single record straight from
+ * the mapping. Opening the store replays the log to rebuild the index; a record cut short by a crash ends the log.
+ *
+ * Overwritten versions and tombstones stay in the file until the log is compacted, which happens after a write once
+ * they make up {@code compaction-garbage-ratio} of the log and at least {@code compaction-min-garbage-bytes}, or on
+ * {@link #compact()}. The log is mapped as one region, which caps it at 2 GB.
+ *
+ * Saving an ID that already exists replaces the profile, unlike BigQuery, where it adds a second row. Lookups other
+ * than by ID scan every profile; reads run concurrently, writes and compaction one at a time.
+ */
+@Singleton
+@Requires(property = "gcp.backend.userprofile", value = "embedded")
+public class EmbeddedUserProfileRepository implements UserProfileRepository, AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EmbeddedUserProfileRepository.class);
+
+    // Body length and CRC32 of the body
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    private static final int MIN_MAPPED_BYTES = 1 << 20;
+    private static final long MAX_MAPPED_BYTES = Integer.MAX_VALUE;
+    // Written repeatedly to clear the end of the log, instead of allocating a buffer as large as the mapping
+    private static final byte[] ZEROS = new byte[64 * 1024];
+
+    private final Path path;
+    private final boolean sync;
+    private final long compactionMinGarbageBytes;
+    private final double compactionGarbageRatio;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Guarded by lock
+    // ID -> offset of the latest record of the profile
+    private final Map<String, Integer> index = new HashMap<>();
+    private FileChannel channel;
+    private MappedByteBuffer log;
+    private int logBytes;
+    private long garbageBytes;
+
+    @Inject
+    public EmbeddedUserProfileRepository(
+            @Value("${gcp.embedded.userprofile.path:userprofile-store.log}") String path,
+            @Value("${gcp.embedded.userprofile.fsync:false}") boolean sync,
+            @Value("${gcp.embedded.userprofile.compaction-min-garbage-bytes:16777216}") long compactionMinGarbageBytes,
+            @Value("${gcp.embedded.userprofile.compaction-garbage-ratio:0.5}") double compactionGarbageRatio) {
+        this(Paths.get(path), sync, compactionMinGarbageBytes, compactionGarbageRatio);
+    }
+
+    EmbeddedUserProfileRepository(Path path, boolean sync, long compactionMinGarbageBytes, double compactionGarbageRatio) {
+        if (compactionGarbageRatio <= 0 || compactionGarbageRatio > 1) {
+            throw new IllegalArgumentException("Compaction garbage ratio must be above 0 and at most 1.");
+        }
+        this.path = path;
+        this.sync = sync;
+        this.compactionMinGarbageBytes = compactionMinGarbageBytes;
+        this.compactionGarbageRatio = compactionGarbageRatio;
+        try {
+            open();
+        } catch (IOException e) {
+            throw new RuntimeException("Could not open embedded user profile store " + path, e);
+        }
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        if (size > MAX_MAPPED_BYTES) {
+            throw new IOException("Store is larger than " + MAX_MAPPED_BYTES + " bytes");
+        }
+        map((int) Math.max(MIN_MAPPED_BYTES, size));
+        index.clear();
+        logBytes = 0;
+        garbageBytes = 0;
+
+        // The mapping extends the file with zeros, so a zero length marks the end of the log
+        CRC32 crc = new CRC32();
+        while (logBytes + HEADER_BYTES <= log.capacity()) {
+            int length = log.getInt(logBytes);
+            if (length == 0) {
+                break;
+            }
+            byte[] body = length > 0 && logBytes + HEADER_BYTES + length <= log.capacity() ? readBody(logBytes) : null;
+            if (body != null) {
+                crc.reset();
+                crc.update(body);
+            }
+            if (body == null || (int) crc.getValue() != log.getInt(logBytes + Integer.BYTES)) {
+                LOG.warn("Discarding incomplete record at offset {} of embedded user profile store {}", logBytes, path);
+                // Clear the rest of the file, so that later appends are not followed by what is left of it
+                clearFrom(logBytes);
+                break;
+            }
+            indexRecord(body, logBytes);
+            logBytes += HEADER_BYTES + length;
+        }
+    }
+
+    private void clearFrom(int offset) {
+        for (int at = offset; at < log.capacity(); at += ZEROS.length) {
+            log.put(at, ZEROS, 0, Math.min(ZEROS.length, log.capacity() - at));
+        }
+    }
+
+    private void map(int capacity) throws IOException {
+        log = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    private byte[] readBody(int offset) {
+        byte[] body = new byte[log.getInt(offset)];
+        log.get(offset + HEADER_BYTES, body);
+        return body;
+    }
+
+    private int recordBytes(int offset) {
+        return HEADER_BYTES + log.getInt(offset);
+    }
+
+    private void indexRecord(byte[] body, int offset) {
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        byte kind = UserProfileRecordCodec.kind(buffer);
+        String id = UserProfileRecordCodec.id(buffer);
+        Integer previous = kind == UserProfileRecordCodec.PUT ? index.put(id, offset) : index.remove(id);
+        if (previous != null) {
+            garbageBytes += recordBytes(previous);
+        }
+        if (kind == UserProfileRecordCodec.DELETE) {
+            garbageBytes += HEADER_BYTES + body.length;
+        }
+    }
+
+    @Override
+    public UserProfile saveUserProfile(UserProfile userProfile) {
+        if (userProfile.getId() == null) {
+            userProfile.setId(UUID.randomUUID().toString());
+        }
+        append(List.of(UserProfileRecordCodec.encodePut(userProfile)));
+        return userProfile;
+    }
+
+    @Override
+    public List<UserProfile> saveAll(Collection<UserProfile> userProfiles) {
+        List<UserProfile> profiles = new ArrayList<>(userProfiles);
+        List<byte[]> bodies = new ArrayList<>(profiles.size());
+        for (UserProfile userProfile : profiles) {
+            if (userProfile.getId() == null) {
+                userProfile.setId(UUID.randomUUID().toString());
+            }
+            bodies.add(UserProfileRecordCodec.encodePut(userProfile));
+        }
+        append(bodies);
+        return profiles;
+    }
+
+    @Override
+    public UserProfile updateUserProfile(UserProfile userProfile) {
+        upsertAll(List.of(userProfile));
+        return userProfile;
+    }
+
+    @Override
+    public List<UserProfile> upsertAll(Collection<UserProfile> userProfiles) {
+        List<byte[]> bodies = new ArrayList<>(userProfiles.size());
+        for (UserProfile userProfile : userProfiles) {
+            if (userProfile.getId() == null) {
+                throw new IllegalArgumentException("UserProfile ID cannot be null for update.");
+            }
+            bodies.add(UserProfileRecordCodec.encodePut(userProfile));
+        }
+        append(bodies);
+        return new ArrayList<>(userProfiles);
+    }
+
+    @Override
+    public void deleteUserProfileById(String id) {
+        lock.writeLock().lock();
+        try {
+            if (index.containsKey(id)) {
+                appendLocked(List.of(UserProfileRecordCodec.encodeDelete(id)));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Records are encoded before taking the lock; only copying them into the mapping is serialized
+    private void append(List<byte[]> bodies) {
+        lock.writeLock().lock();
+        try {
+            appendLocked(bodies);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void appendLocked(List<byte[]> bodies) {
+        long bytes = 0;
+        for (byte[] body : bodies) {
+            bytes += HEADER_BYTES + body.length;
+        }
+        ensureCapacity(bytes);
+
+        int start = logBytes;
+        CRC32 crc = new CRC32();
+        for (byte[] body : bodies) {
+            crc.reset();
+            crc.update(body);
+            log.put(logBytes + HEADER_BYTES, body);
+            log.putInt(logBytes + Integer.BYTES, (int) crc.getValue());
+            // The length goes in last: until then the record reads as the end of the log
+            log.putInt(logBytes, body.length);
+            indexRecord(body, logBytes);
+            logBytes += HEADER_BYTES + body.length;
+        }
+        if (sync) {
+            log.force(start, logBytes - start);
+        }
+
+        if (garbageBytes >= compactionMinGarbageBytes && garbageBytes >= compactionGarbageRatio * logBytes) {
+            compactLocked();
+        }
+    }
+
+    private void ensureCapacity(long bytes) {
+        long required = logBytes + bytes;
+        if (required <= log.capacity()) {
+            return;
+        }
+        if (required > MAX_MAPPED_BYTES && garbageBytes > 0) {
+            compactLocked();
+            required = logBytes + bytes;
+        }
+        if (required > MAX_MAPPED_BYTES) {
+            throw new RuntimeException("Embedded user profile store " + path + " is full");
+        }
+        try {
+            map((int) Math.min(MAX_MAPPED_BYTES, Math.max(required, 2L * log.capacity())));
+        } catch (IOException e) {
+            throw new RuntimeException("Could not grow embedded user profile store " + path, e);
+        }
+    }
+
+    /**
+     * Rewrites the log with only the latest version of each profile. Blocks reads and writes while it runs.
+     * @return The number of bytes reclaimed.
+     */
+    public long compact() {
+        lock.writeLock().lock();
+        try {
+            return compactLocked();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private long compactLocked() {
+        int before = logBytes;
+        int[] offsets = liveOffsets();
+        Path compacted = path.resolveSibling(path.getFileName() + ".compacting");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(compacted), 1 << 16)) {
+                byte[] record = new byte[256];
+                for (int offset : offsets) {
+                    int length = recordBytes(offset);
+                    if (record.length < length) {
+                        record = new byte[Math.max(length, record.length * 2)];
+                    }
+                    log.get(offset, record, 0, length);
+                    out.write(record, 0, length);
+                }
+            }
+            try (FileChannel written = FileChannel.open(compacted, StandardOpenOption.WRITE)) {
+                written.force(true);
+            }
+            channel.close();
+            Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            open();
+        } catch (IOException e) {
+            throw new RuntimeException("Could not compact embedded user profile store " + path, e);
+        }
+        LOG.info("Compacted embedded user profile store {} from {} to {} bytes", path, before, logBytes);
+        return before - logBytes;
+    }
+
+    // In log order, so that scans read the mapping sequentially
+    private int[] liveOffsets() {
+        int[] offsets = new int[index.size()];
+        int i = 0;
+        for (int offset : index.values()) {
+            offsets[i++] = offset;
+        }
+        Arrays.sort(offsets);
+        return offsets;
+    }
+
+    private UserProfile read(int offset, Set<UserProfileField> fields) {
+        ByteBuffer body = ByteBuffer.wrap(readBody(offset));
+        UserProfileRecordCodec.kind(body);
+        return UserProfileRecordCodec.profile(UserProfileRecordCodec.id(body), body, fields);
+    }
+
+    @Override
+    public Optional<UserProfile> findUserProfileById(String id) {
+        return findUserProfileById(id, UserProfileField.ALL);
+    }
+
+    @Override
+    public Optional<UserProfile> findUserProfileById(String id, Set<UserProfileField> fields) {
+        lock.readLock().lock();
+        try {
+            Integer offset = index.get(id);
+            return offset == null ? Optional.empty() : Optional.of(read(offset, fields));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<UserProfileSummary> findUserProfileSummaryById(String id) {
+        return findUserProfileById(id, UserProfileField.SUMMARY).map(EmbeddedUserProfileRepository::toSummary);
+    }
+
+    @Override
+    public List<UserProfile> findAllByIds(Collection<String> ids) {
+        return findAllByIds(ids, UserProfileField.ALL);
+    }
+
+    @Override
+    public List<UserProfile> findAllByIds(Collection<String> ids, Set<UserProfileField> fields) {
+        List<UserProfile> profiles = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (String id : new LinkedHashSet<>(ids)) {
+                Integer offset = index.get(id);
+                if (offset != null) {
+                    profiles.add(read(offset, fields));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return profiles;
+    }
+
+    @Override
+    public List<UserProfileSummary> findUserProfileSummariesByIds(Collection<String> ids) {
+        return toSummaries(findAllByIds(ids, UserProfileField.SUMMARY));
+    }
+
+    @Override
+    public List<UserProfile> findByLastNamePrefix(String lastNamePrefix) {
+        if (lastNamePrefix == null || lastNamePrefix.isEmpty()) {
+            throw new IllegalArgumentException("Last name prefix cannot be empty.");
+        }
+        return scan(UserProfileField.SUMMARY,
+                profile -> profile.getLastName() != null && profile.getLastName().startsWith(lastNamePrefix),
+                UserProfileField.ALL);
+    }
+
+    @Override
+    public List<UserProfile> findByDobBetween(LocalDate from, LocalDate to) {
+        if (from == null || to == null || from.isAfter(to)) {
+            throw new IllegalArgumentException("Date of birth range must have a start on or before its end.");
+        }
+        return scan(UserProfileField.SUMMARY,
+                profile -> profile.getDob() != null && !profile.getDob().isBefore(from) && !profile.getDob().isAfter(to),
+                UserProfileField.ALL);
+    }
+
+    @Override
+    public List<UserProfile> findByAddressCity(String city, @Nullable String state) {
+        if (city == null) {
+            throw new IllegalArgumentException("City cannot be null.");
+        }
+        return scan(UserProfileField.ALL, profile -> profile.getAddresses() != null && profile.getAddresses().stream()
+                .anyMatch(address -> city.equals(address.getCity()) && (state == null || state.equals(address.getState()))),
+                UserProfileField.ALL);
+    }
+
+    // Decodes only the fields the filter needs, and the result fields of the matches
+    private List<UserProfile> scan(Set<UserProfileField> filterFields, Predicate<UserProfile> filter, Set<UserProfileField> fields) {
+        List<UserProfile> profiles = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (int offset : liveOffsets()) {
+                UserProfile profile = read(offset, filterFields);
+                if (filter.test(profile)) {
+                    profiles.add(filterFields.equals(fields) ? profile : read(offset, fields));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return profiles;
+    }
+
+    @Override
+    public List<UserProfile> getAllUserProfiles() {
+        return getAllUserProfiles(UserProfileField.ALL);
+    }
+
+    @Override
+    public List<UserProfile> getAllUserProfiles(Set<UserProfileField> fields) {
+        return scan(fields, profile -> true, fields);
+    }
+
+    @Override
+    public List<UserProfileSummary> getAllUserProfileSummaries() {
+        return toSummaries(getAllUserProfiles(UserProfileField.SUMMARY));
+    }
+
+    /**
+     * Streams a copy of every profile taken when the stream is created; the store fits in memory anyway.
+     */
+    @Override
+    public Stream<UserProfile> streamAllUserProfiles() {
+        return getAllUserProfiles().stream();
+    }
+
+    /**
+     * @return The number of profiles stored.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The length of the log, including the garbage not compacted yet.
+     */
+    public long getLogBytes() {
+        lock.readLock().lock();
+        try {
+            return logBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The bytes taken by overwritten profiles and tombstones, which the next compaction reclaims.
+     */
+    public long getGarbageBytes() {
+        lock.readLock().lock();
+        try {
+            return garbageBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static UserProfileSummary toSummary(UserProfile profile) {
+        return new UserProfileSummary(profile.getId(), profile.getFirstName(), profile.getLastName(), profile.getDob());
+    }
+
+    private static List<UserProfileSummary> toSummaries(List<UserProfile> profiles) {
+        List<UserProfileSummary> summaries = new ArrayList<>(profiles.size());
+        for (UserProfile profile : profiles) {
+            summaries.add(toSummary(profile));
+        }
+        return summaries;
+    }
+
+    @Override
+    @PreDestroy
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (sync) {
+                log.force();
+            }
+            channel.close();
+        } catch (IOException e) {
+            LOG.warn("Could not close embedded user profile store {}", path, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.example.service;
+
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.annotation.Value;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Change stream kept in a local append-only file, one line per change (see {@link UserProfileChangeCodec}).
+ * A line is only visible to readers once it has been written completely; a line cut short by a crash is
+ * truncated when the log is reopened, and numbering continues after the last complete line.
+ *
+ * The log grows with every write. {@link #compact()} rewrites it with only the latest change of each profile, which
+ * a consumer replaying from the start turns into the same state as the full log. Deletes are kept, so that consumers
+ * that applied an older version of a profile still see it go.
+ */
+@Singleton
+@Requires(property = "gcp.change-log.userprofile.sink", value = "file")
+public class FileUserProfileChangeLog implements UserProfileChangeSink, UserProfileChangeSource, AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FileUserProfileChangeLog.class);
+
+    // Readers resume from the nearest offset remembered at most this far before the version they ask for
+    private static final long CHECKPOINT_INTERVAL_BYTES = 1 << 20;
+    private static final int SCAN_BLOCK_BYTES = 8192;
+
+    private final Path path;
+    private final boolean sync;
+
+    // Guarded by this
+    // Version -> offset of its line; forgotten when the log is compacted
+    private final TreeMap<Long, Long> checkpoints = new TreeMap<>();
+    private FileChannel channel;
+    private long lastVersion;
+    private long committedBytes;
+    private long lastCheckpointOffset;
+
+    @Inject
+    public FileUserProfileChangeLog(
+            @Value("${gcp.change-log.userprofile.path:userprofile-changes.log}") String path,
+            @Value("${gcp.change-log.userprofile.fsync:false}") boolean sync) {
+        this(Paths.get(path), sync);
+    }
+
+    FileUserProfileChangeLog(Path path, boolean sync) {
+        this.path = path;
+        this.sync = sync;
+        try {
+            open();
+        } catch (IOException e) {
+            throw new RuntimeException("Could not open change log " + path, e);
+        }
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        long lastNewline = findLastNewline(size);
+        if (lastNewline < size - 1) {
+            LOG.warn("Truncating {} incomplete bytes at the end of change log {}", size - lastNewline - 1, path);
+            channel.truncate(lastNewline + 1);
+        }
+        committedBytes = lastNewline + 1;
+        channel.position(committedBytes);
+        lastCheckpointOffset = 0;
+        lastVersion = 0;
+        if (lastNewline >= 0) {
+            long lineStart = findLastNewline(lastNewline) + 1;
+            ByteBuffer line = ByteBuffer.allocate((int) (lastNewline - lineStart));
+            while (line.hasRemaining() && channel.read(line, lineStart + line.position()) >= 0) {
+                // Read the whole line
+            }
+            lastVersion = UserProfileChangeCodec.decode(new String(line.array(), StandardCharsets.UTF_8)).getVersion();
+        }
+    }
+
+    // Position of the last '\n' before the end position, or -1
+    private long findLastNewline(long end) throws IOException {
+        ByteBuffer block = ByteBuffer.allocate(SCAN_BLOCK_BYTES);
+        long blockEnd = end;
+        while (blockEnd > 0) {
+            long blockStart = Math.max(0, blockEnd - SCAN_BLOCK_BYTES);
+            block.clear().limit((int) (blockEnd - blockStart));
+            while (block.hasRemaining() && channel.read(block, blockStart + block.position()) >= 0) {
+                // Read until the block is full
+            }
+            for (int i = block.position() - 1; i >= 0; i--) {
+                if (block.get(i) == '\n') {
+                    return blockStart + i;
+                }
+            }
+            blockEnd = blockStart;
+        }
+        return -1;
+    }
+
+    @Override
+    public synchronized void publish(List<UserProfileChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        StringBuilder lines = new StringBuilder(changes.size() * 256);
+        for (UserProfileChange change : changes) {
+            UserProfileChangeCodec.encode(change, lines);
+            lines.append('\n');
+        }
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(lines.toString());
+        long offset = committedBytes;
+        long length = bytes.remaining();
+        try {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            if (sync) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            try {
+                // Drop the partial write so that the next append starts on a line boundary
+                channel.truncate(offset);
+                channel.position(offset);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw new RuntimeException("Could not append to change log " + path, e);
+        }
+        if (offset - lastCheckpointOffset >= CHECKPOINT_INTERVAL_BYTES) {
+            checkpoints.put(changes.get(0).getVersion(), offset);
+            lastCheckpointOffset = offset;
+        }
+        lastVersion = changes.get(changes.size() - 1).getVersion();
+        committedBytes = offset + length;
+    }
+
+    @Override
+    public synchronized long lastVersion() {
+        return lastVersion;
+    }
+
+    @Override
+    public List<UserProfileChange> changesAfter(long afterVersion) {
+        List<UserProfileChange> changes = new ArrayList<>();
+        FileChannel reader;
+        long start;
+        long end;
+        // Under the lock, so that a compaction cannot swap the file between choosing the range and opening it
+        synchronized (this) {
+            Map.Entry<Long, Long> checkpoint = checkpoints.floorEntry(afterVersion + 1);
+            start = checkpoint != null ? checkpoint.getValue() : 0;
+            // Lines past the committed length may still be being written
+            end = committedBytes;
+            try {
+                reader = FileChannel.open(path, StandardOpenOption.READ);
+            } catch (IOException e) {
+                throw new RuntimeException("Could not read change log " + path, e);
+            }
+        }
+        try (reader) {
+            reader.position(start);
+            BufferedReader lines = new BufferedReader(new InputStreamReader(
+                    new BoundedInputStream(Channels.newInputStream(reader), end - start), StandardCharsets.UTF_8), 65536);
+            String line;
+            while ((line = lines.readLine()) != null) {
+                UserProfileChange change = UserProfileChangeCodec.decode(line);
+                if (change.getVersion() > afterVersion) {
+                    changes.add(change);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read change log " + path, e);
+        }
+        return changes;
+    }
+
+    /**
+     * Rewrites the log keeping only the latest change of each profile, in version order. Blocks publishing while it runs.
+     * @return The number of changes left in the log.
+     */
+    public synchronized int compact() {
+        Map<String, UserProfileChange> latest = new LinkedHashMap<>();
+        for (UserProfileChange change : changesAfter(0)) {
+            // Re-inserting moves the profile to the end, so iteration order stays version order
+            latest.remove(change.getId());
+            latest.put(change.getId(), change);
+        }
+        Path compacted = path.resolveSibling(path.getFileName() + ".compacting");
+        try {
+            try (Writer writer = Files.newBufferedWriter(compacted, StandardCharsets.UTF_8)) {
+                StringBuilder line = new StringBuilder(256);
+                for (UserProfileChange change : latest.values()) {
+                    line.setLength(0);
+                    UserProfileChangeCodec.encode(change, line);
+                    writer.append(line).append('\n');
+                }
+            }
+            try (FileChannel written = FileChannel.open(compacted, StandardOpenOption.WRITE)) {
+                written.force(true);
+            }
+            channel.close();
+            Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            checkpoints.clear();
+            open();
+        } catch (IOException e) {
+            throw new RuntimeException("Could not compact change log " + path, e);
+        }
+        LOG.info("Compacted change log {} to {} changes", path, latest.size());
+        return latest.size();
+    }
+
+    @Override
+    @PreDestroy
+    public synchronized void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOG.warn("Could not close change log {}", path, e);
+        }
+    }
+
+    private static final class BoundedInputStream extends FilterInputStream {
+        private long remaining;
+
+        private BoundedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+    }
+}
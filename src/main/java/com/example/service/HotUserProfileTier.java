@@ -0,0 +1,269 @@
+package com.example.service;
+
+import com.example.model.UserProfile;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Hot tier of {@link TieredUserProfileRepository}: profiles serialized with {@link UserProfileRecordCodec} in an
+ * open-addressing table keyed by a 64-bit hash of the ID. Each entry costs a {@code long} key, a reference and one
+ * byte array instead of a graph of strings and addresses, and a lookup decodes a fresh copy of the profile.
+ *
+ * The table holds at most {@code maxEntries} profiles and {@code maxBytes} of serialized data; beyond either bound
+ * the CLOCK hand evicts a profile not read since it last passed. Two IDs with the same hash share a slot: the
+ * stored ID is checked on every read, so the other one simply misses. Missing profiles are not cached.
+ */
+final class HotUserProfileTier {
+
+    private static final long EMPTY = 0;
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final int mask;
+
+    // Guarded by this
+    private final long[] keys;
+    private final byte[][] values;
+    private final boolean[] referenced;
+    private int size;
+    private long bytes;
+    private int hand;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+    private long loadCount;
+
+    HotUserProfileTier(int maxEntries, long maxBytes) {
+        if (maxEntries <= 0 || maxBytes <= 0) {
+            throw new IllegalArgumentException("Hot tier max entries and max bytes must be positive.");
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        // At most half full, so probe sequences stay short
+        int capacity = Integer.highestOneBit(Math.max(2, maxEntries) - 1) << 2;
+        this.mask = capacity - 1;
+        this.keys = new long[capacity];
+        this.values = new byte[capacity][];
+        this.referenced = new boolean[capacity];
+    }
+
+    /**
+     * @param fields The fields to decode; the others are left null.
+     * @return A copy of the profile, or null if it is not in the tier.
+     */
+    UserProfile get(String id, Set<UserProfileField> fields) {
+        long key = key(id);
+        byte[] value;
+        synchronized (this) {
+            int slot = find(key);
+            if (slot < 0) {
+                missCount++;
+                return null;
+            }
+            referenced[slot] = true;
+            value = values[slot];
+            hitCount++;
+        }
+        // Values are never modified once stored, so they are decoded outside the lock
+        ByteBuffer body = ByteBuffer.wrap(value);
+        UserProfileRecordCodec.kind(body);
+        String storedId = UserProfileRecordCodec.id(body);
+        return storedId.equals(id) ? UserProfileRecordCodec.profile(storedId, body, fields) : null;
+    }
+
+    /**
+     * Stores the profile, replacing the one with the same ID.
+     */
+    void put(UserProfile profile) {
+        store(profile, true);
+    }
+
+    /**
+     * Stores a profile read from the cold tier unless the tier already holds that ID, which is then at least as recent.
+     * @return Whether the profile was stored.
+     */
+    boolean putIfAbsent(UserProfile profile) {
+        return store(profile, false);
+    }
+
+    private boolean store(UserProfile profile, boolean replace) {
+        byte[] value = encode(profile);
+        long key = key(profile.getId());
+        synchronized (this) {
+            int slot = find(key);
+            if (slot >= 0 && !replace) {
+                return false;
+            }
+            if (slot >= 0) {
+                removeSlot(slot);
+            }
+            if (value.length > maxBytes) {
+                return false;
+            }
+            while (size >= maxEntries || bytes + value.length > maxBytes) {
+                evict();
+            }
+            slot = home(key);
+            while (keys[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+            referenced[slot] = false;
+            size++;
+            bytes += value.length;
+            if (!replace) {
+                loadCount++;
+            }
+            return true;
+        }
+    }
+
+    void remove(String id) {
+        long key = key(id);
+        synchronized (this) {
+            int slot = find(key);
+            if (slot >= 0) {
+                removeSlot(slot);
+            }
+        }
+    }
+
+    /**
+     * @return Whether the profile stored under the ID is exactly the given one.
+     */
+    boolean matches(UserProfile profile) {
+        byte[] expected = encode(profile);
+        byte[] value;
+        synchronized (this) {
+            int slot = find(key(profile.getId()));
+            if (slot < 0) {
+                return false;
+            }
+            value = values[slot];
+        }
+        return Arrays.equals(value, expected);
+    }
+
+    /**
+     * @return Up to {@code count} IDs of stored profiles, starting at a random slot.
+     */
+    List<String> sampleIds(int count) {
+        List<byte[]> sampled = new ArrayList<>(Math.min(count, maxEntries));
+        synchronized (this) {
+            int start = ThreadLocalRandom.current().nextInt(keys.length);
+            for (int i = 0; i < keys.length && sampled.size() < count; i++) {
+                int slot = (start + i) & mask;
+                if (keys[slot] != EMPTY) {
+                    sampled.add(values[slot]);
+                }
+            }
+        }
+        List<String> ids = new ArrayList<>(sampled.size());
+        for (byte[] value : sampled) {
+            ByteBuffer body = ByteBuffer.wrap(value);
+            UserProfileRecordCodec.kind(body);
+            ids.add(UserProfileRecordCodec.id(body));
+        }
+        return ids;
+    }
+
+    synchronized boolean isFull() {
+        return size >= maxEntries || bytes >= maxBytes;
+    }
+
+    /**
+     * @return Hit, miss and eviction counters; the load count is the number of profiles stored from the cold tier and
+     *         the total weight the serialized size of the stored profiles.
+     */
+    synchronized UserProfileCacheStats stats() {
+        return new UserProfileCacheStats(hitCount, missCount, evictionCount, loadCount, size, bytes);
+    }
+
+    // The cold tier returns an empty address list for a profile saved without addresses; store it the same way
+    private static byte[] encode(UserProfile profile) {
+        if (profile.getAddresses() == null) {
+            profile = new UserProfile(profile.getId(), profile.getFirstName(), profile.getLastName(), profile.getDob(), List.of());
+        }
+        return UserProfileRecordCodec.encodePut(profile);
+    }
+
+    // FNV-1a over the UTF-8 bytes followed by the MurmurHash3 finalizer; 0 marks an empty slot
+    private static long key(String id) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : id.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == EMPTY ? 1 : hash;
+    }
+
+    private int home(long key) {
+        return (int) key & mask;
+    }
+
+    private int find(long key) {
+        int slot = home(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    // Second chance: referenced profiles lose their mark, the first unmarked one is evicted
+    private void evict() {
+        while (true) {
+            hand = (hand + 1) & mask;
+            if (keys[hand] == EMPTY) {
+                continue;
+            }
+            if (referenced[hand]) {
+                referenced[hand] = false;
+            } else {
+                removeSlot(hand);
+                evictionCount++;
+                return;
+            }
+        }
+    }
+
+    // Shifts the rest of the probe sequence back instead of leaving a tombstone, so lookups never slow down
+    private void removeSlot(int slot) {
+        size--;
+        bytes -= values[slot].length;
+        int hole = slot;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            if (keys[next] == EMPTY) {
+                break;
+            }
+            int home = home(keys[next]);
+            // The entry stays if its home lies cyclically after the hole and at or before its slot
+            boolean stays = hole <= next ? hole < home && home <= next : hole < home || home <= next;
+            if (!stays) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                referenced[hole] = referenced[next];
+                hole = next;
+            }
+        }
+        keys[hole] = EMPTY;
+        values[hole] = null;
+        referenced[hole] = false;
+    }
+}
@@ -0,0 +1,225 @@
+package com.example.service;
+
+import com.example.model.UserProfile;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.annotation.Value;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * In-process LRU cache of user profile lookups.
+ * Entries expire after a TTL (misses after their own, usually shorter, TTL) and the least recently used entries
+ * are evicted once the entry count or the total weight exceeds its bound. The weight of an entry grows with the
+ * number of addresses, which dominate the size of a profile. Expired entries stay until they are reloaded, evicted
+ * or invalidated, so that {@link #getStale(String)} can still answer while BigQuery is unavailable.
+ * Profiles are mutable, so the cache keeps its own copy of each loaded profile and hands every caller a fresh copy;
+ * a caller editing its result never changes what the next caller sees. Copies and weights of profiles read from
+ * BigQuery leave their addresses encoded until someone reads them.
+ */
+@Singleton
+@Requires(property = "gcp.cache.userprofile.enabled", value = "true")
+public class InMemoryUserProfileCache implements UserProfileCache {
+
+    private final int maxEntries;
+    private final long maxWeight;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final LongSupplier ticker;
+
+    // Access-ordered, so iteration starts at the least recently used entry. Guarded by itself.
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentHashMap<String, CompletableFuture<Optional<UserProfile>>> inFlight = new ConcurrentHashMap<>();
+    private long totalWeight;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+
+    @Inject
+    public InMemoryUserProfileCache(
+            @Value("${gcp.cache.userprofile.max-entries:10000}") int maxEntries,
+            @Value("${gcp.cache.userprofile.max-weight:100000}") long maxWeight,
+            @Value("${gcp.cache.userprofile.ttl-ms:300000}") long ttlMs,
+            @Value("${gcp.cache.userprofile.negative-ttl-ms:30000}") long negativeTtlMs) {
+        this(maxEntries, maxWeight, ttlMs, negativeTtlMs, System::nanoTime);
+    }
+
+    InMemoryUserProfileCache(int maxEntries, long maxWeight, long ttlMs, long negativeTtlMs, LongSupplier ticker) {
+        if (maxEntries <= 0 || maxWeight <= 0) {
+            throw new IllegalArgumentException("Cache max entries and max weight must be positive.");
+        }
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+        this.negativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(negativeTtlMs);
+        this.ticker = ticker;
+    }
+
+    @Override
+    public Optional<UserProfile> get(String id, Function<String, Optional<UserProfile>> loader) {
+        Optional<UserProfile> cached = lookup(id);
+        if (cached != null) {
+            hits.increment();
+            return copy(cached);
+        }
+        misses.increment();
+
+        CompletableFuture<Optional<UserProfile>> load = new CompletableFuture<>();
+        CompletableFuture<Optional<UserProfile>> existing = inFlight.putIfAbsent(id, load);
+        if (existing != null) {
+            return copy(await(existing));
+        }
+
+        try {
+            // Another load may have finished between the lookup above and claiming the in-flight slot
+            Optional<UserProfile> loaded = lookup(id);
+            if (loaded == null) {
+                loads.increment();
+                loaded = loader.apply(id);
+                store(id, copy(loaded), load);
+            } else {
+                loaded = copy(loaded);
+            }
+            // Waiters copy it in turn, so the loader's own instance stays with this caller
+            load.complete(loaded);
+            return loaded;
+        } catch (RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(id, load);
+        }
+    }
+
+    @Override
+    public Optional<UserProfile> getStale(String id) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(id);
+        }
+        return entry != null ? copy(entry.value) : Optional.empty();
+    }
+
+    @Override
+    public void invalidate(String id) {
+        synchronized (entries) {
+            inFlight.remove(id);
+            Entry removed = entries.remove(id);
+            if (removed != null) {
+                totalWeight -= removed.weight;
+            }
+        }
+    }
+
+    @Override
+    public void invalidateAll() {
+        synchronized (entries) {
+            inFlight.clear();
+            entries.clear();
+            totalWeight = 0;
+        }
+    }
+
+    @Override
+    public UserProfileCacheStats stats() {
+        synchronized (entries) {
+            return new UserProfileCacheStats(hits.sum(), misses.sum(), evictions.sum(), loads.sum(), entries.size(), totalWeight);
+        }
+    }
+
+    /**
+     * @return The cached result, shared with the entry, or null if the ID is not cached or its entry expired.
+     */
+    private Optional<UserProfile> lookup(String id) {
+        synchronized (entries) {
+            Entry entry = entries.get(id);
+            if (entry == null) {
+                return null;
+            }
+            if (ticker.getAsLong() - entry.expiresAtNanos >= 0) {
+                // Kept for getStale; the next successful load replaces it
+                return null;
+            }
+            return entry.value;
+        }
+    }
+
+    private void store(String id, Optional<UserProfile> value, CompletableFuture<Optional<UserProfile>> load) {
+        long ttl = value.isPresent() ? ttlNanos : negativeTtlNanos;
+        // Not cached, but the load still replaces an expired entry
+        Entry entry = ttl > 0 ? new Entry(value, ticker.getAsLong() + ttl, weigh(value)) : null;
+        synchronized (entries) {
+            // A write invalidated the ID while it was loading, so the loaded value may already be stale
+            if (inFlight.get(id) != load) {
+                return;
+            }
+            Entry previous = entry != null ? entries.put(id, entry) : entries.remove(id);
+            if (previous != null) {
+                totalWeight -= previous.weight;
+            }
+            if (entry == null) {
+                return;
+            }
+            totalWeight += entry.weight;
+
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            while ((entries.size() > maxEntries || totalWeight > maxWeight) && eldest.hasNext()) {
+                Entry evicted = eldest.next().getValue();
+                eldest.remove();
+                totalWeight -= evicted.weight;
+                evictions.increment();
+            }
+        }
+    }
+
+    private static int weigh(Optional<UserProfile> value) {
+        if (value.isEmpty()) {
+            return 1;
+        }
+        if (value.get() instanceof LazyAddressesUserProfile) {
+            // Counted from the encoded addresses, so caching a profile does not decode them
+            return 1 + ((LazyAddressesUserProfile) value.get()).addressCount();
+        }
+        return value.get().getAddresses() == null ? 1 : 1 + value.get().getAddresses().size();
+    }
+
+    private static Optional<UserProfile> copy(Optional<UserProfile> value) {
+        return value.map(UserProfileChange::copyOf);
+    }
+
+    private static Optional<UserProfile> await(CompletableFuture<Optional<UserProfile>> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static final class Entry {
+        private final Optional<UserProfile> value;
+        private final long expiresAtNanos;
+        private final int weight;
+
+        private Entry(Optional<UserProfile> value, long expiresAtNanos, int weight) {
+            this.value = value;
+            this.expiresAtNanos = expiresAtNanos;
+            this.weight = weight;
+        }
+    }
+}
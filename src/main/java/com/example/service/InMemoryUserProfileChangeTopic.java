@@ -0,0 +1,79 @@
+package com.example.service;
+
+import io.micronaut.context.annotation.Requires;
+import jakarta.inject.Singleton;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Change stream kept in memory: retains every change and pushes each one to the current subscribers as it is
+ * published. Meant for tests and for consumers in the same process; nothing survives a restart.
+ */
+@Singleton
+@Requires(property = "gcp.change-log.userprofile.sink", value = "memory")
+public class InMemoryUserProfileChangeTopic implements UserProfileChangeSink, UserProfileChangeSource {
+
+    // In version order. Guarded by itself.
+    private final List<UserProfileChange> changes = new ArrayList<>();
+    private final List<Consumer<UserProfileChange>> subscribers = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(List<UserProfileChange> published) {
+        synchronized (changes) {
+            changes.addAll(published);
+            // Delivered under the lock, so every subscriber sees the changes in version order
+            for (UserProfileChange change : published) {
+                for (Consumer<UserProfileChange> subscriber : subscribers) {
+                    subscriber.accept(change);
+                }
+            }
+        }
+    }
+
+    @Override
+    public long lastVersion() {
+        synchronized (changes) {
+            return changes.isEmpty() ? 0 : changes.get(changes.size() - 1).getVersion();
+        }
+    }
+
+    @Override
+    public List<UserProfileChange> changesAfter(long afterVersion) {
+        synchronized (changes) {
+            int from = firstIndexAfter(afterVersion);
+            return new ArrayList<>(changes.subList(from, changes.size()));
+        }
+    }
+
+    /**
+     * Replays the changes after the version to the subscriber, then pushes it every change published from then on,
+     * on the publishing thread. The subscriber must not block.
+     * @return Stops the pushes when run.
+     */
+    public Runnable subscribe(long afterVersion, Consumer<UserProfileChange> subscriber) {
+        synchronized (changes) {
+            for (int i = firstIndexAfter(afterVersion); i < changes.size(); i++) {
+                subscriber.accept(changes.get(i));
+            }
+            subscribers.add(subscriber);
+        }
+        return () -> subscribers.remove(subscriber);
+    }
+
+    private int firstIndexAfter(long afterVersion) {
+        int low = 0;
+        int high = changes.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (changes.get(mid).getVersion() <= afterVersion) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.service;
+
+import com.example.model.Address;
+import com.example.model.UserProfile;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * A profile read from BigQuery whose addresses are decoded on the first call to {@link #getAddresses()}, so callers
+ * that only look at the scalar fields never pay for the address decode.
+ * Readers racing on the first call may each decode the addresses; only one result is published and all of them return
+ * it. A list set through {@link #setAddresses(List)} always wins over a decode still running.
+ */
+final class LazyAddressesUserProfile extends UserProfile {
+
+    private static final VarHandle ADDRESSES;
+
+    static {
+        try {
+            ADDRESSES = MethodHandles.lookup().findVarHandle(LazyAddressesUserProfile.class, "addresses", Supplier.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // The encoded addresses until they are decoded or set, then a Decoded holding the list
+    private volatile Supplier<List<Address>> addresses;
+    private final int encodedAddressCount;
+
+    /**
+     * @param addresses    Decodes the addresses; may be called more than once and must return a new list each time.
+     * @param addressCount The number of encoded addresses, counted without decoding them.
+     */
+    LazyAddressesUserProfile(String id, String firstName, String lastName, LocalDate dob,
+                             Supplier<List<Address>> addresses, int addressCount) {
+        super(id, firstName, lastName, dob, null);
+        this.addresses = addresses;
+        this.encodedAddressCount = addressCount;
+    }
+
+    @Override
+    public List<Address> getAddresses() {
+        Supplier<List<Address>> current = addresses;
+        if (current instanceof Decoded) {
+            return current.get();
+        }
+        List<Address> decoded;
+        try {
+            decoded = current.get();
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("Could not decode the addresses of user profile " + getId(), e);
+        }
+        // Losing the race to another decode or to setAddresses returns the winner's list
+        ADDRESSES.compareAndSet(this, current, new Decoded(decoded));
+        return addresses.get();
+    }
+
+    @Override
+    public void setAddresses(List<Address> addresses) {
+        this.addresses = new Decoded(addresses);
+    }
+
+    /**
+     * @return The number of addresses, without decoding them if they are still encoded.
+     */
+    int addressCount() {
+        Supplier<List<Address>> current = addresses;
+        if (current instanceof Decoded) {
+            List<Address> list = current.get();
+            return list == null ? 0 : list.size();
+        }
+        return encodedAddressCount;
+    }
+
+    /**
+     * @return A copy that decodes the same encoded addresses on its own, or null once they have been decoded.
+     */
+    LazyAddressesUserProfile copyIfEncoded() {
+        Supplier<List<Address>> current = addresses;
+        if (current instanceof Decoded) {
+            return null;
+        }
+        return new LazyAddressesUserProfile(getId(), getFirstName(), getLastName(), getDob(), current, encodedAddressCount);
+    }
+
+    private static final class Decoded implements Supplier<List<Address>> {
+        private final List<Address> addresses;
+
+        private Decoded(List<Address> addresses) {
+            this.addresses = addresses;
+        }
+
+        @Override
+        public List<Address> get() {
+            return addresses;
+        }
+    }
+}
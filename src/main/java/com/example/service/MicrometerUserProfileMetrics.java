@@ -0,0 +1,105 @@
+package com.example.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.core.annotation.Nullable;
+import jakarta.inject.Singleton;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes user profile call and job metrics to a Micrometer {@link MeterRegistry}, tagged by {@code operation}:
+ * <ul>
+ *     <li>{@code userprofile.call} timer (with percentile histogram) of service calls, also tagged by {@code outcome}</li>
+ *     <li>{@code userprofile.bigquery.job} timer (with percentile histogram), also tagged by {@code outcome}</li>
+ *     <li>{@code userprofile.bigquery.bytes.processed} and {@code userprofile.bigquery.bytes.billed} summaries</li>
+ *     <li>{@code userprofile.bigquery.slot.ms} summary</li>
+ *     <li>{@code userprofile.bigquery.cache} counter, also tagged by {@code hit}</li>
+ *     <li>{@code userprofile.tiered.write.failed} counter of profiles whose write-through failed, without tags</li>
+ * </ul>
+ * The cost meters are only fed when {@code gcp.metrics.userprofile.job-statistics} is enabled. It is off by default:
+ * reading the statistics makes every query create its job and wait for it before fetching the results, instead of
+ * the single {@code jobs.query} round trip that reads otherwise take.
+ */
+@Singleton
+@Requires(classes = MeterRegistry.class)
+@Requires(beans = MeterRegistry.class)
+public class MicrometerUserProfileMetrics implements UserProfileMetrics {
+
+    private final MeterRegistry registry;
+    private final boolean recordsJobStatistics;
+
+    public MicrometerUserProfileMetrics(
+            MeterRegistry registry,
+            @Value("${gcp.metrics.userprofile.job-statistics:false}") boolean recordsJobStatistics) {
+        this.registry = registry;
+        this.recordsJobStatistics = recordsJobStatistics;
+    }
+
+    @Override
+    public boolean recordsJobStatistics() {
+        return recordsJobStatistics;
+    }
+
+    @Override
+    public void recordJob(String operation, long durationNanos, boolean succeeded, @Nullable UserProfileJobStatistics statistics) {
+        String operationTag = tagValue(operation);
+        // Meters are cached by the registry, so the builders only allocate on first use
+        Timer.builder("userprofile.bigquery.job")
+                .description("Duration of BigQuery jobs run by UserProfileService")
+                .tag("operation", operationTag)
+                .tag("outcome", succeeded ? "success" : "failure")
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+        if (statistics == null) {
+            return;
+        }
+        summary("userprofile.bigquery.bytes.processed", "bytes", operationTag).record(statistics.getTotalBytesProcessed());
+        summary("userprofile.bigquery.bytes.billed", "bytes", operationTag).record(statistics.getTotalBytesBilled());
+        summary("userprofile.bigquery.slot.ms", "milliseconds", operationTag).record(statistics.getTotalSlotMs());
+        Counter.builder("userprofile.bigquery.cache")
+                .description("BigQuery jobs answered from the query cache (hit=true) or executed (hit=false)")
+                .tag("operation", operationTag)
+                .tag("hit", String.valueOf(statistics.isCacheHit()))
+                .register(registry)
+                .increment();
+    }
+
+    @Override
+    public void recordCall(String operation, long durationNanos, boolean succeeded) {
+        Timer.builder("userprofile.call")
+                .description("Duration of UserProfileService calls, cache hits included")
+                .tag("operation", tagValue(operation))
+                .tag("outcome", succeeded ? "success" : "failure")
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordWriteThroughFailure(int profileCount) {
+        Counter.builder("userprofile.tiered.write.failed")
+                .description("Profiles written to the tiered repository whose write to BigQuery failed and was lost")
+                .baseUnit("profiles")
+                .register(registry)
+                .increment(profileCount);
+    }
+
+    private DistributionSummary summary(String name, String baseUnit, String operationTag) {
+        return DistributionSummary.builder(name)
+                .baseUnit(baseUnit)
+                .tag("operation", operationTag)
+                .register(registry);
+    }
+
+    // "select by ID" -> "select_by_id"
+    private static String tagValue(String operation) {
+        return operation.toLowerCase(Locale.ROOT).replace(' ', '_');
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.service;
+
+import com.example.model.UserProfile;
+
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Cache used when caching is disabled: every lookup goes to the loader.
+ */
+class NoOpUserProfileCache implements UserProfileCache {
+
+    @Override
+    public Optional<UserProfile> get(String id, Function<String, Optional<UserProfile>> loader) {
+        return loader.apply(id);
+    }
+
+    @Override
+    public void invalidate(String id) {
+    }
+
+    @Override
+    public void invalidateAll() {
+    }
+
+    @Override
+    public UserProfileCacheStats stats() {
+        return new UserProfileCacheStats(0, 0, 0, 0, 0, 0);
+    }
+}
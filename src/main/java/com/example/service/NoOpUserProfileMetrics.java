@@ -0,0 +1,26 @@
+package com.example.service;
+
+import io.micronaut.core.annotation.Nullable;
+
+/**
+ * Metrics used when no meter registry is available: neither calls nor jobs are recorded.
+ */
+class NoOpUserProfileMetrics implements UserProfileMetrics {
+
+    @Override
+    public boolean recordsJobStatistics() {
+        return false;
+    }
+
+    @Override
+    public void recordJob(String operation, long durationNanos, boolean succeeded, @Nullable UserProfileJobStatistics statistics) {
+    }
+
+    @Override
+    public void recordCall(String operation, long durationNanos, boolean succeeded) {
+    }
+
+    @Override
+    public void recordWriteThroughFailure(int profileCount) {
+    }
+}
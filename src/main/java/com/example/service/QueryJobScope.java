@@ -0,0 +1,118 @@
+package com.example.service;
+
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.JobId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.function.Supplier;
+
+/**
+ * Tracks the BigQuery jobs started by one asynchronous call so that cancelling the call also cancels its jobs.
+ * While {@link #run(Supplier)} executes, {@link UserProfileService} finds the scope through {@link #current()}
+ * and starts each query job with an ID obtained from {@link #startJob()}.
+ *
+ * {@link UserProfileJobPolicy} runs each attempt of a call in a scope of its own, nested in the scope of the call if
+ * there is one, so that a deadline or a winning hedge can cancel one attempt while cancelling the call still cancels
+ * them all.
+ */
+final class QueryJobScope {
+
+    private static final Logger LOG = LoggerFactory.getLogger(QueryJobScope.class);
+    private static final ThreadLocal<QueryJobScope> CURRENT = new ThreadLocal<>();
+
+    private final BigQuery bigquery;
+    private final QueryJobScope parent;
+    // Guarded by this
+    private final Set<JobId> runningJobs = new HashSet<>();
+    private boolean cancelled;
+
+    QueryJobScope(BigQuery bigquery) {
+        this(bigquery, null);
+    }
+
+    /**
+     * @param parent Scope that also tracks the jobs of this one; null for a top-level scope.
+     */
+    QueryJobScope(BigQuery bigquery, QueryJobScope parent) {
+        this.bigquery = bigquery;
+        this.parent = parent;
+    }
+
+    /**
+     * @return The scope of the call running on this thread, or null outside of an asynchronous call.
+     */
+    static QueryJobScope current() {
+        return CURRENT.get();
+    }
+
+    <T> T run(Supplier<T> call) {
+        QueryJobScope previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return call.get();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    /**
+     * @return The ID to start the next job with.
+     * @throws CancellationException if the call or its parent has been cancelled, so no further job is started.
+     */
+    JobId startJob() {
+        return startJob(JobId.of(UUID.randomUUID().toString()));
+    }
+
+    /**
+     * Starts tracking a job whose ID the caller chose, e.g. the ID every attempt of an insert reuses.
+     * @return The given ID.
+     * @throws CancellationException if the call or its parent has been cancelled, so no further job is started.
+     */
+    synchronized JobId startJob(JobId jobId) {
+        if (cancelled) {
+            throw new CancellationException("UserProfile call cancelled");
+        }
+        if (parent != null) {
+            parent.startJob(jobId);
+        }
+        runningJobs.add(jobId);
+        return jobId;
+    }
+
+    synchronized void endJob(JobId jobId) {
+        runningJobs.remove(jobId);
+        if (parent != null) {
+            parent.endJob(jobId);
+        }
+    }
+
+    /**
+     * Cancels the jobs that are still running and prevents new ones from starting.
+     */
+    void cancel() {
+        List<JobId> jobs;
+        synchronized (this) {
+            cancelled = true;
+            jobs = new ArrayList<>(runningJobs);
+        }
+        for (JobId jobId : jobs) {
+            try {
+                bigquery.cancel(jobId);
+            } catch (RuntimeException e) {
+                // Best effort: the job may have finished in the meantime
+                LOG.warn("Failed to cancel BigQuery job {}", jobId.getJob(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,653 @@
+package com.example.service;
+
+import com.example.model.UserProfile;
+import com.example.model.UserProfileSummary;
+import com.google.cloud.bigquery.BigQueryException;
+import io.micronaut.context.annotation.Primary;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.core.annotation.Nullable;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Two-tier user profile store selected with {@code gcp.backend.userprofile: tiered}: recently used profiles are
+ * served from a compact in-memory {@link HotUserProfileTier}, BigQuery ({@link UserProfileService}) stays the system
+ * of record.
+ *
+ * Writes update the hot tier and return; a background writer applies them to BigQuery in order, batching consecutive
+ * writes of the same kind into one {@code saveAll} or {@code upsertAll} call. Until a write is applied its profile
+ * (or its deletion) is also kept in a pending map, so lookups by ID see it even if the hot tier has evicted it.
+ * The queue is bounded, so writers block once {@code write-queue-capacity} writes are waiting. A write failing for a
+ * transient reason (a retryable BigQuery error, or the job policy giving up) is tried again up to
+ * {@code write-retry-attempts} times in all, {@code write-retry-backoff-ms} apart and doubling; a retried save is
+ * applied as an upsert, since its INSERT may have committed before failing. Later writes wait behind it, so their
+ * order is kept. A write that still fails, or that BigQuery rejects outright, is logged, counted and reported through
+ * {@link UserProfileMetrics#recordWriteThroughFailure(int)}, and the profile is dropped from the hot tier so that
+ * reads fall back to BigQuery.
+ *
+ * Writes are acknowledged once queued, so a write can be lost after its caller saw it succeed: from the time it is
+ * queued until the writer has applied it, it only exists in this process. It is lost if the process dies in that
+ * window, which lasts as long as the writes queued before it plus its own retries take, or if its retries run out.
+ * Callers that must know their write is stored use {@link UserProfileService} directly.
+ *
+ * Lookups by ID that miss the hot tier read BigQuery and keep the profile, unless the ID was written while the read
+ * ran: every write bumps a generation for its ID before it changes the hot tier, and a read only keeps what it read
+ * if the generation it took before reading is unchanged. All other queries go straight to
+ * BigQuery and only see queued writes once they have been applied. {@link #warmUp()} fills the hot tier with a
+ * table scan; {@link #checkConsistency(int)} compares a sample of hot profiles with BigQuery, optionally every
+ * {@code consistency-check-interval-ms}.
+ */
+@Singleton
+@Primary
+@Requires(property = "gcp.backend.userprofile", value = "tiered")
+public class TieredUserProfileRepository implements UserProfileRepository, AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TieredUserProfileRepository.class);
+
+    // Writes drained by the writer at once; consecutive writes of the same kind become one BigQuery call
+    private static final int MAX_WRITES_PER_BATCH = 500;
+    // Write generations are kept per stripe of IDs; a write to another ID of the stripe only costs a read its caching
+    private static final int WRITE_GENERATION_STRIPES = 1024;
+
+    private final UserProfileService cold;
+    private final HotUserProfileTier hot;
+    // Latest write of each ID not yet applied to BigQuery
+    private final ConcurrentHashMap<String, Pending> pending = new ConcurrentHashMap<>();
+    private final BlockingQueue<PendingWrite> queue;
+    // Orders updates of the pending map and the hot tier the same way as the queue
+    private final Object enqueueLock = new Object();
+    private final AtomicLongArray writeGenerations = new AtomicLongArray(WRITE_GENERATION_STRIPES);
+    private final Thread writer;
+    private final ScheduledExecutorService consistencyChecker;
+    private final UserProfileMetrics metrics;
+    private final int writeRetryAttempts;
+    private final long writeRetryBackoffMs;
+    private final LongAdder failedWriteCount = new LongAdder();
+    private volatile boolean running = true;
+
+    @Inject
+    public TieredUserProfileRepository(
+            UserProfileService cold,
+            @Value("${gcp.tiered.userprofile.hot-max-entries:100000}") int hotMaxEntries,
+            @Value("${gcp.tiered.userprofile.hot-max-bytes:134217728}") long hotMaxBytes,
+            @Value("${gcp.tiered.userprofile.write-queue-capacity:10000}") int writeQueueCapacity,
+            @Value("${gcp.tiered.userprofile.consistency-check-interval-ms:0}") long consistencyCheckIntervalMs,
+            @Value("${gcp.tiered.userprofile.consistency-check-sample-size:100}") int consistencyCheckSampleSize,
+            @Value("${gcp.tiered.userprofile.write-retry-attempts:5}") int writeRetryAttempts,
+            @Value("${gcp.tiered.userprofile.write-retry-backoff-ms:200}") long writeRetryBackoffMs,
+            @Nullable UserProfileMetrics metrics) {
+        if (writeQueueCapacity <= 0) {
+            throw new IllegalArgumentException("Write queue capacity must be positive.");
+        }
+        if (writeRetryAttempts <= 0 || writeRetryBackoffMs < 0) {
+            throw new IllegalArgumentException("Write retry attempts must be positive and their backoff not negative.");
+        }
+        this.cold = cold;
+        this.writeRetryAttempts = writeRetryAttempts;
+        this.writeRetryBackoffMs = writeRetryBackoffMs;
+        this.metrics = metrics != null ? metrics : new NoOpUserProfileMetrics();
+        this.hot = new HotUserProfileTier(hotMaxEntries, hotMaxBytes);
+        this.queue = new ArrayBlockingQueue<>(writeQueueCapacity);
+        this.writer = new Thread(this::runWriter, "userprofile-write-through");
+        this.writer.setDaemon(true);
+        this.writer.start();
+        if (consistencyCheckIntervalMs > 0) {
+            this.consistencyChecker = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "userprofile-consistency-check");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.consistencyChecker.scheduleWithFixedDelay(() -> runConsistencyCheck(consistencyCheckSampleSize),
+                    consistencyCheckIntervalMs, consistencyCheckIntervalMs, TimeUnit.MILLISECONDS);
+        } else {
+            this.consistencyChecker = null;
+        }
+    }
+
+    @Override
+    public UserProfile saveUserProfile(UserProfile userProfile) {
+        if (userProfile.getId() == null) {
+            userProfile.setId(UUID.randomUUID().toString());
+        }
+        write(WriteKind.SAVE, List.of(userProfile));
+        return userProfile;
+    }
+
+    @Override
+    public List<UserProfile> saveAll(Collection<UserProfile> userProfiles) {
+        List<UserProfile> profiles = new ArrayList<>(userProfiles);
+        for (UserProfile userProfile : profiles) {
+            if (userProfile.getId() == null) {
+                userProfile.setId(UUID.randomUUID().toString());
+            }
+        }
+        write(WriteKind.SAVE, profiles);
+        return profiles;
+    }
+
+    @Override
+    public UserProfile updateUserProfile(UserProfile userProfile) {
+        upsertAll(List.of(userProfile));
+        return userProfile;
+    }
+
+    @Override
+    public List<UserProfile> upsertAll(Collection<UserProfile> userProfiles) {
+        for (UserProfile userProfile : userProfiles) {
+            if (userProfile.getId() == null) {
+                throw new IllegalArgumentException("UserProfile ID cannot be null for update.");
+            }
+        }
+        write(WriteKind.UPSERT, userProfiles);
+        return new ArrayList<>(userProfiles);
+    }
+
+    @Override
+    public void deleteUserProfileById(String id) {
+        Pending deletion = new Pending(id, null);
+        synchronized (enqueueLock) {
+            ensureRunning();
+            writeGenerations.incrementAndGet(stripe(id));
+            pending.put(id, deletion);
+            hot.remove(id);
+            enqueue(WriteKind.DELETE, List.of(deletion));
+        }
+    }
+
+    private void write(WriteKind kind, Collection<UserProfile> profiles) {
+        // Copies, so that callers changing their objects afterwards change neither tier
+        List<Pending> writes = new ArrayList<>(profiles.size());
+        for (UserProfile profile : profiles) {
+            writes.add(new Pending(profile.getId(), UserProfileChange.copyOf(profile)));
+        }
+        synchronized (enqueueLock) {
+            ensureRunning();
+            for (Pending write : writes) {
+                writeGenerations.incrementAndGet(stripe(write.id));
+                pending.put(write.id, write);
+                hot.put(write.profile);
+            }
+            enqueue(kind, writes);
+        }
+    }
+
+    private void enqueue(WriteKind kind, List<Pending> writes) {
+        try {
+            put(new PendingWrite(kind, writes));
+        } catch (RuntimeException e) {
+            for (Pending write : writes) {
+                pending.remove(write.id, write);
+                hot.remove(write.id);
+            }
+            throw e;
+        }
+    }
+
+    private void ensureRunning() {
+        if (!running) {
+            throw new IllegalStateException("Tiered UserProfile repository is closed.");
+        }
+    }
+
+    private void put(PendingWrite write) {
+        ensureRunning();
+        try {
+            queue.put(write);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for space in the UserProfile write-through queue", e);
+        }
+    }
+
+    /**
+     * Waits until every write queued before the call has been applied to BigQuery (or has failed).
+     */
+    public void flush() {
+        PendingWrite marker = new PendingWrite(WriteKind.FLUSH, List.of());
+        put(marker);
+        marker.done.join();
+    }
+
+    /**
+     * Number of writes waiting to be applied to BigQuery.
+     */
+    public int pendingCount() {
+        return queue.size();
+    }
+
+    /**
+     * Number of profiles whose write BigQuery rejected, or kept failing until its retries ran out, since startup.
+     */
+    public long getFailedWriteCount() {
+        return failedWriteCount.sum();
+    }
+
+    /**
+     * @return Hit, miss and eviction counters of the hot tier; its weight is the serialized size of the hot profiles.
+     */
+    public UserProfileCacheStats getHotTierStats() {
+        return hot.stats();
+    }
+
+    private void runWriter() {
+        while (true) {
+            List<PendingWrite> batch = new ArrayList<>();
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, MAX_WRITES_PER_BATCH - 1);
+
+            int from = 0;
+            while (from < batch.size()) {
+                PendingWrite first = batch.get(from);
+                if (first.kind == WriteKind.FLUSH || first.kind == WriteKind.SHUTDOWN) {
+                    first.done.complete(null);
+                    if (first.kind == WriteKind.SHUTDOWN) {
+                        return;
+                    }
+                    from++;
+                    continue;
+                }
+                int to = from + 1;
+                while (to < batch.size() && batch.get(to).kind == first.kind && first.kind != WriteKind.DELETE) {
+                    to++;
+                }
+                apply(first.kind, batch.subList(from, to));
+                from = to;
+            }
+        }
+    }
+
+    private void apply(WriteKind kind, List<PendingWrite> writes) {
+        List<Pending> applied = new ArrayList<>();
+        for (PendingWrite write : writes) {
+            applied.addAll(write.writes);
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                // A save retried may have been inserted by the failed attempt, so it is applied as an upsert
+                applyOnce(kind == WriteKind.SAVE && attempt > 1 ? WriteKind.UPSERT : kind, applied);
+                break;
+            } catch (RuntimeException e) {
+                if (attempt >= writeRetryAttempts || !isTransient(e) || !sleepBeforeRetry(attempt)) {
+                    LOG.error("Write-through of {} user profiles to BigQuery failed after {} attempt(s); the writes are lost",
+                            applied.size(), attempt, e);
+                    failedWriteCount.add(applied.size());
+                    metrics.recordWriteThroughFailure(applied.size());
+                    for (Pending write : applied) {
+                        hot.remove(write.id);
+                        pending.remove(write.id, write);
+                    }
+                    return;
+                }
+                LOG.warn("Write-through of {} user profiles to BigQuery failed, retrying (attempt {} of {})",
+                        applied.size(), attempt, writeRetryAttempts, e);
+            }
+        }
+        for (Pending write : applied) {
+            // A later write of the same ID stays pending until it is applied itself
+            pending.remove(write.id, write);
+        }
+    }
+
+    private void applyOnce(WriteKind kind, List<Pending> applied) {
+        if (kind == WriteKind.DELETE) {
+            cold.deleteUserProfileById(applied.get(0).id);
+            return;
+        }
+        List<UserProfile> profiles = new ArrayList<>(applied.size());
+        for (Pending write : applied) {
+            profiles.add(write.profile);
+        }
+        if (kind == WriteKind.SAVE) {
+            cold.saveAll(profiles);
+        } else {
+            cold.upsertAll(profiles);
+        }
+    }
+
+    // Whether BigQuery may accept the same write later: a retryable error, or the job policy having given up
+    private static boolean isTransient(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof UserProfileUnavailableException
+                    || (cause instanceof BigQueryException && ((BigQueryException) cause).isRetryable())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return False if the writer was interrupted; the write is then not retried.
+     */
+    private boolean sleepBeforeRetry(int attempt) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(writeRetryBackoffMs << Math.min(attempt - 1, 20));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Override
+    public Optional<UserProfile> findUserProfileById(String id) {
+        return findUserProfileById(id, UserProfileField.ALL);
+    }
+
+    /**
+     * Lookups of all fields that miss the hot tier keep the profile read from BigQuery; narrower ones do not.
+     */
+    @Override
+    public Optional<UserProfile> findUserProfileById(String id, Set<UserProfileField> fields) {
+        long generation = writeGenerations.get(stripe(id));
+        UserProfile profile = hot.get(id, fields);
+        if (profile != null) {
+            return Optional.of(profile);
+        }
+        Pending write = pending.get(id);
+        if (write != null) {
+            return Optional.ofNullable(write.profile).map(queued -> project(queued, fields));
+        }
+        boolean allFields = fields.containsAll(UserProfileField.ALL);
+        Optional<UserProfile> loaded = allFields ? cold.findUserProfileById(id) : cold.findUserProfileById(id, fields);
+        if (allFields && loaded.isPresent()) {
+            keepUnlessWritten(loaded.get(), generation);
+        }
+        return loaded;
+    }
+
+    @Override
+    public Optional<UserProfileSummary> findUserProfileSummaryById(String id) {
+        return findUserProfileById(id, UserProfileField.SUMMARY).map(TieredUserProfileRepository::toSummary);
+    }
+
+    @Override
+    public List<UserProfile> findAllByIds(Collection<String> ids) {
+        return findAllByIds(ids, UserProfileField.ALL);
+    }
+
+    /**
+     * Reads the IDs missing from the hot tier from BigQuery in one call.
+     */
+    @Override
+    public List<UserProfile> findAllByIds(Collection<String> ids, Set<UserProfileField> fields) {
+        List<String> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        Map<String, UserProfile> found = new HashMap<>();
+        List<String> misses = new ArrayList<>();
+        Map<String, Long> missGenerations = new HashMap<>();
+        for (String id : distinctIds) {
+            long generation = writeGenerations.get(stripe(id));
+            UserProfile profile = hot.get(id, fields);
+            Pending write = profile == null ? pending.get(id) : null;
+            if (profile != null) {
+                found.put(id, profile);
+            } else if (write != null) {
+                if (write.profile != null) {
+                    found.put(id, project(write.profile, fields));
+                }
+            } else {
+                misses.add(id);
+                missGenerations.put(id, generation);
+            }
+        }
+        if (!misses.isEmpty()) {
+            boolean allFields = fields.containsAll(UserProfileField.ALL);
+            for (UserProfile profile : cold.findAllByIds(misses, fields)) {
+                found.put(profile.getId(), profile);
+                if (allFields) {
+                    keepUnlessWritten(profile, missGenerations.get(profile.getId()));
+                }
+            }
+        }
+
+        List<UserProfile> profiles = new ArrayList<>(found.size());
+        for (String id : distinctIds) {
+            UserProfile profile = found.get(id);
+            if (profile != null) {
+                profiles.add(profile);
+            }
+        }
+        return profiles;
+    }
+
+    /**
+     * Keeps a profile read from BigQuery in the hot tier, unless a write of its ID started since {@code generation}
+     * was taken: the row read may predate that write, e.g. be a profile deleted meanwhile.
+     * @return Whether the profile was added.
+     */
+    private boolean keepUnlessWritten(UserProfile profile, long generation) {
+        int stripe = stripe(profile.getId());
+        if (writeGenerations.get(stripe) != generation || pending.containsKey(profile.getId())
+                || !hot.putIfAbsent(profile)) {
+            return false;
+        }
+        // A write starting between the check and the put changes the hot tier after bumping the generation; if the put
+        // landed after that change, the profile is dropped again and the next lookup reads it from BigQuery
+        if (writeGenerations.get(stripe) != generation) {
+            hot.remove(profile.getId());
+            return false;
+        }
+        return true;
+    }
+
+    private static int stripe(String id) {
+        int hash = id.hashCode();
+        return (hash ^ (hash >>> 16)) & (WRITE_GENERATION_STRIPES - 1);
+    }
+
+    @Override
+    public List<UserProfileSummary> findUserProfileSummariesByIds(Collection<String> ids) {
+        return toSummaries(findAllByIds(ids, UserProfileField.SUMMARY));
+    }
+
+    @Override
+    public List<UserProfile> findByLastNamePrefix(String lastNamePrefix) {
+        return cold.findByLastNamePrefix(lastNamePrefix);
+    }
+
+    @Override
+    public List<UserProfile> findByDobBetween(LocalDate from, LocalDate to) {
+        return cold.findByDobBetween(from, to);
+    }
+
+    @Override
+    public List<UserProfile> findByAddressCity(String city, @Nullable String state) {
+        return cold.findByAddressCity(city, state);
+    }
+
+    @Override
+    public List<UserProfile> getAllUserProfiles() {
+        return cold.getAllUserProfiles();
+    }
+
+    @Override
+    public List<UserProfile> getAllUserProfiles(Set<UserProfileField> fields) {
+        return cold.getAllUserProfiles(fields);
+    }
+
+    @Override
+    public List<UserProfileSummary> getAllUserProfileSummaries() {
+        return cold.getAllUserProfileSummaries();
+    }
+
+    @Override
+    public Stream<UserProfile> streamAllUserProfiles() {
+        return cold.streamAllUserProfiles();
+    }
+
+    /**
+     * Fills the hot tier from a scan of the table until it is full. Profiles written or read meanwhile are not
+     * replaced by the scanned version.
+     * @return The number of profiles loaded.
+     */
+    public int warmUp() {
+        long startNanos = System.nanoTime();
+        int loaded = 0;
+        // The scan may return rows written or deleted since it started
+        long[] generations = new long[WRITE_GENERATION_STRIPES];
+        for (int i = 0; i < generations.length; i++) {
+            generations[i] = writeGenerations.get(i);
+        }
+        try (Stream<UserProfile> profiles = cold.streamAllUserProfiles()) {
+            Iterator<UserProfile> iterator = profiles.iterator();
+            while (iterator.hasNext() && !hot.isFull()) {
+                UserProfile profile = iterator.next();
+                if (keepUnlessWritten(profile, generations[stripe(profile.getId())])) {
+                    loaded++;
+                }
+            }
+        }
+        LOG.info("Warmed up the UserProfile hot tier with {} profiles in {} ms", loaded,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        return loaded;
+    }
+
+    /**
+     * Compares up to {@code sampleSize} hot profiles without pending writes with their rows in BigQuery, with one
+     * lookup by IDs. Profiles that differ or no longer exist are dropped from the hot tier, so the next lookup reads
+     * them again.
+     */
+    public UserProfileTierConsistency checkConsistency(int sampleSize) {
+        List<String> ids = new ArrayList<>();
+        for (String id : hot.sampleIds(sampleSize)) {
+            if (!pending.containsKey(id)) {
+                ids.add(id);
+            }
+        }
+        Map<String, UserProfile> stored = new HashMap<>();
+        for (UserProfile profile : cold.findAllByIds(ids)) {
+            stored.put(profile.getId(), profile);
+        }
+
+        int checked = 0;
+        int stale = 0;
+        int missing = 0;
+        for (String id : ids) {
+            // Written since it was sampled: the row read may predate the write
+            if (pending.containsKey(id)) {
+                continue;
+            }
+            checked++;
+            UserProfile profile = stored.get(id);
+            if (profile == null) {
+                missing++;
+                hot.remove(id);
+            } else if (!hot.matches(profile)) {
+                stale++;
+                hot.remove(id);
+            }
+        }
+        return new UserProfileTierConsistency(checked, stale, missing);
+    }
+
+    private void runConsistencyCheck(int sampleSize) {
+        try {
+            UserProfileTierConsistency result = checkConsistency(sampleSize);
+            if (!result.isConsistent()) {
+                LOG.warn("UserProfile hot tier differed from BigQuery: {}", result);
+            }
+        } catch (RuntimeException e) {
+            LOG.warn("UserProfile hot tier consistency check failed", e);
+        }
+    }
+
+    private static UserProfile project(UserProfile profile, Set<UserProfileField> fields) {
+        UserProfile copy = UserProfileChange.copyOf(profile);
+        return new UserProfile(copy.getId(),
+                fields.contains(UserProfileField.FIRST_NAME) ? copy.getFirstName() : null,
+                fields.contains(UserProfileField.LAST_NAME) ? copy.getLastName() : null,
+                fields.contains(UserProfileField.DOB) ? copy.getDob() : null,
+                fields.contains(UserProfileField.ADDRESSES) ? copy.getAddresses() : null);
+    }
+
+    private static UserProfileSummary toSummary(UserProfile profile) {
+        return new UserProfileSummary(profile.getId(), profile.getFirstName(), profile.getLastName(), profile.getDob());
+    }
+
+    private static List<UserProfileSummary> toSummaries(List<UserProfile> profiles) {
+        List<UserProfileSummary> summaries = new ArrayList<>(profiles.size());
+        for (UserProfile profile : profiles) {
+            summaries.add(toSummary(profile));
+        }
+        return summaries;
+    }
+
+    /**
+     * Stops accepting writes and waits for the queued ones to be applied.
+     */
+    @PreDestroy
+    @Override
+    public void close() {
+        synchronized (enqueueLock) {
+            if (!running) {
+                return;
+            }
+            running = false;
+        }
+        if (consistencyChecker != null) {
+            consistencyChecker.shutdownNow();
+        }
+        try {
+            queue.put(new PendingWrite(WriteKind.SHUTDOWN, List.of()));
+            writer.join(60_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private enum WriteKind {
+        SAVE, UPSERT, DELETE, FLUSH, SHUTDOWN
+    }
+
+    // The queued state of one ID; a null profile is a deletion
+    private static final class Pending {
+        private final String id;
+        private final UserProfile profile;
+
+        private Pending(String id, UserProfile profile) {
+            this.id = id;
+            this.profile = profile;
+        }
+    }
+
+    private static final class PendingWrite {
+        private final WriteKind kind;
+        private final List<Pending> writes;
+        // Completed when the writer reaches a flush or shutdown marker
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private PendingWrite(WriteKind kind, List<Pending> writes) {
+            this.kind = kind;
+            this.writes = writes;
+        }
+    }
+}
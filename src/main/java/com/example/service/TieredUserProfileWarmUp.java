@@ -0,0 +1,27 @@
+package com.example.service;
+
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.event.ApplicationEventListener;
+import io.micronaut.context.event.StartupEvent;
+import jakarta.inject.Singleton;
+
+/**
+ * Fills the hot tier of the {@link TieredUserProfileRepository} with a table scan when the application starts, so
+ * that the first lookups do not all go to BigQuery. Disabled by {@code gcp.tiered.userprofile.warm-up: false}.
+ */
+@Singleton
+@Requires(property = "gcp.backend.userprofile", value = "tiered")
+@Requires(property = "gcp.tiered.userprofile.warm-up", value = "true", defaultValue = "true")
+public class TieredUserProfileWarmUp implements ApplicationEventListener<StartupEvent> {
+
+    private final TieredUserProfileRepository repository;
+
+    public TieredUserProfileWarmUp(TieredUserProfileRepository repository) {
+        this.repository = repository;
+    }
+
+    @Override
+    public void onApplicationEvent(StartupEvent event) {
+        repository.warmUp();
+    }
+}
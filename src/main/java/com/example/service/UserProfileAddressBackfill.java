@@ -0,0 +1,130 @@
+package com.example.service;
+
+import com.google.cloud.bigquery.*;
+import io.micronaut.context.ApplicationContext;
+import io.micronaut.context.annotation.Value;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Migrates the user profile table from the {@code addresses_json} string column to the native {@code addresses}
+ * REPEATED RECORD column. The rewrite runs inside BigQuery, in batched UPDATE jobs, so no rows pass through the client.
+ *
+ * Migration steps:
+ * <ol>
+ *     <li>{@link #addRecordColumn()} adds the {@code addresses} column.</li>
+ *     <li>Every instance switches {@code gcp.addresses-format.userprofile} to {@code DUAL}, so new writes fill both columns.</li>
+ *     <li>{@link #backfill()} rewrites the rows written before the switch.</li>
+ *     <li>Every instance switches to {@code RECORD}; {@code addresses_json} can then be dropped.</li>
+ * </ol>
+ * Rows still in the streaming buffer cannot be updated by DML, so wait for streamed writes to be committed before running the backfill.
+ */
+@Singleton
+public class UserProfileAddressBackfill {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UserProfileAddressBackfill.class);
+
+    // Rows whose addresses exist only as JSON; the backfill is done once none are left
+    private static final String PENDING_CONDITION = "ARRAY_LENGTH(addresses) = 0 AND ARRAY_LENGTH(JSON_QUERY_ARRAY(addresses_json)) > 0";
+
+    private final BigQuery bigquery;
+    private final String projectId;
+    private final String datasetName;
+    private final String tableName;
+    private final int batchSize;
+
+    @Inject
+    public UserProfileAddressBackfill(
+            BigQuery bigquery,
+            @Value("${gcp.project-id}") String projectId,
+            @Value("${gcp.dataset-name}") String datasetName,
+            @Value("${gcp.table-name.userprofile}") String tableName,
+            @Value("${gcp.addresses-backfill.userprofile.batch-size:50000}") int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Backfill batch size must be positive.");
+        }
+        this.bigquery = bigquery;
+        this.projectId = projectId;
+        this.datasetName = datasetName;
+        this.tableName = tableName;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Runs the schema change and the backfill against the configured table.
+     */
+    public static void main(String[] args) {
+        try (ApplicationContext context = ApplicationContext.run()) {
+            UserProfileAddressBackfill backfill = context.getBean(UserProfileAddressBackfill.class);
+            backfill.addRecordColumn();
+            backfill.backfill();
+        }
+    }
+
+    private String getFullTableName() {
+        return String.format("`%s.%s.%s`", projectId, datasetName, tableName);
+    }
+
+    /**
+     * Adds the {@code addresses} column to the table; does nothing if it already exists.
+     */
+    public void addRecordColumn() {
+        String query = String.format("ALTER TABLE %s ADD COLUMN IF NOT EXISTS addresses %s", getFullTableName(), AddressRecordCodec.SQL_TYPE);
+        runQuery(QueryJobConfiguration.newBuilder(query).build(), "add addresses column");
+    }
+
+    /**
+     * @return Number of rows whose {@code addresses} column still has to be filled from {@code addresses_json}.
+     */
+    public long countPendingRows() {
+        String query = String.format("SELECT COUNT(*) FROM %s WHERE %s", getFullTableName(), PENDING_CONDITION);
+        TableResult result = runQuery(QueryJobConfiguration.newBuilder(query).build(), "count pending rows");
+        return result.iterateAll().iterator().next().get(0).getLongValue();
+    }
+
+    /**
+     * Fills the {@code addresses} column of every pending row from its {@code addresses_json}, one UPDATE job per
+     * batch of at most {@code gcp.addresses-backfill.userprofile.batch-size} rows. Safe to rerun after a failure:
+     * rows already rewritten are no longer pending.
+     * @return Number of rows that were pending when the backfill started.
+     */
+    public long backfill() {
+        String update = String.format(
+                "UPDATE %1$s SET addresses = %2$s WHERE id IN (SELECT id FROM %1$s WHERE %3$s LIMIT @batchSize)",
+                getFullTableName(), AddressRecordCodec.fromJsonSql("addresses_json"), PENDING_CONDITION);
+        QueryJobConfiguration updateConfig = QueryJobConfiguration.newBuilder(update)
+                .addNamedParameter("batchSize", QueryParameterValue.int64(batchSize))
+                .build();
+
+        long total = countPendingRows();
+        long pending = total;
+        while (pending > 0) {
+            // Recount after each pass in case rows were deleted or rewritten concurrently
+            long batches = (pending + batchSize - 1) / batchSize;
+            for (long batch = 1; batch <= batches; batch++) {
+                runQuery(updateConfig, "address backfill");
+                LOG.info("Address backfill of {}: batch {} of {} done", getFullTableName(), batch, batches);
+            }
+            long remaining = countPendingRows();
+            if (remaining >= pending) {
+                throw new RuntimeException("Address backfill of " + getFullTableName() + " made no progress, " + remaining + " rows still pending");
+            }
+            pending = remaining;
+        }
+        LOG.info("Address backfill of {} finished, {} rows rewritten", getFullTableName(), total);
+        return total;
+    }
+
+    private TableResult runQuery(QueryJobConfiguration queryConfig, String operation) {
+        try {
+            return bigquery.query(queryConfig);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("BigQuery " + operation + " interrupted", e);
+        } catch (JobException e) {
+            throw new RuntimeException("BigQuery job failed during " + operation, e);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.service;
+
+import com.example.model.Address;
+import com.example.model.UserProfile;
+import org.apache.avro.Schema;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DecoderFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Decodes Avro encoded user profile rows, as returned by the Storage Read API, straight into {@link UserProfile}s.
+ * The reader for each column is resolved once from the session's row schema, so decoding a row reads the binary
+ * encoding field by field without building generic records or {@code FieldValue}s.
+ * When a row holds both address columns (dual format), {@code addresses_json} is only parsed if the row's
+ * {@code addresses} record column is empty, i.e. the row has not been backfilled yet.
+ * Not thread-safe: use one decoder per read stream.
+ */
+class UserProfileAvroDecoder {
+
+    private final FieldReader[] readers;
+    private final Function<String, List<Address>> addressesDecoder;
+    private final boolean hasRecordColumn;
+    private BinaryDecoder decoder;
+    // addresses_json of the current row, kept until the record column has been read
+    private String pendingAddressesJson;
+
+    UserProfileAvroDecoder(Schema rowSchema, Function<String, List<Address>> addressesDecoder) {
+        this.addressesDecoder = addressesDecoder;
+        List<Schema.Field> fields = rowSchema.getFields();
+        this.hasRecordColumn = rowSchema.getField(AddressStorageFormat.RECORD_COLUMN) != null;
+        this.readers = new FieldReader[fields.size()];
+        for (int i = 0; i < fields.size(); i++) {
+            readers[i] = fieldReader(fields.get(i));
+        }
+    }
+
+    /**
+     * @param serializedRows Concatenated binary encoded rows.
+     * @param rowCount Number of rows in {@code serializedRows}.
+     * @return The decoded profiles, in row order.
+     */
+    List<UserProfile> decode(byte[] serializedRows, long rowCount) {
+        decoder = DecoderFactory.get().binaryDecoder(serializedRows, decoder);
+        List<UserProfile> profiles = new ArrayList<>((int) rowCount);
+        try {
+            for (long i = 0; i < rowCount; i++) {
+                UserProfile profile = new UserProfile();
+                pendingAddressesJson = null;
+                for (FieldReader reader : readers) {
+                    reader.read(decoder, profile);
+                }
+                if (pendingAddressesJson != null && (profile.getAddresses() == null || profile.getAddresses().isEmpty())) {
+                    profile.setAddresses(addressesDecoder.apply(pendingAddressesJson));
+                }
+                if (profile.getAddresses() == null) {
+                    profile.setAddresses(new ArrayList<>());
+                }
+                profiles.add(profile);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to decode Avro user profile rows", e);
+        }
+        return profiles;
+    }
+
+    private FieldReader fieldReader(Schema.Field field) {
+        Schema schema = field.schema();
+        int nullIndex = -1;
+        if (schema.getType() == Schema.Type.UNION) {
+            // BigQuery encodes NULLABLE columns as a union of null and the column type
+            List<Schema> branches = schema.getTypes();
+            nullIndex = branches.get(0).getType() == Schema.Type.NULL ? 0 : 1;
+            schema = branches.get(1 - nullIndex);
+        }
+        FieldReader valueReader = valueReader(field.name(), schema);
+        if (nullIndex < 0) {
+            return valueReader;
+        }
+        int nullBranch = nullIndex;
+        return (decoder, profile) -> {
+            if (decoder.readIndex() != nullBranch) {
+                valueReader.read(decoder, profile);
+            }
+        };
+    }
+
+    private FieldReader valueReader(String column, Schema schema) {
+        switch (column) {
+            case "id":
+                return (decoder, profile) -> profile.setId(decoder.readString());
+            case "firstName":
+                return (decoder, profile) -> profile.setFirstName(decoder.readString());
+            case "lastName":
+                return (decoder, profile) -> profile.setLastName(decoder.readString());
+            case "dob":
+                // DATE columns arrive as days since the epoch
+                return (decoder, profile) -> profile.setDob(LocalDate.ofEpochDay(decoder.readInt()));
+            case "addresses_json":
+                if (hasRecordColumn) {
+                    return (decoder, profile) -> pendingAddressesJson = decoder.readString();
+                }
+                return (decoder, profile) -> profile.setAddresses(addressesDecoder.apply(decoder.readString()));
+            case "addresses":
+                return addressesReader(schema.getElementType());
+            default:
+                return (decoder, profile) -> skip(decoder, schema);
+        }
+    }
+
+    // The REPEATED RECORD column arrives as an Avro array of records with one nullable string per address field
+    private FieldReader addressesReader(Schema recordSchema) {
+        List<Schema.Field> fields = recordSchema.getFields();
+        AddressFieldReader[] fieldReaders = new AddressFieldReader[fields.size()];
+        for (int i = 0; i < fields.size(); i++) {
+            fieldReaders[i] = addressFieldReader(fields.get(i));
+        }
+        return (decoder, profile) -> {
+            List<Address> addresses = new ArrayList<>();
+            for (long count = decoder.readArrayStart(); count > 0; count = decoder.arrayNext()) {
+                for (long i = 0; i < count; i++) {
+                    Address address = new Address();
+                    for (AddressFieldReader fieldReader : fieldReaders) {
+                        fieldReader.read(decoder, address);
+                    }
+                    addresses.add(address);
+                }
+            }
+            profile.setAddresses(addresses);
+        };
+    }
+
+    private AddressFieldReader addressFieldReader(Schema.Field field) {
+        Schema schema = field.schema();
+        BiConsumer<Address, String> setter;
+        switch (field.name()) {
+            case "status":
+                setter = Address::setStatus;
+                break;
+            case "address":
+                setter = Address::setAddress;
+                break;
+            case "city":
+                setter = Address::setCity;
+                break;
+            case "state":
+                setter = Address::setState;
+                break;
+            case "zip":
+                setter = Address::setZip;
+                break;
+            case "numberOfYears":
+                setter = Address::setNumberOfYears;
+                break;
+            default:
+                return (decoder, address) -> skip(decoder, schema);
+        }
+        if (schema.getType() != Schema.Type.UNION) {
+            return (decoder, address) -> setter.accept(address, decoder.readString());
+        }
+        int nullBranch = schema.getTypes().get(0).getType() == Schema.Type.NULL ? 0 : 1;
+        return (decoder, address) -> {
+            if (decoder.readIndex() != nullBranch) {
+                setter.accept(address, decoder.readString());
+            }
+        };
+    }
+
+    private static void skip(BinaryDecoder decoder, Schema schema) throws IOException {
+        switch (schema.getType()) {
+            case NULL:
+                break;
+            case UNION:
+                skip(decoder, schema.getTypes().get(decoder.readIndex()));
+                break;
+            case STRING:
+            case BYTES:
+                decoder.skipBytes();
+                break;
+            case INT:
+                decoder.readInt();
+                break;
+            case LONG:
+                decoder.readLong();
+                break;
+            case FLOAT:
+                decoder.readFloat();
+                break;
+            case DOUBLE:
+                decoder.readDouble();
+                break;
+            case BOOLEAN:
+                decoder.readBoolean();
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported Avro column type " + schema.getType());
+        }
+    }
+
+    @FunctionalInterface
+    private interface FieldReader {
+        void read(BinaryDecoder decoder, UserProfile profile) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface AddressFieldReader {
+        void read(BinaryDecoder decoder, Address address) throws IOException;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.service;
+
+import com.example.model.UserProfile;
+
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Read-through cache consulted by {@link UserProfileService#findUserProfileById(String)}.
+ * Implementations cache both found profiles and misses, and must invalidate entries when the service writes.
+ */
+public interface UserProfileCache {
+
+    /**
+     * Returns the cached lookup result for the ID, calling the loader on a miss.
+     * Concurrent misses for the same ID share a single loader call.
+     * @param id The profile ID.
+     * @param loader Loads the profile from the backing store.
+     * @return The cached or freshly loaded result; empty if the profile does not exist.
+     */
+    Optional<UserProfile> get(String id, Function<String, Optional<UserProfile>> loader);
+
+    /**
+     * Returns the profile last loaded for the ID even if its entry has expired, without calling a loader.
+     * Used to answer lookups while BigQuery is unavailable.
+     * @param id The profile ID.
+     * @return The profile held for the ID; empty if none is held or the ID was last found missing.
+     */
+    default Optional<UserProfile> getStale(String id) {
+        return Optional.empty();
+    }
+
+    /**
+     * Drops the entry for the ID, including a cached miss and any load in flight.
+     * @param id The profile ID.
+     */
+    void invalidate(String id);
+
+    /**
+     * Drops every entry.
+     */
+    void invalidateAll();
+
+    /**
+     * @return Counters describing cache effectiveness since startup.
+     */
+    UserProfileCacheStats stats();
+}
@@ -0,0 +1,64 @@
+package com.example.service;
+
+/**
+ * Point-in-time counters of a {@link UserProfileCache}.
+ */
+public class UserProfileCacheStats {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long loadCount;
+    private final long entryCount;
+    private final long totalWeight;
+
+    public UserProfileCacheStats(long hitCount, long missCount, long evictionCount, long loadCount, long entryCount, long totalWeight) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.loadCount = loadCount;
+        this.entryCount = entryCount;
+        this.totalWeight = totalWeight;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Entries removed to stay within the size or weight bound; expired and invalidated entries are not counted.
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Loader calls; lower than the miss count when concurrent misses were coalesced.
+     */
+    public long getLoadCount() {
+        return loadCount;
+    }
+
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    public long getTotalWeight() {
+        return totalWeight;
+    }
+
+    public double getHitRate() {
+        long requests = hitCount + missCount;
+        return requests == 0 ? 0.0 : (double) hitCount / requests;
+    }
+
+    @Override
+    public String toString() {
+        return "UserProfileCacheStats{hits=" + hitCount + ", misses=" + missCount + ", evictions=" + evictionCount
+                + ", loads=" + loadCount + ", entries=" + entryCount + ", weight=" + totalWeight + "}";
+    }
+}
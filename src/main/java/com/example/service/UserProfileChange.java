@@ -0,0 +1,85 @@
+package com.example.service;
+
+import com.example.model.Address;
+import com.example.model.UserProfile;
+import io.micronaut.core.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One entry of the user profile change stream. Versions are assigned by {@link UserProfileService} in the order the
+ * changes are published and strictly increase, so a consumer that remembers the last version it applied
+ * can ask its {@link UserProfileChangeSource} for exactly the changes it has not seen.
+ */
+public final class UserProfileChange {
+
+    private final long version;
+    private final UserProfileChangeType type;
+    private final long timestampMillis;
+    private final String id;
+    private final UserProfile profile;
+
+    /**
+     * @param profile The profile as written; null for {@link UserProfileChangeType#DELETE}.
+     */
+    public UserProfileChange(long version, UserProfileChangeType type, long timestampMillis, String id, @Nullable UserProfile profile) {
+        this.version = version;
+        this.type = type;
+        this.timestampMillis = timestampMillis;
+        this.id = id;
+        this.profile = profile;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public UserProfileChangeType getType() {
+        return type;
+    }
+
+    /**
+     * @return When the change was published, in milliseconds since the epoch.
+     */
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return The profile as written; null for deletes.
+     */
+    @Nullable
+    public UserProfile getProfile() {
+        return profile;
+    }
+
+    // Callers keep their profile objects; the change must not follow later edits to them
+    static UserProfile copyOf(UserProfile profile) {
+        if (profile instanceof LazyAddressesUserProfile) {
+            // Still-encoded addresses are shared undecoded; each copy decodes its own list
+            UserProfile copy = ((LazyAddressesUserProfile) profile).copyIfEncoded();
+            if (copy != null) {
+                return copy;
+            }
+        }
+        List<Address> addresses = null;
+        if (profile.getAddresses() != null) {
+            addresses = new ArrayList<>(profile.getAddresses().size());
+            for (Address address : profile.getAddresses()) {
+                addresses.add(address == null ? null : new Address(address.getStatus(), address.getAddress(), address.getCity(),
+                        address.getState(), address.getZip(), address.getNumberOfYears()));
+            }
+        }
+        return new UserProfile(profile.getId(), profile.getFirstName(), profile.getLastName(), profile.getDob(), addresses);
+    }
+
+    @Override
+    public String toString() {
+        return "UserProfileChange{version=" + version + ", type=" + type + ", id=" + id + "}";
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.service;
+
+import com.example.model.UserProfile;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Line format of {@link FileUserProfileChangeLog}: one change per line, as tab separated fields
+ * {@code version, type, timestampMillis, id, firstName, lastName, dob, addresses}. The addresses are the
+ * {@code addresses_json} document; null fields, including every profile field of a delete, are written as {@code \N};
+ * backslash, tab, CR and LF are escaped with a backslash, so a line never contains a raw separator.
+ */
+final class UserProfileChangeCodec {
+
+    private static final String NULL = "\\N";
+    private static final int FIELDS = 8;
+
+    private UserProfileChangeCodec() {
+    }
+
+    static void encode(UserProfileChange change, StringBuilder line) {
+        line.append(change.getVersion()).append('\t')
+                .append(change.getType().name()).append('\t')
+                .append(change.getTimestampMillis()).append('\t');
+        writeField(line, change.getId());
+        UserProfile profile = change.getProfile();
+        if (profile == null) {
+            line.append('\t').append(NULL).append('\t').append(NULL).append('\t').append(NULL).append('\t').append(NULL);
+            return;
+        }
+        line.append('\t');
+        writeField(line, profile.getFirstName());
+        line.append('\t');
+        writeField(line, profile.getLastName());
+        line.append('\t');
+        writeField(line, profile.getDob() == null ? null : profile.getDob().format(DateTimeFormatter.ISO_LOCAL_DATE));
+        line.append('\t');
+        writeField(line, profile.getAddresses() == null ? null : AddressJsonCodec.encode(profile.getAddresses()));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the line is not an encoded change.
+     */
+    static UserProfileChange decode(String line) {
+        List<String> fields = split(line);
+        if (fields.size() != FIELDS) {
+            throw new IllegalArgumentException("Change log line has " + fields.size() + " fields instead of " + FIELDS);
+        }
+        long version;
+        long timestampMillis;
+        UserProfileChangeType type;
+        try {
+            version = Long.parseLong(fields.get(0));
+            type = UserProfileChangeType.valueOf(fields.get(1));
+            timestampMillis = Long.parseLong(fields.get(2));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed change log line header", e);
+        }
+        String id = fields.get(3);
+        if (type == UserProfileChangeType.DELETE) {
+            return new UserProfileChange(version, type, timestampMillis, id, null);
+        }
+        String dob = fields.get(6);
+        String addresses = fields.get(7);
+        UserProfile profile = new UserProfile(id, fields.get(4), fields.get(5),
+                dob == null ? null : LocalDate.parse(dob),
+                addresses == null ? null : AddressJsonCodec.decode(addresses));
+        return new UserProfileChange(version, type, timestampMillis, id, profile);
+    }
+
+    private static void writeField(StringBuilder line, String value) {
+        if (value == null) {
+            line.append(NULL);
+            return;
+        }
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '\t' || c == '\n' || c == '\r') {
+                line.append(value, start, i).append('\\').append(c == '\\' ? '\\' : c == '\t' ? 't' : c == '\n' ? 'n' : 'r');
+                start = i + 1;
+            }
+        }
+        line.append(value, start, value.length());
+    }
+
+    private static List<String> split(String line) {
+        List<String> fields = new ArrayList<>(FIELDS);
+        StringBuilder field = new StringBuilder();
+        boolean escaped = false;
+        boolean isNull = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (escaped) {
+                switch (c) {
+                    case '\\':
+                        field.append('\\');
+                        break;
+                    case 't':
+                        field.append('\t');
+                        break;
+                    case 'n':
+                        field.append('\n');
+                        break;
+                    case 'r':
+                        field.append('\r');
+                        break;
+                    case 'N':
+                        isNull = true;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown escape \\" + c + " in change log line");
+                }
+                escaped = false;
+            } else if (c == '\\') {
+                escaped = true;
+            } else if (c == '\t') {
+                fields.add(isNull ? null : field.toString());
+                field.setLength(0);
+                isNull = false;
+            } else {
+                field.append(c);
+            }
+        }
+        if (escaped) {
+            throw new IllegalArgumentException("Change log line ends inside an escape");
+        }
+        fields.add(isNull ? null : field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.service;
+
+import java.util.List;
+
+/**
+ * Receives the changes written through {@link UserProfileService}, so that downstream consumers can apply deltas
+ * instead of rescanning the table. The service publishes a write's changes after its BigQuery job succeeded, one call
+ * at a time and in version order; of two writes to the same profile, the one that finished last has the later version.
+ * A delete that removed no row publishes nothing.
+ */
+public interface UserProfileChangeSink {
+
+    /**
+     * Appends the changes. If this throws, the write already happened in BigQuery but its changes are not in the
+     * stream; the exception is passed on to the caller of the write.
+     * @param changes Changes with consecutive versions following {@link #lastVersion()}.
+     */
+    void publish(List<UserProfileChange> changes);
+
+    /**
+     * @return The version of the last change appended, or 0 if there is none; the service continues numbering after it.
+     */
+    long lastVersion();
+}
@@ -0,0 +1,15 @@
+package com.example.service;
+
+import java.util.List;
+
+/**
+ * Read side of a change stream, for consumers that catch up incrementally.
+ */
+public interface UserProfileChangeSource {
+
+    /**
+     * @param afterVersion The last version the consumer has applied; 0 to read from the start.
+     * @return The changes with a higher version, in version order.
+     */
+    List<UserProfileChange> changesAfter(long afterVersion);
+}
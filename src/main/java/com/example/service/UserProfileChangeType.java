@@ -0,0 +1,22 @@
+package com.example.service;
+
+/**
+ * Kind of write recorded in the user profile change stream.
+ */
+public enum UserProfileChangeType {
+
+    /**
+     * A profile was inserted by {@code saveUserProfile} or {@code saveAll}.
+     */
+    CREATE,
+
+    /**
+     * A profile was replaced, or inserted if missing, by {@code updateUserProfile} or {@code upsertAll}.
+     */
+    UPDATE,
+
+    /**
+     * A profile was deleted; the change carries no profile.
+     */
+    DELETE
+}
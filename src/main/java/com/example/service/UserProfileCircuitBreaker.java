@@ -0,0 +1,81 @@
+package com.example.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker of {@link UserProfileJobPolicy}. After {@code failureThreshold} consecutive failed calls the circuit
+ * opens and calls are rejected without reaching BigQuery. Once {@code openMs} have passed a single trial call is let
+ * through: its success closes the circuit, its failure opens it again for another {@code openMs}.
+ */
+final class UserProfileCircuitBreaker {
+
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier ticker;
+
+    // Guarded by this
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAtNanos;
+    private boolean trialRunning;
+
+    UserProfileCircuitBreaker(int failureThreshold, long openMs, LongSupplier ticker) {
+        if (failureThreshold <= 0) {
+            throw new IllegalArgumentException("Circuit breaker failure threshold must be positive.");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMs);
+        this.ticker = ticker;
+    }
+
+    /**
+     * @return Whether a call may go ahead; every call allowed must be followed by {@link #onSuccess()} or
+     *         {@link #onFailure()}.
+     */
+    synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (ticker.getAsLong() - openedAtNanos < openNanos) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                trialRunning = true;
+                return true;
+            default:
+                // Only one trial call at a time while half open
+                if (trialRunning) {
+                    return false;
+                }
+                trialRunning = true;
+                return true;
+        }
+    }
+
+    synchronized void onSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        trialRunning = false;
+    }
+
+    synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAtNanos = ticker.getAsLong();
+            trialRunning = false;
+        }
+    }
+
+    synchronized State state() {
+        return state;
+    }
+}
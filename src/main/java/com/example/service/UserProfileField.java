@@ -0,0 +1,29 @@
+package com.example.service;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Fields of a user profile that a read can select. Reads given a subset only select and map those columns; the
+ * other properties of the returned profiles are null. The ID is always read.
+ */
+public enum UserProfileField {
+
+    ID,
+    FIRST_NAME,
+    LAST_NAME,
+    DOB,
+
+    /**
+     * The address column(s) of the configured {@link AddressStorageFormat}; the widest part of a row by far.
+     */
+    ADDRESSES;
+
+    public static final Set<UserProfileField> ALL = Collections.unmodifiableSet(EnumSet.allOf(UserProfileField.class));
+
+    /**
+     * Everything but the addresses, as in {@link com.example.model.UserProfileSummary}.
+     */
+    public static final Set<UserProfileField> SUMMARY = Collections.unmodifiableSet(EnumSet.of(ID, FIRST_NAME, LAST_NAME, DOB));
+}
@@ -0,0 +1,487 @@
+package com.example.service;
+
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.BigQueryError;
+import com.google.cloud.bigquery.BigQueryException;
+import com.google.cloud.bigquery.JobException;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.scheduling.TaskExecutors;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Retry, deadline, hedging and circuit-breaking policy that {@link UserProfileService} applies to its query jobs.
+ *
+ * A call whose job fails with one of the {@code retryable-reasons} (rate limits, backend errors) is retried up to
+ * {@code max-attempts} times, sleeping a random time of up to {@code initial-backoff-ms} doubled per attempt and
+ * capped at {@code max-backoff-ms}. Any other error fails the call at once. The whole call, retries included, must
+ * finish within {@code deadline-ms}: once it passes, the call fails and the running job is cancelled in the background.
+ *
+ * Hedged calls ({@link UserProfileService#findUserProfileById(String)}) start a duplicate job if the first one is
+ * still running after the {@code hedge-percentile} latency of recent calls of the same operation; the first job to
+ * succeed answers the call and the other one is cancelled in the background. Hedges are capped at
+ * {@code hedge-budget-percent} of recent hedged calls and run on at most {@code hedge-max-threads} threads, so a slow
+ * BigQuery, which makes every call pass the hedge delay, does not get twice the load: a hedge over budget or
+ * finding no free thread is skipped, not queued.
+ *
+ * Attempts of calls with a deadline or a hedge run on the blocking executor while the caller waits for the first
+ * result up to the deadline, so neither a job slow to notice its cancellation nor a cancel request that hangs holds
+ * the caller up; the losing attempt finishes in the background. Other calls run their attempt on the caller's thread.
+ *
+ * Calls failing for one of the reasons above count towards the {@link UserProfileCircuitBreaker}; while it is open
+ * calls fail at once, and lookups by ID are answered from the profile cache if it still holds the profile.
+ * Failures caused by BigQuery being unavailable are reported as {@link UserProfileUnavailableException}.
+ */
+@Singleton
+@Requires(property = "gcp.job-policy.userprofile.enabled", value = "true")
+public class UserProfileJobPolicy implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UserProfileJobPolicy.class);
+    // Latencies kept per hedged operation, and how many of them are needed before hedging starts
+    private static final int LATENCY_WINDOW = 256;
+    private static final int MIN_LATENCY_SAMPLES = 20;
+    // Hedge tokens are counted in hundredths: each hedged call earns hedge-budget-percent of them, a hedge costs a
+    // whole one, and at most this many whole tokens are saved up for a burst of slow calls
+    private static final long HEDGE_TOKEN = 100;
+    private static final long MAX_HEDGE_TOKENS = 10 * HEDGE_TOKEN;
+
+    private final BigQuery bigquery;
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final long deadlineNanos;
+    private final boolean hedgeReads;
+    private final int hedgePercentile;
+    private final long hedgeMinDelayNanos;
+    private final int hedgeBudgetPercent;
+    private final Set<String> retryableReasons;
+    private final boolean cacheFallback;
+    private final LongSupplier ticker;
+    private final UserProfileCircuitBreaker circuitBreaker;
+    private final ScheduledThreadPoolExecutor timers;
+    private final ExecutorService attempts;
+    private final boolean ownsAttempts;
+    private final ThreadPoolExecutor hedges;
+    private final ConcurrentHashMap<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+    private final AtomicLong hedgeTokens = new AtomicLong();
+
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder hedgedCalls = new LongAdder();
+    private final LongAdder skippedHedges = new LongAdder();
+    private final LongAdder rejectedCalls = new LongAdder();
+    private final LongAdder expiredCalls = new LongAdder();
+
+    @Inject
+    public UserProfileJobPolicy(
+            BigQuery bigquery,
+            @Value("${gcp.job-policy.userprofile.max-attempts:4}") int maxAttempts,
+            @Value("${gcp.job-policy.userprofile.initial-backoff-ms:100}") long initialBackoffMs,
+            @Value("${gcp.job-policy.userprofile.max-backoff-ms:5000}") long maxBackoffMs,
+            @Value("${gcp.job-policy.userprofile.deadline-ms:30000}") long deadlineMs,
+            @Value("${gcp.job-policy.userprofile.hedge-reads:true}") boolean hedgeReads,
+            @Value("${gcp.job-policy.userprofile.hedge-percentile:95}") int hedgePercentile,
+            @Value("${gcp.job-policy.userprofile.hedge-min-delay-ms:20}") long hedgeMinDelayMs,
+            @Value("${gcp.job-policy.userprofile.hedge-budget-percent:5}") int hedgeBudgetPercent,
+            @Value("${gcp.job-policy.userprofile.hedge-max-threads:8}") int hedgeMaxThreads,
+            @Value("${gcp.job-policy.userprofile.retryable-reasons:rateLimitExceeded,backendError,internalError,jobBackendError,jobInternalError}") List<String> retryableReasons,
+            @Value("${gcp.job-policy.userprofile.breaker-failure-threshold:5}") int breakerFailureThreshold,
+            @Value("${gcp.job-policy.userprofile.breaker-open-ms:30000}") long breakerOpenMs,
+            @Value("${gcp.job-policy.userprofile.cache-fallback:true}") boolean cacheFallback,
+            @Nullable @Named(TaskExecutors.BLOCKING) ExecutorService attemptExecutor) {
+        this(bigquery, maxAttempts, initialBackoffMs, maxBackoffMs, deadlineMs, hedgeReads, hedgePercentile, hedgeMinDelayMs,
+                hedgeBudgetPercent, hedgeMaxThreads, retryableReasons, breakerFailureThreshold, breakerOpenMs, cacheFallback,
+                attemptExecutor, System::nanoTime);
+    }
+
+    /**
+     * @param attemptExecutor Runs the attempts of calls with a deadline or a hedge; null for a pool of daemon threads
+     *                        owned by the policy.
+     */
+    UserProfileJobPolicy(BigQuery bigquery, int maxAttempts, long initialBackoffMs, long maxBackoffMs, long deadlineMs,
+                         boolean hedgeReads, int hedgePercentile, long hedgeMinDelayMs, int hedgeBudgetPercent,
+                         int hedgeMaxThreads, List<String> retryableReasons, int breakerFailureThreshold, long breakerOpenMs,
+                         boolean cacheFallback, @Nullable ExecutorService attemptExecutor, LongSupplier ticker) {
+        if (maxAttempts <= 0 || initialBackoffMs < 0 || maxBackoffMs < initialBackoffMs || deadlineMs < 0) {
+            throw new IllegalArgumentException("Job policy max attempts must be positive, backoffs and deadline not negative.");
+        }
+        if (hedgePercentile <= 0 || hedgePercentile >= 100) {
+            throw new IllegalArgumentException("Job policy hedge percentile must be between 0 and 100.");
+        }
+        if (hedgeBudgetPercent < 0 || hedgeBudgetPercent > 100 || hedgeMaxThreads <= 0) {
+            throw new IllegalArgumentException("Job policy hedge budget must be between 0 and 100 percent, hedge threads positive.");
+        }
+        this.bigquery = bigquery;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.deadlineNanos = TimeUnit.MILLISECONDS.toNanos(deadlineMs);
+        this.hedgeReads = hedgeReads;
+        this.hedgePercentile = hedgePercentile;
+        this.hedgeMinDelayNanos = TimeUnit.MILLISECONDS.toNanos(hedgeMinDelayMs);
+        this.hedgeBudgetPercent = hedgeBudgetPercent;
+        this.retryableReasons = Set.copyOf(retryableReasons);
+        this.cacheFallback = cacheFallback;
+        this.ticker = ticker;
+        this.circuitBreaker = new UserProfileCircuitBreaker(breakerFailureThreshold, breakerOpenMs, ticker);
+        this.timers = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "userprofile-job-policy");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Hedges are usually cancelled long before they fire
+        this.timers.setRemoveOnCancelPolicy(true);
+        this.ownsAttempts = attemptExecutor == null;
+        this.attempts = attemptExecutor != null ? attemptExecutor : Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "userprofile-job-attempt");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // No queue: a hedge that cannot start at once is skipped, since by the time a thread frees up it is late anyway
+        this.hedges = new ThreadPoolExecutor(0, hedgeMaxThreads, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "userprofile-hedged-job");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Runs a call under the policy. Each attempt runs in a {@link QueryJobScope} of its own, so the call must start
+     * its jobs through {@link QueryJobScope#current()} for deadlines and hedging to be able to cancel them.
+     * @param operation Name of the call, e.g. {@code "select by ID"}; hedge delays are tracked per operation.
+     * @param hedged Whether a duplicate attempt may be started when the first one is slow. Only for reads.
+     * @param call Runs one attempt. It is run again after a retryable failure, so it must be safe to repeat:
+     *             {@link UserProfileService} resubmits reads, MERGEs and DELETEs, but an INSERT attempt after the first
+     *             waits for the job already submitted instead of submitting another.
+     * @throws UserProfileUnavailableException if the circuit is open, the retries ran out or the deadline passed.
+     */
+    public <T> T execute(String operation, boolean hedged, Supplier<T> call) {
+        if (!circuitBreaker.tryAcquire()) {
+            rejectedCalls.increment();
+            throw new UserProfileUnavailableException("BigQuery " + operation + " rejected: circuit breaker is open");
+        }
+        long deadline = deadlineNanos > 0 ? ticker.getAsLong() + deadlineNanos : Long.MAX_VALUE;
+        LatencyWindow window = hedged && hedgeReads ? latencies.computeIfAbsent(operation, key -> new LatencyWindow()) : null;
+        for (int attempt = 1; ; attempt++) {
+            AtomicBoolean expired = new AtomicBoolean();
+            try {
+                T result = runAttempt(call, deadline, window, expired);
+                circuitBreaker.onSuccess();
+                return result;
+            } catch (RuntimeException e) {
+                if (expired.get()) {
+                    expiredCalls.increment();
+                    circuitBreaker.onFailure();
+                    throw new UserProfileUnavailableException("BigQuery " + operation + " exceeded its deadline", e);
+                }
+                if (!isRetryable(e)) {
+                    // BigQuery answered, so the error says nothing about its health
+                    circuitBreaker.onSuccess();
+                    throw e;
+                }
+                long backoffNanos = TimeUnit.MILLISECONDS.toNanos(backoffMs(attempt));
+                if (attempt >= maxAttempts || deadline - ticker.getAsLong() <= backoffNanos) {
+                    circuitBreaker.onFailure();
+                    throw new UserProfileUnavailableException("BigQuery " + operation + " failed after " + attempt + " attempt(s)", e);
+                }
+                retries.increment();
+                LOG.debug("Retrying BigQuery {} in {} ms after attempt {} failed", operation,
+                        TimeUnit.NANOSECONDS.toMillis(backoffNanos), attempt, e);
+                sleep(operation, backoffNanos);
+            } catch (Error e) {
+                circuitBreaker.onFailure();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Runs one attempt, with a hedge started on another thread if the attempt is slow. Either attempt succeeding
+     * completes the attempt; it only fails once every attempt started has failed, or once the deadline passes.
+     */
+    private <T> T runAttempt(Supplier<T> call, long deadline, LatencyWindow window, AtomicBoolean expired) {
+        if (deadline - ticker.getAsLong() <= 0) {
+            expired.set(true);
+            throw new UserProfileUnavailableException("No time left for another attempt");
+        }
+        QueryJobScope parent = QueryJobScope.current();
+        QueryJobScope primary = new QueryJobScope(bigquery, parent);
+        if (deadline == Long.MAX_VALUE && window == null) {
+            // Nothing to bound or race: the caller may as well run the attempt itself
+            return primary.run(call);
+        }
+        QueryJobScope hedge = new QueryJobScope(bigquery, parent);
+        CompletableFuture<T> result = new CompletableFuture<>();
+        // Attempts that may still complete the result; the hedge only starts while the primary is running
+        AtomicInteger running = new AtomicInteger(1);
+        AtomicReference<RuntimeException> firstFailure = new AtomicReference<>();
+        // The loser is cancelled as soon as one attempt wins, by the winner's thread; cancelling the winner's scope
+        // is a no-op
+        result.whenComplete((value, failure) -> {
+            primary.cancel();
+            hedge.cancel();
+        });
+
+        long hedgeDelay = window != null ? window.percentile(hedgePercentile) : -1;
+        if (window != null) {
+            hedgeTokens.updateAndGet(tokens -> Math.min(tokens + hedgeBudgetPercent, MAX_HEDGE_TOKENS));
+        }
+        ScheduledFuture<?> hedgeTimer = hedgeDelay < 0 ? null : timers.schedule(
+                () -> startHedge(hedge, call, result, running, firstFailure, window),
+                Math.max(hedgeDelay, hedgeMinDelayNanos), TimeUnit.NANOSECONDS);
+
+        try {
+            attempts.execute(() -> attempt(primary, call, result, running, firstFailure, window));
+        } catch (RejectedExecutionException e) {
+            attempt(primary, call, result, running, firstFailure, window);
+        }
+        try {
+            return deadline == Long.MAX_VALUE ? result.get() : result.get(deadline - ticker.getAsLong(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            expired.set(true);
+            cancelInBackground(primary, hedge);
+            throw new UserProfileUnavailableException("Attempt still running at the deadline");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelInBackground(primary, hedge);
+            throw new RuntimeException("Interrupted while waiting for a BigQuery job", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+        } finally {
+            if (hedgeTimer != null) {
+                hedgeTimer.cancel(false);
+            }
+        }
+    }
+
+    // Runs on the timer thread once the primary attempt is slower than the hedge delay
+    private <T> void startHedge(QueryJobScope hedge, Supplier<T> call, CompletableFuture<T> result, AtomicInteger running,
+                                AtomicReference<RuntimeException> firstFailure, LatencyWindow window) {
+        if (result.isDone()) {
+            return;
+        }
+        if (hedgeTokens.getAndUpdate(tokens -> tokens >= HEDGE_TOKEN ? tokens - HEDGE_TOKEN : tokens) < HEDGE_TOKEN) {
+            skippedHedges.increment();
+            return;
+        }
+        if (running.updateAndGet(count -> count == 0 ? 0 : count + 1) == 0) {
+            return;
+        }
+        try {
+            hedges.execute(() -> attempt(hedge, call, result, running, firstFailure, window));
+            hedgedCalls.increment();
+        } catch (RejectedExecutionException e) {
+            skippedHedges.increment();
+            hedgeTokens.updateAndGet(tokens -> Math.min(tokens + HEDGE_TOKEN, MAX_HEDGE_TOKENS));
+            // The primary may have failed meanwhile, waiting for this hedge to report the outcome
+            if (running.decrementAndGet() == 0) {
+                result.completeExceptionally(firstFailure.get());
+            }
+        }
+    }
+
+    // Cancel requests go to BigQuery, which may be slow to answer just when a deadline passed
+    private void cancelInBackground(QueryJobScope primary, QueryJobScope hedge) {
+        Runnable cancel = () -> {
+            primary.cancel();
+            hedge.cancel();
+        };
+        try {
+            attempts.execute(cancel);
+        } catch (RejectedExecutionException e) {
+            LOG.warn("Could not cancel the BigQuery jobs of an expired call", e);
+        }
+    }
+
+    private <T> void attempt(QueryJobScope scope, Supplier<T> call, CompletableFuture<T> result, AtomicInteger running,
+                             AtomicReference<RuntimeException> firstFailure, LatencyWindow window) {
+        long startNanos = ticker.getAsLong();
+        try {
+            T value = scope.run(call);
+            if (window != null) {
+                window.record(ticker.getAsLong() - startNanos);
+            }
+            result.complete(value);
+        } catch (RuntimeException e) {
+            attemptFailed(e, result, running, firstFailure);
+        } catch (Error e) {
+            result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private static <T> void attemptFailed(RuntimeException e, CompletableFuture<T> result, AtomicInteger running,
+                                          AtomicReference<RuntimeException> firstFailure) {
+        firstFailure.compareAndSet(null, e);
+        if (running.decrementAndGet() == 0) {
+            result.completeExceptionally(firstFailure.get());
+        }
+    }
+
+    // Full jitter: uniformly random between 0 and the exponential bound, so retrying callers spread out
+    private long backoffMs(int attempt) {
+        long bound = initialBackoffMs << Math.min(attempt - 1, 30);
+        bound = Math.min(bound < 0 ? maxBackoffMs : bound, maxBackoffMs);
+        return bound <= 0 ? 0 : ThreadLocalRandom.current().nextLong(bound + 1);
+    }
+
+    private static void sleep(String operation, long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting to retry BigQuery " + operation, e);
+        }
+    }
+
+    /**
+     * @return Whether the failure, or one of its causes, is a BigQuery error with one of the retryable reasons.
+     */
+    boolean isRetryable(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof BigQueryException) {
+                BigQueryException exception = (BigQueryException) cause;
+                if (exception.isRetryable() || retryableReasons.contains(exception.getReason())) {
+                    return true;
+                }
+            }
+            if (cause instanceof JobException) {
+                List<BigQueryError> errors = ((JobException) cause).getErrors();
+                if (errors != null && errors.stream().anyMatch(error -> retryableReasons.contains(error.getReason()))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Whether lookups by ID rejected by this policy are answered from the profile cache.
+     */
+    public boolean fallsBackToCache() {
+        return cacheFallback;
+    }
+
+    public boolean isCircuitOpen() {
+        return circuitBreaker.state() == UserProfileCircuitBreaker.State.OPEN;
+    }
+
+    /**
+     * @return Attempts repeated after a retryable failure.
+     */
+    public long getRetryCount() {
+        return retries.sum();
+    }
+
+    /**
+     * @return Attempts that started a duplicate job because the first one was slow.
+     */
+    public long getHedgeCount() {
+        return hedgedCalls.sum();
+    }
+
+    /**
+     * @return Hedges not started because the hedge budget was used up or every hedge thread was busy.
+     */
+    public long getSkippedHedgeCount() {
+        return skippedHedges.sum();
+    }
+
+    /**
+     * @return Calls rejected by the open circuit breaker.
+     */
+    public long getRejectedCount() {
+        return rejectedCalls.sum();
+    }
+
+    /**
+     * @return Calls that failed because their deadline passed.
+     */
+    public long getExpiredCount() {
+        return expiredCalls.sum();
+    }
+
+    @PreDestroy
+    @Override
+    public void close() {
+        timers.shutdownNow();
+        hedges.shutdownNow();
+        if (ownsAttempts) {
+            attempts.shutdownNow();
+        }
+    }
+
+    /**
+     * Latencies of the last {@value #LATENCY_WINDOW} successful attempts of one operation.
+     * The percentile is recomputed every {@value #RECOMPUTE_EVERY} samples rather than on every call.
+     */
+    private static final class LatencyWindow {
+
+        private static final int RECOMPUTE_EVERY = 32;
+
+        // Guarded by this
+        private final long[] samples = new long[LATENCY_WINDOW];
+        private int count;
+        private int next;
+        private int sinceRecompute;
+        private int percentile = -1;
+        private long value = -1;
+
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+            sinceRecompute++;
+        }
+
+        /**
+         * @return The latency below which the given percent of the recorded attempts finished; -1 while fewer than
+         *         {@value #MIN_LATENCY_SAMPLES} were recorded.
+         */
+        synchronized long percentile(int percent) {
+            if (count < MIN_LATENCY_SAMPLES) {
+                return -1;
+            }
+            if (value < 0 || percentile != percent || sinceRecompute >= RECOMPUTE_EVERY) {
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                value = sorted[Math.min(count - 1, (int) Math.ceil(count * percent / 100.0) - 1)];
+                percentile = percent;
+                sinceRecompute = 0;
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.service;
+
+/**
+ * Cost of one BigQuery query job, taken from its {@code JobStatistics}.
+ */
+public class UserProfileJobStatistics {
+
+    private final String jobId;
+    private final long totalBytesProcessed;
+    private final long totalBytesBilled;
+    private final long totalSlotMs;
+    private final boolean cacheHit;
+
+    public UserProfileJobStatistics(String jobId, long totalBytesProcessed, long totalBytesBilled, long totalSlotMs, boolean cacheHit) {
+        this.jobId = jobId;
+        this.totalBytesProcessed = totalBytesProcessed;
+        this.totalBytesBilled = totalBytesBilled;
+        this.totalSlotMs = totalSlotMs;
+        this.cacheHit = cacheHit;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public long getTotalBytesProcessed() {
+        return totalBytesProcessed;
+    }
+
+    /**
+     * Bytes charged for; zero for results served from the query cache, at least 10 MB per table otherwise.
+     */
+    public long getTotalBytesBilled() {
+        return totalBytesBilled;
+    }
+
+    public long getTotalSlotMs() {
+        return totalSlotMs;
+    }
+
+    public boolean isCacheHit() {
+        return cacheHit;
+    }
+
+    @Override
+    public String toString() {
+        return "UserProfileJobStatistics{jobId=" + jobId + ", bytesProcessed=" + totalBytesProcessed + ", bytesBilled=" + totalBytesBilled
+                + ", slotMs=" + totalSlotMs + ", cacheHit=" + cacheHit + "}";
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.service;
+
+import io.micronaut.core.annotation.Nullable;
+
+/**
+ * Receives the timing of every {@link UserProfileService} call and the timing and cost of every BigQuery query job it runs.
+ * Calls are named after the repository method, e.g. {@code find by ID} or {@code upsert all}; jobs after the statement
+ * they run, e.g. {@code insert}, {@code select by ID} or {@code upsert}.
+ */
+public interface UserProfileMetrics {
+
+    /**
+     * @return True to have the service create every job explicitly and read its {@code JobStatistics} from the finished
+     * job; false to only record timings.
+     */
+    boolean recordsJobStatistics();
+
+    /**
+     * Records one finished job.
+     * @param operation The service operation that ran the job.
+     * @param durationNanos Wall-clock time from submitting the job to receiving its first result page.
+     * @param succeeded False if the job failed or the call was interrupted.
+     * @param statistics The job's statistics; null when not recorded or not available.
+     */
+    void recordJob(String operation, long durationNanos, boolean succeeded, @Nullable UserProfileJobStatistics statistics);
+
+    /**
+     * Records one finished service call, including calls answered from the profile cache without running a job.
+     * @param operation The service call.
+     * @param durationNanos Wall-clock time spent in the call, retries and every job it ran included.
+     * @param succeeded False if the call threw.
+     */
+    void recordCall(String operation, long durationNanos, boolean succeeded);
+
+    /**
+     * Records writes that {@link TieredUserProfileRepository} acknowledged but could not apply to BigQuery, so they
+     * are lost.
+     * @param profileCount The number of profiles whose write failed.
+     */
+    void recordWriteThroughFailure(int profileCount);
+}
@@ -0,0 +1,34 @@
+package com.example.service;
+
+import com.example.model.UserProfile;
+
+import java.util.List;
+
+/**
+ * One page of a cursor based scan over the user profile table.
+ */
+public class UserProfilePage {
+
+    private final List<UserProfile> profiles;
+    private final String nextPageToken;
+
+    public UserProfilePage(List<UserProfile> profiles, String nextPageToken) {
+        this.profiles = profiles;
+        this.nextPageToken = nextPageToken;
+    }
+
+    public List<UserProfile> getProfiles() {
+        return profiles;
+    }
+
+    /**
+     * @return The cursor to pass back for the next page, or null if this is the last page.
+     */
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+
+    public boolean hasNextPage() {
+        return nextPageToken != null;
+    }
+}
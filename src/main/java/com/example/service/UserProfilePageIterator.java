@@ -0,0 +1,117 @@
+package com.example.service;
+
+import com.example.model.UserProfile;
+import com.google.cloud.bigquery.FieldValueList;
+import com.google.cloud.bigquery.TableResult;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Iterates the profiles of a paged BigQuery result, mapping rows only as they are consumed.
+ * Up to {@code prefetchPages} following pages are fetched in the background while the current page is consumed,
+ * so at most {@code prefetchPages + 1} pages are held in memory at any time. Closing the iterator stops the
+ * prefetching: a page being fetched is dropped and no further page is requested.
+ */
+class UserProfilePageIterator implements Iterator<UserProfile>, AutoCloseable {
+
+    private final Function<FieldValueList, UserProfile> mapper;
+    private final int prefetchPages;
+    private final Executor prefetcher;
+    // Pages fetched or being fetched ahead of the current one; a null page marks the end of the result
+    private final Deque<CompletableFuture<TableResult>> ahead = new ArrayDeque<>();
+    private CompletableFuture<TableResult> lastRequested;
+    private TableResult current;
+    private Iterator<FieldValueList> rows;
+    private boolean exhausted;
+    // Read by the prefetch tasks, which stop fetching once it is set
+    private volatile boolean closed;
+
+    /**
+     * @param prefetcher Runs the page fetches ahead of the consumer; not shut down by {@link #close()}.
+     */
+    UserProfilePageIterator(TableResult firstPage, int prefetchPages, Executor prefetcher, Function<FieldValueList, UserProfile> mapper) {
+        this.mapper = mapper;
+        this.prefetchPages = prefetchPages;
+        this.current = firstPage;
+        this.rows = firstPage.getValues().iterator();
+        this.lastRequested = CompletableFuture.completedFuture(firstPage);
+        this.prefetcher = prefetchPages > 0 && firstPage.hasNextPage() ? prefetcher : null;
+        requestAhead();
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!rows.hasNext()) {
+            if (exhausted) {
+                return false;
+            }
+            TableResult next = nextPage();
+            if (next == null) {
+                exhausted = true;
+                close();
+                return false;
+            }
+            current = next;
+            rows = next.getValues().iterator();
+        }
+        return true;
+    }
+
+    @Override
+    public UserProfile next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return mapper.apply(rows.next());
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (CompletableFuture<TableResult> page : ahead) {
+            page.cancel(false);
+        }
+        ahead.clear();
+    }
+
+    private TableResult nextPage() {
+        if (prefetcher == null) {
+            return current.hasNextPage() ? current.getNextPage() : null;
+        }
+        CompletableFuture<TableResult> page = ahead.poll();
+        if (page == null) {
+            return null;
+        }
+        try {
+            TableResult result = page.join();
+            if (result != null) {
+                requestAhead();
+            }
+            return result;
+        } catch (CompletionException e) {
+            close();
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private void requestAhead() {
+        if (prefetcher == null) {
+            return;
+        }
+        while (ahead.size() < prefetchPages) {
+            lastRequested = lastRequested.thenApplyAsync(
+                    page -> !closed && page != null && page.hasNextPage() ? page.getNextPage() : null, prefetcher);
+            ahead.add(lastRequested);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.service;
+
+import com.google.cloud.bigquery.QueryJobConfiguration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The statements {@link UserProfileService} runs against one table, rendered once at construction into base job
+ * configurations that each call copies and adds its parameters to. The multi-row INSERT and MERGE statements, whose
+ * length depends on the batch, are assembled per call from fragments rendered here.
+ *
+ * Reads carry the configured {@code useQueryCache} setting; every job is labelled with the service operation so
+ * that its cost can be attributed in the BigQuery billing export.
+ */
+final class UserProfileQueries {
+
+    // Select lists are indexed by a bit mask of these fields; the ID is always selected
+    private static final UserProfileField[] OPTIONAL_FIELDS = {
+            UserProfileField.FIRST_NAME, UserProfileField.LAST_NAME, UserProfileField.DOB, UserProfileField.ADDRESSES};
+
+    private final String fullTableName;
+    private final AddressStorageFormat addressFormat;
+    private final boolean useQueryCache;
+    private final String addressColumns;
+
+    private final QueryJobConfiguration[] selectById = new QueryJobConfiguration[1 << OPTIONAL_FIELDS.length];
+    private final QueryJobConfiguration[] selectByIds = new QueryJobConfiguration[1 << OPTIONAL_FIELDS.length];
+    private final QueryJobConfiguration[] selectAll = new QueryJobConfiguration[1 << OPTIONAL_FIELDS.length];
+    private final QueryJobConfiguration insertWithAddresses;
+    private final QueryJobConfiguration insertWithoutAddresses;
+    private final QueryJobConfiguration delete;
+    private final QueryJobConfiguration lastNamePrefixBounded;
+    private final QueryJobConfiguration lastNamePrefixUnbounded;
+    private final QueryJobConfiguration dobBetween;
+    private final QueryJobConfiguration city;
+    private final QueryJobConfiguration cityAndState;
+    private final QueryJobConfiguration bulkInsert;
+    private final QueryJobConfiguration upsert;
+    private final String bulkInsertPrefix;
+    private final String upsertPrefix;
+    private final String upsertSuffix;
+
+    UserProfileQueries(String projectId, String datasetName, String tableName, AddressStorageFormat addressFormat, boolean useQueryCache) {
+        this.fullTableName = String.format("`%s.%s.%s`", projectId, datasetName, tableName);
+        this.addressFormat = addressFormat;
+        this.useQueryCache = useQueryCache;
+        this.addressColumns = String.join(", ", addressFormat.columns());
+
+        for (int mask = 0; mask < selectById.length; mask++) {
+            String columns = selectColumns(mask);
+            selectById[mask] = read(String.format("SELECT %s FROM %s WHERE id = @id", columns, fullTableName), "select by ID");
+            selectByIds[mask] = read(String.format("SELECT %s FROM %s WHERE id IN UNNEST(@ids)", columns, fullTableName), "select by IDs");
+            selectAll[mask] = read(String.format("SELECT %s FROM %s", columns, fullTableName), "select all");
+        }
+
+        String insert = String.format("INSERT INTO %s (id, firstName, lastName, dob, %s) VALUES ", fullTableName, addressColumns);
+        insertWithAddresses = write(insert + "(@id, @firstName, @lastName, @dob, " + addressValues("", true) + ")", "insert");
+        insertWithoutAddresses = write(insert + "(@id, @firstName, @lastName, @dob, " + addressValues("", false) + ")", "insert");
+        delete = write(String.format("DELETE FROM %s WHERE id = @id", fullTableName), "delete");
+
+        String selectAllColumns = selectColumns(selectById.length - 1);
+        String lastNamePrefix = "lastName >= @prefix AND STARTS_WITH(lastName, @prefix)";
+        lastNamePrefixBounded = read(lookup(selectAllColumns, lastNamePrefix + " AND lastName < @prefixEnd"), "select by last name");
+        lastNamePrefixUnbounded = read(lookup(selectAllColumns, lastNamePrefix), "select by last name");
+        dobBetween = read(lookup(selectAllColumns, "dob BETWEEN @dobFrom AND @dobTo"), "select by dob range");
+        city = read(lookup(selectAllColumns, cityMatch(false)), "select by city");
+        cityAndState = read(lookup(selectAllColumns, cityMatch(true)), "select by city");
+
+        bulkInsertPrefix = insert;
+        bulkInsert = write("", "bulk insert");
+        upsertPrefix = String.format("MERGE %s T USING (", fullTableName);
+        upsertSuffix = String.format(") S ON T.id = S.id "
+                        + "WHEN MATCHED THEN UPDATE SET firstName = S.firstName, lastName = S.lastName, dob = S.dob, %s "
+                        + "WHEN NOT MATCHED THEN INSERT (id, firstName, lastName, dob, %s) VALUES (S.id, S.firstName, S.lastName, S.dob, %s)",
+                joinAddressColumns("%1$s = S.%1$s"), addressColumns, joinAddressColumns("S.%s"));
+        upsert = write("", "upsert");
+    }
+
+    String fullTableName() {
+        return fullTableName;
+    }
+
+    QueryJobConfiguration.Builder selectById(Set<UserProfileField> fields) {
+        return selectById[mask(fields)].toBuilder();
+    }
+
+    QueryJobConfiguration.Builder selectByIds(Set<UserProfileField> fields) {
+        return selectByIds[mask(fields)].toBuilder();
+    }
+
+    QueryJobConfiguration.Builder selectAll(Set<UserProfileField> fields) {
+        return selectAll[mask(fields)].toBuilder();
+    }
+
+    /**
+     * @param hasAddresses False to write an empty address list, which the record column takes as a literal
+     *                     rather than a parameter.
+     */
+    QueryJobConfiguration.Builder insert(boolean hasAddresses) {
+        return (hasAddresses ? insertWithAddresses : insertWithoutAddresses).toBuilder();
+    }
+
+    QueryJobConfiguration.Builder delete() {
+        return delete.toBuilder();
+    }
+
+    QueryJobConfiguration.Builder lastNamePrefix(boolean bounded) {
+        return (bounded ? lastNamePrefixBounded : lastNamePrefixUnbounded).toBuilder();
+    }
+
+    QueryJobConfiguration.Builder dobBetween() {
+        return dobBetween.toBuilder();
+    }
+
+    QueryJobConfiguration.Builder city(boolean withState) {
+        return (withState ? cityAndState : city).toBuilder();
+    }
+
+    /**
+     * @return The base configuration of a multi-row INSERT; its query is set from {@link #bulkInsertQuery(CharSequence)}.
+     */
+    QueryJobConfiguration.Builder bulkInsert() {
+        return bulkInsert.toBuilder();
+    }
+
+    /**
+     * @param values The comma separated row tuples.
+     */
+    String bulkInsertQuery(CharSequence values) {
+        return bulkInsertPrefix + values;
+    }
+
+    /**
+     * @return The base configuration of a MERGE; its query is set from {@link #upsertQuery(CharSequence)}.
+     */
+    QueryJobConfiguration.Builder upsert() {
+        return upsert.toBuilder();
+    }
+
+    /**
+     * @param source The {@code UNION ALL} of the source rows.
+     */
+    String upsertQuery(CharSequence source) {
+        return upsertPrefix + source + upsertSuffix;
+    }
+
+    /**
+     * @return The SQL values of the address columns in a row tuple, matching the parameters the service binds.
+     */
+    String addressValues(String suffix, boolean hasAddresses) {
+        List<String> values = new ArrayList<>();
+        for (String column : addressFormat.columns()) {
+            values.add(addressValue(column, suffix, hasAddresses));
+        }
+        return String.join(", ", values);
+    }
+
+    String addressValue(String column, String suffix, boolean hasAddresses) {
+        if (column.equals(AddressStorageFormat.JSON_COLUMN)) {
+            return "@addressesJson" + suffix;
+        }
+        return hasAddresses ? "@addresses" + suffix : AddressRecordCodec.EMPTY_SQL;
+    }
+
+    private QueryJobConfiguration read(String query, String operation) {
+        return QueryJobConfiguration.newBuilder(query)
+                .setUseQueryCache(useQueryCache)
+                .setLabels(labels(operation))
+                .build();
+    }
+
+    private static QueryJobConfiguration write(String query, String operation) {
+        return QueryJobConfiguration.newBuilder(query)
+                .setLabels(labels(operation))
+                .build();
+    }
+
+    private static Map<String, String> labels(String operation) {
+        return Map.of("component", "userprofile", "operation", operation.toLowerCase(Locale.ROOT).replace(' ', '_'));
+    }
+
+    private String lookup(String columns, String where) {
+        return String.format("SELECT %s FROM %s WHERE %s", columns, fullTableName, where);
+    }
+
+    private String cityMatch(boolean withState) {
+        String recordMatch = "EXISTS(SELECT 1 FROM UNNEST(addresses) a WHERE a.city = @city"
+                + (withState ? " AND a.state = @state)" : ")");
+        String jsonMatch = "EXISTS(SELECT 1 FROM UNNEST(JSON_QUERY_ARRAY(addresses_json)) a WHERE JSON_VALUE(a, '$.city') = @city"
+                + (withState ? " AND JSON_VALUE(a, '$.state') = @state)" : ")");
+        switch (addressFormat) {
+            case RECORD:
+                return recordMatch;
+            case DUAL:
+                // Rows that have not been backfilled only have their addresses as JSON
+                return recordMatch + " OR (ARRAY_LENGTH(addresses) = 0 AND " + jsonMatch + ")";
+            default:
+                return jsonMatch;
+        }
+    }
+
+    private String selectColumns(int mask) {
+        StringBuilder columns = new StringBuilder("id");
+        if ((mask & 1) != 0) {
+            columns.append(", firstName");
+        }
+        if ((mask & 2) != 0) {
+            columns.append(", lastName");
+        }
+        if ((mask & 4) != 0) {
+            columns.append(", dob");
+        }
+        if ((mask & 8) != 0) {
+            columns.append(", ").append(addressColumns);
+        }
+        return columns.toString();
+    }
+
+    private static int mask(Set<UserProfileField> fields) {
+        int mask = 0;
+        for (int i = 0; i < OPTIONAL_FIELDS.length; i++) {
+            if (fields.contains(OPTIONAL_FIELDS[i])) {
+                mask |= 1 << i;
+            }
+        }
+        return mask;
+    }
+
+    private String joinAddressColumns(String template) {
+        List<String> parts = new ArrayList<>();
+        for (String column : addressFormat.columns()) {
+            parts.add(String.format(template, column));
+        }
+        return String.join(", ", parts);
+    }
+}
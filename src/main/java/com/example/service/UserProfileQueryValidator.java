@@ -0,0 +1,27 @@
+package com.example.service;
+
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.event.ApplicationEventListener;
+import io.micronaut.context.event.StartupEvent;
+import jakarta.inject.Singleton;
+
+/**
+ * Dry-runs the {@link UserProfileService} statements when the application starts, so that a misconfigured
+ * table fails startup instead of the first request. Enabled by {@code gcp.query-validation.userprofile.enabled}.
+ */
+@Singleton
+@Requires(property = "gcp.query-validation.userprofile.enabled", value = "true")
+@Requires(beans = UserProfileService.class)
+public class UserProfileQueryValidator implements ApplicationEventListener<StartupEvent> {
+
+    private final UserProfileService userProfileService;
+
+    public UserProfileQueryValidator(UserProfileService userProfileService) {
+        this.userProfileService = userProfileService;
+    }
+
+    @Override
+    public void onApplicationEvent(StartupEvent event) {
+        userProfileService.validateQueries();
+    }
+}
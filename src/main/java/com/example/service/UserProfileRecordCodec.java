@@ -0,0 +1,159 @@
+package com.example.service;
+
+import com.example.model.Address;
+import com.example.model.UserProfile;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Binary record body of {@link EmbeddedUserProfileRepository}: a kind byte, the ID and, for a stored profile,
+ * {@code firstName, lastName, dob, addresses}. Strings are a byte length followed by UTF-8 bytes (length -1 for null),
+ * the date of birth is its epoch day ({@link Long#MIN_VALUE} for null) and the addresses are a count (-1 for null)
+ * followed by the six strings of each address. The addresses come last, so reads that do not need them stop early.
+ */
+final class UserProfileRecordCodec {
+
+    static final byte PUT = 1;
+    static final byte DELETE = 2;
+
+    private static final long NULL_DOB = Long.MIN_VALUE;
+
+    private UserProfileRecordCodec() {
+    }
+
+    static byte[] encodePut(UserProfile profile) {
+        Writer writer = new Writer();
+        writer.writeByte(PUT);
+        writer.writeString(profile.getId());
+        writer.writeString(profile.getFirstName());
+        writer.writeString(profile.getLastName());
+        writer.writeLong(profile.getDob() == null ? NULL_DOB : profile.getDob().toEpochDay());
+        List<Address> addresses = profile.getAddresses();
+        writer.writeInt(addresses == null ? -1 : addresses.size());
+        if (addresses != null) {
+            for (Address address : addresses) {
+                writer.writeString(address.getStatus());
+                writer.writeString(address.getAddress());
+                writer.writeString(address.getCity());
+                writer.writeString(address.getState());
+                writer.writeString(address.getZip());
+                writer.writeString(address.getNumberOfYears());
+            }
+        }
+        return writer.toByteArray();
+    }
+
+    static byte[] encodeDelete(String id) {
+        Writer writer = new Writer();
+        writer.writeByte(DELETE);
+        writer.writeString(id);
+        return writer.toByteArray();
+    }
+
+    /**
+     * @param body The record body, a wrapped byte array positioned at its start; every read moves its position
+     *             past what was read.
+     */
+    static byte kind(ByteBuffer body) {
+        return body.get();
+    }
+
+    /**
+     * Reads the ID following the kind byte.
+     */
+    static String id(ByteBuffer body) {
+        return readString(body);
+    }
+
+    /**
+     * Reads the profile following the ID of a {@link #PUT} record.
+     * @param fields The fields to map; the others are skipped and left null.
+     */
+    static UserProfile profile(String id, ByteBuffer body, Set<UserProfileField> fields) {
+        String firstName = fields.contains(UserProfileField.FIRST_NAME) ? readString(body) : skipString(body);
+        String lastName = fields.contains(UserProfileField.LAST_NAME) ? readString(body) : skipString(body);
+        long epochDay = body.getLong();
+        LocalDate dob = epochDay == NULL_DOB || !fields.contains(UserProfileField.DOB) ? null : LocalDate.ofEpochDay(epochDay);
+        if (!fields.contains(UserProfileField.ADDRESSES)) {
+            return new UserProfile(id, firstName, lastName, dob, null);
+        }
+        int count = body.getInt();
+        List<Address> addresses = null;
+        if (count >= 0) {
+            addresses = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                addresses.add(new Address(readString(body), readString(body), readString(body),
+                        readString(body), readString(body), readString(body)));
+            }
+        }
+        return new UserProfile(id, firstName, lastName, dob, addresses);
+    }
+
+    private static String readString(ByteBuffer body) {
+        int length = body.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(body.array(), body.arrayOffset() + body.position(), length, StandardCharsets.UTF_8);
+        body.position(body.position() + length);
+        return value;
+    }
+
+    private static String skipString(ByteBuffer body) {
+        int length = body.getInt();
+        if (length > 0) {
+            body.position(body.position() + length);
+        }
+        return null;
+    }
+
+    private static final class Writer {
+        private byte[] bytes = new byte[256];
+        private int size;
+
+        void writeByte(byte value) {
+            ensureCapacity(1);
+            bytes[size++] = value;
+        }
+
+        void writeInt(int value) {
+            ensureCapacity(Integer.BYTES);
+            ByteBuffer.wrap(bytes, size, Integer.BYTES).putInt(value);
+            size += Integer.BYTES;
+        }
+
+        void writeLong(long value) {
+            ensureCapacity(Long.BYTES);
+            ByteBuffer.wrap(bytes, size, Long.BYTES).putLong(value);
+            size += Long.BYTES;
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeInt(-1);
+                return;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeInt(utf8.length);
+            ensureCapacity(utf8.length);
+            System.arraycopy(utf8, 0, bytes, size, utf8.length);
+            size += utf8.length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.service;
+
+import com.example.model.UserProfile;
+import com.example.model.UserProfileSummary;
+import io.micronaut.core.annotation.Nullable;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Storage of user profiles, independent of where they are kept. {@link UserProfileService} stores them in BigQuery
+ * and {@link EmbeddedUserProfileRepository} in a local file; {@code gcp.backend.userprofile} selects the one the
+ * application uses.
+ *
+ * Results are not in any particular order unless a method says so. Methods taking a set of
+ * {@link UserProfileField}s return profiles whose other properties, apart from the ID, are null.
+ */
+public interface UserProfileRepository {
+
+    /**
+     * Stores a new profile, generating an ID if it has none.
+     * @return The saved profile.
+     */
+    UserProfile saveUserProfile(UserProfile userProfile);
+
+    /**
+     * Stores many new profiles, generating IDs for those that have none.
+     * @return The saved profiles, in the order given.
+     */
+    List<UserProfile> saveAll(Collection<UserProfile> userProfiles);
+
+    Optional<UserProfile> findUserProfileById(String id);
+
+    Optional<UserProfile> findUserProfileById(String id, Set<UserProfileField> fields);
+
+    Optional<UserProfileSummary> findUserProfileSummaryById(String id);
+
+    /**
+     * @return The profiles found, in the order their IDs were requested. Duplicate IDs and IDs without a profile
+     *         are skipped.
+     */
+    List<UserProfile> findAllByIds(Collection<String> ids);
+
+    List<UserProfile> findAllByIds(Collection<String> ids, Set<UserProfileField> fields);
+
+    List<UserProfileSummary> findUserProfileSummariesByIds(Collection<String> ids);
+
+    /**
+     * Finds the profiles whose last name starts with the prefix (case-sensitive).
+     * @param lastNamePrefix A non-empty prefix.
+     */
+    List<UserProfile> findByLastNamePrefix(String lastNamePrefix);
+
+    /**
+     * Finds the profiles born between the two dates, both inclusive.
+     */
+    List<UserProfile> findByDobBetween(LocalDate from, LocalDate to);
+
+    /**
+     * Finds the profiles with at least one address in the city, optionally restricted to a state.
+     * @param state The state the address must be in as well; null for any state.
+     */
+    List<UserProfile> findByAddressCity(String city, @Nullable String state);
+
+    List<UserProfile> getAllUserProfiles();
+
+    List<UserProfile> getAllUserProfiles(Set<UserProfileField> fields);
+
+    List<UserProfileSummary> getAllUserProfileSummaries();
+
+    /**
+     * Streams every profile. The stream should be closed if it is not fully consumed.
+     */
+    Stream<UserProfile> streamAllUserProfiles();
+
+    /**
+     * Replaces the stored profile with the given one, inserting it if it does not exist yet.
+     * @return The stored profile.
+     */
+    UserProfile updateUserProfile(UserProfile userProfile);
+
+    /**
+     * Batch form of {@link #updateUserProfile(UserProfile)}. If the same ID occurs more than once, the last profile
+     * with that ID wins.
+     * @return The stored profiles, in the order given.
+     */
+    List<UserProfile> upsertAll(Collection<UserProfile> userProfiles);
+
+    /**
+     * Deletes the profile; deleting an ID without a profile does nothing.
+     */
+    void deleteUserProfileById(String id);
+}
@@ -0,0 +1,18 @@
+package com.example.service;
+
+/**
+ * Engine used to scan the whole user profile table.
+ */
+public enum UserProfileScanMode {
+
+    /**
+     * Pages through the table with the REST table data API. Always available.
+     */
+    TABLE_DATA,
+
+    /**
+     * Reads the table through the BigQuery Storage Read API in parallel Avro streams.
+     * Faster for large scans, but requires {@code gcp.storage-read.userprofile.enabled} and does not keep table order.
+     */
+    STORAGE_READ
+}
@@ -2,34 +2,82 @@ package com.example.service;
 
 import com.example.model.Address;
 import com.example.model.UserProfile;
+import com.example.model.UserProfileSummary;
 import com.google.cloud.bigquery.*;
-import com.google.gson.Gson; // Using Gson for JSON serialization
-import com.google.gson.reflect.TypeToken;
+import io.micronaut.context.annotation.Requires;
 import io.micronaut.context.annotation.Value;
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.scheduling.TaskExecutors;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
 import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.lang.reflect.Type;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 
 @Singleton
-public class UserProfileService {
+@Requires(property = "gcp.backend.userprofile", notEquals = "embedded")
+public class UserProfileService implements UserProfileRepository {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UserProfileService.class);
+
+    // Keeps multi-row INSERT statements and IN UNNEST parameter arrays well below BigQuery's query size limits
+    private static final int MAX_ROWS_PER_INSERT = 500;
+    private static final int MAX_IDS_PER_QUERY = 10_000;
+    // How long the table schema is reused before it is read again, so a column added to the table is picked up
+    private static final long SCHEMA_TTL_NANOS = TimeUnit.MINUTES.toNanos(5);
+    // Lock stripes serializing writes to the same ID while changes are published
+    private static final int WRITE_LOCK_STRIPES = 64;
 
     private final BigQuery bigquery;
-    private final String projectId;
-    private final String datasetName;
-    private final String tableName;
-    private final Gson gson = new Gson();
-    private final Type addressListType = new TypeToken<ArrayList<Address>>() {}.getType();
+    private final UserProfileWriteBuffer writeBuffer;
+    private final UserProfileCache cache;
+    private final TableId tableId;
+    private final int scanPageSize;
+    private final int scanPrefetchPages;
+    private final UserProfileStorageReader storageReader;
+    private final AddressStorageFormat addressFormat;
+    private final UserProfileMetrics metrics;
+    private final long slowQueryMs;
+    private final UserProfileQueries queries;
+    private final UserProfileChangeSink changeSink;
+    private final UserProfileJobPolicy jobPolicy;
+    private final ExecutorService scanExecutor;
+    private volatile CachedSchema tableSchema;
+    // Version of the last change published; -1 until read from the sink. Guarded by changeSink.
+    private long lastChangeVersion = -1;
+    private final ReentrantLock[] writeLocks = new ReentrantLock[WRITE_LOCK_STRIPES];
 
 
     public UserProfileService(
@@ -37,178 +85,1048 @@ public class UserProfileService {
             @Value("${gcp.project-id}") String projectId,
             @Value("${gcp.dataset-name}") String datasetName,
             @Value("${gcp.table-name.userprofile}") String tableName) {
-        this.bigquery = bigquery;
-        this.projectId = projectId;
-        this.datasetName = datasetName;
-        this.tableName = tableName;
+        this(bigquery, projectId, datasetName, tableName, UserProfileServiceOptions.defaults());
+    }
+
+    /**
+     * Binds the options to the application's beans and properties; see {@link UserProfileServiceOptions.Builder} for
+     * what each of them does.
+     */
+    @Inject
+    public UserProfileService(
+            BigQuery bigquery,
+            @Value("${gcp.project-id}") String projectId,
+            @Value("${gcp.dataset-name}") String datasetName,
+            @Value("${gcp.table-name.userprofile}") String tableName,
+            @Nullable UserProfileWriteBuffer writeBuffer,
+            @Nullable UserProfileCache cache,
+            @Value("${gcp.scan.userprofile.page-size:1000}") int scanPageSize,
+            @Value("${gcp.scan.userprofile.prefetch-pages:2}") int scanPrefetchPages,
+            @Nullable UserProfileStorageReader storageReader,
+            @Value("${gcp.addresses-format.userprofile:JSON}") AddressStorageFormat addressFormat,
+            @Nullable UserProfileMetrics metrics,
+            @Value("${gcp.metrics.userprofile.slow-query-ms:10000}") long slowQueryMs,
+            @Value("${gcp.query-cache.userprofile.enabled:true}") boolean useQueryCache,
+            @Nullable UserProfileChangeSink changeSink,
+            @Nullable UserProfileJobPolicy jobPolicy,
+            @Nullable @Named(TaskExecutors.BLOCKING) ExecutorService scanExecutor) {
+        this(bigquery, projectId, datasetName, tableName, UserProfileServiceOptions.newBuilder()
+                .setWriteBuffer(writeBuffer)
+                .setCache(cache)
+                .setScanPageSize(scanPageSize)
+                .setScanPrefetchPages(scanPrefetchPages)
+                .setStorageReader(storageReader)
+                .setAddressFormat(addressFormat)
+                .setMetrics(metrics)
+                .setSlowQueryMs(slowQueryMs)
+                .setUseQueryCache(useQueryCache)
+                .setChangeSink(changeSink)
+                .setJobPolicy(jobPolicy)
+                .setScanExecutor(scanExecutor)
+                .build());
     }
 
-    private String getFullTableName() {
-        return String.format("`%s.%s.%s`", projectId, datasetName, tableName);
+    public UserProfileService(BigQuery bigquery, String projectId, String datasetName, String tableName,
+                              UserProfileServiceOptions options) {
+        this.bigquery = bigquery;
+        this.writeBuffer = options.getWriteBuffer();
+        this.cache = options.getCache() != null ? options.getCache() : new NoOpUserProfileCache();
+        this.tableId = TableId.of(projectId, datasetName, tableName);
+        this.scanPageSize = options.getScanPageSize();
+        this.scanPrefetchPages = options.getScanPrefetchPages();
+        this.storageReader = options.getStorageReader();
+        this.addressFormat = options.getAddressFormat();
+        this.metrics = options.getMetrics() != null ? options.getMetrics() : new NoOpUserProfileMetrics();
+        this.slowQueryMs = options.getSlowQueryMs();
+        this.queries = new UserProfileQueries(projectId, datasetName, tableName, addressFormat, options.isUseQueryCache());
+        this.changeSink = options.getChangeSink();
+        this.jobPolicy = options.getJobPolicy();
+        this.scanExecutor = options.getScanExecutor() != null ? options.getScanExecutor() : Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "userprofile-scan");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < writeLocks.length; i++) {
+            writeLocks[i] = new ReentrantLock();
+        }
     }
 
+    /**
+     * In streaming write mode this returns once the profile is queued; use {@link #enqueueUserProfile(UserProfile)}
+     * to learn whether BigQuery accepted it.
+     */
+    @Override
     public UserProfile saveUserProfile(UserProfile userProfile) {
+        enqueueUserProfile(userProfile);
+        return userProfile;
+    }
+
+    /**
+     * Saves the profile like {@link #saveUserProfile(UserProfile)} and reports when it is stored.
+     * @return A future completed with the profile once its row is written, or exceptionally if BigQuery rejected it.
+     *         In query write mode the profile is written before this returns and the future is already complete.
+     */
+    public CompletableFuture<UserProfile> enqueueUserProfile(UserProfile userProfile) {
+        return timed("save", () -> insert(userProfile));
+    }
+
+    private CompletableFuture<UserProfile> insert(UserProfile userProfile) {
         if (userProfile.getId() == null) {
             userProfile.setId(UUID.randomUUID().toString()); // Generate ID if not present
         }
 
-        String addressesJson = gson.toJson(userProfile.getAddresses());
+        if (writeBuffer != null) {
+            // Write-behind mode: the row is streamed with the next batch
+            return enqueue(userProfile);
+        }
+
+        writeLocked(List.of(userProfile.getId()), () -> {
+            try {
+                runInsert(insertConfig(userProfile), "insert");
+            } finally {
+                invalidate(List.of(userProfile));
+            }
+            publishChanges(UserProfileChangeType.CREATE, List.of(userProfile));
+        });
+        return CompletableFuture.completedFuture(userProfile);
+    }
 
-        String query = String.format(
-                "INSERT INTO %s (id, firstName, lastName, dob, addresses_json) VALUES (@id, @firstName, @lastName, @dob, @addressesJson)",
-                getFullTableName()
-        );
+    /**
+     * Saves many profiles with a handful of multi-row INSERT jobs instead of one job per profile.
+     * IDs are generated for profiles that have none. In streaming write mode the profiles are queued
+     * on the write buffer like {@link #saveUserProfile(UserProfile)} does.
+     * @param userProfiles The profiles to save.
+     * @return The saved profiles, in the order given.
+     */
+    @Override
+    public List<UserProfile> saveAll(Collection<UserProfile> userProfiles) {
+        return timed("save all", () -> insertAll(userProfiles));
+    }
 
-        QueryJobConfiguration queryConfig = QueryJobConfiguration.newBuilder(query)
-                .addNamedParameter("id", QueryParameterValue.string(userProfile.getId()))
-                .addNamedParameter("firstName", QueryParameterValue.string(userProfile.getFirstName()))
-                .addNamedParameter("lastName", QueryParameterValue.string(userProfile.getLastName()))
-                .addNamedParameter("dob", QueryParameterValue.date(userProfile.getDob() != null ? userProfile.getDob().format(DateTimeFormatter.ISO_LOCAL_DATE) : null))
-                .addNamedParameter("addressesJson", QueryParameterValue.string(addressesJson))
-                .build();
+    private List<UserProfile> insertAll(Collection<UserProfile> userProfiles) {
+        List<UserProfile> profiles = new ArrayList<>(userProfiles);
+        for (UserProfile userProfile : profiles) {
+            if (userProfile.getId() == null) {
+                userProfile.setId(UUID.randomUUID().toString());
+            }
+        }
 
-        try {
-            bigquery.query(queryConfig);
-            return userProfile;
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException("BigQuery insert interrupted", e);
-        } catch (JobException e) {
-            throw new RuntimeException("BigQuery job failed during insert", e);
+        if (writeBuffer != null) {
+            profiles.forEach(this::enqueue);
+            return profiles;
         }
+
+        for (int from = 0; from < profiles.size(); from += MAX_ROWS_PER_INSERT) {
+            List<UserProfile> chunk = profiles.subList(from, Math.min(from + MAX_ROWS_PER_INSERT, profiles.size()));
+            writeLocked(ids(chunk), () -> {
+                try {
+                    runInsert(bulkInsertConfig(chunk), "bulk insert");
+                } finally {
+                    invalidate(chunk);
+                }
+                publishChanges(UserProfileChangeType.CREATE, chunk);
+            });
+        }
+        return profiles;
     }
 
-    public Optional<UserProfile> findUserProfileById(String id) {
-        String query = String.format("SELECT id, firstName, lastName, dob, addresses_json FROM %s WHERE id = @id", getFullTableName());
-        QueryJobConfiguration queryConfig = QueryJobConfiguration.newBuilder(query)
+    // The cache entry is dropped once the row is written or rejected; the change is only published once it is written,
+    // with the profile as it was queued
+    private CompletableFuture<UserProfile> enqueue(UserProfile userProfile) {
+        UserProfile queued = changeSink != null ? UserProfileChange.copyOf(userProfile) : null;
+        return writeBuffer.enqueue(userProfile).whenComplete((written, e) -> {
+            cache.invalidate(userProfile.getId());
+            if (e == null && queued != null) {
+                publishChanges(UserProfileChangeType.CREATE, List.of(queued));
+            }
+        });
+    }
+
+    /**
+     * Drops the cached lookups of written profiles. Called once the write job has finished, failed ones included
+     * since the job may have committed before the error was reported: a lookup running during the job can still
+     * read the old row, and invalidating only before the job would let it cache that row for the whole TTL.
+     */
+    private void invalidate(List<UserProfile> profiles) {
+        for (UserProfile profile : profiles) {
+            cache.invalidate(profile.getId());
+        }
+    }
+
+    // The query configurations, like mapRowToUserProfile, are package-private so that the benchmarks in src/jmh
+    // measure the code the service runs
+
+    QueryJobConfiguration insertConfig(UserProfile userProfile) {
+        QueryJobConfiguration.Builder queryConfig = queries.insert(hasAddresses(userProfile));
+        addProfileParameters(queryConfig, userProfile, "");
+        return queryConfig.build();
+    }
+
+    /**
+     * @param chunk At most {@value #MAX_ROWS_PER_INSERT} profiles, all with an ID.
+     */
+    QueryJobConfiguration bulkInsertConfig(List<UserProfile> chunk) {
+        StringBuilder values = new StringBuilder();
+        QueryJobConfiguration.Builder queryConfig = queries.bulkInsert();
+        for (int i = 0; i < chunk.size(); i++) {
+            String suffix = "_" + i;
+            if (i > 0) {
+                values.append(", ");
+            }
+            values.append("(@id").append(suffix).append(", @firstName").append(suffix).append(", @lastName").append(suffix)
+                    .append(", @dob").append(suffix).append(", ").append(queries.addressValues(suffix, hasAddresses(chunk.get(i)))).append(')');
+            addProfileParameters(queryConfig, chunk.get(i), suffix);
+        }
+        return queryConfig.setQuery(queries.bulkInsertQuery(values)).build();
+    }
+
+    /**
+     * @param chunk At most {@value #MAX_ROWS_PER_INSERT} profiles with distinct IDs.
+     */
+    QueryJobConfiguration upsertConfig(List<UserProfile> chunk) {
+        QueryJobConfiguration.Builder queryConfig = queries.upsert();
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < chunk.size(); i++) {
+            String suffix = chunk.size() == 1 ? "" : "_" + i;
+            if (i > 0) {
+                source.append(" UNION ALL ");
+            }
+            appendUpsertSource(source, queryConfig, chunk.get(i), suffix);
+        }
+        return queryConfig.setQuery(queries.upsertQuery(source)).build();
+    }
+
+    QueryJobConfiguration selectByIdConfig(String id, Set<UserProfileField> fields) {
+        return queries.selectById(fields)
                 .addNamedParameter("id", QueryParameterValue.string(id))
                 .build();
+    }
+
+    /**
+     * Looks up a profile through the cache. When a job policy is configured the lookup is hedged, and while BigQuery
+     * is unavailable a profile the cache still holds is returned even if its entry expired.
+     */
+    @Override
+    public Optional<UserProfile> findUserProfileById(String id) {
+        return timed("find by ID", () -> lookUpUserProfileById(id));
+    }
 
+    private Optional<UserProfile> lookUpUserProfileById(String id) {
         try {
-            TableResult result = bigquery.query(queryConfig);
-            if (result.getTotalRows() == 0) {
-                return Optional.empty();
+            return cache.get(id, this::queryUserProfileById);
+        } catch (UserProfileUnavailableException e) {
+            if (jobPolicy == null || !jobPolicy.fallsBackToCache()) {
+                throw e;
             }
-            FieldValueList row = result.iterateAll().iterator().next();
-            return Optional.of(mapRowToUserProfile(row));
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException("BigQuery select by ID interrupted", e);
-        } catch (JobException e) {
-            throw new RuntimeException("BigQuery job failed during select by ID", e);
+            Optional<UserProfile> stale = cache.getStale(id);
+            if (stale.isEmpty()) {
+                throw e;
+            }
+            LOG.debug("Answering lookup of profile {} from the cache: {}", id, e.getMessage());
+            return stale;
+        }
+    }
+
+    /**
+     * Looks up a profile, reading only the given fields. Lookups of all fields go through the cache; narrower ones
+     * always run a query, since the cache only holds full profiles.
+     * @param fields The fields to read; the ID is always read and the other properties are left null.
+     */
+    @Override
+    public Optional<UserProfile> findUserProfileById(String id, Set<UserProfileField> fields) {
+        return timed("find by ID", () -> fields.containsAll(UserProfileField.ALL)
+                ? lookUpUserProfileById(id)
+                : queryUserProfileById(id, fields));
+    }
+
+    /**
+     * @return The profile's fields other than its addresses; the address column is not read.
+     */
+    @Override
+    public Optional<UserProfileSummary> findUserProfileSummaryById(String id) {
+        return timed("find summary by ID", () -> queryUserProfileById(id, UserProfileField.SUMMARY).map(UserProfileService::toSummary));
+    }
+
+    /**
+     * @return Hit, miss and eviction counters of the profile cache; all zero when caching is disabled.
+     */
+    public UserProfileCacheStats getCacheStats() {
+        return cache.stats();
+    }
+
+    private Optional<UserProfile> queryUserProfileById(String id) {
+        return queryUserProfileById(id, UserProfileField.ALL);
+    }
+
+    private Optional<UserProfile> queryUserProfileById(String id, Set<UserProfileField> fields) {
+        TableResult result = runQuery(selectByIdConfig(id, fields), "select by ID", true);
+        if (result.getTotalRows() == 0) {
+            return Optional.empty();
+        }
+        FieldValueList row = result.iterateAll().iterator().next();
+        return Optional.of(mapRowToUserProfile(row, fields));
+    }
+
+    /**
+     * Looks up many profiles with one {@code IN UNNEST(@ids)} job per chunk of IDs instead of one job per ID.
+     * @param ids The IDs to look up; duplicates are looked up once.
+     * @return The profiles found, in the order their IDs were requested. IDs without a profile are skipped.
+     */
+    @Override
+    public List<UserProfile> findAllByIds(Collection<String> ids) {
+        return findAllByIds(ids, UserProfileField.ALL);
+    }
+
+    /**
+     * As {@link #findAllByIds(Collection)}, reading only the given fields.
+     * @param fields The fields to read; the ID is always read and the other properties are left null.
+     */
+    @Override
+    public List<UserProfile> findAllByIds(Collection<String> ids, Set<UserProfileField> fields) {
+        return timed("find by IDs", () -> queryUserProfilesByIds(ids, fields));
+    }
+
+    private List<UserProfile> queryUserProfilesByIds(Collection<String> ids, Set<UserProfileField> fields) {
+        List<String> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+
+        Map<String, UserProfile> found = new HashMap<>();
+        for (int from = 0; from < distinctIds.size(); from += MAX_IDS_PER_QUERY) {
+            List<String> chunk = distinctIds.subList(from, Math.min(from + MAX_IDS_PER_QUERY, distinctIds.size()));
+            QueryJobConfiguration queryConfig = queries.selectByIds(fields)
+                    .addNamedParameter("ids", QueryParameterValue.array(chunk.toArray(new String[0]), String.class))
+                    .build();
+            for (FieldValueList row : runQuery(queryConfig, "select by IDs").iterateAll()) {
+                UserProfile profile = mapRowToUserProfile(row, fields);
+                found.putIfAbsent(profile.getId(), profile);
+            }
+        }
+
+        List<UserProfile> profiles = new ArrayList<>(found.size());
+        for (String id : distinctIds) {
+            UserProfile profile = found.get(id);
+            if (profile != null) {
+                profiles.add(profile);
+            }
+        }
+        return profiles;
+    }
+
+    /**
+     * @return The summaries of the profiles found, in the order their IDs were requested; the address column is not read.
+     */
+    @Override
+    public List<UserProfileSummary> findUserProfileSummariesByIds(Collection<String> ids) {
+        return timed("find summaries by IDs", () -> toSummaries(queryUserProfilesByIds(ids, UserProfileField.SUMMARY)));
+    }
+
+    /**
+     * Finds the profiles whose last name starts with the prefix (case-sensitive). The predicate is sent as a range on
+     * {@code lastName}, so a table clustered on {@code lastName} only reads the blocks holding matching names.
+     * @param lastNamePrefix A non-empty prefix.
+     */
+    @Override
+    public List<UserProfile> findByLastNamePrefix(String lastNamePrefix) {
+        if (lastNamePrefix == null || lastNamePrefix.isEmpty()) {
+            throw new IllegalArgumentException("Last name prefix cannot be empty.");
+        }
+        String upperBound = prefixUpperBound(lastNamePrefix);
+        QueryJobConfiguration.Builder queryConfig = queries.lastNamePrefix(upperBound != null)
+                .addNamedParameter("prefix", QueryParameterValue.string(lastNamePrefix));
+        if (upperBound != null) {
+            queryConfig.addNamedParameter("prefixEnd", QueryParameterValue.string(upperBound));
+        }
+        return timed("find by last name", () -> queryProfiles(queryConfig, "select by last name"));
+    }
+
+    /**
+     * Finds the profiles born between the two dates, both inclusive. On a table partitioned by {@code dob}
+     * only the partitions covering the range are read.
+     */
+    @Override
+    public List<UserProfile> findByDobBetween(LocalDate from, LocalDate to) {
+        if (from == null || to == null || from.isAfter(to)) {
+            throw new IllegalArgumentException("Date of birth range must have a start on or before its end.");
+        }
+        QueryJobConfiguration.Builder queryConfig = queries.dobBetween()
+                .addNamedParameter("dobFrom", QueryParameterValue.date(from.format(DateTimeFormatter.ISO_LOCAL_DATE)))
+                .addNamedParameter("dobTo", QueryParameterValue.date(to.format(DateTimeFormatter.ISO_LOCAL_DATE)));
+        return timed("find by dob range", () -> queryProfiles(queryConfig, "select by dob range"));
+    }
+
+    /**
+     * Finds the profiles with at least one address in the city, optionally restricted to a state.
+     * The match runs inside BigQuery against the address column(s) of the configured {@link AddressStorageFormat}.
+     * @param state The state the address must be in as well; null for any state.
+     */
+    @Override
+    public List<UserProfile> findByAddressCity(String city, @Nullable String state) {
+        if (city == null) {
+            throw new IllegalArgumentException("City cannot be null.");
+        }
+        QueryJobConfiguration.Builder queryConfig = queries.city(state != null)
+                .addNamedParameter("city", QueryParameterValue.string(city));
+        if (state != null) {
+            queryConfig.addNamedParameter("state", QueryParameterValue.string(state));
+        }
+        return timed("find by city", () -> queryProfiles(queryConfig, "select by city"));
+    }
+
+    private List<UserProfile> queryProfiles(QueryJobConfiguration.Builder queryConfig, String operation) {
+        TableResult result = runQuery(queryConfig.build(), operation);
+        List<UserProfile> profiles = new ArrayList<>();
+        for (FieldValueList row : result.iterateAll()) {
+            profiles.add(mapRowToUserProfile(row));
+        }
+        return profiles;
+    }
+
+    // Smallest string greater than every string starting with the prefix; null if there is none
+    private static String prefixUpperBound(String prefix) {
+        int last = prefix.codePointBefore(prefix.length());
+        if (last == Character.MAX_CODE_POINT) {
+            return null;
         }
+        int next = last + 1 == Character.MIN_SURROGATE ? Character.MAX_SURROGATE + 1 : last + 1;
+        return prefix.substring(0, prefix.length() - Character.charCount(last)) + new String(Character.toChars(next));
     }
 
+    /**
+     * Loads the whole table into memory. Prefer {@link #streamAllUserProfiles()} or
+     * {@link #getUserProfilesPage(String, int)} for tables that do not comfortably fit in the heap.
+     */
+    @Override
     public List<UserProfile> getAllUserProfiles() {
-        String query = String.format("SELECT id, firstName, lastName, dob, addresses_json FROM %s", getFullTableName());
-        QueryJobConfiguration queryConfig = QueryJobConfiguration.newBuilder(query).build();
+        return getAllUserProfiles(UserProfileField.ALL);
+    }
 
-        try {
-            TableResult result = bigquery.query(queryConfig);
-            List<UserProfile> profiles = new ArrayList<>();
-            for (FieldValueList row : result.iterateAll()) {
-                profiles.add(mapRowToUserProfile(row));
+    /**
+     * As {@link #getAllUserProfiles()}, reading only the given fields; BigQuery only bills the selected columns.
+     * @param fields The fields to read; the ID is always read and the other properties are left null.
+     */
+    @Override
+    public List<UserProfile> getAllUserProfiles(Set<UserProfileField> fields) {
+        return timed("get all", () -> queryAllUserProfiles(fields));
+    }
+
+    private List<UserProfile> queryAllUserProfiles(Set<UserProfileField> fields) {
+        QueryJobConfiguration queryConfig = queries.selectAll(fields).build();
+
+        TableResult result = runQuery(queryConfig, "select all");
+        List<UserProfile> profiles = new ArrayList<>();
+        for (FieldValueList row : result.iterateAll()) {
+            profiles.add(mapRowToUserProfile(row, fields));
+        }
+        return profiles;
+    }
+
+    /**
+     * @return The summaries of every profile; the address column is not read.
+     */
+    @Override
+    public List<UserProfileSummary> getAllUserProfileSummaries() {
+        return timed("get all summaries", () -> toSummaries(queryAllUserProfiles(UserProfileField.SUMMARY)));
+    }
+
+    /**
+     * Streams every profile in the table using the configured page size and prefetch depth.
+     * @see #streamAllUserProfiles(int, int)
+     */
+    @Override
+    public Stream<UserProfile> streamAllUserProfiles() {
+        return streamAllUserProfiles(scanPageSize, scanPrefetchPages);
+    }
+
+    /**
+     * Streams every profile in the table with the given scan engine.
+     * @param mode {@link UserProfileScanMode#TABLE_DATA} for the paged scan of {@link #streamAllUserProfiles()},
+     *             {@link UserProfileScanMode#STORAGE_READ} for parallel Storage Read API streams (not in table order).
+     */
+    public Stream<UserProfile> streamAllUserProfiles(UserProfileScanMode mode) {
+        if (mode == UserProfileScanMode.TABLE_DATA) {
+            return streamAllUserProfiles();
+        }
+        if (storageReader == null) {
+            throw new IllegalStateException("Storage Read API scans are disabled; set gcp.storage-read.userprofile.enabled to true.");
+        }
+        return storageReader.readAll(this::decodeAddresses);
+    }
+
+    /**
+     * Streams every profile in the table, reading it page by page through the table data API (no query job is run)
+     * and mapping rows lazily, so memory use depends on the page size rather than the table size.
+     * The stream should be closed if it is not fully consumed, to stop background prefetching.
+     * @param pageSize Rows per page.
+     * @param prefetchPages Pages fetched in the background ahead of the consumer; 0 fetches each page on demand.
+     * @return A sequential stream of profiles in table order.
+     */
+    public Stream<UserProfile> streamAllUserProfiles(int pageSize, int prefetchPages) {
+        TableResult firstPage = bigquery.listTableData(tableId, getTableSchema(), BigQuery.TableDataListOption.pageSize(pageSize));
+        UserProfilePageIterator profiles = new UserProfilePageIterator(firstPage, prefetchPages, scanExecutor, this::mapRowToUserProfile);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(profiles, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(profiles::close);
+    }
+
+    /**
+     * Publishes every profile in the table to each subscriber, honouring its demand.
+     * Each subscription runs its own scan as in {@link #streamAllUserProfiles()}; the scan pauses while
+     * {@code Flow.defaultBufferSize()} profiles are waiting for the subscriber and stops, closing the scan, when it
+     * cancels. The scan and the delivery to the subscriber run on the scan executor.
+     */
+    public Flow.Publisher<UserProfile> publishAllUserProfiles() {
+        return subscriber -> {
+            SubmissionPublisher<UserProfile> publisher = new SubmissionPublisher<>(scanExecutor, Flow.defaultBufferSize());
+            publisher.subscribe(subscriber);
+            try {
+                scanExecutor.execute(() -> {
+                    try (Stream<UserProfile> profiles = streamAllUserProfiles()) {
+                        Iterator<UserProfile> iterator = profiles.iterator();
+                        while (publisher.hasSubscribers() && iterator.hasNext()) {
+                            publisher.submit(iterator.next());
+                        }
+                        publisher.close();
+                    } catch (RuntimeException e) {
+                        publisher.closeExceptionally(e);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                publisher.closeExceptionally(e);
             }
-            return profiles;
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException("BigQuery select all interrupted", e);
-        } catch (JobException e) {
-            throw new RuntimeException("BigQuery job failed during select all", e);
+        };
+    }
+
+    /**
+     * Reads one page of profiles; pass the returned token back to continue where the page ended.
+     * @param pageToken Cursor from a previous page, or null to start at the beginning of the table.
+     * @param pageSize Maximum number of profiles on the page.
+     * @return The page and the cursor of the next one.
+     */
+    public UserProfilePage getUserProfilesPage(@Nullable String pageToken, int pageSize) {
+        return timed("get page", () -> readUserProfilesPage(pageToken, pageSize));
+    }
+
+    private UserProfilePage readUserProfilesPage(@Nullable String pageToken, int pageSize) {
+        List<BigQuery.TableDataListOption> options = new ArrayList<>();
+        options.add(BigQuery.TableDataListOption.pageSize(pageSize));
+        if (pageToken != null) {
+            options.add(BigQuery.TableDataListOption.pageToken(pageToken));
         }
+        TableResult page = bigquery.listTableData(tableId, getTableSchema(), options.toArray(new BigQuery.TableDataListOption[0]));
+
+        List<UserProfile> profiles = new ArrayList<>(pageSize);
+        for (FieldValueList row : page.getValues()) {
+            profiles.add(mapRowToUserProfile(row));
+        }
+        return new UserProfilePage(profiles, page.hasNextPage() ? page.getNextPageToken() : null);
     }
 
-    // Note: BigQuery Standard SQL does not directly support UPDATE of arbitrary rows easily without unique IDs.
-    // This implementation assumes 'id' is the unique key for update.
-    // A more robust update might involve deleting and re-inserting or using MERGE.
+    // Rows read through the table data API are positional; the table schema gives them their column names
+    private Schema getTableSchema() {
+        CachedSchema cached = tableSchema;
+        long now = System.nanoTime();
+        if (cached == null || now - cached.readAtNanos >= SCHEMA_TTL_NANOS) {
+            Table table = bigquery.getTable(tableId);
+            if (table == null) {
+                throw new RuntimeException("BigQuery table " + queries.fullTableName() + " not found");
+            }
+            cached = new CachedSchema(table.getDefinition().getSchema(), now);
+            tableSchema = cached;
+        }
+        return cached.schema;
+    }
+
+    /**
+     * Drops the cached table schema, so that the next scan reads it again, e.g. after a column was added.
+     */
+    public void refreshTableSchema() {
+        tableSchema = null;
+    }
+
+    /**
+     * Replaces the stored profile with the given one, inserting it if it does not exist yet.
+     * Runs as a single MERGE job, so readers never observe the row missing and a failure leaves the old row intact.
+     * @param userProfile The profile to store; its ID identifies the row.
+     * @return The stored profile.
+     */
+    @Override
     public UserProfile updateUserProfile(UserProfile userProfile) {
         if (userProfile.getId() == null) {
             throw new IllegalArgumentException("UserProfile ID cannot be null for update.");
         }
-        String addressesJson = gson.toJson(userProfile.getAddresses());
-
-        // Simple approach: delete then insert. For true atomic update, MERGE would be better.
-        // This is non-atomic. Consider implications.
-        deleteUserProfileByIdInternal(userProfile.getId()); // Internal delete without throwing if not found for this pattern
-
-        // Re-insert the record
-        // This is not a true "update" but a replacement.
-        // For a real update, one might use a MERGE statement or update specific fields.
-        // The following query is an example of how one might update specific fields,
-        // but it requires knowing which fields changed.
-        // A full MERGE is more complex.
-        // For now, we use a simpler (but less robust) delete and insert pattern.
-
-        // We will perform an insert, which is effectively a replacement after delete
-        String query = String.format(
-                "INSERT INTO %s (id, firstName, lastName, dob, addresses_json) VALUES (@id, @firstName, @lastName, @dob, @addressesJson)",
-                getFullTableName()
-        );
-
-        QueryJobConfiguration queryConfig = QueryJobConfiguration.newBuilder(query)
-                .addNamedParameter("id", QueryParameterValue.string(userProfile.getId()))
-                .addNamedParameter("firstName", QueryParameterValue.string(userProfile.getFirstName()))
-                .addNamedParameter("lastName", QueryParameterValue.string(userProfile.getLastName()))
-                .addNamedParameter("dob", QueryParameterValue.date(userProfile.getDob() != null ? userProfile.getDob().format(DateTimeFormatter.ISO_LOCAL_DATE) : null))
-                .addNamedParameter("addressesJson", QueryParameterValue.string(addressesJson))
-                .build();
+        timed("update", () -> upsert(List.of(userProfile)));
+        return userProfile;
+    }
 
-        try {
-            bigquery.query(queryConfig);
-            return userProfile;
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException("BigQuery update (via insert) interrupted", e);
-        } catch (JobException e) {
-            throw new RuntimeException("BigQuery job failed during update (via insert)", e);
+    /**
+     * Batch form of {@link #updateUserProfile(UserProfile)}: upserts the profiles with one MERGE job per chunk.
+     * If the same ID occurs more than once, the last profile with that ID wins.
+     * @param userProfiles The profiles to store; every profile needs an ID.
+     * @return The stored profiles, in the order given.
+     */
+    @Override
+    public List<UserProfile> upsertAll(Collection<UserProfile> userProfiles) {
+        return timed("upsert all", () -> upsert(userProfiles));
+    }
+
+    private List<UserProfile> upsert(Collection<UserProfile> userProfiles) {
+        Map<String, UserProfile> byId = new LinkedHashMap<>();
+        for (UserProfile userProfile : userProfiles) {
+            if (userProfile.getId() == null) {
+                throw new IllegalArgumentException("UserProfile ID cannot be null for update.");
+            }
+            // MERGE fails if two source rows match the same target row
+            byId.remove(userProfile.getId());
+            byId.put(userProfile.getId(), userProfile);
+        }
+
+        List<UserProfile> distinctProfiles = new ArrayList<>(byId.values());
+        for (int from = 0; from < distinctProfiles.size(); from += MAX_ROWS_PER_INSERT) {
+            List<UserProfile> chunk = distinctProfiles.subList(from, Math.min(from + MAX_ROWS_PER_INSERT, distinctProfiles.size()));
+            writeLocked(ids(chunk), () -> {
+                try {
+                    runQuery(upsertConfig(chunk), "upsert");
+                } finally {
+                    invalidate(chunk);
+                }
+                publishChanges(UserProfileChangeType.UPDATE, chunk);
+            });
+        }
+        return new ArrayList<>(userProfiles);
+    }
+
+    // One source row of the MERGE, with its parameters
+    private void appendUpsertSource(StringBuilder source, QueryJobConfiguration.Builder queryConfig, UserProfile userProfile, String suffix) {
+        source.append(String.format(
+                "SELECT @id%1$s AS id, @firstName%1$s AS firstName, @lastName%1$s AS lastName, @dob%1$s AS dob",
+                suffix));
+        for (String column : addressFormat.columns()) {
+            source.append(", ").append(queries.addressValue(column, suffix, hasAddresses(userProfile))).append(" AS ").append(column);
         }
+        addProfileParameters(queryConfig, userProfile, suffix);
+    }
+
+    @Override
+    public void deleteUserProfileById(String id) {
+        timed("delete", () -> {
+            delete(id);
+            return null;
+        });
     }
 
-    private void deleteUserProfileByIdInternal(String id) {
-        String query = String.format("DELETE FROM %s WHERE id = @id", getFullTableName());
-        QueryJobConfiguration queryConfig = QueryJobConfiguration.newBuilder(query)
+    private void delete(String id) {
+        QueryJobConfiguration queryConfig = queries.delete()
                 .addNamedParameter("id", QueryParameterValue.string(id))
                 .build();
+        writeLocked(List.of(id), () -> {
+            // Rows the DELETE removed, -1 if unknown; only counted when changes are published
+            AtomicLong deleted = new AtomicLong(-1);
+            try {
+                runQuery(queryConfig, "delete", false, changeSink != null ? deleted::set : null);
+            } finally {
+                // After the job, for the reason given on invalidate(List)
+                cache.invalidate(id);
+            }
+            if (deleted.get() != 0) {
+                publishDelete(id);
+            }
+        });
+    }
+
+    /**
+     * Runs a write while holding the lock stripes of the written IDs, so that of two writes to the same profile the
+     * one whose job finished last also publishes the later version. Stripes are taken in index order to rule out
+     * deadlocks between batches. Without a change sink there is nothing to order and no lock is taken.
+     */
+    private void writeLocked(List<String> ids, Runnable write) {
+        if (changeSink == null) {
+            write.run();
+            return;
+        }
+        BitSet stripes = new BitSet(WRITE_LOCK_STRIPES);
+        for (String id : ids) {
+            stripes.set(Math.floorMod(id.hashCode(), WRITE_LOCK_STRIPES));
+        }
+        List<ReentrantLock> held = new ArrayList<>(stripes.cardinality());
         try {
-            bigquery.query(queryConfig);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            // Log and ignore for internal delete during update, or handle as critical
-        } catch (JobException e) {
-            // Log and ignore for internal delete during update, or handle as critical
+            for (int stripe = stripes.nextSetBit(0); stripe >= 0; stripe = stripes.nextSetBit(stripe + 1)) {
+                writeLocks[stripe].lock();
+                held.add(writeLocks[stripe]);
+            }
+            write.run();
+        } finally {
+            for (int i = held.size() - 1; i >= 0; i--) {
+                held.get(i).unlock();
+            }
         }
     }
 
+    private static List<String> ids(List<UserProfile> profiles) {
+        return profiles.stream().map(UserProfile::getId).collect(Collectors.toList());
+    }
 
-    public void deleteUserProfileById(String id) {
-        String query = String.format("DELETE FROM %s WHERE id = @id", getFullTableName());
-        QueryJobConfiguration queryConfig = QueryJobConfiguration.newBuilder(query)
-                .addNamedParameter("id", QueryParameterValue.string(id))
-                .build();
+    // Versions are assigned under the sink's lock, so that the sink receives changes in version order.
+    // In streaming write mode a change is published once the batch holding its row is written.
+    private void publishChanges(UserProfileChangeType type, List<UserProfile> profiles) {
+        if (changeSink == null) {
+            return;
+        }
+        long timestampMillis = System.currentTimeMillis();
+        synchronized (changeSink) {
+            List<UserProfileChange> changes = new ArrayList<>(profiles.size());
+            for (UserProfile profile : profiles) {
+                changes.add(new UserProfileChange(nextChangeVersion(), type, timestampMillis, profile.getId(), UserProfileChange.copyOf(profile)));
+            }
+            publish(changes);
+        }
+    }
+
+    private void publishDelete(String id) {
+        if (changeSink == null) {
+            return;
+        }
+        synchronized (changeSink) {
+            publish(List.of(new UserProfileChange(nextChangeVersion(), UserProfileChangeType.DELETE, System.currentTimeMillis(), id, null)));
+        }
+    }
+
+    private long nextChangeVersion() {
+        if (lastChangeVersion < 0) {
+            lastChangeVersion = changeSink.lastVersion();
+        }
+        return ++lastChangeVersion;
+    }
+
+    private void publish(List<UserProfileChange> changes) {
         try {
-            bigquery.query(queryConfig);
+            changeSink.publish(changes);
+        } catch (RuntimeException e) {
+            // The sink may have kept part of the batch; continue numbering after whatever it holds
+            lastChangeVersion = -1;
+            throw e;
+        }
+    }
+
+    /**
+     * Dry-runs every query template against the table, so that a wrong project, dataset or table name, a missing
+     * column or missing permissions fail here instead of on the first request. Dry runs are free and change nothing.
+     * @throws RuntimeException naming the first statement BigQuery rejected.
+     */
+    public void validateQueries() {
+        UserProfile sample = new UserProfile("dry-run", "", "", LocalDate.EPOCH,
+                List.of(new Address("", "", "", "", "", "")));
+        Map<String, QueryJobConfiguration> statements = new LinkedHashMap<>();
+
+        QueryJobConfiguration.Builder insert = queries.insert(true);
+        addProfileParameters(insert, sample, "");
+        statements.put("insert", insert.build());
+        statements.put("select by ID", queries.selectById(UserProfileField.ALL)
+                .addNamedParameter("id", QueryParameterValue.string(sample.getId())).build());
+        statements.put("select by IDs", queries.selectByIds(UserProfileField.ALL)
+                .addNamedParameter("ids", QueryParameterValue.array(new String[]{sample.getId()}, String.class)).build());
+        statements.put("select all", queries.selectAll(UserProfileField.ALL).build());
+        statements.put("select by last name", queries.lastNamePrefix(true)
+                .addNamedParameter("prefix", QueryParameterValue.string("a"))
+                .addNamedParameter("prefixEnd", QueryParameterValue.string("b")).build());
+        statements.put("select by dob range", queries.dobBetween()
+                .addNamedParameter("dobFrom", QueryParameterValue.date("2000-01-01"))
+                .addNamedParameter("dobTo", QueryParameterValue.date("2000-01-01")).build());
+        statements.put("select by city", queries.city(true)
+                .addNamedParameter("city", QueryParameterValue.string(""))
+                .addNamedParameter("state", QueryParameterValue.string("")).build());
+        QueryJobConfiguration.Builder upsert = queries.upsert();
+        StringBuilder source = new StringBuilder();
+        appendUpsertSource(source, upsert, sample, "");
+        statements.put("upsert", upsert.setQuery(queries.upsertQuery(source)).build());
+        statements.put("delete", queries.delete().addNamedParameter("id", QueryParameterValue.string(sample.getId())).build());
+
+        for (Map.Entry<String, QueryJobConfiguration> statement : statements.entrySet()) {
+            try {
+                bigquery.create(JobInfo.of(statement.getValue().toBuilder().setDryRun(true).build()));
+            } catch (BigQueryException e) {
+                throw new RuntimeException("BigQuery rejected the " + statement.getKey() + " statement for table "
+                        + queries.fullTableName() + ": " + e.getMessage(), e);
+            }
+        }
+        LOG.info("Validated {} BigQuery statements against {}", statements.size(), queries.fullTableName());
+    }
+
+    private TableResult runQuery(QueryJobConfiguration queryConfig, String operation) {
+        return runQuery(queryConfig, operation, false);
+    }
+
+    /**
+     * @param hedged Whether the job policy may start a duplicate job when this one is slow; only for reads.
+     */
+    private TableResult runQuery(QueryJobConfiguration queryConfig, String operation, boolean hedged) {
+        return runQuery(queryConfig, operation, hedged, null);
+    }
+
+    /**
+     * @param affectedRows Receives the number of rows a DML statement changed, or -1 if BigQuery did not report it;
+     *                     null if not needed. Counting rows creates the job explicitly, like recording statistics does.
+     */
+    private TableResult runQuery(QueryJobConfiguration queryConfig, String operation, boolean hedged, LongConsumer affectedRows) {
+        if (jobPolicy == null) {
+            return runJob(queryConfig, operation, affectedRows, null);
+        }
+        return jobPolicy.execute(operation, hedged, () -> runJob(queryConfig, operation, affectedRows, null));
+    }
+
+    /**
+     * Runs an INSERT, which unlike the other statements adds rows again if it runs twice. Under a job policy every
+     * attempt uses the same job ID, and an attempt after the first waits for the job already submitted instead of
+     * submitting another one.
+     */
+    private TableResult runInsert(QueryJobConfiguration queryConfig, String operation) {
+        if (jobPolicy == null) {
+            return runJob(queryConfig, operation, null, null);
+        }
+        InsertJob insertJob = new InsertJob();
+        return jobPolicy.execute(operation, false, () -> runJob(queryConfig, operation, null, insertJob));
+    }
+
+    /**
+     * @param insertJob The job shared by the attempts of an insert; null for statements that are safe to resubmit.
+     */
+    private TableResult runJob(QueryJobConfiguration queryConfig, String operation, LongConsumer affectedRows, InsertJob insertJob) {
+        QueryJobScope scope = QueryJobScope.current();
+        boolean readsStatistics = metrics.recordsJobStatistics();
+        boolean createsJob = readsStatistics || affectedRows != null || insertJob != null;
+        // Asynchronous calls start jobs under a known ID so that cancelling the call can cancel the job,
+        // and so do all calls whose job is created explicitly
+        JobId jobId = null;
+        if (insertJob != null) {
+            jobId = scope != null ? scope.startJob(insertJob.jobId) : insertJob.jobId;
+        } else if (scope != null) {
+            jobId = scope.startJob();
+        } else if (createsJob) {
+            jobId = JobId.of(UUID.randomUUID().toString());
+        }
+
+        long startNanos = System.nanoTime();
+        boolean succeeded = false;
+        UserProfileJobStatistics statistics = null;
+        try {
+            TableResult result;
+            if (createsJob) {
+                // The finished job carries its statistics, so no separate getJob request is needed
+                boolean resumed = insertJob != null && insertJob.submitted;
+                Job job = submit(queryConfig, jobId, insertJob).waitFor();
+                if (job == null) {
+                    throw new RuntimeException("BigQuery job " + jobId.getJob() + " of " + operation + " no longer exists");
+                }
+                BigQueryError error = job.getStatus() != null ? job.getStatus().getError() : null;
+                if (resumed && error != null) {
+                    // The job ran and failed, so polling it again would only repeat the error
+                    throw new IllegalStateException("BigQuery job " + jobId.getJob() + " of " + operation + " failed: " + error.getMessage());
+                }
+                statistics = readsStatistics ? jobStatistics(job) : null;
+                result = job.getQueryResults();
+                if (affectedRows != null) {
+                    affectedRows.accept(dmlAffectedRows(job));
+                }
+            } else {
+                result = jobId == null ? bigquery.query(queryConfig) : bigquery.query(queryConfig, jobId);
+            }
+            succeeded = true;
+            return result;
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            throw new RuntimeException("BigQuery delete interrupted", e);
+            throw new RuntimeException("BigQuery " + operation + " interrupted", e);
         } catch (JobException e) {
-            throw new RuntimeException("BigQuery job failed during delete", e);
+            throw new RuntimeException("BigQuery job failed during " + operation, e);
+        } finally {
+            if (scope != null) {
+                scope.endJob(jobId);
+            }
+            recordJob(queryConfig, operation, jobId, System.nanoTime() - startNanos, succeeded, statistics);
+        }
+    }
+
+    /**
+     * Submits the job, unless an earlier attempt of the same insert already did: then the job BigQuery holds under its
+     * ID is returned. If BigQuery never received it, it is submitted again under the same ID, which BigQuery rejects
+     * should the earlier request still arrive.
+     */
+    private Job submit(QueryJobConfiguration queryConfig, JobId jobId, InsertJob insertJob) {
+        if (insertJob != null) {
+            if (insertJob.submitted) {
+                Job job = bigquery.getJob(jobId);
+                if (job != null) {
+                    return job;
+                }
+            }
+            // Set before the request, which may reach BigQuery even if it fails
+            insertJob.submitted = true;
+        }
+        return bigquery.create(JobInfo.of(jobId, queryConfig));
+    }
+
+    private void recordJob(QueryJobConfiguration queryConfig, String operation, JobId jobId, long durationNanos, boolean succeeded,
+                           UserProfileJobStatistics statistics) {
+        metrics.recordJob(operation, durationNanos, succeeded, statistics);
+
+        long durationMs = TimeUnit.NANOSECONDS.toMillis(durationNanos);
+        if (durationMs >= slowQueryMs) {
+            LOG.warn("Slow BigQuery job: operation=\"{}\" durationMs={} succeeded={} jobId={} bytesBilled={} slotMs={} cacheHit={} query=\"{}\"",
+                    operation, durationMs, succeeded,
+                    jobId != null ? jobId.getJob() : null,
+                    statistics != null ? statistics.getTotalBytesBilled() : null,
+                    statistics != null ? statistics.getTotalSlotMs() : null,
+                    statistics != null ? statistics.isCacheHit() : null,
+                    queryConfig.getQuery());
         }
     }
 
+    // Statistics are best effort and never fail the call
+    private static UserProfileJobStatistics jobStatistics(Job job) {
+        try {
+            if (!(job.getStatistics() instanceof JobStatistics.QueryStatistics)) {
+                return null;
+            }
+            JobStatistics.QueryStatistics statistics = job.getStatistics();
+            return new UserProfileJobStatistics(
+                    job.getJobId().getJob(),
+                    valueOrZero(statistics.getTotalBytesProcessed()),
+                    valueOrZero(statistics.getTotalBytesBilled()),
+                    valueOrZero(statistics.getTotalSlotMs()),
+                    Boolean.TRUE.equals(statistics.getCacheHit()));
+        } catch (RuntimeException e) {
+            LOG.debug("Could not read statistics of BigQuery job {}", job.getJobId(), e);
+            return null;
+        }
+    }
+
+    private static long dmlAffectedRows(Job job) {
+        try {
+            if (job.getStatistics() instanceof JobStatistics.QueryStatistics) {
+                Long affectedRows = ((JobStatistics.QueryStatistics) job.getStatistics()).getNumDmlAffectedRows();
+                return affectedRows != null ? affectedRows : -1;
+            }
+        } catch (RuntimeException e) {
+            LOG.debug("Could not read affected rows of BigQuery job {}", job.getJobId(), e);
+        }
+        return -1;
+    }
+
+    // Times a whole repository call, cache hits and retries included; the jobs it runs are timed separately
+    private <T> T timed(String operation, Supplier<T> call) {
+        long startNanos = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            T result = call.get();
+            succeeded = true;
+            return result;
+        } finally {
+            metrics.recordCall(operation, System.nanoTime() - startNanos, succeeded);
+        }
+    }
+
+    private static long valueOrZero(Long value) {
+        return value != null ? value : 0L;
+    }
+
+    private void addProfileParameters(QueryJobConfiguration.Builder queryConfig, UserProfile userProfile, String suffix) {
+        queryConfig
+                .addNamedParameter("id" + suffix, QueryParameterValue.string(userProfile.getId()))
+                .addNamedParameter("firstName" + suffix, QueryParameterValue.string(userProfile.getFirstName()))
+                .addNamedParameter("lastName" + suffix, QueryParameterValue.string(userProfile.getLastName()))
+                .addNamedParameter("dob" + suffix, QueryParameterValue.date(userProfile.getDob() != null ? userProfile.getDob().format(DateTimeFormatter.ISO_LOCAL_DATE) : null));
+        for (String column : addressFormat.columns()) {
+            if (column.equals(AddressStorageFormat.JSON_COLUMN)) {
+                queryConfig.addNamedParameter("addressesJson" + suffix, QueryParameterValue.string(AddressJsonCodec.encode(userProfile.getAddresses())));
+            } else if (hasAddresses(userProfile)) {
+                queryConfig.addNamedParameter("addresses" + suffix, AddressRecordCodec.toParameter(userProfile.getAddresses()));
+            }
+        }
+    }
+
+    // An empty list is written to the record column as a typed literal instead of a parameter
+    private static boolean hasAddresses(UserProfile userProfile) {
+        return !AddressRecordCodec.isEmpty(userProfile.getAddresses());
+    }
+
     private UserProfile mapRowToUserProfile(FieldValueList row) {
+        return mapRowToUserProfile(row, UserProfileField.ALL);
+    }
+
+    // Maps the selected fields only; addresses are decoded on first access, so callers reading names never pay for it
+    UserProfile mapRowToUserProfile(FieldValueList row, Set<UserProfileField> fields) {
         String id = row.get("id").getStringValue();
-        String firstName = row.get("firstName").isNull() ? null : row.get("firstName").getStringValue();
-        String lastName = row.get("lastName").isNull() ? null : row.get("lastName").getStringValue();
-        LocalDate dob = row.get("dob").isNull() ? null : LocalDate.parse(row.get("dob").getStringValue());
+        String firstName = fields.contains(UserProfileField.FIRST_NAME) ? readString(row, "firstName") : null;
+        String lastName = fields.contains(UserProfileField.LAST_NAME) ? readString(row, "lastName") : null;
+        String dobValue = fields.contains(UserProfileField.DOB) ? readString(row, "dob") : null;
+        LocalDate dob = dobValue == null ? null : LocalDate.parse(dobValue);
 
-        List<Address> addresses = new ArrayList<>();
-        FieldValue addressesValue = row.get("addresses_json");
-        if (addressesValue != null && !addressesValue.isNull()) {
-            String addressesJson = addressesValue.getStringValue();
-            if (addressesJson != null && !addressesJson.isEmpty()) {
-                 addresses = gson.fromJson(addressesJson, addressListType);
+        if (!fields.contains(UserProfileField.ADDRESSES)) {
+            return new UserProfile(id, firstName, lastName, dob, null);
+        }
+        // Only the address values are captured, so a profile kept in the cache does not hold on to its whole row
+        FieldValue recordValue = addressFormat != AddressStorageFormat.JSON ? row.get(AddressStorageFormat.RECORD_COLUMN) : null;
+        FieldValue jsonValue = addressFormat != AddressStorageFormat.RECORD ? row.get(AddressStorageFormat.JSON_COLUMN) : null;
+        return new LazyAddressesUserProfile(id, firstName, lastName, dob, () -> readAddresses(recordValue, jsonValue),
+                countAddresses(recordValue, jsonValue));
+    }
+
+    private static String readString(FieldValueList row, String column) {
+        FieldValue value = row.get(column);
+        return value.isNull() ? null : value.getStringValue();
+    }
+
+    private static UserProfileSummary toSummary(UserProfile profile) {
+        return new UserProfileSummary(profile.getId(), profile.getFirstName(), profile.getLastName(), profile.getDob());
+    }
+
+    private static List<UserProfileSummary> toSummaries(List<UserProfile> profiles) {
+        List<UserProfileSummary> summaries = new ArrayList<>(profiles.size());
+        for (UserProfile profile : profiles) {
+            summaries.add(toSummary(profile));
+        }
+        return summaries;
+    }
+
+    // recordValue is null in JSON mode, jsonValue in RECORD mode
+    private List<Address> readAddresses(FieldValue recordValue, FieldValue jsonValue) {
+        if (recordValue != null) {
+            List<Address> addresses = AddressRecordCodec.decode(recordValue);
+            // In dual mode an empty record column means the row has not been backfilled yet
+            if (!addresses.isEmpty() || addressFormat == AddressStorageFormat.RECORD) {
+                return addresses;
+            }
+        }
+        return decodeAddresses(jsonValue == null || jsonValue.isNull() ? null : jsonValue.getStringValue());
+    }
+
+    // Same column choice as readAddresses, but only counts the encoded addresses
+    private int countAddresses(FieldValue recordValue, FieldValue jsonValue) {
+        if (recordValue != null && !recordValue.isNull()) {
+            int count = recordValue.getRepeatedValue().size();
+            if (count > 0 || addressFormat == AddressStorageFormat.RECORD) {
+                return count;
             }
         }
-        return new UserProfile(id, firstName, lastName, dob, addresses);
+        return jsonValue == null || jsonValue.isNull() ? 0 : AddressJsonCodec.count(jsonValue.getStringValue());
+    }
+
+    private List<Address> decodeAddresses(String addressesJson) {
+        if (addressesJson == null || addressesJson.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return AddressJsonCodec.decode(addressesJson);
+    }
+
+    // Attempts of one insert run one after the other, never hedged; the policy hands each over to the next
+    private static final class InsertJob {
+        private final JobId jobId = JobId.of(UUID.randomUUID().toString());
+        private volatile boolean submitted;
+    }
+
+    private static final class CachedSchema {
+        private final Schema schema;
+        private final long readAtNanos;
+
+        private CachedSchema(Schema schema, long readAtNanos) {
+            this.schema = schema;
+            this.readAtNanos = readAtNanos;
+        }
     }
 }
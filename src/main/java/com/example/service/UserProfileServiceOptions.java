@@ -0,0 +1,227 @@
+package com.example.service;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * The optional collaborators and settings of a {@link UserProfileService}. Every setting defaults to the value the
+ * application uses when its property is not set, and every collaborator to none, so callers only name what they need:
+ * <pre>{@code
+ * UserProfileServiceOptions.newBuilder().setCache(cache).setJobPolicy(policy).build()
+ * }</pre>
+ */
+public final class UserProfileServiceOptions {
+
+    private static final UserProfileServiceOptions DEFAULTS = newBuilder().build();
+
+    private final UserProfileWriteBuffer writeBuffer;
+    private final UserProfileCache cache;
+    private final int scanPageSize;
+    private final int scanPrefetchPages;
+    private final UserProfileStorageReader storageReader;
+    private final AddressStorageFormat addressFormat;
+    private final UserProfileMetrics metrics;
+    private final long slowQueryMs;
+    private final boolean useQueryCache;
+    private final UserProfileChangeSink changeSink;
+    private final UserProfileJobPolicy jobPolicy;
+    private final ExecutorService scanExecutor;
+
+    private UserProfileServiceOptions(Builder builder) {
+        this.writeBuffer = builder.writeBuffer;
+        this.cache = builder.cache;
+        this.scanPageSize = builder.scanPageSize;
+        this.scanPrefetchPages = builder.scanPrefetchPages;
+        this.storageReader = builder.storageReader;
+        this.addressFormat = builder.addressFormat;
+        this.metrics = builder.metrics;
+        this.slowQueryMs = builder.slowQueryMs;
+        this.useQueryCache = builder.useQueryCache;
+        this.changeSink = builder.changeSink;
+        this.jobPolicy = builder.jobPolicy;
+        this.scanExecutor = builder.scanExecutor;
+    }
+
+    public static UserProfileServiceOptions defaults() {
+        return DEFAULTS;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    public UserProfileWriteBuffer getWriteBuffer() {
+        return writeBuffer;
+    }
+
+    public UserProfileCache getCache() {
+        return cache;
+    }
+
+    public int getScanPageSize() {
+        return scanPageSize;
+    }
+
+    public int getScanPrefetchPages() {
+        return scanPrefetchPages;
+    }
+
+    public UserProfileStorageReader getStorageReader() {
+        return storageReader;
+    }
+
+    public AddressStorageFormat getAddressFormat() {
+        return addressFormat;
+    }
+
+    public UserProfileMetrics getMetrics() {
+        return metrics;
+    }
+
+    public long getSlowQueryMs() {
+        return slowQueryMs;
+    }
+
+    public boolean isUseQueryCache() {
+        return useQueryCache;
+    }
+
+    public UserProfileChangeSink getChangeSink() {
+        return changeSink;
+    }
+
+    public UserProfileJobPolicy getJobPolicy() {
+        return jobPolicy;
+    }
+
+    public ExecutorService getScanExecutor() {
+        return scanExecutor;
+    }
+
+    public static final class Builder {
+
+        private UserProfileWriteBuffer writeBuffer;
+        private UserProfileCache cache;
+        private int scanPageSize = 1000;
+        private int scanPrefetchPages = 2;
+        private UserProfileStorageReader storageReader;
+        private AddressStorageFormat addressFormat = AddressStorageFormat.JSON;
+        private UserProfileMetrics metrics;
+        private long slowQueryMs = 10_000;
+        private boolean useQueryCache = true;
+        private UserProfileChangeSink changeSink;
+        private UserProfileJobPolicy jobPolicy;
+        private ExecutorService scanExecutor;
+
+        private Builder() {
+        }
+
+        /**
+         * @param writeBuffer Write-behind buffer used by {@link UserProfileService#saveUserProfile} when
+         *                    {@code gcp.write-mode.userprofile} is {@code streaming}; null for synchronous DML inserts.
+         */
+        public Builder setWriteBuffer(UserProfileWriteBuffer writeBuffer) {
+            this.writeBuffer = writeBuffer;
+            return this;
+        }
+
+        /**
+         * @param cache Read-through cache for {@link UserProfileService#findUserProfileById}; null to always query
+         *              BigQuery.
+         */
+        public Builder setCache(UserProfileCache cache) {
+            this.cache = cache;
+            return this;
+        }
+
+        /**
+         * @param scanPageSize Rows per page read by {@link UserProfileService#streamAllUserProfiles()} and
+         *                     {@link UserProfileService#publishAllUserProfiles()}.
+         */
+        public Builder setScanPageSize(int scanPageSize) {
+            this.scanPageSize = scanPageSize;
+            return this;
+        }
+
+        /**
+         * @param scanPrefetchPages Pages fetched ahead of the consumer while streaming; 0 disables prefetching.
+         */
+        public Builder setScanPrefetchPages(int scanPrefetchPages) {
+            this.scanPrefetchPages = scanPrefetchPages;
+            return this;
+        }
+
+        /**
+         * @param storageReader Storage Read API scanner for {@link UserProfileScanMode#STORAGE_READ}; null if not
+         *                      enabled.
+         */
+        public Builder setStorageReader(UserProfileStorageReader storageReader) {
+            this.storageReader = storageReader;
+            return this;
+        }
+
+        /**
+         * @param addressFormat Column(s) the addresses are read from and written to.
+         */
+        public Builder setAddressFormat(AddressStorageFormat addressFormat) {
+            this.addressFormat = addressFormat;
+            return this;
+        }
+
+        /**
+         * @param metrics Receives the timing of every repository call and the timing and cost of every query job;
+         *                null to not record them.
+         */
+        public Builder setMetrics(UserProfileMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * @param slowQueryMs Jobs taking at least this long are logged with their query and statistics.
+         */
+        public Builder setSlowQueryMs(long slowQueryMs) {
+            this.slowQueryMs = slowQueryMs;
+            return this;
+        }
+
+        /**
+         * @param useQueryCache Whether reads may be answered from BigQuery's cached query results, as BigQuery does
+         *                      by default.
+         */
+        public Builder setUseQueryCache(boolean useQueryCache) {
+            this.useQueryCache = useQueryCache;
+            return this;
+        }
+
+        /**
+         * @param changeSink Receives a versioned change for every profile written or deleted; null to not publish
+         *                   changes.
+         */
+        public Builder setChangeSink(UserProfileChangeSink changeSink) {
+            this.changeSink = changeSink;
+            return this;
+        }
+
+        /**
+         * @param jobPolicy Retries, deadlines, hedging and circuit breaking applied to every query job; null to run
+         *                  each job once and wait for it however long it takes.
+         */
+        public Builder setJobPolicy(UserProfileJobPolicy jobPolicy) {
+            this.jobPolicy = jobPolicy;
+            return this;
+        }
+
+        /**
+         * @param scanExecutor Runs page prefetching and the scans of {@link UserProfileService#publishAllUserProfiles()};
+         *                     null for a pool of daemon threads owned by the service.
+         */
+        public Builder setScanExecutor(ExecutorService scanExecutor) {
+            this.scanExecutor = scanExecutor;
+            return this;
+        }
+
+        public UserProfileServiceOptions build() {
+            return new UserProfileServiceOptions(this);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.service;
+
+import com.example.model.UserProfile;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The state of the user profile table rebuilt from a change stream: the latest profile of every ID not deleted,
+ * as of {@link #getVersion()}. Consumers keep one, apply new changes with {@link #catchUp(UserProfileChangeSource)}
+ * instead of rescanning the table, and persist the version to resume from. Not thread-safe.
+ */
+public class UserProfileSnapshot {
+
+    private final Map<String, UserProfile> profiles = new HashMap<>();
+    private long version;
+
+    /**
+     * Replays a whole change stream, compacted or not.
+     */
+    public static UserProfileSnapshot replay(UserProfileChangeSource source) {
+        UserProfileSnapshot snapshot = new UserProfileSnapshot();
+        snapshot.catchUp(source);
+        return snapshot;
+    }
+
+    /**
+     * Applies the changes published since the snapshot's version.
+     * @return The number of changes applied.
+     */
+    public int catchUp(UserProfileChangeSource source) {
+        List<UserProfileChange> changes = source.changesAfter(version);
+        changes.forEach(this::apply);
+        return changes.size();
+    }
+
+    /**
+     * Applies one change; changes at or below the snapshot's version were already applied and are ignored.
+     */
+    public void apply(UserProfileChange change) {
+        if (change.getVersion() <= version) {
+            return;
+        }
+        if (change.getType() == UserProfileChangeType.DELETE) {
+            profiles.remove(change.getId());
+        } else {
+            profiles.put(change.getId(), change.getProfile());
+        }
+        version = change.getVersion();
+    }
+
+    /**
+     * @return The version of the last change applied; 0 for an empty snapshot.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public Optional<UserProfile> get(String id) {
+        return Optional.ofNullable(profiles.get(id));
+    }
+
+    public Collection<UserProfile> getProfiles() {
+        return Collections.unmodifiableCollection(profiles.values());
+    }
+
+    public int size() {
+        return profiles.size();
+    }
+}
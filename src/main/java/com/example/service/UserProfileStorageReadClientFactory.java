@@ -0,0 +1,25 @@
+package com.example.service;
+
+import com.google.cloud.bigquery.storage.v1.BigQueryReadClient;
+import io.micronaut.context.annotation.Bean;
+import io.micronaut.context.annotation.Factory;
+import io.micronaut.context.annotation.Requires;
+import jakarta.inject.Singleton;
+
+import java.io.IOException;
+
+/**
+ * Provides the Storage Read API client used by {@link UserProfileStorageReader}, with Application Default
+ * Credentials; the client is closed with the application context.
+ */
+@Factory
+@Requires(classes = BigQueryReadClient.class)
+@Requires(property = "gcp.storage-read.userprofile.enabled", value = "true")
+public class UserProfileStorageReadClientFactory {
+
+    @Singleton
+    @Bean(preDestroy = "close")
+    public BigQueryReadClient bigQueryReadClient() throws IOException {
+        return BigQueryReadClient.create();
+    }
+}
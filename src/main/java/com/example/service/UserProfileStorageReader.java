@@ -0,0 +1,258 @@
+package com.example.service;
+
+import com.example.model.Address;
+import com.example.model.UserProfile;
+import com.google.api.gax.rpc.ServerStream;
+import com.google.cloud.bigquery.storage.v1.BigQueryReadClient;
+import com.google.cloud.bigquery.storage.v1.CreateReadSessionRequest;
+import com.google.cloud.bigquery.storage.v1.DataFormat;
+import com.google.cloud.bigquery.storage.v1.ReadRowsRequest;
+import com.google.cloud.bigquery.storage.v1.ReadRowsResponse;
+import com.google.cloud.bigquery.storage.v1.ReadSession;
+import com.google.cloud.bigquery.storage.v1.ReadStream;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.scheduling.TaskExecutors;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import org.apache.avro.Schema;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Full-table scans of user profiles through the BigQuery Storage Read API.
+ * A read session splits the table into several streams that are read in parallel, at most as many at a time as there
+ * are cores, and decoded from Avro straight into {@link UserProfile}s by {@link UserProfileAvroDecoder}.
+ * Streams are read on the shared blocking executor; a scan only holds its threads while it has streams left to read
+ * and its consumer has not closed it.
+ * The client is provided by {@link UserProfileStorageReadClientFactory}, which also closes it.
+ */
+@Singleton
+@Requires(classes = BigQueryReadClient.class)
+@Requires(property = "gcp.storage-read.userprofile.enabled", value = "true")
+public class UserProfileStorageReader {
+
+    // Marks the end of the decoded batches, compared by identity
+    private static final List<UserProfile> END = new ArrayList<>();
+    // How long a reader waits for room in the buffer before checking whether the consumer closed the scan
+    private static final long HAND_OVER_CHECK_MS = 100;
+
+    private final BigQueryReadClient client;
+    private final String projectId;
+    private final String tablePath;
+    private final int maxStreams;
+    private final int bufferedBatches;
+    private final List<String> columns;
+    private final ExecutorService readExecutor;
+
+    /**
+     * @param readExecutor Runs the stream reads; null for a pool of daemon threads owned by the reader.
+     */
+    public UserProfileStorageReader(
+            BigQueryReadClient client,
+            @Value("${gcp.project-id}") String projectId,
+            @Value("${gcp.dataset-name}") String datasetName,
+            @Value("${gcp.table-name.userprofile}") String tableName,
+            @Value("${gcp.storage-read.userprofile.max-streams:0}") int maxStreams,
+            @Value("${gcp.storage-read.userprofile.buffered-batches:16}") int bufferedBatches,
+            @Value("${gcp.addresses-format.userprofile:JSON}") AddressStorageFormat addressFormat,
+            @Nullable @Named(TaskExecutors.BLOCKING) ExecutorService readExecutor) {
+        this.client = client;
+        this.projectId = projectId;
+        this.tablePath = String.format("projects/%s/datasets/%s/tables/%s", projectId, datasetName, tableName);
+        this.maxStreams = maxStreams > 0 ? maxStreams : Runtime.getRuntime().availableProcessors();
+        this.bufferedBatches = bufferedBatches;
+        this.columns = new ArrayList<>(List.of("id", "firstName", "lastName", "dob"));
+        this.columns.addAll(addressFormat.columns());
+        this.readExecutor = readExecutor != null ? readExecutor : Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "userprofile-storage-read");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Scans the whole table. Rows from different streams are interleaved, so the result is not in table order.
+     * The stream should be closed if it is not fully consumed, to stop the reader threads.
+     * @param addressesDecoder Decodes the {@code addresses_json} column.
+     * @return The profiles of the table.
+     */
+    public Stream<UserProfile> readAll(Function<String, List<Address>> addressesDecoder) {
+        ReadSession session = client.createReadSession(CreateReadSessionRequest.newBuilder()
+                .setParent("projects/" + projectId)
+                .setReadSession(ReadSession.newBuilder()
+                        .setTable(tablePath)
+                        .setDataFormat(DataFormat.AVRO)
+                        .setReadOptions(ReadSession.TableReadOptions.newBuilder().addAllSelectedFields(columns)))
+                .setMaxStreamCount(maxStreams)
+                .build());
+        if (session.getStreamsCount() == 0) {
+            // An empty table yields a session without streams
+            return Stream.empty();
+        }
+
+        Schema rowSchema = new Schema.Parser().parse(session.getAvroSchema().getSchema());
+        BatchIterator batches = new BatchIterator(session.getStreamsList(), rowSchema, addressesDecoder);
+        startReaders(batches);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(batches, Spliterator.NONNULL), false)
+                .onClose(batches::close);
+    }
+
+    // Starts reading pending streams while the scan has reader permits left
+    private void startReaders(BatchIterator batches) {
+        while (!batches.closed && batches.readers.tryAcquire()) {
+            ReadStream readStream = batches.pendingStreams.poll();
+            if (readStream == null) {
+                batches.readers.release();
+                return;
+            }
+            try {
+                readExecutor.execute(() -> readStream(readStream, batches));
+            } catch (RuntimeException e) {
+                batches.readers.release();
+                batches.fail(e);
+                return;
+            }
+        }
+    }
+
+    private void readStream(ReadStream readStream, BatchIterator batches) {
+        try {
+            UserProfileAvroDecoder decoder = new UserProfileAvroDecoder(batches.rowSchema, batches.addressesDecoder);
+            ReadRowsRequest request = ReadRowsRequest.newBuilder().setReadStream(readStream.getName()).build();
+            ServerStream<ReadRowsResponse> responses = client.readRowsCallable().call(request);
+            for (ReadRowsResponse response : responses) {
+                if (batches.closed) {
+                    responses.cancel();
+                    break;
+                }
+                if (response.hasAvroRows()) {
+                    batches.handOver(decoder.decode(response.getAvroRows().getSerializedBinaryRows().toByteArray(), response.getRowCount()));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            batches.fail(e);
+        } finally {
+            batches.readers.release();
+            if (batches.remainingStreams.decrementAndGet() == 0) {
+                batches.end();
+            } else {
+                startReaders(batches);
+            }
+        }
+    }
+
+    /**
+     * Hands the batches decoded by the reader threads to the consuming thread, one profile at a time.
+     */
+    private class BatchIterator implements Iterator<UserProfile> {
+
+        private final BlockingQueue<List<UserProfile>> queue = new ArrayBlockingQueue<>(bufferedBatches + 1);
+        private final ConcurrentLinkedQueue<ReadStream> pendingStreams;
+        private final AtomicInteger remainingStreams;
+        private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        // Streams of this scan being read at a time
+        private final Semaphore readers;
+        private final Schema rowSchema;
+        private final Function<String, List<Address>> addressesDecoder;
+        private Iterator<UserProfile> batch = List.<UserProfile>of().iterator();
+        private boolean done;
+        // Set by the consumer; readers stop handing over batches and reading streams once it is set
+        private volatile boolean closed;
+
+        private BatchIterator(List<ReadStream> streams, Schema rowSchema, Function<String, List<Address>> addressesDecoder) {
+            this.pendingStreams = new ConcurrentLinkedQueue<>(streams);
+            this.remainingStreams = new AtomicInteger(streams.size());
+            this.readers = new Semaphore(Math.min(streams.size(), Runtime.getRuntime().availableProcessors()));
+            this.rowSchema = rowSchema;
+            this.addressesDecoder = addressesDecoder;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!batch.hasNext() && !done) {
+                List<UserProfile> next;
+                try {
+                    next = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    close();
+                    throw new RuntimeException("BigQuery storage read interrupted", e);
+                }
+                if (next == END) {
+                    done = true;
+                    close();
+                    RuntimeException error = failure.get();
+                    if (error != null) {
+                        throw new RuntimeException("BigQuery storage read failed", error);
+                    }
+                } else {
+                    batch = next.iterator();
+                }
+            }
+            return batch.hasNext();
+        }
+
+        @Override
+        public UserProfile next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return batch.next();
+        }
+
+        /**
+         * Waits for room in the buffer, giving up once the consumer closed the scan.
+         */
+        private void handOver(List<UserProfile> profiles) throws InterruptedException {
+            while (!closed) {
+                if (queue.offer(profiles, HAND_OVER_CHECK_MS, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+        }
+
+        private void fail(RuntimeException e) {
+            if (failure.compareAndSet(null, e)) {
+                // The consumer stops at the failure without waiting for the other streams
+                pendingStreams.clear();
+                end();
+            }
+        }
+
+        private void end() {
+            try {
+                handOver(END);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void close() {
+            closed = true;
+            pendingStreams.clear();
+            // Wakes readers waiting for room; they see the flag on their next check
+            queue.clear();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.service;
+
+import com.google.cloud.bigquery.*;
+import io.micronaut.context.annotation.Value;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates the user profile table with a storage layout that lets lookups prune instead of scanning the table:
+ * partitioned on {@code dob} (so {@link UserProfileService#findByDobBetween} only reads the partitions in range) and
+ * clustered on {@code lastName, id} by default (so last name lookups and, within a last name, ID lookups only read
+ * matching blocks). Clustering prunes best on its leading column; put {@code id} first if ID lookups dominate.
+ *
+ * BigQuery cannot partition or cluster an existing table in place; {@link #copyIntoPartitionedTable(String)} copies
+ * the current table into a new one with the layout, after which the service can be pointed at the new table.
+ */
+@Singleton
+public class UserProfileTableAdmin {
+
+    private final BigQuery bigquery;
+    private final String projectId;
+    private final String datasetName;
+    private final String tableName;
+    private final TimePartitioning.Type dobPartitioning;
+    private final List<String> clusteringFields;
+    private final AddressStorageFormat addressFormat;
+
+    @Inject
+    public UserProfileTableAdmin(
+            BigQuery bigquery,
+            @Value("${gcp.project-id}") String projectId,
+            @Value("${gcp.dataset-name}") String datasetName,
+            @Value("${gcp.table-name.userprofile}") String tableName,
+            @Value("${gcp.table-layout.userprofile.dob-partitioning:YEAR}") TimePartitioning.Type dobPartitioning,
+            @Value("${gcp.table-layout.userprofile.clustering:lastName,id}") List<String> clusteringFields,
+            @Value("${gcp.addresses-format.userprofile:JSON}") AddressStorageFormat addressFormat) {
+        if (dobPartitioning == TimePartitioning.Type.HOUR) {
+            throw new IllegalArgumentException("A DATE column cannot be partitioned by hour.");
+        }
+        if (clusteringFields.size() > 4) {
+            throw new IllegalArgumentException("BigQuery allows at most 4 clustering columns.");
+        }
+        this.bigquery = bigquery;
+        this.projectId = projectId;
+        this.datasetName = datasetName;
+        this.tableName = tableName;
+        this.dobPartitioning = dobPartitioning;
+        this.clusteringFields = List.copyOf(clusteringFields);
+        this.addressFormat = addressFormat;
+    }
+
+    private String getFullTableName(String name) {
+        return String.format("`%s.%s.%s`", projectId, datasetName, name);
+    }
+
+    /**
+     * @return The table schema, with the address column(s) of the configured {@link AddressStorageFormat}.
+     */
+    public Schema schema() {
+        List<Field> fields = new ArrayList<>();
+        fields.add(Field.of("id", StandardSQLTypeName.STRING));
+        fields.add(Field.of("firstName", StandardSQLTypeName.STRING));
+        fields.add(Field.of("lastName", StandardSQLTypeName.STRING));
+        fields.add(Field.of("dob", StandardSQLTypeName.DATE));
+        for (String column : addressFormat.columns()) {
+            if (column.equals(AddressStorageFormat.JSON_COLUMN)) {
+                fields.add(Field.of(column, StandardSQLTypeName.STRING));
+            } else {
+                fields.add(Field.newBuilder(column, StandardSQLTypeName.STRUCT,
+                                Field.of("status", StandardSQLTypeName.STRING),
+                                Field.of("address", StandardSQLTypeName.STRING),
+                                Field.of("city", StandardSQLTypeName.STRING),
+                                Field.of("state", StandardSQLTypeName.STRING),
+                                Field.of("zip", StandardSQLTypeName.STRING),
+                                Field.of("numberOfYears", StandardSQLTypeName.STRING))
+                        .setMode(Field.Mode.REPEATED)
+                        .build());
+            }
+        }
+        return Schema.of(fields);
+    }
+
+    public StandardTableDefinition tableDefinition() {
+        StandardTableDefinition.Builder definition = StandardTableDefinition.newBuilder()
+                .setSchema(schema())
+                .setTimePartitioning(TimePartitioning.newBuilder(dobPartitioning).setField("dob").build());
+        if (!clusteringFields.isEmpty()) {
+            definition.setClustering(Clustering.newBuilder().setFields(clusteringFields).build());
+        }
+        return definition.build();
+    }
+
+    /**
+     * Creates the configured table with the partitioned and clustered layout.
+     */
+    public Table createTable() {
+        return bigquery.create(TableInfo.of(TableId.of(projectId, datasetName, tableName), tableDefinition()));
+    }
+
+    /**
+     * Copies the configured table into a new table with the partitioned and clustered layout, in one CTAS job.
+     * @param targetTableName Name of the new table, in the same dataset; must not exist yet.
+     */
+    public void copyIntoPartitionedTable(String targetTableName) {
+        String query = String.format("CREATE TABLE %s PARTITION BY %s%s AS SELECT * FROM %s",
+                getFullTableName(targetTableName), partitionExpression(),
+                clusteringFields.isEmpty() ? "" : " CLUSTER BY " + String.join(", ", clusteringFields),
+                getFullTableName(tableName));
+        try {
+            bigquery.query(QueryJobConfiguration.newBuilder(query).build());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("BigQuery table copy interrupted", e);
+        } catch (JobException e) {
+            throw new RuntimeException("BigQuery job failed during table copy", e);
+        }
+    }
+
+    private String partitionExpression() {
+        return dobPartitioning == TimePartitioning.Type.DAY ? "dob" : "DATE_TRUNC(dob, " + dobPartitioning.name() + ")";
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.service;
+
+/**
+ * Outcome of {@link TieredUserProfileRepository#checkConsistency(int)}: how many hot profiles were compared with
+ * BigQuery and how many of them were dropped from the hot tier because they differed or no longer existed.
+ */
+public class UserProfileTierConsistency {
+
+    private final int checkedCount;
+    private final int staleCount;
+    private final int missingCount;
+
+    public UserProfileTierConsistency(int checkedCount, int staleCount, int missingCount) {
+        this.checkedCount = checkedCount;
+        this.staleCount = staleCount;
+        this.missingCount = missingCount;
+    }
+
+    public int getCheckedCount() {
+        return checkedCount;
+    }
+
+    /**
+     * Hot profiles that differed from the row in BigQuery.
+     */
+    public int getStaleCount() {
+        return staleCount;
+    }
+
+    /**
+     * Hot profiles without a row in BigQuery.
+     */
+    public int getMissingCount() {
+        return missingCount;
+    }
+
+    public boolean isConsistent() {
+        return staleCount == 0 && missingCount == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "UserProfileTierConsistency{checked=" + checkedCount + ", stale=" + staleCount + ", missing=" + missingCount + '}';
+    }
+}
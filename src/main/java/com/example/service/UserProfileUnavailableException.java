@@ -0,0 +1,17 @@
+package com.example.service;
+
+/**
+ * Thrown when BigQuery cannot answer a call in time: its retries ran out, its deadline passed or the circuit breaker
+ * of {@link UserProfileJobPolicy} rejected it. Errors that retrying cannot fix, such as an invalid query, are not
+ * reported this way.
+ */
+public class UserProfileUnavailableException extends RuntimeException {
+
+    public UserProfileUnavailableException(String message) {
+        super(message);
+    }
+
+    public UserProfileUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.service;
+
+import com.example.model.UserProfile;
+import com.google.cloud.bigquery.*;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.annotation.Value;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind buffer for user profiles.
+ * Profiles are queued by {@link #enqueue(UserProfile)} and written by a background flusher thread
+ * in batches through the BigQuery streaming {@code insertAll} API instead of one DML job per profile.
+ * A batch is flushed once it reaches {@code batch-size} rows or {@code flush-interval-ms} after its first row.
+ * The queue is bounded, so producers block once {@code capacity} profiles are waiting (backpressure).
+ *
+ * Note: rows written through the streaming API sit in the streaming buffer for a while and cannot be
+ * modified by DML (UPDATE/DELETE/MERGE) until they are committed to table storage.
+ */
+@Singleton
+@Requires(property = "gcp.write-mode.userprofile", value = "streaming")
+public class UserProfileWriteBuffer implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UserProfileWriteBuffer.class);
+    private static final PendingRow SHUTDOWN = new PendingRow(null);
+
+    private final BigQuery bigquery;
+    private final TableId tableId;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final AddressStorageFormat addressFormat;
+    private final BlockingQueue<PendingRow> queue;
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    public UserProfileWriteBuffer(
+            BigQuery bigquery,
+            @Value("${gcp.project-id}") String projectId,
+            @Value("${gcp.dataset-name}") String datasetName,
+            @Value("${gcp.table-name.userprofile}") String tableName,
+            @Value("${gcp.write-buffer.userprofile.batch-size:500}") int batchSize,
+            @Value("${gcp.write-buffer.userprofile.flush-interval-ms:1000}") long flushIntervalMs,
+            @Value("${gcp.write-buffer.userprofile.capacity:10000}") int capacity) {
+        this(bigquery, projectId, datasetName, tableName, batchSize, flushIntervalMs, capacity, AddressStorageFormat.JSON);
+    }
+
+    @Inject
+    public UserProfileWriteBuffer(
+            BigQuery bigquery,
+            @Value("${gcp.project-id}") String projectId,
+            @Value("${gcp.dataset-name}") String datasetName,
+            @Value("${gcp.table-name.userprofile}") String tableName,
+            @Value("${gcp.write-buffer.userprofile.batch-size:500}") int batchSize,
+            @Value("${gcp.write-buffer.userprofile.flush-interval-ms:1000}") long flushIntervalMs,
+            @Value("${gcp.write-buffer.userprofile.capacity:10000}") int capacity,
+            @Value("${gcp.addresses-format.userprofile:JSON}") AddressStorageFormat addressFormat) {
+        if (batchSize <= 0 || flushIntervalMs <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Write buffer batch size, flush interval and capacity must be positive.");
+        }
+        this.bigquery = bigquery;
+        this.tableId = TableId.of(projectId, datasetName, tableName);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.addressFormat = addressFormat;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.flusher = new Thread(this::runFlusher, "userprofile-write-buffer");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Queues a profile for the next batch, blocking while the buffer is full.
+     * @param userProfile The profile to write; its ID must already be assigned.
+     * @return A future completed with the profile once its batch is written, or exceptionally if BigQuery rejected the row.
+     */
+    public CompletableFuture<UserProfile> enqueue(UserProfile userProfile) {
+        if (!running) {
+            throw new IllegalStateException("UserProfile write buffer is closed.");
+        }
+        PendingRow row = new PendingRow(userProfile);
+        try {
+            queue.put(row);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for space in the UserProfile write buffer", e);
+        }
+        return row.result;
+    }
+
+    /**
+     * Writes every queued profile from the calling thread, without waiting for the flush interval.
+     */
+    public void flush() {
+        List<PendingRow> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            batch.remove(SHUTDOWN);
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+            }
+            batch = new ArrayList<>(batchSize);
+        }
+    }
+
+    /**
+     * Number of profiles waiting to be written.
+     */
+    public int pendingCount() {
+        return queue.size();
+    }
+
+    /**
+     * Stops accepting new profiles and flushes everything still queued.
+     */
+    @PreDestroy
+    @Override
+    public synchronized void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            // The flusher writes what it has collected and exits when it reaches the shutdown marker
+            queue.put(SHUTDOWN);
+            flusher.join(TimeUnit.NANOSECONDS.toMillis(flushIntervalNanos) + 30_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Picks up profiles enqueued concurrently with shutdown
+        flush();
+    }
+
+    private void runFlusher() {
+        boolean shutdown = false;
+        while (!shutdown) {
+            List<PendingRow> batch = new ArrayList<>(batchSize);
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize && !batch.contains(SHUTDOWN)) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    PendingRow next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                // Rows already taken are written below, anything left in the queue is flushed by close()
+                shutdown = true;
+            }
+            shutdown |= batch.remove(SHUTDOWN);
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+            }
+        }
+    }
+
+    private void writeBatch(List<PendingRow> batch) {
+        InsertAllRequest.Builder request = InsertAllRequest.newBuilder(tableId);
+        for (PendingRow row : batch) {
+            // BigQuery drops rows whose insert ID it has seen in the last minute, so the ID identifies this queued
+            // row rather than the profile: saving the same profile twice must write it twice
+            request.addRow(row.insertId, toRowContent(row.profile));
+        }
+
+        InsertAllResponse response;
+        try {
+            response = bigquery.insertAll(request.build());
+        } catch (RuntimeException e) {
+            LOG.error("BigQuery streaming insert of {} user profiles failed", batch.size(), e);
+            for (PendingRow row : batch) {
+                row.result.completeExceptionally(new RuntimeException("BigQuery streaming insert failed", e));
+            }
+            return;
+        }
+
+        Map<Long, List<BigQueryError>> insertErrors = response.hasErrors() ? response.getInsertErrors() : Map.of();
+        for (int i = 0; i < batch.size(); i++) {
+            PendingRow row = batch.get(i);
+            List<BigQueryError> errors = insertErrors.get((long) i);
+            if (errors == null || errors.isEmpty()) {
+                row.result.complete(row.profile);
+            } else {
+                LOG.warn("BigQuery rejected user profile {}: {}", row.profile.getId(), errors);
+                row.result.completeExceptionally(
+                        new RuntimeException("BigQuery rejected user profile " + row.profile.getId() + ": " + errors));
+            }
+        }
+    }
+
+    private Map<String, Object> toRowContent(UserProfile userProfile) {
+        Map<String, Object> content = new HashMap<>();
+        content.put("id", userProfile.getId());
+        if (userProfile.getFirstName() != null) {
+            content.put("firstName", userProfile.getFirstName());
+        }
+        if (userProfile.getLastName() != null) {
+            content.put("lastName", userProfile.getLastName());
+        }
+        if (userProfile.getDob() != null) {
+            content.put("dob", userProfile.getDob().format(DateTimeFormatter.ISO_LOCAL_DATE));
+        }
+        for (String column : addressFormat.columns()) {
+            if (column.equals(AddressStorageFormat.JSON_COLUMN)) {
+                content.put(column, AddressJsonCodec.encode(userProfile.getAddresses()));
+            } else {
+                content.put(column, AddressRecordCodec.toRowContent(userProfile.getAddresses()));
+            }
+        }
+        return content;
+    }
+
+    private static final class PendingRow {
+        private final UserProfile profile;
+        private final String insertId = UUID.randomUUID().toString();
+        private final CompletableFuture<UserProfile> result = new CompletableFuture<>();
+
+        private PendingRow(UserProfile profile) {
+            this.profile = profile;
+        }
+    }
+}
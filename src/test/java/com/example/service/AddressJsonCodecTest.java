@@ -0,0 +1,74 @@
+package com.example.service;
+
+import com.example.model.Address;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AddressJsonCodecTest {
+
+    private final Gson gson = new Gson();
+    private final Type addressListType = new TypeToken<ArrayList<Address>>() {}.getType();
+
+    private List<Address> sample() {
+        return new ArrayList<>(Arrays.asList(
+                new Address("Current", "1 <Main> St \"Apt\" & Co = 'x'\n\t\\ \u00e9 \u2028", "Anytown", "CA", "90210", "5"),
+                null,
+                new Address("Previous", null, "Othertown", "NY", null, null),
+                new Address()));
+    }
+
+    @Test
+    void testEncodesExactlyLikeGson() {
+        assertEquals(gson.toJson(sample()), AddressJsonCodec.encode(sample()));
+        assertEquals(gson.toJson(new ArrayList<Address>()), AddressJsonCodec.encode(new ArrayList<>()));
+        assertEquals(gson.toJson(null), AddressJsonCodec.encode(null));
+    }
+
+    @Test
+    void testDecodesGsonOutput() {
+        String json = gson.toJson(sample());
+
+        List<Address> decoded = AddressJsonCodec.decode(json);
+
+        assertEquals(json, gson.toJson(decoded));
+        assertNull(decoded.get(1));
+        assertNull(AddressJsonCodec.decode("null"));
+        assertTrue(AddressJsonCodec.decode(" [ ] ").isEmpty());
+    }
+
+    @Test
+    void testDecodesLooseDocumentsLikeGson() {
+        String json = "[ {\"zip\": 90210, \"unknown\": {\"nested\": [1, \"]\", null]}, \"status\" : \"Current\", \"city\": null } ]";
+
+        List<Address> decoded = AddressJsonCodec.decode(json);
+        List<Address> expected = gson.fromJson(json, addressListType);
+
+        assertEquals(gson.toJson(expected), gson.toJson(decoded));
+        assertEquals("90210", decoded.get(0).getZip());
+    }
+
+    @Test
+    void testInternsStatusAndState() {
+        Address first = AddressJsonCodec.decode("[{\"status\":\"Current\",\"state\":\"CA\"}]").get(0);
+        Address second = AddressJsonCodec.decode("[{\"status\":\"Current\",\"state\":\"CA\"}]").get(0);
+
+        assertSame(first.getStatus(), second.getStatus());
+        assertSame(first.getState(), second.getState());
+    }
+
+    @Test
+    void testRejectsMalformedDocuments() {
+        assertThrows(IllegalArgumentException.class, () -> AddressJsonCodec.decode("[{\"state\":\"CA\"}"));
+        assertThrows(IllegalArgumentException.class, () -> AddressJsonCodec.decode("{\"state\":\"CA\"}"));
+        assertThrows(IllegalArgumentException.class, () -> AddressJsonCodec.decode("[{\"state\":\"CA}]"));
+        assertThrows(IllegalArgumentException.class, () -> AddressJsonCodec.decode("[] []"));
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Issues the same burst of lookups through {@link AsyncUserProfileService} at concurrency limits of 1, 8 and 64
+ * against a fake BigQuery whose jobs each take a fixed time. With the job latency dominating, the burst's wall-clock
+ * time falls roughly in proportion to the limit, and never below the rounds of jobs the limit allows.
+ */
+class AsyncUserProfileLoadTest {
+
+    private static final int CALLS = 64;
+    private static final long JOB_LATENCY_MS = 40;
+
+    private final FakeBigQuery fakeBigQuery = new FakeBigQuery().withLatency(JOB_LATENCY_MS);
+    private final UserProfileService userProfileService =
+            new UserProfileService(fakeBigQuery.bigQuery(), "test-project", "test_dataset", "user_profiles");
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @BeforeEach
+    void setUp() {
+        fakeBigQuery.onQuery(config -> FakeBigQuery.result(List.of(UserProfileFixtures.row(UserProfileFixtures.profile("u1", 2)))));
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return The wall-clock time of the burst in milliseconds.
+     */
+    private long burstMillis(int maxConcurrentCalls) throws Exception {
+        AsyncUserProfileService service = new AsyncUserProfileService(userProfileService, fakeBigQuery.bigQuery(), executor, maxConcurrentCalls);
+        long startNanos = System.nanoTime();
+        CompletableFuture<?>[] calls = new CompletableFuture<?>[CALLS];
+        for (int i = 0; i < CALLS; i++) {
+            calls[i] = service.findUserProfileById("user" + i);
+        }
+        CompletableFuture.allOf(calls).get(30, TimeUnit.SECONDS);
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    @Test
+    void testBurstTimeFallsWithTheConcurrencyLimit() throws Exception {
+        long serial = burstMillis(1);
+        long eight = burstMillis(8);
+        long unbounded = burstMillis(CALLS);
+
+        // A limit never lets more jobs overlap than it allows, so each burst takes at least its number of rounds
+        assertTrue(serial >= CALLS * JOB_LATENCY_MS, "limit 1 took " + serial + " ms");
+        assertTrue(eight >= CALLS / 8 * JOB_LATENCY_MS, "limit 8 took " + eight + " ms");
+        // Ideally 8x each; the margin absorbs scheduling overhead
+        assertTrue(serial >= 4 * eight, "limit 1 took " + serial + " ms, limit 8 " + eight + " ms");
+        assertTrue(eight >= 2 * unbounded, "limit 8 took " + eight + " ms, limit 64 " + unbounded + " ms");
+        assertEquals(3 * CALLS, fakeBigQuery.jobIds().size());
+    }
+}
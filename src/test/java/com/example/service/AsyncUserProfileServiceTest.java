@@ -0,0 +1,148 @@
+package com.example.service;
+
+import com.example.model.UserProfile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncUserProfileServiceTest {
+
+    private final FakeBigQuery fakeBigQuery = new FakeBigQuery();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final UserProfileService userProfileService =
+            new UserProfileService(fakeBigQuery.bigQuery(), "test-project", "test_dataset", "user_profiles");
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private AsyncUserProfileService asyncService(int maxConcurrentCalls) {
+        return new AsyncUserProfileService(userProfileService, fakeBigQuery.bigQuery(), executor, maxConcurrentCalls);
+    }
+
+    @Test
+    void testCallReturnsBeforeTheJobFinishes() throws Exception {
+        UserProfile stored = UserProfileFixtures.profile("u1", 1);
+        fakeBigQuery.withLatency(200).onQuery(config -> FakeBigQuery.result(List.of(UserProfileFixtures.row(stored))));
+
+        long start = System.nanoTime();
+        CompletableFuture<Optional<UserProfile>> result = asyncService(4).findUserProfileById("u1");
+        long submitMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(submitMillis < 100, "submitting took " + submitMillis + " ms");
+        assertEquals("u1", result.get(5, TimeUnit.SECONDS).orElseThrow().getId());
+        assertEquals(1, fakeBigQuery.jobIds().size());
+    }
+
+    @Test
+    void testConcurrencyIsBounded() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        fakeBigQuery.onQuery(config -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            return FakeBigQuery.emptyResult();
+        });
+        AsyncUserProfileService service = asyncService(3);
+
+        CompletableFuture<?>[] calls = new CompletableFuture<?>[20];
+        for (int i = 0; i < calls.length; i++) {
+            calls[i] = service.deleteUserProfileById("user" + i);
+        }
+        CompletableFuture.allOf(calls).get(10, TimeUnit.SECONDS);
+
+        assertEquals(3, maxRunning.get());
+        assertEquals(20, fakeBigQuery.queries().size());
+        assertEquals(0, service.waitingCount());
+    }
+
+    @Test
+    void testCancelCancelsTheRunningJob() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        fakeBigQuery.onQuery(config -> {
+            started.countDown();
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("job interrupted", e);
+            }
+            return FakeBigQuery.emptyResult();
+        });
+        AsyncUserProfileService service = asyncService(1);
+
+        CompletableFuture<List<UserProfile>> scan = service.getAllUserProfiles();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertTrue(scan.cancel(true));
+
+        assertTrue(scan.isCancelled());
+        assertEquals(fakeBigQuery.jobIds(), fakeBigQuery.cancelledJobs());
+
+        // The permit of the cancelled call is released once its thread stops
+        fakeBigQuery.onQuery(config -> FakeBigQuery.emptyResult());
+        service.deleteUserProfileById("u1").get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void testCallCancelledWhileQueuedNeverRuns() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        fakeBigQuery.onQuery(config -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return FakeBigQuery.emptyResult();
+        });
+        AsyncUserProfileService service = asyncService(1);
+
+        CompletableFuture<Void> running = service.deleteUserProfileById("u1");
+        CompletableFuture<Void> queued = service.deleteUserProfileById("u2");
+        assertEquals(1, service.waitingCount());
+        queued.cancel(true);
+        release.countDown();
+        running.get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, fakeBigQuery.queries().size());
+        assertTrue(fakeBigQuery.cancelledJobs().isEmpty());
+    }
+
+    @Test
+    void testFailuresCompleteTheFutureExceptionally() {
+        fakeBigQuery.onQuery(config -> {
+            throw new IllegalStateException("backend unavailable");
+        });
+
+        CompletableFuture<UserProfile> result = asyncService(2).saveUserProfile(UserProfileFixtures.profile("u1", 1));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+        assertEquals("backend unavailable", e.getCause().getMessage());
+    }
+
+    @Test
+    void testSynchronousCallsKeepUsingImplicitJobIds() {
+        fakeBigQuery.onQuery(config -> FakeBigQuery.emptyResult());
+
+        userProfileService.deleteUserProfileById("u1");
+
+        assertEquals(1, fakeBigQuery.queries().size());
+        assertTrue(fakeBigQuery.jobIds().isEmpty());
+    }
+}
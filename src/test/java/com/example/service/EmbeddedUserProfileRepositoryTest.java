@@ -0,0 +1,197 @@
+package com.example.service;
+
+import com.example.model.Address;
+import com.example.model.UserProfile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmbeddedUserProfileRepositoryTest {
+
+    @TempDir
+    Path dir;
+
+    private EmbeddedUserProfileRepository repository;
+
+    private EmbeddedUserProfileRepository open(long compactionMinGarbageBytes) {
+        repository = new EmbeddedUserProfileRepository(dir.resolve("store.log"), false, compactionMinGarbageBytes, 0.5);
+        return repository;
+    }
+
+    @AfterEach
+    void close() {
+        if (repository != null) {
+            repository.close();
+        }
+    }
+
+    private static List<String> ids(List<UserProfile> profiles) {
+        return profiles.stream().map(UserProfile::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    void testSavesFindsAndDeletesProfiles() {
+        EmbeddedUserProfileRepository store = open(Long.MAX_VALUE);
+        UserProfile saved = store.saveUserProfile(new UserProfile(null, "Ann", null, null, null));
+        store.saveAll(UserProfileFixtures.profiles(3, 2));
+
+        assertNotNull(saved.getId());
+        UserProfile found = store.findUserProfileById(saved.getId()).orElseThrow();
+        assertEquals("Ann", found.getFirstName());
+        assertNull(found.getLastName());
+        assertNull(found.getDob());
+        assertNull(found.getAddresses());
+        assertEquals(2, store.findUserProfileById("user1").orElseThrow().getAddresses().size());
+
+        store.deleteUserProfileById("user1");
+        store.deleteUserProfileById("missing");
+
+        assertTrue(store.findUserProfileById("user1").isEmpty());
+        assertEquals(List.of("user2", "user0"), ids(store.findAllByIds(List.of("user2", "user1", "user0", "user2"))));
+        assertEquals(3, store.size());
+    }
+
+    @Test
+    void testStoresACopyOfTheProfile() {
+        EmbeddedUserProfileRepository store = open(Long.MAX_VALUE);
+        UserProfile profile = UserProfileFixtures.profile("u1", 1);
+        store.saveUserProfile(profile);
+
+        profile.getAddresses().get(0).setCity("Elsewhere");
+
+        assertEquals("Anytown", store.findUserProfileById("u1").orElseThrow().getAddresses().get(0).getCity());
+    }
+
+    @Test
+    void testUpsertReplacesTheLatestVersion() {
+        EmbeddedUserProfileRepository store = open(Long.MAX_VALUE);
+        store.saveUserProfile(UserProfileFixtures.profile("u1", 1));
+        UserProfile renamed = UserProfileFixtures.profile("u1", 3);
+        renamed.setLastName("Smith");
+
+        store.upsertAll(List.of(UserProfileFixtures.profile("u1", 2), renamed));
+
+        UserProfile found = store.findUserProfileById("u1").orElseThrow();
+        assertEquals("Smith", found.getLastName());
+        assertEquals(3, found.getAddresses().size());
+        assertEquals(1, store.size());
+        assertThrows(IllegalArgumentException.class,
+                () -> store.updateUserProfile(new UserProfile(null, "A", "B", null, null)));
+    }
+
+    @Test
+    void testProjectionsSkipUnrequestedFields() {
+        EmbeddedUserProfileRepository store = open(Long.MAX_VALUE);
+        store.saveUserProfile(UserProfileFixtures.profile("u1", 2));
+
+        UserProfile summary = store.findUserProfileById("u1", UserProfileField.SUMMARY).orElseThrow();
+        assertEquals("Doe", summary.getLastName());
+        assertNull(summary.getAddresses());
+        UserProfile addressesOnly = store.getAllUserProfiles(Set.of(UserProfileField.ADDRESSES)).get(0);
+        assertNull(addressesOnly.getFirstName());
+        assertNull(addressesOnly.getDob());
+        assertEquals(2, addressesOnly.getAddresses().size());
+        assertEquals(LocalDate.of(1990, 1, 15), store.findUserProfileSummaryById("u1").orElseThrow().getDob());
+    }
+
+    @Test
+    void testSecondaryLookupsScanTheStore() {
+        EmbeddedUserProfileRepository store = open(Long.MAX_VALUE);
+        store.saveAll(List.of(
+                new UserProfile("u1", "A", "Smith", LocalDate.of(1980, 5, 1),
+                        List.of(new Address("Current", "1 Main St", "Springfield", "IL", "62701", "2"))),
+                new UserProfile("u2", "B", "Smithers", LocalDate.of(1990, 1, 1),
+                        List.of(new Address("Current", "2 Main St", "Springfield", "MA", "01101", "1"))),
+                new UserProfile("u3", "C", "Jones", null, null)));
+
+        assertEquals(List.of("u1", "u2"), ids(store.findByLastNamePrefix("Smi")));
+        assertEquals(1, store.findByLastNamePrefix("Smith").get(0).getAddresses().size());
+        assertEquals(List.of("u1"), ids(store.findByDobBetween(LocalDate.of(1980, 1, 1), LocalDate.of(1980, 12, 31))));
+        assertEquals(List.of("u1", "u2"), ids(store.findByAddressCity("Springfield", null)));
+        assertEquals(List.of("u2"), ids(store.findByAddressCity("Springfield", "MA")));
+        assertThrows(IllegalArgumentException.class, () -> store.findByLastNamePrefix(""));
+    }
+
+    @Test
+    void testReopenRebuildsTheIndexAndIgnoresATornRecord() throws IOException {
+        EmbeddedUserProfileRepository store = open(Long.MAX_VALUE);
+        store.saveAll(UserProfileFixtures.profiles(3, 1));
+        store.deleteUserProfileById("user0");
+        long logBytes = store.getLogBytes();
+        store.close();
+
+        // A crash in the middle of an append leaves a length without a matching body behind
+        try (FileChannel file = FileChannel.open(dir.resolve("store.log"), StandardOpenOption.WRITE)) {
+            file.write(ByteBuffer.allocate(12).putInt(100).putInt(12345).putInt(7).flip(), logBytes);
+        }
+
+        store = open(Long.MAX_VALUE);
+        assertEquals(logBytes, store.getLogBytes());
+        assertEquals(List.of("user1", "user2"), ids(store.getAllUserProfiles()));
+
+        store.saveUserProfile(UserProfileFixtures.profile("user3", 0));
+        store.close();
+        assertEquals(3, open(Long.MAX_VALUE).size());
+    }
+
+    @Test
+    void testCompactionReclaimsOverwrittenVersions() {
+        EmbeddedUserProfileRepository store = open(Long.MAX_VALUE);
+        for (int i = 0; i < 5; i++) {
+            store.upsertAll(UserProfileFixtures.profiles(10, i + 1));
+        }
+        store.deleteUserProfileById("user9");
+        long logBytes = store.getLogBytes();
+
+        long reclaimed = store.compact();
+
+        assertTrue(reclaimed > logBytes / 2);
+        assertEquals(logBytes - reclaimed, store.getLogBytes());
+        assertEquals(0, store.getGarbageBytes());
+        assertEquals(9, store.size());
+        assertEquals(5, store.findUserProfileById("user3").orElseThrow().getAddresses().size());
+        store.saveUserProfile(UserProfileFixtures.profile("user9", 1));
+        store.close();
+        assertEquals(10, open(Long.MAX_VALUE).size());
+    }
+
+    @Test
+    void testCompactsOnceGarbageOutweighsLiveRecords() {
+        EmbeddedUserProfileRepository store = open(1);
+        store.saveUserProfile(UserProfileFixtures.profile("u1", 1));
+        store.saveUserProfile(UserProfileFixtures.profile("u2", 1));
+        long twoProfiles = store.getLogBytes();
+
+        store.updateUserProfile(UserProfileFixtures.profile("u1", 1));
+        store.updateUserProfile(UserProfileFixtures.profile("u1", 1));
+
+        assertEquals(twoProfiles, store.getLogBytes());
+        assertEquals(0, store.getGarbageBytes());
+    }
+
+    @Test
+    void testGrowsPastTheInitialMapping() {
+        EmbeddedUserProfileRepository store = open(Long.MAX_VALUE);
+        for (int i = 0; i < 20; i++) {
+            store.saveAll(UserProfileFixtures.profiles(200, 10).stream()
+                    .peek(profile -> profile.setId(null))
+                    .collect(Collectors.toList()));
+        }
+
+        assertTrue(store.getLogBytes() > 1 << 20);
+        assertEquals(4000, store.size());
+        assertEquals(4000, store.getAllUserProfiles().size());
+    }
+}
@@ -0,0 +1,364 @@
+package com.example.service;
+
+import com.google.cloud.bigquery.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * Local stand-in for {@link BigQuery} used by the service tests.
+ * Records every query job, streaming insert and table read it receives, answers them through replaceable
+ * handlers and can add a fixed latency to each call to mimic job round trips. Job IDs passed to {@code query},
+ * job cancellations and dry runs created through {@code create} are recorded as well. Query jobs created through
+ * {@code create} run like {@code query} with their job ID and return a finished job carrying the statistics given by
+ * {@link #onJobStatistics(Function)}; {@code getJob} returns such a job by its ID.
+ * Faults can be injected: queries failing with a given BigQuery error reason, or jobs that run until cancelled.
+ */
+class FakeBigQuery {
+
+    private final BigQuery bigQuery;
+    private final List<QueryJobConfiguration> queries = new CopyOnWriteArrayList<>();
+    private final List<InsertAllRequest> insertAllRequests = new CopyOnWriteArrayList<>();
+    private final List<List<Object>> listTableDataCalls = new CopyOnWriteArrayList<>();
+    private final List<JobId> jobIds = new CopyOnWriteArrayList<>();
+    private final List<JobId> cancelledJobs = new CopyOnWriteArrayList<>();
+    private final List<JobInfo> createdJobs = new CopyOnWriteArrayList<>();
+    private final Map<JobId, Job> jobs = new ConcurrentHashMap<>();
+    private final Queue<String> queryFaults = new ConcurrentLinkedQueue<>();
+    private final Queue<String> pollFaults = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<JobId> currentJob = new ThreadLocal<>();
+    private volatile long latencyMillis;
+    private volatile Function<QueryJobConfiguration, TableResult> queryHandler = config -> emptyResult();
+    private volatile Function<InsertAllRequest, InsertAllResponse> insertAllHandler = request -> insertAllResponse(Map.of());
+    private volatile Function<List<Object>, TableResult> listTableDataHandler = args -> emptyResult();
+    private volatile Function<JobId, JobStatistics> jobStatisticsHandler = jobId -> null;
+    private volatile Function<JobInfo, Job> createJobHandler = jobInfo -> null;
+    private volatile Table table;
+
+    FakeBigQuery() {
+        this.bigQuery = mock(BigQuery.class, invocation -> {
+            switch (invocation.getMethod().getName()) {
+                case "query":
+                    JobId jobId = null;
+                    if (invocation.getArguments().length > 1 && invocation.getArgument(1) instanceof JobId) {
+                        jobId = invocation.getArgument(1);
+                        jobIds.add(jobId);
+                    }
+                    currentJob.set(jobId);
+                    try {
+                        return query(invocation.getArgument(0));
+                    } finally {
+                        currentJob.remove();
+                    }
+                case "cancel":
+                    cancelledJobs.add(invocation.getArgument(0));
+                    return true;
+                case "insertAll":
+                    return insertAll(invocation.getArgument(0));
+                case "listTableData":
+                    return listTableData(invocation.getArguments());
+                case "getTable":
+                    return table;
+                case "create":
+                    if (invocation.getArgument(0) instanceof JobInfo) {
+                        JobInfo jobInfo = invocation.getArgument(0);
+                        if (jobInfo.getConfiguration() instanceof QueryJobConfiguration
+                                && !Boolean.TRUE.equals(((QueryJobConfiguration) jobInfo.getConfiguration()).dryRun())) {
+                            return runJob(jobInfo);
+                        }
+                        createdJobs.add(jobInfo);
+                        return createJobHandler.apply(jobInfo);
+                    }
+                    return RETURNS_DEFAULTS.answer(invocation);
+                case "getJob":
+                    return invocation.getArgument(0) instanceof JobId ? jobs.get(invocation.<JobId>getArgument(0)) : null;
+                default:
+                    return RETURNS_DEFAULTS.answer(invocation);
+            }
+        });
+    }
+
+    BigQuery bigQuery() {
+        return bigQuery;
+    }
+
+    List<QueryJobConfiguration> queries() {
+        return queries;
+    }
+
+    List<InsertAllRequest> insertAllRequests() {
+        return insertAllRequests;
+    }
+
+    /**
+     * Arguments of every {@code listTableData} call, options included.
+     */
+    List<List<Object>> listTableDataCalls() {
+        return listTableDataCalls;
+    }
+
+    /**
+     * IDs of the jobs started with an explicit job ID, through {@code query} or {@code create}, in start order.
+     */
+    List<JobId> jobIds() {
+        return jobIds;
+    }
+
+    List<JobId> cancelledJobs() {
+        return cancelledJobs;
+    }
+
+    /**
+     * Dry runs created through {@code create}.
+     */
+    List<JobInfo> createdJobs() {
+        return createdJobs;
+    }
+
+    FakeBigQuery withLatency(long millis) {
+        this.latencyMillis = millis;
+        return this;
+    }
+
+    FakeBigQuery onQuery(Function<QueryJobConfiguration, TableResult> handler) {
+        this.queryHandler = handler;
+        return this;
+    }
+
+    /**
+     * Makes the next queries fail, one per reason and in order, with a {@link BigQueryException} carrying the reason,
+     * the way BigQuery rejects a job. The queries are still recorded.
+     */
+    FakeBigQuery failNextQueries(String... reasons) {
+        queryFaults.addAll(Arrays.asList(reasons));
+        return this;
+    }
+
+    /**
+     * Makes the next waits for a job created through {@code create} fail, one per reason and in order, the way a
+     * dropped connection fails the polling of a job that still runs to completion.
+     */
+    FakeBigQuery failNextPolls(String... reasons) {
+        pollFaults.addAll(Arrays.asList(reasons));
+        return this;
+    }
+
+    /**
+     * Query handler step for a job that runs until it is cancelled, then fails with reason {@code stopped}.
+     * The job must have been started with an explicit job ID.
+     */
+    TableResult runUntilCancelled() {
+        JobId jobId = currentJob.get();
+        if (jobId == null) {
+            throw new IllegalStateException("Only jobs started with a job ID can be cancelled");
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!cancelledJobs.contains(jobId)) {
+            if (System.nanoTime() - deadline > 0) {
+                throw new IllegalStateException("Job " + jobId.getJob() + " was never cancelled");
+            }
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+        throw fault("stopped");
+    }
+
+    FakeBigQuery onInsertAll(Function<InsertAllRequest, InsertAllResponse> handler) {
+        this.insertAllHandler = handler;
+        return this;
+    }
+
+    FakeBigQuery onListTableData(Function<List<Object>, TableResult> handler) {
+        this.listTableDataHandler = handler;
+        return this;
+    }
+
+    /**
+     * Statistics of the jobs created through {@code create}, read when the service asks the finished job for them.
+     */
+    FakeBigQuery onJobStatistics(Function<JobId, JobStatistics> handler) {
+        this.jobStatisticsHandler = handler;
+        return this;
+    }
+
+    FakeBigQuery onCreateJob(Function<JobInfo, Job> handler) {
+        this.createJobHandler = handler;
+        return this;
+    }
+
+    FakeBigQuery withTableSchema(Schema schema) {
+        Table fakeTable = mock(Table.class);
+        StandardTableDefinition definition = StandardTableDefinition.of(schema);
+        when(fakeTable.getDefinition()).thenReturn(definition);
+        this.table = fakeTable;
+        return this;
+    }
+
+    static TableResult emptyResult() {
+        return result(List.of());
+    }
+
+    /**
+     * A single page result holding the given rows.
+     */
+    static TableResult result(List<FieldValueList> rows) {
+        TableResult result = mock(TableResult.class);
+        when(result.getTotalRows()).thenReturn((long) rows.size());
+        when(result.iterateAll()).thenReturn(rows);
+        when(result.getValues()).thenReturn(rows);
+        when(result.hasNextPage()).thenReturn(false);
+        return result;
+    }
+
+    /**
+     * Splits rows into chained pages; page tokens are {@code page-<n>} for the n-th page after the first.
+     * @return The first page.
+     */
+    static TableResult pages(List<FieldValueList> rows, int pageSize) {
+        List<TableResult> pages = new ArrayList<>();
+        for (int from = 0; from == 0 || from < rows.size(); from += pageSize) {
+            List<FieldValueList> pageRows = rows.subList(from, Math.min(from + pageSize, rows.size()));
+            TableResult page = mock(TableResult.class);
+            when(page.getTotalRows()).thenReturn((long) rows.size());
+            when(page.getValues()).thenReturn(pageRows);
+            pages.add(page);
+        }
+        for (int i = 0; i < pages.size(); i++) {
+            TableResult page = pages.get(i);
+            boolean hasNext = i + 1 < pages.size();
+            when(page.hasNextPage()).thenReturn(hasNext);
+            when(page.getNextPage()).thenReturn(hasNext ? pages.get(i + 1) : null);
+            when(page.getNextPageToken()).thenReturn(hasNext ? "page-" + (i + 1) : null);
+            when(page.iterateAll()).thenReturn(rows.subList(Math.min(i * pageSize, rows.size()), rows.size()));
+        }
+        return pages.get(0);
+    }
+
+    /**
+     * Statistics of a finished query job.
+     */
+    static JobStatistics.QueryStatistics queryStatistics(long bytesProcessed, long bytesBilled, long slotMs, boolean cacheHit) {
+        JobStatistics.QueryStatistics statistics = mock(JobStatistics.QueryStatistics.class);
+        when(statistics.getTotalBytesProcessed()).thenReturn(bytesProcessed);
+        when(statistics.getTotalBytesBilled()).thenReturn(bytesBilled);
+        when(statistics.getTotalSlotMs()).thenReturn(slotMs);
+        when(statistics.getCacheHit()).thenReturn(cacheHit);
+        return statistics;
+    }
+
+    /**
+     * Statistics of a finished DML job that changed the given number of rows.
+     */
+    static JobStatistics.QueryStatistics dmlStatistics(long affectedRows) {
+        JobStatistics.QueryStatistics statistics = mock(JobStatistics.QueryStatistics.class);
+        when(statistics.getNumDmlAffectedRows()).thenReturn(affectedRows);
+        return statistics;
+    }
+
+    static InsertAllResponse insertAllResponse(Map<Long, List<BigQueryError>> insertErrors) {
+        InsertAllResponse response = mock(InsertAllResponse.class);
+        when(response.hasErrors()).thenReturn(!insertErrors.isEmpty());
+        when(response.getInsertErrors()).thenReturn(insertErrors);
+        return response;
+    }
+
+    private TableResult query(QueryJobConfiguration config) throws InterruptedException {
+        queries.add(config);
+        simulateLatency();
+        String fault = queryFaults.poll();
+        if (fault != null) {
+            throw fault(fault);
+        }
+        return queryHandler.apply(config);
+    }
+
+    // Runs the job to completion on create; waiting for it then returns at once
+    private Job runJob(JobInfo jobInfo) throws InterruptedException {
+        JobId jobId = jobInfo.getJobId();
+        jobIds.add(jobId);
+        currentJob.set(jobId);
+        TableResult result;
+        try {
+            result = query(jobInfo.getConfiguration());
+        } finally {
+            currentJob.remove();
+        }
+        Job job = mock(Job.class, invocation -> {
+            switch (invocation.getMethod().getName()) {
+                case "waitFor":
+                    String fault = pollFaults.poll();
+                    if (fault != null) {
+                        throw fault(fault);
+                    }
+                    return invocation.getMock();
+                case "getJobId":
+                    return jobId;
+                case "getQueryResults":
+                    return result;
+                case "getStatistics":
+                    return jobStatisticsHandler.apply(jobId);
+                default:
+                    return RETURNS_DEFAULTS.answer(invocation);
+            }
+        });
+        jobs.put(jobId, job);
+        return job;
+    }
+
+    private static BigQueryException fault(String reason) {
+        int code;
+        switch (reason) {
+            case "rateLimitExceeded":
+            case "quotaExceeded":
+                code = 403;
+                break;
+            case "backendError":
+            case "internalError":
+                code = 500;
+                break;
+            default:
+                code = 400;
+        }
+        return new BigQueryException(code, "Injected fault: " + reason, new BigQueryError(reason, null, "Injected fault: " + reason));
+    }
+
+    private InsertAllResponse insertAll(InsertAllRequest request) throws InterruptedException {
+        insertAllRequests.add(request);
+        simulateLatency();
+        return insertAllHandler.apply(request);
+    }
+
+    private TableResult listTableData(Object[] arguments) throws InterruptedException {
+        List<Object> flattened = new ArrayList<>();
+        for (Object argument : arguments) {
+            if (argument instanceof Object[]) {
+                flattened.addAll(Arrays.asList((Object[]) argument));
+            } else {
+                flattened.add(argument);
+            }
+        }
+        listTableDataCalls.add(flattened);
+        simulateLatency();
+        return listTableDataHandler.apply(flattened);
+    }
+
+    private void simulateLatency() throws InterruptedException {
+        if (latencyMillis > 0) {
+            Thread.sleep(latencyMillis);
+        }
+    }
+}
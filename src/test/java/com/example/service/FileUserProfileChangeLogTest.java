@@ -0,0 +1,129 @@
+package com.example.service;
+
+import com.example.model.Address;
+import com.example.model.UserProfile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileUserProfileChangeLogTest {
+
+    @TempDir
+    Path dir;
+
+    private Path logFile() {
+        return dir.resolve("changes.log");
+    }
+
+    private static UserProfileChange update(long version, String id, String lastName) {
+        return new UserProfileChange(version, UserProfileChangeType.UPDATE, 1_700_000_000_000L + version, id,
+                new UserProfile(id, "John", lastName, LocalDate.of(1990, 1, 15),
+                        List.of(new Address("Current", "1 Main St", "Anytown", "CA", "90210", "1"))));
+    }
+
+    private static UserProfileChange delete(long version, String id) {
+        return new UserProfileChange(version, UserProfileChangeType.DELETE, 1_700_000_000_000L + version, id, null);
+    }
+
+    @Test
+    void testRoundTripsChangesWithEscapedFields() {
+        UserProfileChange tricky = new UserProfileChange(1, UserProfileChangeType.CREATE, 5, "u\t1",
+                new UserProfile("u\t1", "Line\nbreak", "Back\\slash", null, null));
+        try (FileUserProfileChangeLog log = new FileUserProfileChangeLog(logFile(), false)) {
+            log.publish(List.of(tricky, delete(2, "u2")));
+
+            List<UserProfileChange> read = log.changesAfter(0);
+            assertEquals(2, read.size());
+            UserProfile profile = read.get(0).getProfile();
+            assertEquals("u\t1", read.get(0).getId());
+            assertEquals("Line\nbreak", profile.getFirstName());
+            assertEquals("Back\\slash", profile.getLastName());
+            assertNull(profile.getDob());
+            assertNull(profile.getAddresses());
+            assertEquals(5, read.get(0).getTimestampMillis());
+            assertEquals(UserProfileChangeType.DELETE, read.get(1).getType());
+            assertNull(read.get(1).getProfile());
+        }
+    }
+
+    @Test
+    void testReadsOnlyChangesAfterTheVersion() {
+        try (FileUserProfileChangeLog log = new FileUserProfileChangeLog(logFile(), false)) {
+            log.publish(List.of(update(1, "u1", "A"), update(2, "u2", "B")));
+            log.publish(List.of(update(3, "u1", "C")));
+
+            List<UserProfileChange> read = log.changesAfter(2);
+            assertEquals(1, read.size());
+            assertEquals("C", read.get(0).getProfile().getLastName());
+            assertEquals("Anytown", read.get(0).getProfile().getAddresses().get(0).getCity());
+            assertTrue(log.changesAfter(3).isEmpty());
+        }
+    }
+
+    @Test
+    void testReopenContinuesAfterLastCompleteLine() throws IOException {
+        try (FileUserProfileChangeLog log = new FileUserProfileChangeLog(logFile(), true)) {
+            log.publish(List.of(update(1, "u1", "A"), update(2, "u2", "B")));
+        }
+        // A crash in the middle of an append leaves a partial line behind
+        Files.write(logFile(), "3\tUPDATE\t17".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        try (FileUserProfileChangeLog log = new FileUserProfileChangeLog(logFile(), false)) {
+            assertEquals(2, log.lastVersion());
+            log.publish(List.of(delete(3, "u1")));
+            assertEquals(3, log.changesAfter(0).size());
+        }
+    }
+
+    @Test
+    void testCompactionKeepsLatestChangePerProfile() {
+        try (FileUserProfileChangeLog log = new FileUserProfileChangeLog(logFile(), false)) {
+            log.publish(List.of(update(1, "u1", "A"), update(2, "u2", "B"), update(3, "u1", "C")));
+            log.publish(List.of(delete(4, "u2"), update(5, "u3", "D")));
+            UserProfileSnapshot before = UserProfileSnapshot.replay(log);
+
+            assertEquals(3, log.compact());
+
+            List<UserProfileChange> compacted = log.changesAfter(0);
+            assertEquals(List.of(3L, 4L, 5L), compacted.stream().map(UserProfileChange::getVersion).collect(Collectors.toList()));
+            UserProfileSnapshot after = UserProfileSnapshot.replay(log);
+            assertEquals(before.getVersion(), after.getVersion());
+            assertEquals(2, after.size());
+            assertEquals("C", after.get("u1").orElseThrow().getLastName());
+            assertTrue(after.get("u2").isEmpty());
+
+            log.publish(List.of(update(6, "u2", "E")));
+            assertEquals(6, log.lastVersion());
+            assertEquals(1, after.catchUp(log));
+        }
+    }
+
+    @Test
+    void testServiceNumberingSurvivesRestart() {
+        FakeBigQuery fakeBigQuery = new FakeBigQuery();
+        try (FileUserProfileChangeLog log = new FileUserProfileChangeLog(logFile(), false)) {
+            new UserProfileService(fakeBigQuery.bigQuery(), "test-project", "test_dataset", "user_profiles",
+                    UserProfileServiceOptions.newBuilder().setChangeSink(log).build())
+                    .saveAll(UserProfileFixtures.profiles(3, 1));
+        }
+        try (FileUserProfileChangeLog log = new FileUserProfileChangeLog(logFile(), false)) {
+            new UserProfileService(fakeBigQuery.bigQuery(), "test-project", "test_dataset", "user_profiles",
+                    UserProfileServiceOptions.newBuilder().setChangeSink(log).build())
+                    .deleteUserProfileById("user1");
+
+            UserProfileSnapshot snapshot = UserProfileSnapshot.replay(log);
+            assertEquals(4, snapshot.getVersion());
+            assertEquals(2, snapshot.size());
+        }
+    }
+}
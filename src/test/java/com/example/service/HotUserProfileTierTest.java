@@ -0,0 +1,103 @@
+package com.example.service;
+
+import com.example.model.UserProfile;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HotUserProfileTierTest {
+
+    @Test
+    void testReturnsCopiesOfStoredProfiles() {
+        HotUserProfileTier tier = new HotUserProfileTier(10, 1 << 20);
+        tier.put(UserProfileFixtures.profile("u1", 2));
+
+        UserProfile first = tier.get("u1", UserProfileField.ALL);
+        first.getAddresses().get(0).setCity("Elsewhere");
+
+        UserProfile second = tier.get("u1", UserProfileField.ALL);
+        assertEquals("Anytown", second.getAddresses().get(0).getCity());
+        assertNull(tier.get("u1", UserProfileField.SUMMARY).getAddresses());
+        assertNull(tier.get("u2", UserProfileField.ALL));
+        assertEquals(3, tier.stats().getHitCount());
+        assertEquals(1, tier.stats().getMissCount());
+    }
+
+    @Test
+    void testStoresMissingAddressesAsAnEmptyList() {
+        HotUserProfileTier tier = new HotUserProfileTier(10, 1 << 20);
+        tier.put(new UserProfile("u1", "A", "B", null, null));
+
+        assertEquals(List.of(), tier.get("u1", UserProfileField.ALL).getAddresses());
+        assertTrue(tier.matches(new UserProfile("u1", "A", "B", null, List.of())));
+        assertFalse(tier.matches(new UserProfile("u1", "A", "C", null, List.of())));
+    }
+
+    @Test
+    void testPutIfAbsentKeepsTheStoredProfile() {
+        HotUserProfileTier tier = new HotUserProfileTier(10, 1 << 20);
+        tier.put(UserProfileFixtures.profile("u1", 1));
+
+        assertFalse(tier.putIfAbsent(UserProfileFixtures.profile("u1", 3)));
+        assertEquals(1, tier.get("u1", UserProfileField.ALL).getAddresses().size());
+
+        tier.put(UserProfileFixtures.profile("u1", 3));
+        assertEquals(3, tier.get("u1", UserProfileField.ALL).getAddresses().size());
+        assertEquals(1, tier.stats().getEntryCount());
+    }
+
+    @Test
+    void testEvictsAProfileNotReadSinceTheHandPassed() {
+        HotUserProfileTier tier = new HotUserProfileTier(2, 1 << 20);
+        tier.put(UserProfileFixtures.profile("u1", 1));
+        tier.put(UserProfileFixtures.profile("u2", 1));
+        tier.get("u1", UserProfileField.ALL);
+
+        tier.put(UserProfileFixtures.profile("u3", 1));
+
+        assertNotNull(tier.get("u1", UserProfileField.ALL));
+        assertNull(tier.get("u2", UserProfileField.ALL));
+        assertNotNull(tier.get("u3", UserProfileField.ALL));
+        assertEquals(1, tier.stats().getEvictionCount());
+        assertTrue(tier.isFull());
+    }
+
+    @Test
+    void testStaysWithinTheByteBound() {
+        HotUserProfileTier sizing = new HotUserProfileTier(1, 1 << 20);
+        sizing.put(UserProfileFixtures.profile("user0", 5));
+        long profileBytes = sizing.stats().getTotalWeight();
+
+        HotUserProfileTier tier = new HotUserProfileTier(100, 3 * profileBytes);
+        for (UserProfile profile : UserProfileFixtures.profiles(10, 5)) {
+            tier.put(profile);
+        }
+
+        assertEquals(3, tier.stats().getEntryCount());
+        assertEquals(3 * profileBytes, tier.stats().getTotalWeight());
+        assertFalse(tier.putIfAbsent(UserProfileFixtures.profile("big", 100)));
+    }
+
+    @Test
+    void testRemovalKeepsOtherProfilesReachable() {
+        HotUserProfileTier tier = new HotUserProfileTier(1000, 1 << 24);
+        List<UserProfile> profiles = UserProfileFixtures.profiles(1000, 0);
+        profiles.forEach(tier::put);
+
+        for (int i = 0; i < 1000; i += 2) {
+            tier.remove("user" + i);
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i % 2 == 1, tier.get("user" + i, UserProfileField.SUMMARY) != null, "user" + i);
+        }
+        Set<String> sampled = new HashSet<>(tier.sampleIds(2000));
+        assertEquals(500, sampled.size());
+        assertTrue(sampled.contains("user1"));
+        assertFalse(sampled.contains("user0"));
+    }
+}
@@ -0,0 +1,254 @@
+package com.example.service;
+
+import com.example.model.Address;
+import com.example.model.UserProfile;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryUserProfileCacheTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final AtomicInteger loaderCalls = new AtomicInteger();
+
+    private Optional<UserProfile> load(String id) {
+        loaderCalls.incrementAndGet();
+        if (id.startsWith("missing")) {
+            return Optional.empty();
+        }
+        return Optional.of(new UserProfile(id, "John", "Doe", LocalDate.of(1990, 1, 15),
+                List.of(new Address("Home", "123 Main St", "Anytown", "CA", "90210", "5"))));
+    }
+
+    private InMemoryUserProfileCache newCache(int maxEntries, long maxWeight) {
+        return new InMemoryUserProfileCache(maxEntries, maxWeight, 1_000, 100, now::get);
+    }
+
+    @Test
+    void testSecondLookupIsAHit() {
+        InMemoryUserProfileCache cache = newCache(10, 100);
+
+        assertEquals("u1", cache.get("u1", this::load).get().getId());
+        assertEquals("u1", cache.get("u1", this::load).get().getId());
+
+        assertEquals(1, loaderCalls.get());
+        assertEquals(1, cache.stats().getHitCount());
+        assertEquals(1, cache.stats().getMissCount());
+        assertEquals(0.5, cache.stats().getHitRate());
+    }
+
+    @Test
+    void testMissesAreCachedForTheNegativeTtl() {
+        InMemoryUserProfileCache cache = newCache(10, 100);
+
+        assertTrue(cache.get("missing", this::load).isEmpty());
+        assertTrue(cache.get("missing", this::load).isEmpty());
+        assertEquals(1, loaderCalls.get());
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        assertTrue(cache.get("missing", this::load).isEmpty());
+        assertEquals(2, loaderCalls.get());
+    }
+
+    @Test
+    void testEntriesExpireAfterTtl() {
+        InMemoryUserProfileCache cache = newCache(10, 100);
+
+        cache.get("u1", this::load);
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(999));
+        cache.get("u1", this::load);
+        assertEquals(1, loaderCalls.get());
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        cache.get("u1", this::load);
+        assertEquals(2, loaderCalls.get());
+    }
+
+    @Test
+    void testLeastRecentlyUsedEntryIsEvictedByCount() {
+        InMemoryUserProfileCache cache = newCache(2, 100);
+
+        cache.get("u1", this::load);
+        cache.get("u2", this::load);
+        cache.get("u1", this::load);
+        cache.get("u3", this::load);
+
+        assertEquals(1, cache.stats().getEvictionCount());
+        assertEquals(2, cache.stats().getEntryCount());
+        cache.get("u1", this::load);
+        assertEquals(3, loaderCalls.get());
+        cache.get("u2", this::load);
+        assertEquals(4, loaderCalls.get());
+    }
+
+    @Test
+    void testEntriesAreEvictedByWeight() {
+        // Each loaded profile has one address and weighs 2
+        InMemoryUserProfileCache cache = newCache(10, 4);
+
+        cache.get("u1", this::load);
+        cache.get("u2", this::load);
+        cache.get("u3", this::load);
+
+        assertEquals(1, cache.stats().getEvictionCount());
+        assertEquals(4, cache.stats().getTotalWeight());
+    }
+
+    @Test
+    void testCallersDoNotShareTheCachedProfile() {
+        InMemoryUserProfileCache cache = newCache(10, 100);
+        cache.get("u1", this::load);
+
+        UserProfile first = cache.get("u1", this::load).get();
+        first.setFirstName("Jane");
+        first.getAddresses().clear();
+        UserProfile second = cache.get("u1", this::load).get();
+        second.getAddresses().get(0).setCity("Elsewhere");
+
+        assertNotSame(first, second);
+        UserProfile stale = cache.getStale("u1").get();
+        assertEquals("John", stale.getFirstName());
+        assertEquals(1, stale.getAddresses().size());
+        assertEquals("Anytown", stale.getAddresses().get(0).getCity());
+        assertEquals(1, loaderCalls.get());
+    }
+
+    @Test
+    void testLazyProfileIsCachedWithoutDecodingItsAddresses() {
+        InMemoryUserProfileCache cache = newCache(10, 100);
+        AtomicInteger decodes = new AtomicInteger();
+        Address address = new Address("Home", "123 Main St", "Anytown", "CA", "90210", "5");
+
+        UserProfile loaded = cache.get("u1", id -> Optional.of(new LazyAddressesUserProfile(id, "John", "Doe", null, () -> {
+            decodes.incrementAndGet();
+            return new ArrayList<>(List.of(address));
+        }, 1))).get();
+        UserProfile hit = cache.get("u1", this::load).get();
+
+        assertEquals(0, decodes.get());
+        assertEquals(2, cache.stats().getTotalWeight());
+        assertEquals(1, hit.getAddresses().size());
+        hit.getAddresses().clear();
+        assertEquals(1, loaded.getAddresses().size());
+        assertEquals(2, decodes.get());
+    }
+
+    @Test
+    void testInvalidateDropsEntry() {
+        InMemoryUserProfileCache cache = newCache(10, 100);
+
+        cache.get("missing-then-saved", this::load);
+        cache.invalidate("missing-then-saved");
+        cache.get("missing-then-saved", this::load);
+
+        assertEquals(2, loaderCalls.get());
+    }
+
+    @Test
+    void testConcurrentMissesShareOneLoad() throws Exception {
+        InMemoryUserProfileCache cache = newCache(10, 100);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<Optional<UserProfile>> first = executor.submit(() -> cache.get("u1", id -> {
+                loading.countDown();
+                awaitQuietly(release);
+                return load(id);
+            }));
+            loading.await(5, TimeUnit.SECONDS);
+            Future<Optional<UserProfile>> second = executor.submit(() -> cache.get("u1", this::load));
+            Future<Optional<UserProfile>> third = executor.submit(() -> cache.get("u1", this::load));
+            while (cache.stats().getMissCount() < 3) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            assertEquals("u1", first.get(5, TimeUnit.SECONDS).get().getId());
+            assertEquals("u1", second.get(5, TimeUnit.SECONDS).get().getId());
+            assertEquals("u1", third.get(5, TimeUnit.SECONDS).get().getId());
+            assertEquals(1, loaderCalls.get());
+            assertEquals(1, cache.stats().getLoadCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testServiceWritesInvalidateCachedLookups() {
+        InMemoryUserProfileCache cache = newCache(10, 100);
+        FakeBigQuery fakeBigQuery = new FakeBigQuery();
+        UserProfileService service = new UserProfileService(fakeBigQuery.bigQuery(), "test-project", "test_dataset", "user_profiles",
+                UserProfileServiceOptions.newBuilder().setCache(cache).build());
+
+        assertTrue(service.findUserProfileById("u1").isEmpty());
+        assertTrue(service.findUserProfileById("u1").isEmpty());
+        assertEquals(1, fakeBigQuery.queries().size());
+
+        service.deleteUserProfileById("u1");
+        service.findUserProfileById("u1");
+        assertEquals(3, fakeBigQuery.queries().size());
+        assertEquals(1, service.getCacheStats().getHitCount());
+    }
+
+    @Test
+    void testLookupDuringAWriteDoesNotCacheTheOldRow() {
+        InMemoryUserProfileCache cache = newCache(10, 100);
+        FakeBigQuery fakeBigQuery = new FakeBigQuery();
+        UserProfileService service = new UserProfileService(fakeBigQuery.bigQuery(), "test-project", "test_dataset", "user_profiles",
+                UserProfileServiceOptions.newBuilder().setCache(cache).build());
+        UserProfile updated = UserProfileFixtures.profile("u1", 1);
+        updated.setFirstName("Jane");
+        AtomicReference<UserProfile> stored = new AtomicReference<>(UserProfileFixtures.profile("u1", 1));
+        fakeBigQuery.onQuery(config -> {
+            if (config.getQuery().startsWith("MERGE ")) {
+                // A lookup running while the job is in flight reads the old row
+                assertEquals("John", service.findUserProfileById("u1").get().getFirstName());
+                stored.set(updated);
+                return FakeBigQuery.emptyResult();
+            }
+            return FakeBigQuery.result(List.of(UserProfileFixtures.row(stored.get())));
+        });
+
+        service.updateUserProfile(updated);
+
+        assertEquals("Jane", service.findUserProfileById("u1").get().getFirstName());
+    }
+
+    @Test
+    void testFailedWriteStillInvalidatesCachedLookup() {
+        InMemoryUserProfileCache cache = newCache(10, 100);
+        FakeBigQuery fakeBigQuery = new FakeBigQuery();
+        UserProfileService service = new UserProfileService(fakeBigQuery.bigQuery(), "test-project", "test_dataset", "user_profiles",
+                UserProfileServiceOptions.newBuilder().setCache(cache).build());
+        assertTrue(service.findUserProfileById("u1").isEmpty());
+
+        // The job may have committed before the error reached the client
+        fakeBigQuery.failNextQueries("backendError");
+        assertThrows(RuntimeException.class, () -> service.saveUserProfile(UserProfileFixtures.profile("u1", 1)));
+        fakeBigQuery.onQuery(config -> FakeBigQuery.result(List.of(UserProfileFixtures.row(UserProfileFixtures.profile("u1", 1)))));
+
+        assertTrue(service.findUserProfileById("u1").isPresent());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MicrometerUserProfileMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final MicrometerUserProfileMetrics metrics = new MicrometerUserProfileMetrics(registry, true);
+
+    @Test
+    void testJobsAreTimedPerOperationAndOutcome() {
+        metrics.recordJob("select by ID", TimeUnit.MILLISECONDS.toNanos(40), true, null);
+        metrics.recordJob("select by ID", TimeUnit.MILLISECONDS.toNanos(60), true, null);
+        metrics.recordJob("upsert", TimeUnit.MILLISECONDS.toNanos(900), false, null);
+
+        assertEquals(2, registry.get("userprofile.bigquery.job").tag("operation", "select_by_id").tag("outcome", "success").timer().count());
+        assertEquals(100, registry.get("userprofile.bigquery.job").tag("operation", "select_by_id").timer().totalTime(TimeUnit.MILLISECONDS), 0.001);
+        assertEquals(1, registry.get("userprofile.bigquery.job").tag("operation", "upsert").tag("outcome", "failure").timer().count());
+        assertTrue(registry.find("userprofile.bigquery.bytes.billed").meters().isEmpty());
+    }
+
+    @Test
+    void testCallsAreTimedPerOperationAndOutcome() {
+        metrics.recordCall("find by ID", TimeUnit.MICROSECONDS.toNanos(50), true);
+        metrics.recordCall("find by ID", TimeUnit.MILLISECONDS.toNanos(40), false);
+
+        assertEquals(1, registry.get("userprofile.call").tag("operation", "find_by_id").tag("outcome", "success").timer().count());
+        assertEquals(1, registry.get("userprofile.call").tag("operation", "find_by_id").tag("outcome", "failure").timer().count());
+        assertTrue(registry.find("userprofile.bigquery.job").meters().isEmpty());
+    }
+
+    @Test
+    void testJobStatisticsFeedCostMeters() {
+        metrics.recordJob("select all", 1_000_000, true, new UserProfileJobStatistics("job-1", 5_000, 10_485_760, 1200, false));
+        metrics.recordJob("select all", 1_000_000, true, new UserProfileJobStatistics("job-2", 0, 0, 0, true));
+
+        assertEquals(10_485_760, registry.get("userprofile.bigquery.bytes.billed").tag("operation", "select_all").summary().totalAmount(), 0.001);
+        assertEquals(5_000, registry.get("userprofile.bigquery.bytes.processed").tag("operation", "select_all").summary().totalAmount(), 0.001);
+        assertEquals(1200, registry.get("userprofile.bigquery.slot.ms").tag("operation", "select_all").summary().totalAmount(), 0.001);
+        assertEquals(1, registry.get("userprofile.bigquery.cache").tag("operation", "select_all").tag("hit", "true").counter().count(), 0.001);
+        assertEquals(1, registry.get("userprofile.bigquery.cache").tag("operation", "select_all").tag("hit", "false").counter().count(), 0.001);
+    }
+}
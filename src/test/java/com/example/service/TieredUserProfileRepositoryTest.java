@@ -0,0 +1,279 @@
+package com.example.service;
+
+import com.example.model.UserProfile;
+import com.google.cloud.bigquery.QueryJobConfiguration;
+import com.google.cloud.bigquery.QueryParameterValue;
+import com.google.cloud.bigquery.TableResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class TieredUserProfileRepositoryTest {
+
+    private final FakeBigQuery fakeBigQuery = new FakeBigQuery().withTableSchema(UserProfileFixtures.SCHEMA);
+    // Rows the fake answers reads with; writes are only recorded
+    private final Map<String, UserProfile> table = new ConcurrentHashMap<>();
+    private final CountDownLatch writeStarted = new CountDownLatch(1);
+    private volatile CountDownLatch writeGate = new CountDownLatch(0);
+    private final CountDownLatch readStarted = new CountDownLatch(1);
+    private volatile CountDownLatch readGate = new CountDownLatch(0);
+    private volatile boolean failWrites;
+    private final UserProfileMetrics metrics = mock(UserProfileMetrics.class);
+    private TieredUserProfileRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        fakeBigQuery.onQuery(this::answer);
+        fakeBigQuery.onListTableData(args -> FakeBigQuery.result(UserProfileFixtures.rows(new ArrayList<>(table.values()))));
+    }
+
+    @AfterEach
+    void tearDown() {
+        writeGate.countDown();
+        readGate.countDown();
+        if (repository != null) {
+            repository.close();
+        }
+    }
+
+    private TieredUserProfileRepository repository(int hotMaxEntries) {
+        UserProfileService cold = new UserProfileService(fakeBigQuery.bigQuery(), "test-project", "test_dataset", "user_profiles");
+        repository = new TieredUserProfileRepository(cold, hotMaxEntries, 1 << 20, 100, 0, 10, 3, 1, metrics);
+        return repository;
+    }
+
+    private TableResult answer(QueryJobConfiguration config) {
+        switch (config.getLabels().get("operation")) {
+            case "select_by_id":
+                UserProfile profile = table.get(config.getNamedParameters().get("id").getValue());
+                readStarted.countDown();
+                await(readGate);
+                return FakeBigQuery.result(profile == null ? List.of() : List.of(UserProfileFixtures.row(profile)));
+            case "select_by_ids":
+                List<UserProfile> found = config.getNamedParameters().get("ids").getArrayValues().stream()
+                        .map(QueryParameterValue::getValue)
+                        .map(table::get)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toList());
+                return FakeBigQuery.result(UserProfileFixtures.rows(found));
+            default:
+                writeStarted.countDown();
+                await(writeGate);
+                if (failWrites) {
+                    throw new IllegalStateException("write rejected");
+                }
+                return FakeBigQuery.emptyResult();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private List<String> operations() {
+        return fakeBigQuery.queries().stream().map(config -> config.getLabels().get("operation")).collect(Collectors.toList());
+    }
+
+    private long reads() {
+        return operations().stream().filter(operation -> operation.startsWith("select")).count();
+    }
+
+    @Test
+    void testLookupsAfterTheFirstAreServedFromTheHotTier() {
+        table.put("u1", UserProfileFixtures.profile("u1", 2));
+        TieredUserProfileRepository tiered = repository(10);
+
+        assertEquals(2, tiered.findUserProfileById("u1").orElseThrow().getAddresses().size());
+        assertEquals("Doe", tiered.findUserProfileById("u1").orElseThrow().getLastName());
+        assertEquals(1, reads());
+        assertEquals(1, tiered.getHotTierStats().getHitCount());
+
+        table.put("u2", UserProfileFixtures.profile("u2", 1));
+        assertEquals(List.of("u2", "u1"), tiered.findAllByIds(List.of("u2", "u1", "u3")).stream()
+                .map(UserProfile::getId).collect(Collectors.toList()));
+        QueryJobConfiguration lookup = fakeBigQuery.queries().get(1);
+        assertEquals(2, lookup.getNamedParameters().get("ids").getArrayValues().size());
+        assertTrue(tiered.findUserProfileSummaryById("u2").isPresent());
+        assertEquals(2, reads());
+    }
+
+    @Test
+    void testWritesAreVisibleBeforeTheyReachBigQuery() throws InterruptedException {
+        writeGate = new CountDownLatch(1);
+        TieredUserProfileRepository tiered = repository(1);
+
+        tiered.saveUserProfile(UserProfileFixtures.profile("u1", 1));
+        assertTrue(writeStarted.await(10, TimeUnit.SECONDS));
+        tiered.saveUserProfile(UserProfileFixtures.profile("u2", 2));
+
+        // u1 was evicted by u2 but is still pending
+        assertEquals(1, tiered.findUserProfileById("u1").orElseThrow().getAddresses().size());
+        assertEquals(2, tiered.findUserProfileById("u2").orElseThrow().getAddresses().size());
+        tiered.deleteUserProfileById("u2");
+        assertTrue(tiered.findUserProfileById("u2").isEmpty());
+        assertTrue(tiered.findAllByIds(List.of("u1", "u2")).stream().allMatch(profile -> profile.getId().equals("u1")));
+        assertEquals(0, reads());
+        assertEquals(List.of("bulk_insert"), operations());
+
+        writeGate.countDown();
+        tiered.flush();
+
+        assertEquals(List.of("bulk_insert", "bulk_insert", "delete"), operations());
+        assertEquals(0, tiered.pendingCount());
+    }
+
+    @Test
+    void testConsecutiveWritesShareOneBigQueryCall() throws InterruptedException {
+        writeGate = new CountDownLatch(1);
+        TieredUserProfileRepository tiered = repository(10);
+
+        tiered.saveUserProfile(UserProfileFixtures.profile("u0", 1));
+        assertTrue(writeStarted.await(10, TimeUnit.SECONDS));
+        tiered.saveUserProfile(UserProfileFixtures.profile("u1", 1));
+        tiered.saveAll(List.of(UserProfileFixtures.profile("u2", 1), UserProfileFixtures.profile("u3", 1)));
+        tiered.updateUserProfile(UserProfileFixtures.profile("u1", 2));
+        writeGate.countDown();
+        tiered.flush();
+
+        assertEquals(List.of("bulk_insert", "bulk_insert", "upsert"), operations());
+        assertEquals("u3", fakeBigQuery.queries().get(1).getNamedParameters().get("id_2").getValue());
+        assertEquals(2, tiered.findUserProfileById("u1").orElseThrow().getAddresses().size());
+    }
+
+    @Test
+    void testCallerChangesDoNotReachEitherTier() {
+        writeGate = new CountDownLatch(1);
+        TieredUserProfileRepository tiered = repository(10);
+        UserProfile profile = UserProfileFixtures.profile("u1", 1);
+        tiered.saveUserProfile(profile);
+
+        profile.setLastName("Changed");
+
+        assertEquals("Doe", tiered.findUserProfileById("u1").orElseThrow().getLastName());
+        writeGate.countDown();
+        tiered.flush();
+        assertEquals("Doe", fakeBigQuery.queries().get(0).getNamedParameters().get("lastName_0").getValue());
+    }
+
+    @Test
+    void testSlowReadDoesNotBringBackAProfileDeletedMeanwhile() throws Exception {
+        table.put("u1", UserProfileFixtures.profile("u1", 1));
+        readGate = new CountDownLatch(1);
+        TieredUserProfileRepository tiered = repository(10);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Optional<UserProfile>> slowRead = executor.submit(() -> tiered.findUserProfileById("u1"));
+            assertTrue(readStarted.await(10, TimeUnit.SECONDS));
+
+            // The delete reaches BigQuery while the read still holds the old row
+            tiered.deleteUserProfileById("u1");
+            tiered.flush();
+            table.remove("u1");
+            readGate.countDown();
+
+            assertTrue(slowRead.get(10, TimeUnit.SECONDS).isPresent());
+            assertTrue(tiered.findUserProfileById("u1").isEmpty());
+            assertEquals(0, tiered.getHotTierStats().getEntryCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testFailedWriteFallsBackToBigQuery() {
+        failWrites = true;
+        TieredUserProfileRepository tiered = repository(10);
+
+        tiered.saveUserProfile(UserProfileFixtures.profile("u1", 1));
+        tiered.flush();
+
+        assertEquals(1, tiered.getFailedWriteCount());
+        verify(metrics).recordWriteThroughFailure(1);
+        assertTrue(tiered.findUserProfileById("u1").isEmpty());
+        assertEquals(1, reads());
+        // Rejected outright, so not retried
+        assertEquals(List.of("bulk_insert", "select_by_id"), operations());
+    }
+
+    @Test
+    void testTransientWriteFailureIsRetriedAsAnUpsert() {
+        fakeBigQuery.failNextQueries("backendError");
+        TieredUserProfileRepository tiered = repository(10);
+
+        tiered.saveUserProfile(UserProfileFixtures.profile("u1", 1));
+        tiered.flush();
+
+        assertEquals(List.of("bulk_insert", "upsert"), operations());
+        assertEquals(0, tiered.getFailedWriteCount());
+        verify(metrics, never()).recordWriteThroughFailure(1);
+    }
+
+    @Test
+    void testWriteIsDroppedOnceItsRetriesRunOut() {
+        fakeBigQuery.failNextQueries("backendError", "backendError", "backendError");
+        TieredUserProfileRepository tiered = repository(10);
+
+        tiered.saveUserProfile(UserProfileFixtures.profile("u1", 1));
+        tiered.flush();
+
+        assertEquals(List.of("bulk_insert", "upsert", "upsert"), operations());
+        assertEquals(1, tiered.getFailedWriteCount());
+        verify(metrics).recordWriteThroughFailure(1);
+    }
+
+    @Test
+    void testWarmUpFillsTheHotTierFromATableScan() {
+        UserProfileFixtures.profiles(3, 1).forEach(profile -> table.put(profile.getId(), profile));
+        TieredUserProfileRepository tiered = repository(2);
+
+        assertEquals(2, tiered.warmUp());
+
+        assertEquals(2, tiered.getHotTierStats().getEntryCount());
+        for (int i = 0; i < 3; i++) {
+            assertTrue(tiered.findUserProfileById("user" + i).isPresent());
+        }
+        assertEquals(1, reads());
+    }
+
+    @Test
+    void testConsistencyCheckDropsProfilesThatChangedInBigQuery() {
+        UserProfileFixtures.profiles(3, 1).forEach(profile -> table.put(profile.getId(), profile));
+        TieredUserProfileRepository tiered = repository(10);
+        tiered.findAllByIds(List.of("user0", "user1", "user2"));
+
+        UserProfile renamed = UserProfileFixtures.profile("user1", 1);
+        renamed.setLastName("Smith");
+        table.put("user1", renamed);
+        table.remove("user2");
+
+        UserProfileTierConsistency result = tiered.checkConsistency(10);
+
+        assertEquals(3, result.getCheckedCount());
+        assertEquals(1, result.getStaleCount());
+        assertEquals(1, result.getMissingCount());
+        assertEquals("Smith", tiered.findUserProfileById("user1").orElseThrow().getLastName());
+        assertTrue(tiered.checkConsistency(10).isConsistent());
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.service;
+
+import com.google.cloud.bigquery.FieldValue;
+import com.google.cloud.bigquery.FieldValueList;
+import com.google.cloud.bigquery.QueryJobConfiguration;
+import com.google.cloud.bigquery.TableResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserProfileAddressBackfillTest {
+
+    private final FakeBigQuery fakeBigQuery = new FakeBigQuery();
+    private final Deque<Long> pendingCounts = new ArrayDeque<>();
+
+    private UserProfileAddressBackfill backfill(int batchSize) {
+        fakeBigQuery.onQuery(config -> config.getQuery().startsWith("SELECT COUNT(*)")
+                ? count(pendingCounts.remove())
+                : FakeBigQuery.emptyResult());
+        return new UserProfileAddressBackfill(fakeBigQuery.bigQuery(), "test-project", "test_dataset", "user_profiles", batchSize);
+    }
+
+    private static TableResult count(long value) {
+        return FakeBigQuery.result(List.of(FieldValueList.of(List.of(FieldValue.of(FieldValue.Attribute.PRIMITIVE, String.valueOf(value))))));
+    }
+
+    private List<String> updates() {
+        return fakeBigQuery.queries().stream()
+                .map(QueryJobConfiguration::getQuery)
+                .filter(query -> query.startsWith("UPDATE"))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void testRewritesPendingRowsInBatches() {
+        pendingCounts.addAll(List.of(1200L, 0L));
+
+        long rewritten = backfill(500).backfill();
+
+        assertEquals(1200, rewritten);
+        List<String> updates = updates();
+        assertEquals(3, updates.size());
+        assertTrue(updates.get(0).startsWith("UPDATE `test-project.test_dataset.user_profiles` SET addresses = ARRAY(SELECT AS STRUCT"));
+        assertTrue(updates.get(0).contains("JSON_QUERY_ARRAY(addresses_json)"));
+        assertTrue(updates.get(0).endsWith("LIMIT @batchSize)"));
+        assertEquals("500", fakeBigQuery.queries().get(1).getNamedParameters().get("batchSize").getValue());
+    }
+
+    @Test
+    void testRecountsUntilNothingIsPending() {
+        pendingCounts.addAll(List.of(10L, 3L, 0L));
+
+        assertEquals(10, backfill(10).backfill());
+        assertEquals(2, updates().size());
+    }
+
+    @Test
+    void testStopsWhenBatchesMakeNoProgress() {
+        pendingCounts.addAll(List.of(10L, 10L));
+
+        assertThrows(RuntimeException.class, () -> backfill(10).backfill());
+        assertEquals(1, updates().size());
+    }
+
+    @Test
+    void testNothingToDo() {
+        pendingCounts.add(0L);
+
+        assertEquals(0, backfill(10).backfill());
+        assertTrue(updates().isEmpty());
+    }
+
+    @Test
+    void testAddRecordColumnIsIdempotentDdl() {
+        backfill(10).addRecordColumn();
+
+        assertEquals("ALTER TABLE `test-project.test_dataset.user_profiles` ADD COLUMN IF NOT EXISTS addresses " + AddressRecordCodec.SQL_TYPE,
+                fakeBigQuery.queries().get(0).getQuery());
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.service;
+
+import com.example.model.UserProfile;
+import com.google.cloud.bigquery.QueryJobConfiguration;
+import com.google.cloud.bigquery.QueryParameterValue;
+import com.google.cloud.bigquery.StandardSQLTypeName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserProfileAddressFormatTest {
+
+    private static final String TABLE = "`test-project.test_dataset.user_profiles`";
+
+    private final FakeBigQuery fakeBigQuery = new FakeBigQuery();
+
+    private UserProfileService service(AddressStorageFormat addressFormat) {
+        return new UserProfileService(fakeBigQuery.bigQuery(), "test-project", "test_dataset", "user_profiles",
+                UserProfileServiceOptions.newBuilder().setAddressFormat(addressFormat).build());
+    }
+
+    @Test
+    void testRecordFormatWritesStructArrayParameter() {
+        service(AddressStorageFormat.RECORD).saveUserProfile(UserProfileFixtures.profile("u1", 2));
+
+        QueryJobConfiguration config = fakeBigQuery.queries().get(0);
+        assertEquals("INSERT INTO " + TABLE + " (id, firstName, lastName, dob, addresses) VALUES (@id, @firstName, @lastName, @dob, @addresses)",
+                config.getQuery());
+        assertFalse(config.getNamedParameters().containsKey("addressesJson"));
+
+        QueryParameterValue addresses = config.getNamedParameters().get("addresses");
+        assertEquals(StandardSQLTypeName.ARRAY, addresses.getType());
+        assertEquals(StandardSQLTypeName.STRUCT, addresses.getArrayType());
+        assertEquals(2, addresses.getArrayValues().size());
+        Map<String, QueryParameterValue> first = addresses.getArrayValues().get(0).getStructValues();
+        assertEquals("Current", first.get("status").getValue());
+        assertEquals("Anytown", first.get("city").getValue());
+    }
+
+    @Test
+    void testRecordFormatWritesEmptyAddressesAsTypedLiteral() {
+        service(AddressStorageFormat.RECORD).saveUserProfile(UserProfileFixtures.profile("u1", 0));
+
+        QueryJobConfiguration config = fakeBigQuery.queries().get(0);
+        assertTrue(config.getQuery().endsWith(", " + AddressRecordCodec.EMPTY_SQL + ")"));
+        assertFalse(config.getNamedParameters().containsKey("addresses"));
+    }
+
+    @Test
+    void testRecordFormatReadsStructuredRows() {
+        UserProfile stored = UserProfileFixtures.profile("u1", 3);
+        fakeBigQuery.onQuery(config -> FakeBigQuery.result(List.of(UserProfileFixtures.dualRow(stored, true))));
+
+        UserProfile found = service(AddressStorageFormat.RECORD).findUserProfileById("u1").orElseThrow();
+
+        assertEquals("SELECT id, firstName, lastName, dob, addresses FROM " + TABLE + " WHERE id = @id", fakeBigQuery.queries().get(0).getQuery());
+        assertEquals(3, found.getAddresses().size());
+        assertEquals("102 Main St", found.getAddresses().get(2).getAddress());
+        assertEquals("3", found.getAddresses().get(2).getNumberOfYears());
+    }
+
+    @Test
+    void testRecordFormatIgnoresJsonColumn() {
+        UserProfile stored = UserProfileFixtures.profile("u1", 3);
+        fakeBigQuery.onQuery(config -> FakeBigQuery.result(List.of(UserProfileFixtures.dualRow(stored, false))));
+
+        UserProfile found = service(AddressStorageFormat.RECORD).findUserProfileById("u1").orElseThrow();
+
+        assertTrue(found.getAddresses().isEmpty());
+    }
+
+    @Test
+    void testDualFormatFallsBackToJsonForRowsNotBackfilled() {
+        UserProfile backfilled = UserProfileFixtures.profile("u1", 1);
+        UserProfile pending = UserProfileFixtures.profile("u2", 2);
+        fakeBigQuery.onQuery(config -> FakeBigQuery.result(List.of(
+                UserProfileFixtures.dualRow(backfilled, true),
+                UserProfileFixtures.dualRow(pending, false))));
+
+        List<UserProfile> found = service(AddressStorageFormat.DUAL).findAllByIds(List.of("u1", "u2"));
+
+        assertTrue(fakeBigQuery.queries().get(0).getQuery().startsWith("SELECT id, firstName, lastName, dob, addresses_json, addresses FROM"));
+        assertEquals(1, found.get(0).getAddresses().size());
+        assertEquals(2, found.get(1).getAddresses().size());
+        assertEquals("101 Main St", found.get(1).getAddresses().get(1).getAddress());
+    }
+
+    @Test
+    void testDualFormatUpsertWritesBothColumns() {
+        service(AddressStorageFormat.DUAL).upsertAll(UserProfileFixtures.profiles(2, 1));
+
+        QueryJobConfiguration config = fakeBigQuery.queries().get(0);
+        assertTrue(config.getQuery().contains("@addressesJson_1 AS addresses_json, @addresses_1 AS addresses"));
+        assertTrue(config.getQuery().contains("UPDATE SET firstName = S.firstName, lastName = S.lastName, dob = S.dob, addresses_json = S.addresses_json, addresses = S.addresses "));
+        assertTrue(config.getQuery().contains("INSERT (id, firstName, lastName, dob, addresses_json, addresses) VALUES (S.id, S.firstName, S.lastName, S.dob, S.addresses_json, S.addresses)"));
+        assertTrue(config.getNamedParameters().containsKey("addressesJson_0"));
+        assertTrue(config.getNamedParameters().containsKey("addresses_0"));
+    }
+
+    @Test
+    void testWriteBufferStreamsRecordColumn() {
+        UserProfileWriteBuffer buffer = new UserProfileWriteBuffer(fakeBigQuery.bigQuery(), "test-project", "test_dataset", "user_profiles",
+                10, 60_000, 100, AddressStorageFormat.RECORD);
+        buffer.enqueue(UserProfileFixtures.profile("u1", 2));
+        buffer.close();
+
+        Map<String, Object> content = fakeBigQuery.insertAllRequests().get(0).getRows().get(0).getContent();
+        assertFalse(content.containsKey("addresses_json"));
+        List<?> addresses = (List<?>) content.get("addresses");
+        assertEquals(2, addresses.size());
+        assertEquals("Anytown", ((Map<?, ?>) addresses.get(0)).get("city"));
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.service;
+
+import com.example.model.Address;
+import com.example.model.UserProfile;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.apache.avro.Schema;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserProfileAvroDecoderTest {
+
+    // Row schema in the shape the Storage Read API reports for the user profile table
+    private static final Schema ROW_SCHEMA = new Schema.Parser().parse(UserProfileFixtures.AVRO_ROW_SCHEMA);
+
+    // The same table during the address migration, with the REPEATED RECORD column after the JSON one
+    private static final Schema DUAL_ROW_SCHEMA = new Schema.Parser().parse("{\"type\":\"record\",\"name\":\"__root__\",\"fields\":["
+            + "{\"name\":\"id\",\"type\":\"string\"},"
+            + "{\"name\":\"addresses_json\",\"type\":[\"null\",\"string\"]},"
+            + "{\"name\":\"addresses\",\"type\":{\"type\":\"array\",\"items\":{\"type\":\"record\",\"name\":\"addresses\",\"fields\":["
+            + "{\"name\":\"status\",\"type\":[\"null\",\"string\"]},"
+            + "{\"name\":\"address\",\"type\":[\"null\",\"string\"]},"
+            + "{\"name\":\"city\",\"type\":[\"null\",\"string\"]},"
+            + "{\"name\":\"state\",\"type\":[\"null\",\"string\"]},"
+            + "{\"name\":\"zip\",\"type\":[\"null\",\"string\"]},"
+            + "{\"name\":\"numberOfYears\",\"type\":[\"null\",\"string\"]}]}}}]}");
+
+    private final Gson gson = new Gson();
+
+    private List<Address> decodeAddresses(String json) {
+        return json == null ? new ArrayList<>() : gson.fromJson(json, new TypeToken<ArrayList<Address>>() {}.getType());
+    }
+
+    private byte[] encodeDual(List<UserProfile> profiles, boolean backfilled) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, null);
+        for (UserProfile profile : profiles) {
+            encoder.writeString(profile.getId());
+            writeNullableString(encoder, gson.toJson(profile.getAddresses()));
+            List<Address> records = backfilled ? profile.getAddresses() : List.of();
+            encoder.writeArrayStart();
+            encoder.setItemCount(records.size());
+            for (Address address : records) {
+                encoder.startItem();
+                writeNullableString(encoder, address.getStatus());
+                writeNullableString(encoder, address.getAddress());
+                writeNullableString(encoder, address.getCity());
+                writeNullableString(encoder, address.getState());
+                writeNullableString(encoder, address.getZip());
+                writeNullableString(encoder, address.getNumberOfYears());
+            }
+            encoder.writeArrayEnd();
+        }
+        encoder.flush();
+        return out.toByteArray();
+    }
+
+    private static void writeNullableString(BinaryEncoder encoder, String value) throws IOException {
+        if (value == null) {
+            encoder.writeIndex(0);
+        } else {
+            encoder.writeIndex(1);
+            encoder.writeString(value);
+        }
+    }
+
+    @Test
+    void testDecodesLikeTheTableDataPath() {
+        List<UserProfile> fixture = UserProfileFixtures.profiles(20, 3);
+        fixture.add(new UserProfile("sparse", null, null, null, null));
+
+        FakeBigQuery fakeBigQuery = new FakeBigQuery()
+                .withTableSchema(UserProfileFixtures.SCHEMA)
+                .onListTableData(args -> FakeBigQuery.result(UserProfileFixtures.rows(fixture)));
+        List<UserProfile> expected = new UserProfileService(fakeBigQuery.bigQuery(), "test-project", "test_dataset", "user_profiles")
+                .getUserProfilesPage(null, fixture.size()).getProfiles();
+
+        List<UserProfile> decoded = new UserProfileAvroDecoder(ROW_SCHEMA, this::decodeAddresses).decode(UserProfileFixtures.avroRows(fixture), fixture.size());
+
+        assertEquals(expected.size(), decoded.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getId(), decoded.get(i).getId());
+            assertEquals(expected.get(i).getFirstName(), decoded.get(i).getFirstName());
+            assertEquals(expected.get(i).getLastName(), decoded.get(i).getLastName());
+            assertEquals(expected.get(i).getDob(), decoded.get(i).getDob());
+            assertEquals(gson.toJson(expected.get(i).getAddresses()), gson.toJson(decoded.get(i).getAddresses()));
+        }
+    }
+
+    @Test
+    void testDecoderIsReusableAcrossResponses() {
+        UserProfileAvroDecoder decoder = new UserProfileAvroDecoder(ROW_SCHEMA, this::decodeAddresses);
+
+        assertEquals("user0", decoder.decode(UserProfileFixtures.avroRows(UserProfileFixtures.profiles(1, 1)), 1).get(0).getId());
+        assertEquals(5, decoder.decode(UserProfileFixtures.avroRows(UserProfileFixtures.profiles(5, 0)), 5).size());
+    }
+
+    @Test
+    void testDualFormatPrefersRecordColumn() throws IOException {
+        List<UserProfile> fixture = UserProfileFixtures.profiles(3, 2);
+        UserProfileAvroDecoder decoder = new UserProfileAvroDecoder(DUAL_ROW_SCHEMA, json -> {
+            throw new AssertionError("JSON column decoded for a backfilled row");
+        });
+
+        List<UserProfile> decoded = decoder.decode(encodeDual(fixture, true), fixture.size());
+
+        assertEquals(gson.toJson(fixture.get(2).getAddresses()), gson.toJson(decoded.get(2).getAddresses()));
+    }
+
+    @Test
+    void testDualFormatFallsBackToJsonColumn() throws IOException {
+        List<UserProfile> fixture = UserProfileFixtures.profiles(3, 2);
+
+        List<UserProfile> decoded = new UserProfileAvroDecoder(DUAL_ROW_SCHEMA, this::decodeAddresses).decode(encodeDual(fixture, false), fixture.size());
+
+        assertEquals(gson.toJson(fixture.get(1).getAddresses()), gson.toJson(decoded.get(1).getAddresses()));
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.service;
+
+import com.google.cloud.bigquery.*;
+import io.micronaut.core.annotation.Nullable;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs every lookup against an unpartitioned table and a copy partitioned on {@code dob} and clustered on
+ * {@code lastName, id}, and compares the bytes each job processed. Needs a real project: set
+ * {@code USERPROFILE_HARNESS_PROJECT} and {@code USERPROFILE_HARNESS_DATASET} (an existing dataset; the harness creates
+ * and drops its own tables) and Application Default Credentials.
+ *
+ * BigQuery bills at least 10 MB per table referenced, so the difference only shows in bytes processed, and only
+ * once the table spans several partitions and clustered blocks.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@EnabledIfEnvironmentVariable(named = "USERPROFILE_HARNESS_PROJECT", matches = ".+")
+class UserProfileBytesScannedTest {
+
+    private static final int PROFILES = 200_000;
+
+    private final String projectId = System.getenv("USERPROFILE_HARNESS_PROJECT");
+    private final String datasetName = System.getenv("USERPROFILE_HARNESS_DATASET");
+    private final String suffix = Long.toString(System.currentTimeMillis());
+    private final String flatTable = "user_profiles_flat_" + suffix;
+    private final String clusteredTable = "user_profiles_clustered_" + suffix;
+    private final BigQuery bigquery = BigQueryOptions.newBuilder().setProjectId(projectId).build().getService();
+    private final BytesRecorder recorder = new BytesRecorder();
+
+    @BeforeAll
+    void createTables() throws InterruptedException {
+        bigquery.create(TableInfo.of(TableId.of(projectId, datasetName, flatTable),
+                StandardTableDefinition.of(admin(flatTable).schema())));
+        // Generated in one job: last names spread over 8 x 1000 values, birthdays over 50 years, 4 cities
+        bigquery.query(QueryJobConfiguration.newBuilder(String.format(
+                "INSERT INTO `%s.%s.%s` (id, firstName, lastName, dob, addresses_json) "
+                        + "SELECT CONCAT('user', CAST(i AS STRING)), 'John', "
+                        + "CONCAT(['Adams', 'Baker', 'Clark', 'Doe', 'Evans', 'Foster', 'Garcia', 'Hill'][OFFSET(MOD(i, 8))], CAST(MOD(i, 1000) AS STRING)), "
+                        + "DATE_ADD(DATE '1950-01-01', INTERVAL MOD(i, 18250) DAY), "
+                        + "TO_JSON_STRING([STRUCT('Current' AS status, CONCAT(CAST(i AS STRING), ' Main St') AS address, "
+                        + "['Anytown', 'Springfield', 'Riverside', 'Fairview'][OFFSET(MOD(i, 4))] AS city, 'CA' AS state, "
+                        + "'90210' AS zip, '1' AS numberOfYears)]) "
+                        + "FROM UNNEST(GENERATE_ARRAY(0, %d)) AS i",
+                projectId, datasetName, flatTable, PROFILES - 1)).build());
+        admin(flatTable).copyIntoPartitionedTable(clusteredTable);
+    }
+
+    @AfterAll
+    void dropTables() {
+        bigquery.delete(TableId.of(projectId, datasetName, flatTable));
+        bigquery.delete(TableId.of(projectId, datasetName, clusteredTable));
+    }
+
+    private UserProfileTableAdmin admin(String table) {
+        return new UserProfileTableAdmin(bigquery, projectId, datasetName, table,
+                TimePartitioning.Type.YEAR, List.of("lastName", "id"), AddressStorageFormat.JSON);
+    }
+
+    private UserProfileService service(String table) {
+        return new UserProfileService(bigquery, projectId, datasetName, table,
+                UserProfileServiceOptions.newBuilder().setMetrics(recorder).build());
+    }
+
+    @Test
+    void testReportBytesProcessedBeforeAndAfterClustering() {
+        Map<String, Consumer<UserProfileService>> lookups = new LinkedHashMap<>();
+        lookups.put("findUserProfileById", service -> service.findUserProfileById("user4242"));
+        lookups.put("findByLastNamePrefix", service -> service.findByLastNamePrefix("Doe1"));
+        lookups.put("findByDobBetween", service -> service.findByDobBetween(LocalDate.of(1970, 1, 1), LocalDate.of(1970, 12, 31)));
+        lookups.put("findByAddressCity", service -> service.findByAddressCity("Riverside", "CA"));
+
+        UserProfileService flat = service(flatTable);
+        UserProfileService clustered = service(clusteredTable);
+        for (Map.Entry<String, Consumer<UserProfileService>> lookup : lookups.entrySet()) {
+            long before = recorder.bytesProcessed(() -> lookup.getValue().accept(flat));
+            long after = recorder.bytesProcessed(() -> lookup.getValue().accept(clustered));
+            // Only the partitioning column and the leading clustering column prune; id and city are reported as is
+            if (lookup.getKey().equals("findByLastNamePrefix") || lookup.getKey().equals("findByDobBetween")) {
+                assertTrue(after < before, lookup.getKey() + " did not prune: " + before + " bytes before, " + after + " after");
+            }
+        }
+    }
+
+    private static final class BytesRecorder implements UserProfileMetrics {
+        private long bytesProcessed;
+
+        @Override
+        public boolean recordsJobStatistics() {
+            return true;
+        }
+
+        @Override
+        public synchronized void recordJob(String operation, long durationNanos, boolean succeeded, @Nullable UserProfileJobStatistics statistics) {
+            if (statistics != null) {
+                bytesProcessed += statistics.getTotalBytesProcessed();
+            }
+        }
+
+        @Override
+        public void recordCall(String operation, long durationNanos, boolean succeeded) {
+        }
+
+        @Override
+        public void recordWriteThroughFailure(int profileCount) {
+        }
+
+        synchronized long bytesProcessed(Runnable lookup) {
+            bytesProcessed = 0;
+            lookup.run();
+            return bytesProcessed;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.service;
+
+import com.example.model.UserProfile;
+import com.google.cloud.bigquery.BigQueryError;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserProfileChangeStreamTest {
+
+    private final FakeBigQuery fakeBigQuery = new FakeBigQuery();
+    private final InMemoryUserProfileChangeTopic topic = new InMemoryUserProfileChangeTopic();
+
+    private UserProfileService service(UserProfileChangeSink sink) {
+        return new UserProfileService(fakeBigQuery.bigQuery(), "test-project", "test_dataset", "user_profiles",
+                UserProfileServiceOptions.newBuilder().setChangeSink(sink).build());
+    }
+
+    @Test
+    void testWritesPublishVersionedChangesInOrder() {
+        UserProfileService service = service(topic);
+        service.saveUserProfile(UserProfileFixtures.profile("u1", 1));
+        service.saveAll(List.of(UserProfileFixtures.profile("u2", 0), UserProfileFixtures.profile("u3", 2)));
+        service.updateUserProfile(UserProfileFixtures.profile("u1", 3));
+        service.deleteUserProfileById("u2");
+
+        List<UserProfileChange> changes = topic.changesAfter(0);
+        assertEquals(5, changes.size());
+        for (int i = 0; i < changes.size(); i++) {
+            assertEquals(i + 1, changes.get(i).getVersion());
+        }
+        assertEquals(List.of(UserProfileChangeType.CREATE, UserProfileChangeType.CREATE, UserProfileChangeType.CREATE,
+                        UserProfileChangeType.UPDATE, UserProfileChangeType.DELETE),
+                changes.stream().map(UserProfileChange::getType).collect(Collectors.toList()));
+        assertEquals(3, changes.get(3).getProfile().getAddresses().size());
+        assertEquals("u2", changes.get(4).getId());
+        assertNull(changes.get(4).getProfile());
+    }
+
+    @Test
+    void testChangesAreNotAffectedByLaterEditsOfTheProfile() {
+        UserProfile profile = UserProfileFixtures.profile("u1", 1);
+        service(topic).saveUserProfile(profile);
+
+        profile.setLastName("Changed");
+        profile.getAddresses().get(0).setCity("Elsewhere");
+
+        UserProfile published = topic.changesAfter(0).get(0).getProfile();
+        assertEquals("Doe", published.getLastName());
+        assertEquals("Anytown", published.getAddresses().get(0).getCity());
+    }
+
+    @Test
+    void testFailedWritesPublishNothing() {
+        fakeBigQuery.onQuery(config -> {
+            throw new IllegalStateException("job failed");
+        });
+
+        assertThrows(IllegalStateException.class, () -> service(topic).deleteUserProfileById("u1"));
+        assertEquals(0, topic.lastVersion());
+    }
+
+    @Test
+    void testDeleteOfAMissingProfilePublishesNothing() {
+        fakeBigQuery.onJobStatistics(jobId -> FakeBigQuery.dmlStatistics(0));
+        UserProfileService service = service(topic);
+
+        service.deleteUserProfileById("missing");
+        assertEquals(0, topic.lastVersion());
+
+        fakeBigQuery.onJobStatistics(jobId -> FakeBigQuery.dmlStatistics(1));
+        service.deleteUserProfileById("u1");
+        assertEquals(1, topic.lastVersion());
+    }
+
+    @Test
+    void testStreamedProfilesArePublishedOnceWritten() throws Exception {
+        fakeBigQuery.onInsertAll(request -> FakeBigQuery.insertAllResponse(request.getRows().get(0).getContent().get("id").equals("bad")
+                ? Map.of(0L, List.of(new BigQueryError("invalid", "dob", "Invalid date")))
+                : Map.of()));
+        try (UserProfileWriteBuffer buffer = new UserProfileWriteBuffer(fakeBigQuery.bigQuery(), "test-project", "test_dataset",
+                "user_profiles", 1, 60_000, 100)) {
+            UserProfileService service = new UserProfileService(fakeBigQuery.bigQuery(), "test-project", "test_dataset", "user_profiles",
+                    UserProfileServiceOptions.newBuilder().setWriteBuffer(buffer).setChangeSink(topic).build());
+
+            CompletableFuture<UserProfile> rejected = service.enqueueUserProfile(UserProfileFixtures.profile("bad", 1));
+            assertThrows(ExecutionException.class, () -> rejected.get(5, TimeUnit.SECONDS));
+            assertEquals(0, topic.lastVersion());
+
+            service.enqueueUserProfile(UserProfileFixtures.profile("good", 1)).get(5, TimeUnit.SECONDS);
+            assertEquals(List.of("good"), topic.changesAfter(0).stream().map(UserProfileChange::getId).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    void testConcurrentWritesToOneProfilePublishInJobOrder() throws Exception {
+        CountDownLatch firstJobRunning = new CountDownLatch(1);
+        CountDownLatch releaseFirstJob = new CountDownLatch(1);
+        fakeBigQuery.onQuery(config -> {
+            if (fakeBigQuery.queries().size() == 1) {
+                firstJobRunning.countDown();
+                awaitQuietly(releaseFirstJob);
+            }
+            return FakeBigQuery.emptyResult();
+        });
+        UserProfileService service = service(topic);
+        UserProfile first = UserProfileFixtures.profile("u1", 1);
+        UserProfile second = UserProfileFixtures.profile("u1", 2);
+
+        Thread firstWriter = new Thread(() -> service.updateUserProfile(first));
+        firstWriter.start();
+        assertTrue(firstJobRunning.await(5, TimeUnit.SECONDS));
+        Thread secondWriter = new Thread(() -> service.updateUserProfile(second));
+        secondWriter.start();
+        // The second write waits for the first one's job and publish instead of overtaking it
+        while (secondWriter.isAlive() && secondWriter.getState() != Thread.State.WAITING) {
+            Thread.onSpinWait();
+        }
+        assertEquals(1, fakeBigQuery.queries().size());
+        releaseFirstJob.countDown();
+        firstWriter.join(5_000);
+        secondWriter.join(5_000);
+
+        List<UserProfileChange> changes = topic.changesAfter(0);
+        assertEquals(2, changes.size());
+        assertEquals(1, changes.get(0).getProfile().getAddresses().size());
+        assertEquals(2, changes.get(1).getProfile().getAddresses().size());
+    }
+
+    @Test
+    void testNumberingContinuesAfterTheSink() {
+        topic.publish(List.of(new UserProfileChange(41, UserProfileChangeType.DELETE, 0, "old", null)));
+
+        service(topic).deleteUserProfileById("u1");
+
+        assertEquals(42, topic.lastVersion());
+    }
+
+    @Test
+    void testSubscribersReceiveBacklogThenLiveChanges() {
+        UserProfileService service = service(topic);
+        service.saveUserProfile(UserProfileFixtures.profile("u1", 1));
+        service.saveUserProfile(UserProfileFixtures.profile("u2", 1));
+
+        List<Long> received = new ArrayList<>();
+        Runnable unsubscribe = topic.subscribe(1, change -> received.add(change.getVersion()));
+        service.deleteUserProfileById("u1");
+        unsubscribe.run();
+        service.deleteUserProfileById("u2");
+
+        assertEquals(List.of(2L, 3L), received);
+    }
+
+    @Test
+    void testSnapshotCatchesUpIncrementally() {
+        UserProfileService service = service(topic);
+        service.saveAll(UserProfileFixtures.profiles(3, 1));
+        UserProfileSnapshot snapshot = UserProfileSnapshot.replay(topic);
+        assertEquals(3, snapshot.size());
+
+        service.deleteUserProfileById("user0");
+        service.updateUserProfile(UserProfileFixtures.profile("user1", 4));
+
+        assertEquals(2, snapshot.catchUp(topic));
+        assertEquals(5, snapshot.getVersion());
+        assertTrue(snapshot.get("user0").isEmpty());
+        assertEquals(4, snapshot.get("user1").orElseThrow().getAddresses().size());
+        assertEquals(0, snapshot.catchUp(topic));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.service;
+
+import com.example.model.Address;
+import com.example.model.UserProfile;
+import com.google.cloud.bigquery.*;
+import com.google.gson.Gson;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds user profiles and the BigQuery rows that store them, for the tests and the JMH benchmarks alike.
+ */
+final class UserProfileFixtures {
+
+    // Enough distinct rows that benchmarked data does not stay in the L1 cache from one call to the next
+    static final int BENCHMARK_ROW_COUNT = 1024;
+
+    static final Schema SCHEMA = Schema.of(
+            Field.of("id", StandardSQLTypeName.STRING),
+            Field.of("firstName", StandardSQLTypeName.STRING),
+            Field.of("lastName", StandardSQLTypeName.STRING),
+            Field.of("dob", StandardSQLTypeName.DATE),
+            Field.of("addresses_json", StandardSQLTypeName.STRING));
+
+    // Table during the address migration: the JSON column plus the native REPEATED RECORD column
+    static final Schema DUAL_SCHEMA = Schema.of(
+            Field.of("id", StandardSQLTypeName.STRING),
+            Field.of("firstName", StandardSQLTypeName.STRING),
+            Field.of("lastName", StandardSQLTypeName.STRING),
+            Field.of("dob", StandardSQLTypeName.DATE),
+            Field.of("addresses_json", StandardSQLTypeName.STRING),
+            Field.newBuilder("addresses", StandardSQLTypeName.STRUCT,
+                    Field.of("status", StandardSQLTypeName.STRING),
+                    Field.of("address", StandardSQLTypeName.STRING),
+                    Field.of("city", StandardSQLTypeName.STRING),
+                    Field.of("state", StandardSQLTypeName.STRING),
+                    Field.of("zip", StandardSQLTypeName.STRING),
+                    Field.of("numberOfYears", StandardSQLTypeName.STRING))
+                    .setMode(Field.Mode.REPEATED)
+                    .build());
+
+    // Avro row schema the Storage Read API reports for SCHEMA
+    static final String AVRO_ROW_SCHEMA = "{\"type\":\"record\",\"name\":\"__root__\",\"fields\":["
+            + "{\"name\":\"id\",\"type\":\"string\"},"
+            + "{\"name\":\"firstName\",\"type\":[\"null\",\"string\"]},"
+            + "{\"name\":\"lastName\",\"type\":[\"null\",\"string\"]},"
+            + "{\"name\":\"dob\",\"type\":[\"null\",{\"type\":\"int\",\"logicalType\":\"date\"}]},"
+            + "{\"name\":\"addresses_json\",\"type\":[\"null\",\"string\"]}]}";
+
+    private static final Gson GSON = new Gson();
+
+    private static final long SEED = 20240601L;
+    private static final String[] FIRST_NAMES = {"John", "Maria", "Wei", "Amara", "Lukas", "Sofía", "Kenji", "Olivia"};
+    private static final String[] LAST_NAMES = {"Doe", "García", "Chen", "Okafor", "Müller", "Rossi", "Tanaka", "Smith"};
+    private static final String[] CITIES = {"Anytown", "Springfield", "Riverside", "Fairview", "Madison", "Georgetown"};
+    private static final String[] STATES = {"CA", "NY", "TX", "WA", "IL", "FL"};
+
+    private UserProfileFixtures() {
+    }
+
+    static UserProfile profile(String id, int addressCount) {
+        List<Address> addresses = new ArrayList<>();
+        for (int i = 0; i < addressCount; i++) {
+            addresses.add(new Address(i == 0 ? "Current" : "Previous", (100 + i) + " Main St", "Anytown", "CA", "90210", String.valueOf(i + 1)));
+        }
+        return new UserProfile(id, "John", "Doe", LocalDate.of(1990, 1, 15), addresses);
+    }
+
+    static List<UserProfile> profiles(int count, int addressCount) {
+        List<UserProfile> profiles = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            profiles.add(profile("user" + i, addressCount));
+        }
+        return profiles;
+    }
+
+    /**
+     * Varied profiles drawn from a fixed seed, so they are identical across runs and forks. The null density is the
+     * chance that an optional value is NULL: first name, last name, date of birth and every address property except
+     * the status. The ID and the address list itself are never null.
+     */
+    static List<UserProfile> profiles(int count, int addressCount, double nullDensity) {
+        Random random = new Random(SEED);
+        List<UserProfile> profiles = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            List<Address> addresses = new ArrayList<>(addressCount);
+            for (int a = 0; a < addressCount; a++) {
+                addresses.add(new Address(
+                        a == 0 ? "Current" : "Previous",
+                        nullable(random, nullDensity, (100 + random.nextInt(9900)) + " Main St"),
+                        nullable(random, nullDensity, CITIES[random.nextInt(CITIES.length)]),
+                        nullable(random, nullDensity, STATES[random.nextInt(STATES.length)]),
+                        nullable(random, nullDensity, String.format("%05d", random.nextInt(100_000))),
+                        nullable(random, nullDensity, String.valueOf(1 + random.nextInt(20)))));
+            }
+            profiles.add(new UserProfile(
+                    "user" + i,
+                    nullable(random, nullDensity, FIRST_NAMES[random.nextInt(FIRST_NAMES.length)]),
+                    nullable(random, nullDensity, LAST_NAMES[random.nextInt(LAST_NAMES.length)]),
+                    random.nextDouble() < nullDensity ? null : LocalDate.of(1940, 1, 1).plusDays(random.nextInt(25_000)),
+                    addresses));
+        }
+        return profiles;
+    }
+
+    static FieldValueList row(UserProfile profile) {
+        return FieldValueList.of(List.of(
+                value(profile.getId()),
+                value(profile.getFirstName()),
+                value(profile.getLastName()),
+                value(profile.getDob() == null ? null : profile.getDob().format(DateTimeFormatter.ISO_LOCAL_DATE)),
+                value(profile.getAddresses() == null ? null : GSON.toJson(profile.getAddresses()))
+        ), SCHEMA.getFields());
+    }
+
+    /**
+     * A row of {@link #DUAL_SCHEMA}; the record column is only filled once the row has been backfilled.
+     */
+    static FieldValueList dualRow(UserProfile profile, boolean backfilled) {
+        List<FieldValue> records = new ArrayList<>();
+        if (backfilled && profile.getAddresses() != null) {
+            FieldList addressFields = DUAL_SCHEMA.getFields().get("addresses").getSubFields();
+            for (Address address : profile.getAddresses()) {
+                records.add(FieldValue.of(FieldValue.Attribute.RECORD, FieldValueList.of(List.of(
+                        value(address.getStatus()),
+                        value(address.getAddress()),
+                        value(address.getCity()),
+                        value(address.getState()),
+                        value(address.getZip()),
+                        value(address.getNumberOfYears())
+                ), addressFields)));
+            }
+        }
+        return FieldValueList.of(List.of(
+                value(profile.getId()),
+                value(profile.getFirstName()),
+                value(profile.getLastName()),
+                value(profile.getDob() == null ? null : profile.getDob().format(DateTimeFormatter.ISO_LOCAL_DATE)),
+                value(profile.getAddresses() == null ? null : GSON.toJson(profile.getAddresses())),
+                FieldValue.of(FieldValue.Attribute.REPEATED, records)
+        ), DUAL_SCHEMA.getFields());
+    }
+
+    static List<FieldValueList> rows(List<UserProfile> profiles) {
+        List<FieldValueList> rows = new ArrayList<>(profiles.size());
+        for (UserProfile profile : profiles) {
+            rows.add(row(profile));
+        }
+        return rows;
+    }
+
+    /**
+     * Backfilled rows of {@link #DUAL_SCHEMA}, which can be mapped in every {@link AddressStorageFormat}.
+     */
+    static List<FieldValueList> dualRows(List<UserProfile> profiles) {
+        List<FieldValueList> rows = new ArrayList<>(profiles.size());
+        for (UserProfile profile : profiles) {
+            rows.add(dualRow(profile, true));
+        }
+        return rows;
+    }
+
+    /**
+     * The profiles as concatenated binary Avro rows of {@link #AVRO_ROW_SCHEMA}, as one Storage Read API response
+     * carries them.
+     */
+    static byte[] avroRows(List<UserProfile> profiles) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, null);
+        try {
+            for (UserProfile profile : profiles) {
+                encoder.writeString(profile.getId());
+                writeNullableString(encoder, profile.getFirstName());
+                writeNullableString(encoder, profile.getLastName());
+                if (profile.getDob() == null) {
+                    encoder.writeIndex(0);
+                } else {
+                    encoder.writeIndex(1);
+                    encoder.writeInt((int) profile.getDob().toEpochDay());
+                }
+                writeNullableString(encoder, profile.getAddresses() == null ? null : GSON.toJson(profile.getAddresses()));
+            }
+            encoder.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeNullableString(BinaryEncoder encoder, String value) throws IOException {
+        if (value == null) {
+            encoder.writeIndex(0);
+        } else {
+            encoder.writeIndex(1);
+            encoder.writeString(value);
+        }
+    }
+
+    private static String nullable(Random random, double nullDensity, String value) {
+        return random.nextDouble() < nullDensity ? null : value;
+    }
+
+    private static FieldValue value(String value) {
+        return FieldValue.of(FieldValue.Attribute.PRIMITIVE, value);
+    }
+}
@@ -0,0 +1,272 @@
+package com.example.service;
+
+import com.example.model.UserProfile;
+import com.google.cloud.bigquery.QueryJobConfiguration;
+import com.google.cloud.bigquery.TableResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserProfileJobPolicyTest {
+
+    private static final List<String> RETRYABLE = List.of("rateLimitExceeded", "backendError");
+
+    private final FakeBigQuery fakeBigQuery = new FakeBigQuery();
+    // Added to System.nanoTime(), so a test can move past TTLs and the open circuit without waiting
+    private final AtomicLong skewNanos = new AtomicLong();
+    private UserProfileJobPolicy policy;
+
+    @AfterEach
+    void tearDown() {
+        if (policy != null) {
+            policy.close();
+        }
+    }
+
+    private long now() {
+        return System.nanoTime() + skewNanos.get();
+    }
+
+    private void advanceMillis(long millis) {
+        skewNanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    private UserProfileService service(long deadlineMs, UserProfileCache cache) {
+        policy = new UserProfileJobPolicy(fakeBigQuery.bigQuery(), 3, 1, 5, deadlineMs, true, 95, 20, 5, 2,
+                RETRYABLE, 2, 1000, true, null, this::now);
+        return new UserProfileService(fakeBigQuery.bigQuery(), "test-project", "test_dataset", "user_profiles",
+                UserProfileServiceOptions.newBuilder().setCache(cache).setJobPolicy(policy).build());
+    }
+
+    // Cancellation runs in the background once the call has returned
+    private void awaitCancelledJobs(int count) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (fakeBigQuery.cancelledJobs().size() < count && System.nanoTime() - deadline < 0) {
+            sleepQuietly(1);
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private TableResult found(QueryJobConfiguration config) {
+        String id = config.getNamedParameters().get("id").getValue();
+        return FakeBigQuery.result(List.of(UserProfileFixtures.row(UserProfileFixtures.profile(id, 1))));
+    }
+
+    @Test
+    void testRetryableFailuresAreRetried() {
+        fakeBigQuery.onQuery(this::found).failNextQueries("rateLimitExceeded", "backendError");
+        UserProfileService service = service(0, null);
+
+        assertTrue(service.findUserProfileById("u1").isPresent());
+
+        assertEquals(3, fakeBigQuery.queries().size());
+        assertEquals(2, policy.getRetryCount());
+        assertFalse(policy.isCircuitOpen());
+    }
+
+    @Test
+    void testOtherFailuresAreNotRetried() {
+        fakeBigQuery.failNextQueries("invalidQuery");
+        UserProfileService service = service(0, null);
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> service.deleteUserProfileById("u1"));
+
+        assertFalse(e instanceof UserProfileUnavailableException);
+        assertEquals(1, fakeBigQuery.queries().size());
+        assertEquals(0, policy.getRetryCount());
+    }
+
+    @Test
+    void testCallFailsOnceItsAttemptsRunOut() {
+        fakeBigQuery.failNextQueries("backendError", "backendError", "backendError");
+        UserProfileService service = service(0, null);
+
+        assertThrows(UserProfileUnavailableException.class, () -> service.saveUserProfile(UserProfileFixtures.profile("u1", 1)));
+
+        assertEquals(3, fakeBigQuery.queries().size());
+        assertEquals(List.of("insert", "insert", "insert"), fakeBigQuery.queries().stream()
+                .map(config -> config.getLabels().get("operation")).collect(Collectors.toList()));
+    }
+
+    @Test
+    void testRetriedInsertWaitsForItsJobInsteadOfSubmittingItAgain() {
+        fakeBigQuery.failNextPolls("backendError");
+        UserProfileService service = service(0, null);
+
+        service.saveUserProfile(UserProfileFixtures.profile("u1", 1));
+
+        assertEquals(1, fakeBigQuery.queries().size());
+        assertEquals(1, fakeBigQuery.jobIds().size());
+        assertEquals(1, policy.getRetryCount());
+    }
+
+    @Test
+    void testInsertBigQueryNeverReceivedIsSubmittedAgainUnderTheSameJobId() {
+        fakeBigQuery.failNextQueries("backendError");
+        UserProfileService service = service(0, null);
+
+        service.saveAll(UserProfileFixtures.profiles(2, 1));
+
+        assertEquals(2, fakeBigQuery.queries().size());
+        assertEquals(2, fakeBigQuery.jobIds().size());
+        assertEquals(fakeBigQuery.jobIds().get(0), fakeBigQuery.jobIds().get(1));
+    }
+
+    @Test
+    void testDeadlineCancelsTheRunningJob() {
+        fakeBigQuery.onQuery(config -> fakeBigQuery.runUntilCancelled());
+        UserProfileService service = service(50, null);
+
+        assertThrows(UserProfileUnavailableException.class, () -> service.saveUserProfile(UserProfileFixtures.profile("u1", 1)));
+
+        assertEquals(1, fakeBigQuery.queries().size());
+        awaitCancelledJobs(1);
+        assertEquals(fakeBigQuery.jobIds(), fakeBigQuery.cancelledJobs());
+        assertEquals(1, policy.getExpiredCount());
+    }
+
+    @Test
+    void testDeadlineBoundsTheCallWhileTheJobIgnoresItsCancellation() {
+        CountDownLatch release = new CountDownLatch(1);
+        fakeBigQuery.onQuery(config -> {
+            awaitQuietly(release);
+            return found(config);
+        });
+        UserProfileService service = service(50, null);
+        try {
+            long startNanos = System.nanoTime();
+
+            assertThrows(UserProfileUnavailableException.class, () -> service.findUserProfileById("u1"));
+
+            assertTrue(System.nanoTime() - startNanos < TimeUnit.SECONDS.toNanos(2));
+            awaitCancelledJobs(1);
+            assertEquals(1, policy.getExpiredCount());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void testSlowLookupIsHedged() {
+        AtomicInteger calls = new AtomicInteger();
+        // The 21st lookup, the first one with enough latencies recorded to hedge, never finishes by itself
+        fakeBigQuery.onQuery(config -> calls.incrementAndGet() == 21 ? fakeBigQuery.runUntilCancelled() : found(config));
+        UserProfileService service = service(0, null);
+        for (int i = 0; i < 20; i++) {
+            assertTrue(service.findUserProfileById("u" + i).isPresent());
+        }
+        assertEquals(0, policy.getHedgeCount());
+
+        Optional<UserProfile> hedged = service.findUserProfileById("slow");
+
+        assertEquals("slow", hedged.orElseThrow().getId());
+        assertEquals(1, policy.getHedgeCount());
+        assertEquals(22, fakeBigQuery.queries().size());
+        awaitCancelledJobs(1);
+        assertEquals(List.of(fakeBigQuery.jobIds().get(20)), fakeBigQuery.cancelledJobs());
+    }
+
+    @Test
+    void testHedgeAnswersWithoutWaitingForTheLosingAttempt() {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        // The 21st lookup ignores its cancellation until the test ends
+        fakeBigQuery.onQuery(config -> {
+            if (calls.incrementAndGet() == 21) {
+                awaitQuietly(release);
+            }
+            return found(config);
+        });
+        UserProfileService service = service(0, null);
+        try {
+            for (int i = 0; i < 20; i++) {
+                assertTrue(service.findUserProfileById("u" + i).isPresent());
+            }
+            long startNanos = System.nanoTime();
+
+            assertEquals("slow", service.findUserProfileById("slow").orElseThrow().getId());
+
+            assertTrue(System.nanoTime() - startNanos < TimeUnit.SECONDS.toNanos(2));
+            assertEquals(1, policy.getHedgeCount());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void testHedgesStopOnceTheBudgetIsUsedUp() {
+        Set<String> slowed = ConcurrentHashMap.newKeySet();
+        // The first lookup of every "slow" ID takes 100 ms, well past the hedge delay; its hedge answers at once
+        fakeBigQuery.onQuery(config -> {
+            String id = config.getNamedParameters().get("id").getValue();
+            if (id.startsWith("slow") && slowed.add(id)) {
+                sleepQuietly(100);
+            }
+            return found(config);
+        });
+        UserProfileService service = service(0, null);
+        // At 5%, 20 lookups earn one hedge
+        for (int i = 0; i < 20; i++) {
+            assertTrue(service.findUserProfileById("u" + i).isPresent());
+        }
+
+        assertTrue(service.findUserProfileById("slow1").isPresent());
+        assertTrue(service.findUserProfileById("slow2").isPresent());
+
+        assertEquals(1, policy.getHedgeCount());
+        assertEquals(1, policy.getSkippedHedgeCount());
+        assertEquals(23, fakeBigQuery.queries().size());
+    }
+
+    @Test
+    void testOpenCircuitFailsFastAndFallsBackToTheCache() {
+        InMemoryUserProfileCache cache = new InMemoryUserProfileCache(10, 100, 1000, 1000, this::now);
+        fakeBigQuery.onQuery(this::found);
+        UserProfileService service = service(0, cache);
+        assertTrue(service.findUserProfileById("cached").isPresent());
+        advanceMillis(2000);
+
+        fakeBigQuery.failNextQueries("backendError", "backendError", "backendError", "backendError", "backendError", "backendError");
+        assertThrows(UserProfileUnavailableException.class, () -> service.findUserProfileById("u1"));
+        assertThrows(UserProfileUnavailableException.class, () -> service.findUserProfileById("u2"));
+        assertTrue(policy.isCircuitOpen());
+        int queries = fakeBigQuery.queries().size();
+
+        // The expired entry answers while the circuit is open; a profile never cached cannot
+        assertEquals("cached", service.findUserProfileById("cached").orElseThrow().getId());
+        assertThrows(UserProfileUnavailableException.class, () -> service.findUserProfileById("u1"));
+        assertThrows(UserProfileUnavailableException.class, () -> service.deleteUserProfileById("u1"));
+        assertEquals(queries, fakeBigQuery.queries().size());
+        assertEquals(3, policy.getRejectedCount());
+
+        advanceMillis(1000);
+        assertTrue(service.findUserProfileById("u1").isPresent());
+        assertFalse(policy.isCircuitOpen());
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.service;
+
+import com.google.cloud.bigquery.JobId;
+import io.micronaut.core.annotation.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class UserProfileMetricsTest {
+
+    private final FakeBigQuery fakeBigQuery = new FakeBigQuery();
+
+    private UserProfileService service(UserProfileMetrics metrics, long slowQueryMs) {
+        return new UserProfileService(fakeBigQuery.bigQuery(), "test-project", "test_dataset", "user_profiles",
+                UserProfileServiceOptions.newBuilder().setMetrics(metrics).setSlowQueryMs(slowQueryMs).build());
+    }
+
+    @Test
+    void testEveryJobIsRecordedWithItsStatistics() {
+        fakeBigQuery.onJobStatistics(jobId -> FakeBigQuery.queryStatistics(2048, 10_485_760, 350, false));
+        RecordingMetrics metrics = new RecordingMetrics(true);
+        UserProfileService service = service(metrics, 10_000);
+
+        service.saveUserProfile(UserProfileFixtures.profile("u1", 1));
+        service.findUserProfileById("u1");
+        service.deleteUserProfileById("u1");
+
+        assertEquals(List.of("insert", "select by ID", "delete"), metrics.operations);
+        assertEquals(3, fakeBigQuery.jobIds().size());
+        for (RecordedJob job : metrics.jobs) {
+            assertTrue(job.succeeded);
+            assertTrue(job.durationNanos > 0);
+            assertEquals(10_485_760, job.statistics.getTotalBytesBilled());
+            assertEquals(2048, job.statistics.getTotalBytesProcessed());
+            assertEquals(350, job.statistics.getTotalSlotMs());
+            assertFalse(job.statistics.isCacheHit());
+        }
+        assertEquals(fakeBigQuery.jobIds().get(1).getJob(), metrics.jobs.get(1).statistics.getJobId());
+        // Read from the finished jobs, not looked up afterwards
+        verify(fakeBigQuery.bigQuery(), never()).getJob(any(JobId.class));
+    }
+
+    @Test
+    void testCallsAnsweredFromTheCacheAreTimed() {
+        RecordingMetrics metrics = new RecordingMetrics(false);
+        InMemoryUserProfileCache cache = new InMemoryUserProfileCache(10, 100, 60_000, 60_000, System::nanoTime);
+        UserProfileService service = new UserProfileService(fakeBigQuery.bigQuery(), "test-project", "test_dataset", "user_profiles",
+                UserProfileServiceOptions.newBuilder().setCache(cache).setMetrics(metrics).build());
+
+        service.findUserProfileById("u1");
+        service.findUserProfileById("u1");
+        service.updateUserProfile(UserProfileFixtures.profile("u1", 1));
+
+        assertEquals(List.of("select by ID", "upsert"), metrics.operations);
+        assertEquals(List.of("find by ID", "find by ID", "update"), metrics.calls);
+    }
+
+    @Test
+    void testFailedJobsAreRecorded() {
+        fakeBigQuery.onQuery(config -> {
+            throw new IllegalStateException("quota exceeded");
+        });
+        RecordingMetrics metrics = new RecordingMetrics(false);
+
+        assertThrows(IllegalStateException.class, () -> service(metrics, 10_000).deleteUserProfileById("u1"));
+
+        assertEquals(List.of("delete"), metrics.operations);
+        assertFalse(metrics.jobs.get(0).succeeded);
+    }
+
+    @Test
+    void testTimingsOnlyKeepImplicitJobIds() {
+        RecordingMetrics metrics = new RecordingMetrics(false);
+
+        service(metrics, 10_000).getAllUserProfiles();
+
+        assertTrue(fakeBigQuery.jobIds().isEmpty());
+        assertNull(metrics.jobs.get(0).statistics);
+    }
+
+    @Test
+    void testUnavailableStatisticsDoNotFailTheCall() {
+        fakeBigQuery.onJobStatistics(jobId -> {
+            throw new IllegalStateException("statistics missing");
+        });
+        RecordingMetrics metrics = new RecordingMetrics(true);
+
+        // A zero threshold also logs every job as slow
+        service(metrics, 0).deleteUserProfileById("u1");
+
+        assertTrue(metrics.jobs.get(0).succeeded);
+        assertNull(metrics.jobs.get(0).statistics);
+    }
+
+    private static final class RecordedJob {
+        private final long durationNanos;
+        private final boolean succeeded;
+        private final UserProfileJobStatistics statistics;
+
+        private RecordedJob(long durationNanos, boolean succeeded, UserProfileJobStatistics statistics) {
+            this.durationNanos = durationNanos;
+            this.succeeded = succeeded;
+            this.statistics = statistics;
+        }
+    }
+
+    private static final class RecordingMetrics implements UserProfileMetrics {
+        private final boolean recordsJobStatistics;
+        private final List<String> operations = new CopyOnWriteArrayList<>();
+        private final List<RecordedJob> jobs = new CopyOnWriteArrayList<>();
+        private final List<String> calls = new CopyOnWriteArrayList<>();
+
+        private RecordingMetrics(boolean recordsJobStatistics) {
+            this.recordsJobStatistics = recordsJobStatistics;
+        }
+
+        @Override
+        public boolean recordsJobStatistics() {
+            return recordsJobStatistics;
+        }
+
+        @Override
+        public void recordJob(String operation, long durationNanos, boolean succeeded, @Nullable UserProfileJobStatistics statistics) {
+            operations.add(operation);
+            jobs.add(new RecordedJob(durationNanos, succeeded, statistics));
+        }
+
+        @Override
+        public void recordCall(String operation, long durationNanos, boolean succeeded) {
+            calls.add(operation);
+        }
+
+        @Override
+        public void recordWriteThroughFailure(int profileCount) {
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.service;
+
+import com.example.model.UserProfile;
+import com.example.model.UserProfileSummary;
+import com.google.cloud.bigquery.*;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.Mockito.*;
+
+class UserProfileProjectionTest {
+
+    private static final String TABLE = "`test-project.test_dataset.user_profiles`";
+    private static final Schema SUMMARY_SCHEMA = Schema.of(
+            Field.of("id", StandardSQLTypeName.STRING),
+            Field.of("firstName", StandardSQLTypeName.STRING),
+            Field.of("lastName", StandardSQLTypeName.STRING),
+            Field.of("dob", StandardSQLTypeName.DATE));
+
+    private final FakeBigQuery fakeBigQuery = new FakeBigQuery();
+    private final UserProfileService service = new UserProfileService(fakeBigQuery.bigQuery(), "test-project", "test_dataset", "user_profiles");
+
+    private static FieldValueList summaryRow(String id) {
+        return FieldValueList.of(List.of(
+                FieldValue.of(FieldValue.Attribute.PRIMITIVE, id),
+                FieldValue.of(FieldValue.Attribute.PRIMITIVE, "John"),
+                FieldValue.of(FieldValue.Attribute.PRIMITIVE, "Doe"),
+                FieldValue.of(FieldValue.Attribute.PRIMITIVE, "1990-01-15")
+        ), SUMMARY_SCHEMA.getFields());
+    }
+
+    @Test
+    void testSummaryByIdSkipsAddressColumn() {
+        fakeBigQuery.onQuery(config -> FakeBigQuery.result(List.of(summaryRow("u1"))));
+
+        UserProfileSummary summary = service.findUserProfileSummaryById("u1").orElseThrow();
+
+        assertEquals("SELECT id, firstName, lastName, dob FROM " + TABLE + " WHERE id = @id", fakeBigQuery.queries().get(0).getQuery());
+        assertEquals("u1", summary.getId());
+        assertEquals("Doe", summary.getLastName());
+        assertEquals(LocalDate.of(1990, 1, 15), summary.getDob());
+    }
+
+    @Test
+    void testFieldMaskSelectsAndMapsOnlyRequestedColumns() {
+        Schema schema = Schema.of(Field.of("id", StandardSQLTypeName.STRING), Field.of("lastName", StandardSQLTypeName.STRING));
+        fakeBigQuery.onQuery(config -> FakeBigQuery.result(List.of(FieldValueList.of(List.of(
+                FieldValue.of(FieldValue.Attribute.PRIMITIVE, "u1"),
+                FieldValue.of(FieldValue.Attribute.PRIMITIVE, "Doe")
+        ), schema.getFields()))));
+
+        List<UserProfile> found = service.findAllByIds(List.of("u1"), EnumSet.of(UserProfileField.LAST_NAME));
+
+        assertEquals("SELECT id, lastName FROM " + TABLE + " WHERE id IN UNNEST(@ids)", fakeBigQuery.queries().get(0).getQuery());
+        assertEquals("Doe", found.get(0).getLastName());
+        assertNull(found.get(0).getFirstName());
+        assertNull(found.get(0).getDob());
+        assertNull(found.get(0).getAddresses());
+    }
+
+    @Test
+    void testAllSummariesSkipAddressColumn() {
+        fakeBigQuery.onQuery(config -> FakeBigQuery.result(List.of(summaryRow("u1"), summaryRow("u2"))));
+
+        List<UserProfileSummary> summaries = service.getAllUserProfileSummaries();
+
+        assertEquals("SELECT id, firstName, lastName, dob FROM " + TABLE, fakeBigQuery.queries().get(0).getQuery());
+        assertEquals(2, summaries.size());
+        assertEquals("u2", summaries.get(1).getId());
+    }
+
+    @Test
+    void testFullFieldMaskReadsEveryColumn() {
+        UserProfile stored = UserProfileFixtures.profile("u1", 2);
+        fakeBigQuery.onQuery(config -> FakeBigQuery.result(List.of(UserProfileFixtures.row(stored))));
+
+        Optional<UserProfile> found = service.findUserProfileById("u1", UserProfileField.ALL);
+
+        assertEquals("SELECT id, firstName, lastName, dob, addresses_json FROM " + TABLE + " WHERE id = @id", fakeBigQuery.queries().get(0).getQuery());
+        assertEquals(2, found.orElseThrow().getAddresses().size());
+    }
+
+    @Test
+    void testAddressesAreDecodedOnFirstAccess() {
+        UserProfile stored = new UserProfile("u1", "John", "Doe", LocalDate.of(1990, 1, 15), null);
+        FieldValueList row = UserProfileFixtures.row(stored);
+        FieldValueList corrupt = FieldValueList.of(List.of(row.get(0), row.get(1), row.get(2), row.get(3),
+                FieldValue.of(FieldValue.Attribute.PRIMITIVE, "[{\"city\":")), UserProfileFixtures.SCHEMA.getFields());
+        fakeBigQuery.onQuery(config -> FakeBigQuery.result(List.of(corrupt)));
+
+        UserProfile found = service.getAllUserProfiles().get(0);
+
+        assertEquals("Doe", found.getLastName());
+        IllegalStateException e = assertThrows(IllegalStateException.class, found::getAddresses);
+        assertTrue(e.getMessage().contains("u1"));
+        assertInstanceOf(IllegalArgumentException.class, e.getCause());
+    }
+
+    @Test
+    void testPendingDecodeDoesNotReadTheRowAgain() {
+        FieldValueList row = mock(FieldValueList.class, delegatesTo(UserProfileFixtures.row(UserProfileFixtures.profile("u1", 2))));
+        fakeBigQuery.onQuery(config -> FakeBigQuery.result(List.of(row)));
+        UserProfile found = service.getAllUserProfiles().get(0);
+        clearInvocations(row);
+
+        assertEquals(2, found.getAddresses().size());
+        verifyNoInteractions(row);
+    }
+
+    @Test
+    void testSetAddressesReplacesPendingDecode() {
+        fakeBigQuery.onQuery(config -> FakeBigQuery.result(List.of(UserProfileFixtures.row(UserProfileFixtures.profile("u1", 3)))));
+        UserProfile found = service.getAllUserProfiles().get(0);
+
+        found.setAddresses(List.of());
+
+        assertTrue(found.getAddresses().isEmpty());
+    }
+}
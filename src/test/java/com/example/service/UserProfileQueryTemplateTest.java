@@ -0,0 +1,99 @@
+package com.example.service;
+
+import com.google.cloud.bigquery.BigQueryException;
+import com.google.cloud.bigquery.JobInfo;
+import com.google.cloud.bigquery.QueryJobConfiguration;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserProfileQueryTemplateTest {
+
+    private final FakeBigQuery fakeBigQuery = new FakeBigQuery();
+
+    private UserProfileService service(AddressStorageFormat addressFormat, boolean useQueryCache) {
+        return new UserProfileService(fakeBigQuery.bigQuery(), "test-project", "test_dataset", "user_profiles",
+                UserProfileServiceOptions.newBuilder().setAddressFormat(addressFormat).setUseQueryCache(useQueryCache).build());
+    }
+
+    @Test
+    void testReadsUseQueryCacheWhenEnabled() {
+        UserProfileService service = service(AddressStorageFormat.JSON, true);
+        service.findUserProfileById("u1");
+        service.getAllUserProfiles();
+        service.deleteUserProfileById("u1");
+
+        List<QueryJobConfiguration> queries = fakeBigQuery.queries();
+        assertEquals(Boolean.TRUE, queries.get(0).useQueryCache());
+        assertEquals(Boolean.TRUE, queries.get(1).useQueryCache());
+        assertNull(queries.get(2).useQueryCache());
+    }
+
+    @Test
+    void testReadsUseQueryCacheByDefault() {
+        new UserProfileService(fakeBigQuery.bigQuery(), "test-project", "test_dataset", "user_profiles").findAllByIds(List.of("u1"));
+
+        assertEquals(Boolean.TRUE, fakeBigQuery.queries().get(0).useQueryCache());
+    }
+
+    @Test
+    void testReadsBypassQueryCacheWhenDisabled() {
+        service(AddressStorageFormat.JSON, false).findAllByIds(List.of("u1"));
+
+        assertEquals(Boolean.FALSE, fakeBigQuery.queries().get(0).useQueryCache());
+    }
+
+    @Test
+    void testJobsAreLabelledWithTheirOperation() {
+        UserProfileService service = service(AddressStorageFormat.JSON, false);
+        service.findUserProfileById("u1");
+        service.upsertAll(UserProfileFixtures.profiles(2, 1));
+
+        assertEquals("select_by_id", fakeBigQuery.queries().get(0).getLabels().get("operation"));
+        assertEquals("upsert", fakeBigQuery.queries().get(1).getLabels().get("operation"));
+        assertEquals("userprofile", fakeBigQuery.queries().get(1).getLabels().get("component"));
+    }
+
+    @Test
+    void testTemplatesAreNotSharedBetweenCalls() {
+        UserProfileService service = service(AddressStorageFormat.JSON, false);
+        service.findUserProfileById("u1");
+        service.findUserProfileById("u2");
+
+        assertEquals("u1", fakeBigQuery.queries().get(0).getNamedParameters().get("id").getValue());
+        assertEquals("u2", fakeBigQuery.queries().get(1).getNamedParameters().get("id").getValue());
+    }
+
+    @Test
+    void testValidateQueriesDryRunsEveryStatement() {
+        service(AddressStorageFormat.DUAL, false).validateQueries();
+
+        List<JobInfo> dryRuns = fakeBigQuery.createdJobs();
+        assertEquals(9, dryRuns.size());
+        assertTrue(fakeBigQuery.queries().isEmpty());
+        List<String> statements = dryRuns.stream()
+                .map(job -> (QueryJobConfiguration) job.getConfiguration())
+                .peek(config -> assertTrue(config.dryRun()))
+                .map(QueryJobConfiguration::getQuery)
+                .collect(Collectors.toList());
+        assertTrue(statements.get(0).startsWith("INSERT INTO `test-project.test_dataset.user_profiles` (id, firstName, lastName, dob, addresses_json, addresses)"));
+        assertTrue(statements.get(7).startsWith("MERGE `test-project.test_dataset.user_profiles` T USING (SELECT @id AS id"));
+        assertEquals("DELETE FROM `test-project.test_dataset.user_profiles` WHERE id = @id", statements.get(8));
+    }
+
+    @Test
+    void testValidateQueriesNamesTheRejectedStatement() {
+        fakeBigQuery.onCreateJob(job -> {
+            throw new BigQueryException(404, "Not found: Table test-project:test_dataset.user_profiles");
+        });
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> service(AddressStorageFormat.JSON, false).validateQueries());
+
+        assertTrue(e.getMessage().contains("insert statement"));
+        assertTrue(e.getMessage().contains("Not found: Table"));
+        assertEquals(1, fakeBigQuery.createdJobs().size());
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.service;
+
+import com.example.model.UserProfile;
+import com.google.cloud.bigquery.*;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserProfileSecondaryLookupTest {
+
+    private static final String TABLE = "`test-project.test_dataset.user_profiles`";
+    private static final String COLUMNS = "id, firstName, lastName, dob, addresses_json";
+
+    private final FakeBigQuery fakeBigQuery = new FakeBigQuery();
+
+    private UserProfileService service(AddressStorageFormat addressFormat) {
+        return new UserProfileService(fakeBigQuery.bigQuery(), "test-project", "test_dataset", "user_profiles",
+                UserProfileServiceOptions.newBuilder().setAddressFormat(addressFormat).build());
+    }
+
+    private QueryJobConfiguration query() {
+        return fakeBigQuery.queries().get(0);
+    }
+
+    @Test
+    void testLastNamePrefixIsSentAsRange() {
+        fakeBigQuery.onQuery(config -> FakeBigQuery.result(UserProfileFixtures.rows(UserProfileFixtures.profiles(2, 1))));
+
+        List<UserProfile> found = service(AddressStorageFormat.JSON).findByLastNamePrefix("Do");
+
+        assertEquals(2, found.size());
+        assertEquals("SELECT " + COLUMNS + " FROM " + TABLE
+                        + " WHERE lastName >= @prefix AND STARTS_WITH(lastName, @prefix) AND lastName < @prefixEnd",
+                query().getQuery());
+        Map<String, QueryParameterValue> parameters = query().getNamedParameters();
+        assertEquals("Do", parameters.get("prefix").getValue());
+        assertEquals("Dp", parameters.get("prefixEnd").getValue());
+    }
+
+    @Test
+    void testLastNamePrefixUpperBoundSkipsSurrogates() {
+        service(AddressStorageFormat.JSON).findByLastNamePrefix("A\uD7FF");
+
+        assertEquals("A\uE000", query().getNamedParameters().get("prefixEnd").getValue());
+    }
+
+    @Test
+    void testLastNamePrefixWithoutUpperBound() {
+        service(AddressStorageFormat.JSON).findByLastNamePrefix("A" + new String(Character.toChars(Character.MAX_CODE_POINT)));
+
+        assertTrue(query().getQuery().endsWith("WHERE lastName >= @prefix AND STARTS_WITH(lastName, @prefix)"));
+        assertFalse(query().getNamedParameters().containsKey("prefixEnd"));
+    }
+
+    @Test
+    void testEmptyLastNamePrefixIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> service(AddressStorageFormat.JSON).findByLastNamePrefix(""));
+        assertTrue(fakeBigQuery.queries().isEmpty());
+    }
+
+    @Test
+    void testDobRangeIsInclusive() {
+        service(AddressStorageFormat.JSON).findByDobBetween(LocalDate.of(1990, 1, 1), LocalDate.of(1990, 12, 31));
+
+        assertEquals("SELECT " + COLUMNS + " FROM " + TABLE + " WHERE dob BETWEEN @dobFrom AND @dobTo", query().getQuery());
+        Map<String, QueryParameterValue> parameters = query().getNamedParameters();
+        assertEquals(StandardSQLTypeName.DATE, parameters.get("dobFrom").getType());
+        assertEquals("1990-01-01", parameters.get("dobFrom").getValue());
+        assertEquals("1990-12-31", parameters.get("dobTo").getValue());
+    }
+
+    @Test
+    void testReversedDobRangeIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> service(AddressStorageFormat.JSON).findByDobBetween(LocalDate.of(1991, 1, 1), LocalDate.of(1990, 1, 1)));
+    }
+
+    @Test
+    void testCityMatchesJsonAddresses() {
+        service(AddressStorageFormat.JSON).findByAddressCity("Anytown", null);
+
+        assertEquals("SELECT " + COLUMNS + " FROM " + TABLE + " WHERE EXISTS(SELECT 1 FROM UNNEST(JSON_QUERY_ARRAY(addresses_json)) a"
+                + " WHERE JSON_VALUE(a, '$.city') = @city)", query().getQuery());
+        assertFalse(query().getNamedParameters().containsKey("state"));
+    }
+
+    @Test
+    void testCityAndStateMatchRecordAddresses() {
+        service(AddressStorageFormat.RECORD).findByAddressCity("Anytown", "CA");
+
+        assertTrue(query().getQuery().endsWith(" WHERE EXISTS(SELECT 1 FROM UNNEST(addresses) a WHERE a.city = @city AND a.state = @state)"));
+        assertEquals("CA", query().getNamedParameters().get("state").getValue());
+    }
+
+    @Test
+    void testCityInDualFormatFallsBackToJsonForRowsNotBackfilled() {
+        service(AddressStorageFormat.DUAL).findByAddressCity("Anytown", null);
+
+        assertTrue(query().getQuery().endsWith(" WHERE EXISTS(SELECT 1 FROM UNNEST(addresses) a WHERE a.city = @city)"
+                + " OR (ARRAY_LENGTH(addresses) = 0 AND EXISTS(SELECT 1 FROM UNNEST(JSON_QUERY_ARRAY(addresses_json)) a"
+                + " WHERE JSON_VALUE(a, '$.city') = @city))"));
+    }
+
+    @Test
+    void testTableDefinitionPartitionsOnDobAndClustersOnLastNameAndId() {
+        UserProfileTableAdmin admin = new UserProfileTableAdmin(fakeBigQuery.bigQuery(), "test-project", "test_dataset", "user_profiles",
+                TimePartitioning.Type.YEAR, List.of("lastName", "id"), AddressStorageFormat.DUAL);
+
+        StandardTableDefinition definition = admin.tableDefinition();
+
+        assertEquals(TimePartitioning.Type.YEAR, definition.getTimePartitioning().getType());
+        assertEquals("dob", definition.getTimePartitioning().getField());
+        assertEquals(List.of("lastName", "id"), definition.getClustering().getFields());
+        assertEquals(UserProfileFixtures.DUAL_SCHEMA, definition.getSchema());
+    }
+
+    @Test
+    void testCopyIntoPartitionedTable() {
+        UserProfileTableAdmin admin = new UserProfileTableAdmin(fakeBigQuery.bigQuery(), "test-project", "test_dataset", "user_profiles",
+                TimePartitioning.Type.MONTH, List.of("lastName", "id"), AddressStorageFormat.JSON);
+
+        admin.copyIntoPartitionedTable("user_profiles_v2");
+
+        assertEquals("CREATE TABLE `test-project.test_dataset.user_profiles_v2` PARTITION BY DATE_TRUNC(dob, MONTH)"
+                + " CLUSTER BY lastName, id AS SELECT * FROM " + TABLE, query().getQuery());
+    }
+}
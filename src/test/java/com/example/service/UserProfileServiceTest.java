@@ -141,29 +141,53 @@ class UserProfileServiceTest {
 
     @Test
     void testUpdateUserProfile() throws InterruptedException, JobException {
-        // Mock the delete query part of the update
-        TableResult mockDeleteResult = mock(TableResult.class);
-        // Mock the insert query part of the update
-        TableResult mockInsertResult = mock(TableResult.class);
-
-        // Expect two queries: one DELETE, one INSERT
-        when(mockBigQuery.query(any(QueryJobConfiguration.class)))
-            .thenReturn(mockDeleteResult) // First call for DELETE
-            .thenReturn(mockInsertResult); // Second call for INSERT
+        TableResult mockMergeResult = mock(TableResult.class);
+        when(mockBigQuery.query(any(QueryJobConfiguration.class))).thenReturn(mockMergeResult);
 
         UserProfile updatedProfile = new UserProfile(userProfileSample.getId(), "Johnathan", "Doe", userProfileSample.getDob(), userProfileSample.getAddresses());
         UserProfile result = userProfileService.updateUserProfile(updatedProfile);
 
         assertEquals(updatedProfile.getFirstName(), result.getFirstName());
 
+        // A single MERGE job replaces the old DELETE + INSERT pair
         ArgumentCaptor<QueryJobConfiguration> captor = ArgumentCaptor.forClass(QueryJobConfiguration.class);
-        verify(mockBigQuery, times(2)).query(captor.capture());
+        verify(mockBigQuery).query(captor.capture());
 
-        List<QueryJobConfiguration> capturedConfigs = captor.getAllValues();
-        assertTrue(capturedConfigs.get(0).getQuery().startsWith("DELETE FROM"));
-        assertTrue(capturedConfigs.get(1).getQuery().startsWith("INSERT INTO"));
+        QueryJobConfiguration capturedConfig = captor.getValue();
+        assertTrue(capturedConfig.getQuery().startsWith("MERGE " + getExpectedFullTableName()));
+        assertTrue(capturedConfig.getQuery().contains("ON T.id = S.id"));
+        assertTrue(capturedConfig.getQuery().contains("WHEN NOT MATCHED THEN INSERT"));
+        assertEquals("Johnathan", capturedConfig.getNamedParameters().get("firstName").getValue());
     }
 
+    @Test
+    void testUpsertAllKeepsLastProfilePerId() throws InterruptedException, JobException {
+        TableResult mockMergeResult = mock(TableResult.class);
+        when(mockBigQuery.query(any(QueryJobConfiguration.class))).thenReturn(mockMergeResult);
+
+        UserProfile first = new UserProfile("a", "First", "Doe", null, List.of());
+        UserProfile other = new UserProfile("b", "Other", "Doe", null, List.of());
+        UserProfile last = new UserProfile("a", "Last", "Doe", null, List.of());
+
+        userProfileService.upsertAll(List.of(first, other, last));
+
+        ArgumentCaptor<QueryJobConfiguration> captor = ArgumentCaptor.forClass(QueryJobConfiguration.class);
+        verify(mockBigQuery).query(captor.capture());
+
+        QueryJobConfiguration capturedConfig = captor.getValue();
+        assertTrue(capturedConfig.getQuery().contains(" UNION ALL "));
+        assertEquals("b", capturedConfig.getNamedParameters().get("id_0").getValue());
+        assertEquals("Last", capturedConfig.getNamedParameters().get("firstName_1").getValue());
+        assertNull(capturedConfig.getNamedParameters().get("id_2"));
+    }
+
+    @Test
+    void testUpdateUserProfileRequiresId() {
+        UserProfile withoutId = new UserProfile(null, "John", "Doe", null, List.of());
+
+        assertThrows(IllegalArgumentException.class, () -> userProfileService.updateUserProfile(withoutId));
+        verifyNoInteractions(mockBigQuery);
+    }
 
     @Test
     void testDeleteUserProfileById() throws InterruptedException, JobException {
@@ -178,6 +202,59 @@ class UserProfileServiceTest {
         assertTrue(captor.getValue().getQuery().contains("WHERE id = @id"));
     }
 
+    @Test
+    void testSaveAllChunksIntoMultiRowInserts() throws InterruptedException, JobException {
+        TableResult mockTableResult = mock(TableResult.class);
+        when(mockBigQuery.query(any(QueryJobConfiguration.class))).thenReturn(mockTableResult);
+
+        List<UserProfile> profiles = new ArrayList<>();
+        for (int i = 0; i < 501; i++) {
+            profiles.add(new UserProfile(null, "John", "Doe", userProfileSample.getDob(), userProfileSample.getAddresses()));
+        }
+
+        List<UserProfile> results = userProfileService.saveAll(profiles);
+
+        assertEquals(501, results.size());
+        assertTrue(results.stream().allMatch(profile -> profile.getId() != null));
+
+        ArgumentCaptor<QueryJobConfiguration> captor = ArgumentCaptor.forClass(QueryJobConfiguration.class);
+        verify(mockBigQuery, times(2)).query(captor.capture());
+
+        QueryJobConfiguration firstChunk = captor.getAllValues().get(0);
+        assertTrue(firstChunk.getQuery().startsWith("INSERT INTO " + getExpectedFullTableName()));
+        assertTrue(firstChunk.getQuery().contains("(@id_499, @firstName_499, @lastName_499, @dob_499, @addressesJson_499)"));
+        assertEquals(500 * 5, firstChunk.getNamedParameters().size());
+        assertEquals(5, captor.getAllValues().get(1).getNamedParameters().size());
+    }
+
+    @Test
+    void testFindAllByIdsReturnsRequestOrder() throws InterruptedException, JobException {
+        TableResult mockTableResult = mock(TableResult.class);
+        FieldValueList rowB = mock(FieldValueList.class);
+        FieldValueList rowA = mock(FieldValueList.class);
+        for (FieldValueList row : List.of(rowA, rowB)) {
+            mockFieldValue(row, "firstName", userProfileSample.getFirstName());
+            mockFieldValue(row, "lastName", userProfileSample.getLastName());
+            mockFieldValue(row, "dob", userProfileSample.getDob().format(DateTimeFormatter.ISO_LOCAL_DATE));
+            mockFieldValue(row, "addresses_json", userProfileSampleJsonAddresses);
+        }
+        mockFieldValue(rowA, "id", "a");
+        mockFieldValue(rowB, "id", "b");
+        when(mockTableResult.iterateAll()).thenReturn(List.of(rowB, rowA));
+        when(mockBigQuery.query(any(QueryJobConfiguration.class))).thenReturn(mockTableResult);
+
+        List<UserProfile> results = userProfileService.findAllByIds(List.of("a", "missing", "b", "a"));
+
+        assertEquals(2, results.size());
+        assertEquals("a", results.get(0).getId());
+        assertEquals("b", results.get(1).getId());
+
+        ArgumentCaptor<QueryJobConfiguration> captor = ArgumentCaptor.forClass(QueryJobConfiguration.class);
+        verify(mockBigQuery).query(captor.capture());
+        assertTrue(captor.getValue().getQuery().contains("WHERE id IN UNNEST(@ids)"));
+        assertEquals(3, captor.getValue().getNamedParameters().get("ids").getArrayValues().size());
+    }
+
     // Helper to mock FieldValue getters
     private void mockFieldValue(FieldValueList row, String fieldName, String value) {
         FieldValue mockFv = mock(FieldValue.class);
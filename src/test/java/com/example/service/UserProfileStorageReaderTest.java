@@ -0,0 +1,188 @@
+package com.example.service;
+
+import com.example.model.UserProfile;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
+import com.google.api.gax.rpc.ApiCallContext;
+import com.google.api.gax.rpc.ResponseObserver;
+import com.google.api.gax.rpc.ServerStreamingCallable;
+import com.google.api.gax.rpc.StreamController;
+import com.google.api.gax.rpc.UnaryCallable;
+import com.google.cloud.bigquery.storage.v1.AvroRows;
+import com.google.cloud.bigquery.storage.v1.AvroSchema;
+import com.google.cloud.bigquery.storage.v1.BigQueryReadClient;
+import com.google.cloud.bigquery.storage.v1.CreateReadSessionRequest;
+import com.google.cloud.bigquery.storage.v1.DataFormat;
+import com.google.cloud.bigquery.storage.v1.ReadRowsRequest;
+import com.google.cloud.bigquery.storage.v1.ReadRowsResponse;
+import com.google.cloud.bigquery.storage.v1.ReadSession;
+import com.google.cloud.bigquery.storage.v1.ReadStream;
+import com.google.cloud.bigquery.storage.v1.stub.BigQueryReadStub;
+import com.google.protobuf.ByteString;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs {@link UserProfileStorageReader} against a client whose read session and read streams are served locally
+ * from Avro encoded fixture rows.
+ */
+class UserProfileStorageReaderTest {
+
+    private final List<CreateReadSessionRequest> sessionRequests = new CopyOnWriteArrayList<>();
+    // Responses of each read stream by stream name; a stream without responses fails
+    private final Map<String, List<ReadRowsResponse>> streams = new LinkedHashMap<>();
+
+    private UserProfileStorageReader reader(int maxStreams) {
+        return reader(maxStreams, null);
+    }
+
+    private UserProfileStorageReader reader(int maxStreams, ExecutorService readExecutor) {
+        return new UserProfileStorageReader(client(), "test-project", "test_dataset", "user_profiles",
+                maxStreams, 2, AddressStorageFormat.JSON, readExecutor);
+    }
+
+    private BigQueryReadClient client() {
+        BigQueryReadStub stub = mock(BigQueryReadStub.class);
+        when(stub.createReadSessionCallable()).thenReturn(new UnaryCallable<CreateReadSessionRequest, ReadSession>() {
+            @Override
+            public ApiFuture<ReadSession> futureCall(CreateReadSessionRequest request, ApiCallContext context) {
+                sessionRequests.add(request);
+                ReadSession.Builder session = ReadSession.newBuilder()
+                        .setAvroSchema(AvroSchema.newBuilder().setSchema(UserProfileFixtures.AVRO_ROW_SCHEMA));
+                for (String name : streams.keySet()) {
+                    session.addStreams(ReadStream.newBuilder().setName(name));
+                }
+                return ApiFutures.immediateFuture(session.build());
+            }
+        });
+        when(stub.readRowsCallable()).thenReturn(new ServerStreamingCallable<ReadRowsRequest, ReadRowsResponse>() {
+            @Override
+            public void call(ReadRowsRequest request, ResponseObserver<ReadRowsResponse> observer, ApiCallContext context) {
+                observer.onStart(new StreamController() {
+                    @Override
+                    public void cancel() {
+                    }
+
+                    @Override
+                    public void disableAutoInboundFlowControl() {
+                    }
+
+                    @Override
+                    public void request(int count) {
+                    }
+                });
+                List<ReadRowsResponse> responses = streams.get(request.getReadStream());
+                if (responses.isEmpty()) {
+                    observer.onError(new IllegalStateException("Read stream " + request.getReadStream() + " broke"));
+                    return;
+                }
+                responses.forEach(observer::onResponse);
+                observer.onComplete();
+            }
+        });
+        return BigQueryReadClient.create(stub);
+    }
+
+    private static ReadRowsResponse response(List<UserProfile> profiles) {
+        return ReadRowsResponse.newBuilder()
+                .setAvroRows(AvroRows.newBuilder().setSerializedBinaryRows(ByteString.copyFrom(UserProfileFixtures.avroRows(profiles))))
+                .setRowCount(profiles.size())
+                .build();
+    }
+
+    private static List<UserProfile> readAll(UserProfileStorageReader reader) {
+        try (Stream<UserProfile> profiles = reader.readAll(AddressJsonCodec::decode)) {
+            return profiles.collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    void testReadsEveryStreamOfTheSession() {
+        List<UserProfile> fixture = UserProfileFixtures.profiles(30, 2);
+        streams.put("stream-0", List.of(response(fixture.subList(0, 10)), response(fixture.subList(10, 15))));
+        streams.put("stream-1", List.of(response(fixture.subList(15, 30))));
+
+        List<UserProfile> profiles = readAll(reader(4));
+
+        assertEquals(fixture.stream().map(UserProfile::getId).collect(Collectors.toSet()),
+                profiles.stream().map(UserProfile::getId).collect(Collectors.toSet()));
+        assertEquals(30, profiles.size());
+        UserProfile user7 = profiles.stream().filter(profile -> profile.getId().equals("user7")).findFirst().orElseThrow();
+        assertEquals("Doe", user7.getLastName());
+        assertEquals(fixture.get(7).getDob(), user7.getDob());
+        assertEquals("101 Main St", user7.getAddresses().get(1).getAddress());
+    }
+
+    @Test
+    void testRequestsAnAvroSessionOfTheProfileColumns() {
+        streams.put("stream-0", List.of(response(UserProfileFixtures.profiles(1, 0))));
+
+        readAll(reader(4));
+
+        CreateReadSessionRequest request = sessionRequests.get(0);
+        assertEquals("projects/test-project", request.getParent());
+        assertEquals("projects/test-project/datasets/test_dataset/tables/user_profiles", request.getReadSession().getTable());
+        assertEquals(DataFormat.AVRO, request.getReadSession().getDataFormat());
+        assertEquals(List.of("id", "firstName", "lastName", "dob", "addresses_json"),
+                request.getReadSession().getReadOptions().getSelectedFieldsList());
+        assertEquals(4, request.getMaxStreamCount());
+    }
+
+    @Test
+    void testEmptyTableHasNoStreams() {
+        assertTrue(readAll(reader(4)).isEmpty());
+    }
+
+    @Test
+    void testFailedStreamFailsTheScan() {
+        streams.put("stream-0", List.of(response(UserProfileFixtures.profiles(5, 1))));
+        streams.put("stream-1", new ArrayList<>());
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> readAll(reader(2)));
+
+        assertEquals("BigQuery storage read failed", e.getMessage());
+        assertTrue(e.getCause().getMessage().contains("stream-1"));
+    }
+
+    @Test
+    void testClosingTheScanEarlyReleasesTheReaderThreads() throws Exception {
+        List<ReadRowsResponse> responses = new ArrayList<>();
+        for (UserProfile profile : UserProfileFixtures.profiles(20, 1)) {
+            responses.add(response(List.of(profile)));
+        }
+        streams.put("stream-0", responses);
+        streams.put("stream-1", new ArrayList<>(responses));
+        ThreadPoolExecutor readExecutor = (ThreadPoolExecutor) Executors.newCachedThreadPool();
+        try {
+            try (Stream<UserProfile> profiles = reader(2, readExecutor).readAll(AddressJsonCodec::decode)) {
+                Iterator<UserProfile> iterator = profiles.iterator();
+                assertTrue(iterator.hasNext());
+                iterator.next();
+                // Both readers are now waiting for room in the two-batch buffer
+            }
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (readExecutor.getActiveCount() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(0, readExecutor.getActiveCount());
+        } finally {
+            readExecutor.shutdownNow();
+        }
+    }
+}
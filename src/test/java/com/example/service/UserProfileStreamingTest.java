@@ -0,0 +1,139 @@
+package com.example.service;
+
+import com.example.model.UserProfile;
+import com.google.cloud.bigquery.BigQuery;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserProfileStreamingTest {
+
+    private final List<UserProfile> tableProfiles = UserProfileFixtures.profiles(25, 2);
+    private final FakeBigQuery fakeBigQuery = new FakeBigQuery()
+            .withTableSchema(UserProfileFixtures.SCHEMA)
+            .onListTableData(args -> FakeBigQuery.pages(UserProfileFixtures.rows(tableProfiles), 10));
+    private final UserProfileService userProfileService =
+            new UserProfileService(fakeBigQuery.bigQuery(), "test-project", "test_dataset", "user_profiles");
+
+    @Test
+    void testStreamMapsEveryPageInOrder() {
+        for (int prefetchPages : new int[] {0, 1, 3}) {
+            try (Stream<UserProfile> profiles = userProfileService.streamAllUserProfiles(10, prefetchPages)) {
+                List<String> ids = profiles.map(UserProfile::getId).collect(Collectors.toList());
+
+                assertEquals(tableProfiles.stream().map(UserProfile::getId).collect(Collectors.toList()), ids);
+            }
+        }
+        assertTrue(fakeBigQuery.queries().isEmpty());
+        assertTrue(fakeBigQuery.listTableDataCalls().get(0).contains(BigQuery.TableDataListOption.pageSize(10)));
+    }
+
+    @Test
+    void testStreamIsLazy() {
+        try (Stream<UserProfile> profiles = userProfileService.streamAllUserProfiles(10, 0)) {
+            UserProfile first = profiles.findFirst().orElseThrow();
+
+            assertEquals("user0", first.getId());
+            assertEquals(2, first.getAddresses().size());
+        }
+    }
+
+    @Test
+    void testPagesFollowTokens() {
+        UserProfilePage first = userProfileService.getUserProfilesPage(null, 10);
+
+        assertEquals(10, first.getProfiles().size());
+        assertEquals("page-1", first.getNextPageToken());
+
+        fakeBigQuery.onListTableData(args -> FakeBigQuery.pages(UserProfileFixtures.rows(tableProfiles.subList(20, 25)), 10));
+        UserProfilePage last = userProfileService.getUserProfilesPage("page-2", 10);
+
+        assertEquals("user20", last.getProfiles().get(0).getId());
+        assertFalse(last.hasNextPage());
+        assertTrue(fakeBigQuery.listTableDataCalls().get(1).contains(BigQuery.TableDataListOption.pageToken("page-2")));
+    }
+
+    @Test
+    void testPublisherHonoursDemand() throws Exception {
+        List<UserProfile> received = new CopyOnWriteArrayList<>();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+
+        userProfileService.publishAllUserProfiles().subscribe(new Flow.Subscriber<>() {
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(UserProfile item) {
+                received.add(item);
+                subscription.request(1);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                done.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                done.complete(null);
+            }
+        });
+
+        done.get(5, TimeUnit.SECONDS);
+        assertEquals(25, received.size());
+        assertEquals("user24", received.get(24).getId());
+    }
+
+    @Test
+    void testPublisherScansOnTheGivenExecutorAndStopsWhenCancelled() throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool(runnable -> new Thread(runnable, "test-scan"));
+        UserProfileService service = new UserProfileService(fakeBigQuery.bigQuery(), "test-project", "test_dataset", "user_profiles",
+                UserProfileServiceOptions.newBuilder().setScanPageSize(10).setScanPrefetchPages(1).setScanExecutor(executor).build());
+        CompletableFuture<String> deliveredOn = new CompletableFuture<>();
+
+        service.publishAllUserProfiles().subscribe(new Flow.Subscriber<>() {
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(UserProfile item) {
+                subscription.cancel();
+                deliveredOn.complete(Thread.currentThread().getName());
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                deliveredOn.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+
+        assertEquals("test-scan", deliveredOn.get(5, TimeUnit.SECONDS));
+        // The scan and its prefetching end once the subscriber is gone, so nothing keeps running on the executor
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.service;
+
+import com.example.model.UserProfile;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the MERGE based update path with the previous delete-then-insert path
+ * (rebuilt here from deleteUserProfileById + saveUserProfile) against a fake BigQuery
+ * that charges a fixed latency per job.
+ */
+class UserProfileUpsertJobCountTest {
+
+    private static final long JOB_LATENCY_MS = 25;
+
+    private final FakeBigQuery fakeBigQuery = new FakeBigQuery().withLatency(JOB_LATENCY_MS);
+    private final UserProfileService userProfileService =
+            new UserProfileService(fakeBigQuery.bigQuery(), "test-project", "test_dataset", "user_profiles");
+
+    private List<UserProfile> profiles(int count) {
+        List<UserProfile> profiles = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            profiles.add(new UserProfile("user" + i, "John", "Doe", LocalDate.of(1990, 1, 15), List.of()));
+        }
+        return profiles;
+    }
+
+    @Test
+    void testSingleUpdateCostsOneJobInsteadOfTwo() {
+        UserProfile profile = profiles(1).get(0);
+
+        long legacyStart = System.nanoTime();
+        userProfileService.deleteUserProfileById(profile.getId());
+        userProfileService.saveUserProfile(profile);
+        long legacyNanos = System.nanoTime() - legacyStart;
+        int legacyJobs = fakeBigQuery.queries().size();
+
+        fakeBigQuery.queries().clear();
+        long mergeStart = System.nanoTime();
+        userProfileService.updateUserProfile(profile);
+        long mergeNanos = System.nanoTime() - mergeStart;
+        int mergeJobs = fakeBigQuery.queries().size();
+
+        assertEquals(2, legacyJobs);
+        assertEquals(1, mergeJobs);
+        assertTrue(mergeNanos < legacyNanos);
+    }
+
+    @Test
+    void testBatchUpsertCostsOneJobForManyProfiles() {
+        List<UserProfile> profiles = profiles(20);
+
+        long legacyStart = System.nanoTime();
+        for (UserProfile profile : profiles) {
+            userProfileService.deleteUserProfileById(profile.getId());
+            userProfileService.saveUserProfile(profile);
+        }
+        long legacyNanos = System.nanoTime() - legacyStart;
+        int legacyJobs = fakeBigQuery.queries().size();
+
+        fakeBigQuery.queries().clear();
+        long mergeStart = System.nanoTime();
+        userProfileService.upsertAll(profiles);
+        long mergeNanos = System.nanoTime() - mergeStart;
+        int mergeJobs = fakeBigQuery.queries().size();
+
+        assertEquals(40, legacyJobs);
+        assertEquals(1, mergeJobs);
+        assertTrue(fakeBigQuery.queries().get(0).getQuery().startsWith("MERGE "));
+        assertTrue(mergeNanos < legacyNanos);
+    }
+}
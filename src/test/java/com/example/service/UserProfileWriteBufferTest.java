@@ -0,0 +1,140 @@
+package com.example.service;
+
+import com.example.model.Address;
+import com.example.model.UserProfile;
+import com.google.cloud.bigquery.BigQueryError;
+import com.google.cloud.bigquery.InsertAllRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserProfileWriteBufferTest {
+
+    private final FakeBigQuery fakeBigQuery = new FakeBigQuery();
+    private UserProfileWriteBuffer writeBuffer;
+
+    @AfterEach
+    void tearDown() {
+        if (writeBuffer != null) {
+            writeBuffer.close();
+        }
+    }
+
+    private UserProfileWriteBuffer newBuffer(int batchSize, long flushIntervalMs, int capacity) {
+        writeBuffer = new UserProfileWriteBuffer(fakeBigQuery.bigQuery(), "test-project", "test_dataset", "user_profiles",
+                batchSize, flushIntervalMs, capacity);
+        return writeBuffer;
+    }
+
+    private UserProfile profile(String id) {
+        return new UserProfile(id, "John", "Doe", LocalDate.of(1990, 1, 15),
+                List.of(new Address("Home", "123 Main St", "Anytown", "CA", "90210", "5")));
+    }
+
+    @Test
+    void testFullBatchIsFlushedAsOneInsertAll() throws Exception {
+        UserProfileWriteBuffer buffer = newBuffer(3, 60_000, 100);
+
+        CompletableFuture<UserProfile> first = buffer.enqueue(profile("u1"));
+        buffer.enqueue(profile("u2"));
+        CompletableFuture<UserProfile> last = buffer.enqueue(profile("u3"));
+
+        assertEquals("u3", last.get(5, TimeUnit.SECONDS).getId());
+        assertEquals("u1", first.get(5, TimeUnit.SECONDS).getId());
+        assertEquals(1, fakeBigQuery.insertAllRequests().size());
+
+        InsertAllRequest request = fakeBigQuery.insertAllRequests().get(0);
+        assertEquals("user_profiles", request.getTable().getTable());
+        assertEquals(3, request.getRows().size());
+        assertEquals("u1", request.getRows().get(0).getContent().get("id"));
+        assertEquals("1990-01-15", request.getRows().get(0).getContent().get("dob"));
+        assertTrue(fakeBigQuery.queries().isEmpty());
+    }
+
+    @Test
+    void testPartialBatchIsFlushedAfterInterval() throws Exception {
+        UserProfileWriteBuffer buffer = newBuffer(100, 50, 100);
+
+        CompletableFuture<UserProfile> result = buffer.enqueue(profile("u1"));
+
+        assertEquals("u1", result.get(5, TimeUnit.SECONDS).getId());
+        assertEquals(1, fakeBigQuery.insertAllRequests().size());
+    }
+
+    @Test
+    void testRowErrorsFailOnlyTheRejectedProfile() throws Exception {
+        fakeBigQuery.onInsertAll(request -> FakeBigQuery.insertAllResponse(
+                Map.of(1L, List.of(new BigQueryError("invalid", "dob", "Invalid date")))));
+        UserProfileWriteBuffer buffer = newBuffer(2, 60_000, 100);
+
+        CompletableFuture<UserProfile> accepted = buffer.enqueue(profile("u1"));
+        CompletableFuture<UserProfile> rejected = buffer.enqueue(profile("u2"));
+
+        assertEquals("u1", accepted.get(5, TimeUnit.SECONDS).getId());
+        ExecutionException e = assertThrows(ExecutionException.class, () -> rejected.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause().getMessage().contains("u2"));
+    }
+
+    @Test
+    void testCloseFlushesPendingProfiles() throws Exception {
+        UserProfileWriteBuffer buffer = newBuffer(100, 60_000, 100);
+
+        CompletableFuture<UserProfile> result = buffer.enqueue(profile("u1"));
+        buffer.close();
+
+        assertTrue(result.isDone());
+        assertEquals("u1", result.get().getId());
+        assertEquals(0, buffer.pendingCount());
+        assertThrows(IllegalStateException.class, () -> buffer.enqueue(profile("u2")));
+    }
+
+    @Test
+    void testSaveUserProfileUsesBufferInStreamingMode() throws Exception {
+        UserProfileWriteBuffer buffer = newBuffer(1, 60_000, 100);
+        UserProfileService service = new UserProfileService(fakeBigQuery.bigQuery(), "test-project", "test_dataset", "user_profiles",
+                UserProfileServiceOptions.newBuilder().setWriteBuffer(buffer).build());
+
+        UserProfile saved = service.saveUserProfile(profile(null));
+        buffer.close();
+
+        assertNotNull(saved.getId());
+        assertEquals(1, fakeBigQuery.insertAllRequests().size());
+        assertEquals(saved.getId(), fakeBigQuery.insertAllRequests().get(0).getRows().get(0).getContent().get("id"));
+        assertTrue(fakeBigQuery.queries().isEmpty());
+    }
+
+    @Test
+    void testSavingTheSameProfileTwiceSendsDistinctInsertIds() throws Exception {
+        UserProfileWriteBuffer buffer = newBuffer(2, 60_000, 100);
+
+        buffer.enqueue(profile("u1"));
+        buffer.enqueue(profile("u1")).get(5, TimeUnit.SECONDS);
+
+        List<InsertAllRequest.RowToInsert> rows = fakeBigQuery.insertAllRequests().get(0).getRows();
+        assertEquals(2, rows.size());
+        assertNotNull(rows.get(0).getId());
+        assertNotEquals(rows.get(0).getId(), rows.get(1).getId());
+    }
+
+    @Test
+    void testEnqueueUserProfileReportsRejectedRows() {
+        fakeBigQuery.onInsertAll(request -> FakeBigQuery.insertAllResponse(
+                Map.of(0L, List.of(new BigQueryError("invalid", "dob", "Invalid date")))));
+        UserProfileWriteBuffer buffer = newBuffer(1, 60_000, 100);
+        UserProfileService service = new UserProfileService(fakeBigQuery.bigQuery(), "test-project", "test_dataset", "user_profiles",
+                UserProfileServiceOptions.newBuilder().setWriteBuffer(buffer).build());
+
+        CompletableFuture<UserProfile> written = service.enqueueUserProfile(profile("u1"));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> written.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause().getMessage().contains("u1"));
+    }
+}
@@ -0,0 +1,32 @@
+#!/usr/bin/env bash
+# Load test of the game page, run against a started application.
+#
+# Measures the full page and the revalidation answered with 304. No results have been recorded yet, so the page
+# cache has no measured gain to claim. To compare it with rendering every request, build with ./mvnw package and run
+# the script once with the page cache disabled and once enabled, then record both outputs:
+#   java -Dtennis.views.page-cache.enabled=false -jar target/tennis-app-0.1.jar   then   load-test/game-page.sh
+#   java -jar target/tennis-app-0.1.jar                                           then   load-test/game-page.sh
+#
+# Requires curl and wrk. BASE_URL, THREADS, CONNECTIONS and DURATION can be overridden.
+set -euo pipefail
+
+BASE_URL="${BASE_URL:-http://localhost:8080}"
+THREADS="${THREADS:-4}"
+CONNECTIONS="${CONNECTIONS:-64}"
+DURATION="${DURATION:-30s}"
+
+# A new game redirects to its page; score a few points so the page is not the Love-All one
+GAME_PATH="$(curl -s -o /dev/null -w '%{redirect_url}' -X POST "$BASE_URL/game/")"
+GAME_URL="${GAME_PATH/#\//$BASE_URL/}"
+curl -s -o /dev/null -X POST -H 'Content-Type: application/json' -d '{"points":[1,2,1]}' "$GAME_URL/points"
+ETAG="$(curl -s -D - -o /dev/null "$GAME_URL" | tr -d '\r' | awk 'tolower($1) == "etag:" { print $2 }')"
+
+echo "== Full page: $GAME_URL"
+wrk -t"$THREADS" -c"$CONNECTIONS" -d"$DURATION" --latency "$GAME_URL"
+
+if [ -n "$ETAG" ]; then
+  echo "== Revalidation with If-None-Match: $ETAG"
+  wrk -t"$THREADS" -c"$CONNECTIONS" -d"$DURATION" --latency -H "If-None-Match: $ETAG" "$GAME_URL"
+else
+  echo "== No ETag returned, the page cache is disabled"
+fi
@@ -0,0 +1,82 @@
+package tennis.app;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures scoring one game from several threads at once: {@link ConcurrentTennisGame}, which retries a
+ * compare-and-set, against a {@link TennisGame} scored under a lock. Half the threads of each group score for
+ * Player 1 and half for Player 2; the thread scoring the winning point starts the game over, so the game never
+ * settles in a state where points are ignored.
+ * Thread counts can be changed with {@code -tg}, e.g. {@code -tg 1,1} for the uncontended case.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentTennisGameBenchmark {
+
+    private ConcurrentTennisGame atomicGame;
+    private TennisGame lockedGame;
+    private final Object lock = new Object();
+
+    @Setup
+    public void setUp() {
+        atomicGame = new ConcurrentTennisGame();
+        lockedGame = new TennisGame();
+    }
+
+    @Benchmark
+    @Group("atomic")
+    @GroupThreads(2)
+    public int atomicPlayer1() {
+        return scoreAtomic(TennisScoreEngine.PLAYER_1);
+    }
+
+    @Benchmark
+    @Group("atomic")
+    @GroupThreads(2)
+    public int atomicPlayer2() {
+        return scoreAtomic(TennisScoreEngine.PLAYER_2);
+    }
+
+    @Benchmark
+    @Group("locked")
+    @GroupThreads(2)
+    public int lockedPlayer1() {
+        return scoreLocked(TennisScoreEngine.PLAYER_1);
+    }
+
+    @Benchmark
+    @Group("locked")
+    @GroupThreads(2)
+    public int lockedPlayer2() {
+        return scoreLocked(TennisScoreEngine.PLAYER_2);
+    }
+
+    private int scoreAtomic(int player) {
+        int state = atomicGame.scorePoint(player);
+        if (TennisScoreEngine.isOver(state)) {
+            atomicGame.reset();
+        }
+        return state;
+    }
+
+    private int scoreLocked(int player) {
+        synchronized (lock) {
+            if (player == TennisScoreEngine.PLAYER_1) {
+                lockedGame.player1ScoresPoint();
+            } else {
+                lockedGame.player2ScoresPoint();
+            }
+            int state = lockedGame.getState();
+            if (TennisScoreEngine.isOver(state)) {
+                lockedGame = new TennisGame();
+            }
+            return state;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package tennis.app;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * A single game of Tennis that several threads can score at once without losing points.
+ * <p>
+ * Both point counters live in one {@link TennisScoreEngine} state, so a point is a single compare-and-set of that
+ * {@code int}: a thread whose update raced with another one recomputes the point from the state it lost to and tries
+ * again. No thread ever waits on a lock, and a point scored after the game is won writes nothing.
+ */
+public class ConcurrentTennisGame {
+
+    private static final VarHandle STATE;
+
+    static {
+        try {
+            STATE = MethodHandles.lookup().findVarHandle(ConcurrentTennisGame.class, "state", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private volatile int state;
+
+    /**
+     * Constructs a new game at Love-All.
+     */
+    public ConcurrentTennisGame() {
+        this.state = TennisScoreEngine.NEW_GAME;
+    }
+
+    /**
+     * Awards a point to Player 1.
+     *
+     * @return The state after the point.
+     */
+    public int player1ScoresPoint() {
+        return scorePoint(TennisScoreEngine.PLAYER_1);
+    }
+
+    /**
+     * Awards a point to Player 2.
+     *
+     * @return The state after the point.
+     */
+    public int player2ScoresPoint() {
+        return scorePoint(TennisScoreEngine.PLAYER_2);
+    }
+
+    /**
+     * Awards a point. Points scored after the game is won are ignored.
+     *
+     * @param player {@link TennisScoreEngine#PLAYER_1} or {@link TennisScoreEngine#PLAYER_2}.
+     * @return The state after the point.
+     */
+    public int scorePoint(int player) {
+        int current = state;
+        while (true) {
+            int next = TennisScoreEngine.pointTo(current, player);
+            if (next == current) {
+                return current;
+            }
+            int witness = (int) STATE.compareAndExchange(this, current, next);
+            if (witness == current) {
+                return next;
+            }
+            current = witness;
+        }
+    }
+
+    /**
+     * Starts the game over at Love-All.
+     */
+    public void reset() {
+        state = TennisScoreEngine.NEW_GAME;
+    }
+
+    /**
+     * Gets the current score in tennis terminology.
+     *
+     * @return The score string (e.g., "Love-All", "Fifteen-Love", "Deuce", "Advantage Player 1", "Game Player 1").
+     */
+    public String getScore() {
+        return TennisScoreEngine.score(state);
+    }
+
+    /**
+     * @return The encoded state of the game; see {@link TennisScoreEngine}.
+     */
+    public int getState() {
+        return state;
+    }
+}
@@ -1,97 +1,189 @@
 package tennis.app;
 
-import io.micronaut.http.HttpResponse;
-import io.micronaut.http.annotation.Controller;
-import io.micronaut.http.annotation.Get;
-import io.micronaut.http.annotation.Post;
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.http.HttpHeaders;
 import io.micronaut.http.HttpRequest;
 import io.micronaut.http.HttpResponse;
+import io.micronaut.http.HttpStatus;
+import io.micronaut.http.MediaType;
 import io.micronaut.http.MutableHttpResponse;
+import io.micronaut.http.annotation.Body;
 import io.micronaut.http.annotation.Controller;
 import io.micronaut.http.annotation.Get;
+import io.micronaut.http.annotation.Header;
 import io.micronaut.http.annotation.Post;
-import io.micronaut.http.server.util.HttpHostResolver;
-import io.micronaut.http.uri.UriBuilder;
-import io.micronaut.session.Session;
-import io.micronaut.session.http.HttpSessionFilter;
+import io.micronaut.http.exceptions.HttpStatusException;
 import io.micronaut.views.ModelAndView;
+import org.reactivestreams.Publisher;
 
 import java.net.URI;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.OptionalInt;
 
 /**
  * Controller for the Tennis Game web interface.
+ * Each game lives in the {@link GameRegistry} under an id that is part of its URL, so scoring a point is a single
+ * compare-and-set on the stored state rather than a read-modify-write of the session.
+ * Besides the HTML pages, {@code POST /game/{id}/points} scores a batch of points and answers with the score as JSON,
+ * and {@code GET /game/{id}/scores} streams the score as server-sent events while the game is played.
  */
 @Controller("/game")
 public class GameController {
 
-    private static final String SESSION_KEY_GAME = "tennisGame";
+    static final int MAX_BATCH_POINTS = 1000;
+
+    private final GameRegistry registry;
+    private final IdempotencyKeys idempotencyKeys;
+    private final LiveScores liveScores;
+    private final GamePageCache pageCache;
+
+    public GameController(GameRegistry registry, IdempotencyKeys idempotencyKeys, LiveScores liveScores,
+                          GamePageCache pageCache) {
+        this.registry = registry;
+        this.idempotencyKeys = idempotencyKeys;
+        this.liveScores = liveScores;
+        this.pageCache = pageCache;
+    }
 
     /**
-     * Handles GET requests to display the game score.
-     * Retrieves the game from session or creates a new one if not found.
-     * @param request The HTTP request, used to access the session.
-     * @return ModelAndView for the game view, displaying the current score.
+     * Handles GET requests to the start page, which offers to start a new game.
+     * Games are only created by POST, so crawlers and prefetching browsers do not fill the registry.
+     * @return ModelAndView for the start view.
      */
     @Get("/")
-    public ModelAndView<Map<String, Object>> showGame(HttpRequest<?> request) {
-        Session session = request.getAttributes().get(HttpSessionFilter.SESSION_ATTRIBUTE, Session.class)
-                .orElseThrow(() -> new IllegalStateException("Session not found in request attributes. Ensure session handling is enabled."));
-
-        TennisGame game = session.get(SESSION_KEY_GAME, TennisGame.class).orElseGet(() -> {
-            TennisGame newGame = new TennisGame();
-            session.put(SESSION_KEY_GAME, newGame);
-            return newGame;
-        });
-        return new ModelAndView<>("game", Map.of("score", game.getScore()));
+    public ModelAndView<Map<String, Object>> startPage() {
+        return new ModelAndView<>("start", Map.of());
     }
 
     /**
-     * Handles POST requests when Player 1 scores a point.
-     * Updates the score and redirects to the game view.
-     * @param request The HTTP request, used to access the session.
-     * @return HttpResponse redirecting to the main game page.
+     * Handles POST requests to start a new game.
+     * @return HttpResponse redirecting to the page of the new game.
+     */
+    @Post("/")
+    public HttpResponse<?> newGame() {
+        return redirectTo(registry.newGame());
+    }
+
+    /**
+     * Handles GET requests to display the game score.
+     * The page is served from the {@link GamePageCache}, answering 304 if the client already has it.
+     * @param id The id of the game.
+     * @param request The HTTP request, used to render a score the cache does not hold yet.
+     * @param ifNoneMatch The ETag of the page the client has, if any.
+     * @return The game view, displaying the current score, or a redirect to the start page if the game does not
+     *         exist or was evicted.
      */
-    @Post("/player1-scores")
-    public HttpResponse<?> player1Scores(HttpRequest<?> request) {
-        Session session = request.getAttributes().get(HttpSessionFilter.SESSION_ATTRIBUTE, Session.class)
-                .orElseThrow(() -> new IllegalStateException("Session not found in request attributes."));
-
-        Optional<TennisGame> gameOptional = session.get(SESSION_KEY_GAME, TennisGame.class);
-        if (gameOptional.isEmpty()) {
-            // Session expired or game not found, redirect to start a new game
+    @Get("/{id}")
+    public HttpResponse<?> showGame(String id, HttpRequest<?> request,
+                                    @Nullable @Header(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
+        OptionalInt state = registry.gameState(id);
+        if (state.isEmpty()) {
             return HttpResponse.seeOther(URI.create("/game/"));
         }
+        String score = TennisScoreEngine.score(state.getAsInt());
+        if (!pageCache.isCacheable(id)) {
+            return HttpResponse.ok(new ModelAndView<>(GamePageCache.VIEW, Map.of("gameId", id, "score", score)));
+        }
+        GamePageCache.Page page = pageCache.page(score, request);
+        // The score changes under the same URL, so browsers must revalidate every time
+        MutableHttpResponse<?> response = page.matches(ifNoneMatch)
+                ? HttpResponse.notModified()
+                : HttpResponse.ok(page.html(id)).contentType(MediaType.TEXT_HTML_TYPE);
+        return response.header(HttpHeaders.ETAG, page.etag()).header(HttpHeaders.CACHE_CONTROL, "no-cache");
+    }
 
-        TennisGame game = gameOptional.get();
-        game.player1ScoresPoint();
-        session.put(SESSION_KEY_GAME, game); // Store updated game back in session
-
-        return HttpResponse.seeOther(URI.create("/game/"));
+    /**
+     * Handles POST requests when Player 1 scores a point.
+     * Updates the score and redirects to the game view.
+     * @param id The id of the game.
+     * @return HttpResponse redirecting to the game page.
+     */
+    @Post("/{id}/player1-scores")
+    public HttpResponse<?> player1Scores(String id) {
+        return scorePoint(id, TennisScoreEngine.PLAYER_1);
     }
 
     /**
      * Handles POST requests when Player 2 scores a point.
      * Updates the score and redirects to the game view.
-     * @param request The HTTP request, used to access the session.
-     * @return HttpResponse redirecting to the main game page.
+     * @param id The id of the game.
+     * @return HttpResponse redirecting to the game page.
      */
-    @Post("/player2-scores")
-    public HttpResponse<?> player2Scores(HttpRequest<?> request) {
-        Session session = request.getAttributes().get(HttpSessionFilter.SESSION_ATTRIBUTE, Session.class)
-                .orElseThrow(() -> new IllegalStateException("Session not found in request attributes."));
-
-        Optional<TennisGame> gameOptional = session.get(SESSION_KEY_GAME, TennisGame.class);
-        if (gameOptional.isEmpty()) {
-            // Session expired or game not found, redirect to start a new game
-            return HttpResponse.seeOther(URI.create("/game/"));
+    @Post("/{id}/player2-scores")
+    public HttpResponse<?> player2Scores(String id) {
+        return scorePoint(id, TennisScoreEngine.PLAYER_2);
+    }
+
+    /**
+     * Handles JSON requests scoring a batch of points, applied to the game all at once.
+     * A request sent again with the same {@code Idempotency-Key} header gets the first response without scoring the
+     * points again.
+     * @param id The id of the game.
+     * @param idempotencyKey Optional key identifying the batch across retries.
+     * @param request The winner of each point in order, 1 or 2.
+     * @return The score after the points; 404 if the game does not exist or was evicted, 400 if a point is not 1 or 2.
+     */
+    @Post("/{id}/points")
+    public ScoreResponse scorePoints(String id, @Nullable @Header("Idempotency-Key") String idempotencyKey,
+                                     @Body ScorePointsRequest request) {
+        List<Integer> points = request.points();
+        int[] players = players(points);
+        if (idempotencyKey == null) {
+            return scoreBatch(id, players);
         }
+        return idempotencyKeys.execute(id, idempotencyKey, points, () -> scoreBatch(id, players));
+    }
+
+    /**
+     * Handles requests following a game: the current score, then every new one as a server-sent event.
+     * Scores following each other quickly are sent as one, and the stream ends once the game is won.
+     * @param id The id of the game.
+     * @return The stream of scores; 404 if the game does not exist or was evicted.
+     */
+    @Get(value = "/{id}/scores", produces = MediaType.TEXT_EVENT_STREAM)
+    public Publisher<ScoreResponse> liveScores(String id) {
+        if (registry.gameState(id).isEmpty()) {
+            throw new HttpStatusException(HttpStatus.NOT_FOUND, "Game not found: " + id);
+        }
+        return liveScores.follow(id);
+    }
 
-        TennisGame game = gameOptional.get();
-        game.player2ScoresPoint();
-        session.put(SESSION_KEY_GAME, game); // Store updated game back in session
+    private ScoreResponse scoreBatch(String id, int[] players) {
+        OptionalInt state = registry.scorePoints(id, players);
+        if (state.isEmpty()) {
+            throw new HttpStatusException(HttpStatus.NOT_FOUND, "Game not found: " + id);
+        }
+        return ScoreResponse.of(id, state.getAsInt());
+    }
+
+    private static int[] players(@Nullable List<Integer> points) {
+        if (points == null) {
+            throw new HttpStatusException(HttpStatus.BAD_REQUEST, "points is required");
+        }
+        if (points.size() > MAX_BATCH_POINTS) {
+            throw new HttpStatusException(HttpStatus.BAD_REQUEST, "At most " + MAX_BATCH_POINTS + " points per request");
+        }
+        int[] players = new int[points.size()];
+        for (int i = 0; i < players.length; i++) {
+            Integer player = points.get(i);
+            if (player == null || (player != TennisScoreEngine.PLAYER_1 && player != TennisScoreEngine.PLAYER_2)) {
+                throw new HttpStatusException(HttpStatus.BAD_REQUEST, "Point " + i + " must be won by player 1 or 2");
+            }
+            players[i] = player;
+        }
+        return players;
+    }
+
+    private HttpResponse<?> scorePoint(String id, int player) {
+        if (registry.scorePoint(id, player).isEmpty()) {
+            // Game not found or evicted, redirect to start a new game
+            return newGame();
+        }
+        return redirectTo(id);
+    }
 
-        return HttpResponse.seeOther(URI.create("/game/"));
+    private static HttpResponse<?> redirectTo(String id) {
+        return HttpResponse.seeOther(URI.create("/game/" + id));
     }
 }
@@ -0,0 +1,10 @@
+package tennis.app;
+
+/**
+ * Published by {@link InMemoryGameStore} for every game it evicts, so that {@link LiveScores} can end the streams of
+ * its followers.
+ *
+ * @param gameId The id of the evicted game.
+ */
+public record GameEvictedEvent(String gameId) {
+}
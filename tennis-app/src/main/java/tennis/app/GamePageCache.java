@@ -0,0 +1,169 @@
+package tennis.app;
+
+import io.micronaut.context.annotation.Value;
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.http.HttpRequest;
+import io.micronaut.views.ViewsRenderer;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * The game page, rendered once per score instead of on every request.
+ * <p>
+ * A game can only show a handful of distinct scores, and the page differs between games only by the game id. Each
+ * score is therefore rendered once, with a placeholder for the id, and kept as UTF-8 byte segments around it; serving
+ * the page splices the id in without evaluating the template. The ETag of a page is a digest of its rendering, so a
+ * browser revalidating a page whose score did not change gets a 304.
+ * Disabled with {@code tennis.views.page-cache.enabled=false}, which renders every request as before.
+ */
+@Singleton
+public class GamePageCache {
+
+    static final String VIEW = "game";
+    // Rendered in place of the game id; letters and digits only, so no template escaping alters it
+    static final String GAME_ID_PLACEHOLDER = "0gameid0placeholder0";
+    // Ids that read the same in HTML, attributes, URLs and scripts, so they can be spliced in without escaping
+    private static final Pattern SPLICEABLE_ID = Pattern.compile("[A-Za-z0-9-]{1,64}");
+
+    private final ViewsRenderer<Map<String, Object>, HttpRequest<?>> renderer;
+    private final boolean enabled;
+    private final ConcurrentHashMap<String, Page> pages = new ConcurrentHashMap<>();
+    private final LongAdder renderCount = new LongAdder();
+
+    @Inject
+    public GamePageCache(ViewsRenderer<Map<String, Object>, HttpRequest<?>> renderer,
+                         @Value("${tennis.views.page-cache.enabled:true}") boolean enabled) {
+        this.renderer = renderer;
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return Whether the page of the game can be served from the cache.
+     */
+    public boolean isCacheable(String gameId) {
+        return enabled && SPLICEABLE_ID.matcher(gameId).matches();
+    }
+
+    /**
+     * @param request The request the page is rendered for if this score was not rendered yet.
+     * @return The page showing the score.
+     */
+    public Page page(String score, @Nullable HttpRequest<?> request) {
+        Page page = pages.get(score);
+        return page != null ? page : pages.computeIfAbsent(score, s -> render(s, request));
+    }
+
+    /**
+     * @return The number of times the template was evaluated.
+     */
+    public long getRenderCount() {
+        return renderCount.sum();
+    }
+
+    private Page render(String score, @Nullable HttpRequest<?> request) {
+        renderCount.increment();
+        StringWriter html = new StringWriter();
+        try {
+            renderer.render(VIEW, Map.of("gameId", GAME_ID_PLACEHOLDER, "score", score), request).writeTo(html);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to render the " + VIEW + " view", e);
+        }
+        return Page.of(html.toString());
+    }
+
+    /**
+     * A pre-rendered page: the HTML before, between and after the places showing the game id.
+     */
+    public static final class Page {
+
+        private final byte[][] segments;
+        private final int length;
+        private final String etag;
+
+        private Page(byte[][] segments, String etag) {
+            this.segments = segments;
+            int total = 0;
+            for (byte[] segment : segments) {
+                total += segment.length;
+            }
+            this.length = total;
+            this.etag = etag;
+        }
+
+        static Page of(String html) {
+            String[] parts = html.split(Pattern.quote(GAME_ID_PLACEHOLDER), -1);
+            byte[][] segments = new byte[parts.length][];
+            for (int i = 0; i < parts.length; i++) {
+                segments[i] = parts[i].getBytes(StandardCharsets.UTF_8);
+            }
+            return new Page(segments, '"' + digest(html) + '"');
+        }
+
+        /**
+         * @return The page of the game, encoded in UTF-8.
+         */
+        public byte[] html(String gameId) {
+            byte[] id = gameId.getBytes(StandardCharsets.US_ASCII);
+            byte[] html = new byte[length + (segments.length - 1) * id.length];
+            int offset = 0;
+            for (int i = 0; i < segments.length; i++) {
+                if (i > 0) {
+                    System.arraycopy(id, 0, html, offset, id.length);
+                    offset += id.length;
+                }
+                System.arraycopy(segments[i], 0, html, offset, segments[i].length);
+                offset += segments[i].length;
+            }
+            return html;
+        }
+
+        /**
+         * @return The strong ETag of the page, quoted.
+         */
+        public String etag() {
+            return etag;
+        }
+
+        /**
+         * @param ifNoneMatch The If-None-Match header of the request, if any.
+         * @return Whether the client already has this page, so a 304 answers the request.
+         */
+        public boolean matches(@Nullable String ifNoneMatch) {
+            if (ifNoneMatch == null) {
+                return false;
+            }
+            for (String tag : ifNoneMatch.split(",")) {
+                String candidate = tag.trim();
+                // If-None-Match compares weakly
+                if (candidate.startsWith("W/")) {
+                    candidate = candidate.substring(2);
+                }
+                if (candidate.equals("*") || candidate.equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static String digest(String html) {
+            try {
+                byte[] hash = MessageDigest.getInstance("SHA-256").digest(html.getBytes(StandardCharsets.UTF_8));
+                return HexFormat.of().formatHex(hash, 0, 16);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+        }
+    }
+}
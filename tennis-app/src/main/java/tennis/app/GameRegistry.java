@@ -0,0 +1,102 @@
+package tennis.app;
+
+import jakarta.inject.Singleton;
+
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * The games played through the web interface, each a {@link TennisScoreEngine} state in the {@link GameStore} under
+ * a random id. Every change of a game is signalled to its {@link LiveScores} followers.
+ */
+@Singleton
+public class GameRegistry {
+
+    private final GameStore store;
+    private final LiveScores liveScores;
+
+    public GameRegistry(GameStore store, LiveScores liveScores) {
+        this.store = store;
+        this.liveScores = liveScores;
+    }
+
+    /**
+     * @return The id of a new game at Love-All.
+     */
+    public String newGame() {
+        String id;
+        do {
+            id = UUID.randomUUID().toString();
+        } while (!store.create(id, TennisScoreEngine.NEW_GAME));
+        return id;
+    }
+
+    /**
+     * @return The state of the game, or empty if there is no such game or it was evicted.
+     */
+    public OptionalInt gameState(String id) {
+        return validState(store.get(id));
+    }
+
+    /**
+     * Awards a point with a compare-and-set on the stored state, retried only if another request scored in between.
+     * Points scored after the game is won leave the store untouched.
+     *
+     * @param player {@link TennisScoreEngine#PLAYER_1} or {@link TennisScoreEngine#PLAYER_2}.
+     * @return The state after the point, or empty if there is no such game or it was evicted.
+     */
+    public OptionalInt scorePoint(String id, int player) {
+        OptionalInt current = gameState(id);
+        while (current.isPresent()) {
+            int state = current.getAsInt();
+            int next = TennisScoreEngine.pointTo(state, player);
+            if (next == state) {
+                return OptionalInt.of(next);
+            }
+            if (store.compareAndSet(id, state, next)) {
+                liveScores.changed(id);
+                return OptionalInt.of(next);
+            }
+            current = gameState(id);
+        }
+        return OptionalInt.empty();
+    }
+
+    /**
+     * Awards a batch of points with a single compare-and-set, so the batch is applied entirely or, if the game is gone,
+     * not at all. Points scored after the game is won are ignored.
+     *
+     * @param players The winner of each point in order, {@link TennisScoreEngine#PLAYER_1} or
+     *                {@link TennisScoreEngine#PLAYER_2}.
+     * @return The state after the points, or empty if there is no such game or it was evicted.
+     */
+    public OptionalInt scorePoints(String id, int[] players) {
+        OptionalInt current = gameState(id);
+        while (current.isPresent()) {
+            int state = current.getAsInt();
+            int next = state;
+            for (int player : players) {
+                next = TennisScoreEngine.pointTo(next, player);
+            }
+            if (next == state) {
+                return OptionalInt.of(next);
+            }
+            if (store.compareAndSet(id, state, next)) {
+                liveScores.changed(id);
+                return OptionalInt.of(next);
+            }
+            current = gameState(id);
+        }
+        return OptionalInt.empty();
+    }
+
+    // A stored value that is not a game state, e.g. written by another version of the application, is no game
+    static OptionalInt validState(OptionalLong state) {
+        if (state.isEmpty() || state.getAsLong() != (int) state.getAsLong()
+                || !TennisScoreEngine.isValid((int) state.getAsLong())) {
+            return OptionalInt.empty();
+        }
+        return OptionalInt.of((int) state.getAsLong());
+    }
+}
@@ -0,0 +1,35 @@
+package tennis.app;
+
+import java.util.OptionalLong;
+
+/**
+ * Holds the state of every game in play, keyed by game id.
+ * <p>
+ * States are {@code long} so any encoded state fits: a {@link TennisScoreEngine} game as well as a
+ * {@link TennisMatch}. A point is scored with a single {@link #compareAndSet(String, long, long)}, so an implementation
+ * shared by several nodes, e.g. a replicated or persistent one, only needs an atomic conditional write per key.
+ * {@link InMemoryGameStore} is used unless another implementation is configured with {@code tennis.games.store}.
+ */
+public interface GameStore {
+
+    /**
+     * @return The state of the game, or empty if there is no such game or it was evicted.
+     */
+    OptionalLong get(String id);
+
+    /**
+     * Adds a game, unless one with the same id exists.
+     *
+     * @return Whether the game was added.
+     */
+    boolean create(String id, long state);
+
+    /**
+     * Replaces the state of the game if it still is the expected one.
+     *
+     * @return Whether the state was replaced; false if it changed in the meantime or the game is gone.
+     */
+    boolean compareAndSet(String id, long expected, long updated);
+
+    void remove(String id);
+}
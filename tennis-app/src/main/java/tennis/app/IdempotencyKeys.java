@@ -0,0 +1,127 @@
+package tennis.app;
+
+import io.micronaut.context.annotation.Value;
+import io.micronaut.http.HttpStatus;
+import io.micronaut.http.exceptions.HttpStatusException;
+import io.micronaut.scheduling.annotation.Scheduled;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the outcome of point batches submitted with an {@code Idempotency-Key} header, so a client retrying a
+ * batch whose response it never received gets the original response instead of scoring the points twice.
+ * <p>
+ * Keys are scoped to their game and kept for {@code tennis.games.idempotency-ttl}. A batch runs at most once per key,
+ * even when retries arrive concurrently: the first request reserves the key with a pending outcome and scores outside
+ * the map, and the others wait for that outcome. A failed batch is not remembered, so it can be retried.
+ * The keys are held on this node, next to {@link InMemoryGameStore}.
+ */
+@Singleton
+public class IdempotencyKeys {
+
+    static final int MAX_KEY_LENGTH = 255;
+
+    private final ConcurrentHashMap<String, Outcome> outcomes = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+
+    @Inject
+    public IdempotencyKeys(@Value("${tennis.games.idempotency-ttl:10m}") Duration ttl) {
+        this(ttl, System::nanoTime);
+    }
+
+    IdempotencyKeys(Duration ttl, LongSupplier nanoClock) {
+        this.ttlNanos = ttl.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Scores the batch unless it was already scored under the same key.
+     *
+     * @param key    The idempotency key sent by the client.
+     * @param points The submitted points, compared with those first sent under the key.
+     * @param batch  Scores the batch.
+     * @return The response to the first batch sent under the key.
+     * @throws HttpStatusException 422 if the key was used for different points, 400 if the key is too long.
+     */
+    public ScoreResponse execute(String gameId, String key, List<Integer> points, Supplier<ScoreResponse> batch) {
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new HttpStatusException(HttpStatus.BAD_REQUEST,
+                    "Idempotency-Key must be at most " + MAX_KEY_LENGTH + " characters");
+        }
+        String id = gameId + ' ' + key;
+        while (true) {
+            long now = nanoClock.getAsLong();
+            Outcome pending = new Outcome(List.copyOf(points), now);
+            Outcome existing = outcomes.putIfAbsent(id, pending);
+            if (existing == null) {
+                return run(id, pending, batch);
+            }
+            if (now - existing.createdAt > ttlNanos) {
+                // Expired but not evicted yet: take its place, unless another request already did
+                if (outcomes.replace(id, existing, pending)) {
+                    return run(id, pending, batch);
+                }
+                continue;
+            }
+            if (!existing.points.equals(points)) {
+                throw new HttpStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                        "Idempotency-Key was already used for different points");
+            }
+            try {
+                return existing.response.join();
+            } catch (CompletionException e) {
+                // The first batch failed and released the key, so this one gets to run
+            }
+        }
+    }
+
+    private ScoreResponse run(String id, Outcome pending, Supplier<ScoreResponse> batch) {
+        try {
+            ScoreResponse response = batch.get();
+            pending.response.complete(response);
+            return response;
+        } catch (RuntimeException | Error e) {
+            // Released before the waiting requests wake up, so one of them can take the key
+            outcomes.remove(id, pending);
+            pending.response.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * @return The number of keys held.
+     */
+    public int size() {
+        return outcomes.size();
+    }
+
+    /**
+     * Forgets the keys older than the TTL.
+     */
+    @Scheduled(fixedDelay = "${tennis.games.eviction-interval:1m}")
+    public void evictExpiredKeys() {
+        long now = nanoClock.getAsLong();
+        outcomes.values().removeIf(outcome -> now - outcome.createdAt > ttlNanos);
+    }
+
+    private static final class Outcome {
+
+        final List<Integer> points;
+        final CompletableFuture<ScoreResponse> response = new CompletableFuture<>();
+        final long createdAt;
+
+        Outcome(List<Integer> points, long createdAt) {
+            this.points = points;
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package tennis.app;
+
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.context.event.ApplicationEventPublisher;
+import io.micronaut.scheduling.annotation.Scheduled;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.function.LongSupplier;
+
+/**
+ * {@link GameStore} keeping the games in a {@link ConcurrentHashMap} on this node.
+ * <p>
+ * Each game is one small object holding its state and when it was last used; the state is updated with a lock-free
+ * compare-and-set on the object, so the map itself is only written when games are created or evicted.
+ * Games unused for {@code tennis.games.idle-timeout} are evicted every {@code tennis.games.eviction-interval}, each
+ * with a {@link GameEvictedEvent}.
+ */
+@Singleton
+@Requires(property = "tennis.games.store", value = "memory", defaultValue = "memory")
+public class InMemoryGameStore implements GameStore {
+
+    private final ConcurrentHashMap<String, Game> games = new ConcurrentHashMap<>();
+    private final long idleTimeoutNanos;
+    private final LongSupplier nanoClock;
+    private final ApplicationEventPublisher<GameEvictedEvent> evictions;
+
+    @Inject
+    public InMemoryGameStore(@Value("${tennis.games.idle-timeout:30m}") Duration idleTimeout,
+                             ApplicationEventPublisher<GameEvictedEvent> evictions) {
+        this(idleTimeout, System::nanoTime, evictions);
+    }
+
+    InMemoryGameStore(Duration idleTimeout, LongSupplier nanoClock, ApplicationEventPublisher<GameEvictedEvent> evictions) {
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.nanoClock = nanoClock;
+        this.evictions = evictions;
+    }
+
+    @Override
+    public OptionalLong get(String id) {
+        Game game = games.get(id);
+        if (game == null) {
+            return OptionalLong.empty();
+        }
+        game.lastUsed = nanoClock.getAsLong();
+        return OptionalLong.of(game.state);
+    }
+
+    @Override
+    public boolean create(String id, long state) {
+        return games.putIfAbsent(id, new Game(state, nanoClock.getAsLong())) == null;
+    }
+
+    @Override
+    public boolean compareAndSet(String id, long expected, long updated) {
+        Game game = games.get(id);
+        if (game == null || !Game.STATE.compareAndSet(game, expected, updated)) {
+            return false;
+        }
+        game.lastUsed = nanoClock.getAsLong();
+        return true;
+    }
+
+    @Override
+    public void remove(String id) {
+        games.remove(id);
+    }
+
+    /**
+     * @return The number of games held.
+     */
+    public int size() {
+        return games.size();
+    }
+
+    /**
+     * Removes the games unused for longer than the idle timeout and publishes a {@link GameEvictedEvent} for each.
+     */
+    @Scheduled(fixedDelay = "${tennis.games.eviction-interval:1m}")
+    public void evictIdleGames() {
+        long now = nanoClock.getAsLong();
+        for (Map.Entry<String, Game> entry : games.entrySet()) {
+            Game game = entry.getValue();
+            if (now - game.lastUsed > idleTimeoutNanos && games.remove(entry.getKey(), game)) {
+                evictions.publishEvent(new GameEvictedEvent(entry.getKey()));
+            }
+        }
+    }
+
+    private static final class Game {
+
+        static final AtomicLongFieldUpdater<Game> STATE = AtomicLongFieldUpdater.newUpdater(Game.class, "state");
+
+        volatile long state;
+        // Written without ordering against the state: eviction only needs a recent value, not the latest one
+        volatile long lastUsed;
+
+        Game(long state, long lastUsed) {
+            this.state = state;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
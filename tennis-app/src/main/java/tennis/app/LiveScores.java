@@ -0,0 +1,221 @@
+package tennis.app;
+
+import io.micronaut.context.annotation.Value;
+import io.micronaut.context.event.ApplicationEventListener;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pushes the score of a game to everyone following it, e.g. over server-sent events.
+ * <p>
+ * Scoring a point only marks the game as changed. Once per {@code tennis.live.coalesce-window}, a single thread reads
+ * the current state from the {@link GameStore} and offers it to every follower, so a burst of points costs one
+ * fan-out and a game nobody follows costs nothing. Each follower buffers one score only: a follower that has not
+ * requested more yet has its pending score replaced by the newer one, so a slow client never holds up the others
+ * and never makes the server queue more than one score for it. A follower gets the score it is owed when it
+ * subscribes, and its stream completes once the game is won or gone, evicted games included.
+ */
+@Singleton
+public class LiveScores implements ApplicationEventListener<GameEvictedEvent>, AutoCloseable {
+
+    // Values of the score buffered for a follower that are no game state
+    private static final int NONE = -1;
+    private static final int GONE = -2;
+
+    private final GameStore store;
+    private final ConcurrentHashMap<String, Followers> games = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService pusher;
+    private final long coalesceWindowNanos;
+
+    @Inject
+    public LiveScores(GameStore store, @Value("${tennis.live.coalesce-window:50ms}") Duration coalesceWindow) {
+        this(store, coalesceWindow, Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "live-score-push");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    LiveScores(GameStore store, Duration coalesceWindow, ScheduledExecutorService pusher) {
+        this.store = store;
+        this.coalesceWindowNanos = coalesceWindow.toNanos();
+        this.pusher = pusher;
+    }
+
+    /**
+     * @return The scores of the game from now on, starting with the current one.
+     */
+    public Publisher<ScoreResponse> follow(String gameId) {
+        return subscriber -> {
+            Follower follower = new Follower(gameId, subscriber);
+            subscriber.onSubscribe(follower);
+            games.compute(gameId, (id, followers) -> {
+                Followers updated = followers != null ? followers : new Followers(id);
+                updated.members.add(follower);
+                return updated;
+            });
+            if (follower.done) {
+                // Cancelled from onSubscribe
+                leave(follower);
+                return;
+            }
+            // Reads the state after joining, so no change is missed between the two
+            changed(gameId);
+        };
+    }
+
+    /**
+     * Marks the game as changed; its followers get the new score at the end of the coalescing window.
+     */
+    public void changed(String gameId) {
+        Followers followers = games.get(gameId);
+        if (followers != null && followers.pushScheduled.compareAndSet(false, true)) {
+            pusher.schedule(() -> push(followers), coalesceWindowNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Ends the streams of the evicted game's followers: the push that follows finds the game gone.
+     */
+    @Override
+    public void onApplicationEvent(GameEvictedEvent event) {
+        changed(event.gameId());
+    }
+
+    /**
+     * @return The number of games with at least one follower.
+     */
+    public int followedGames() {
+        return games.size();
+    }
+
+    private void push(Followers followers) {
+        // Cleared before reading the state, so a change made from now on schedules another push
+        followers.pushScheduled.set(false);
+        int state = currentState(followers.gameId);
+        for (Follower follower : followers.members) {
+            follower.offer(state);
+        }
+    }
+
+    private int currentState(String gameId) {
+        return GameRegistry.validState(store.get(gameId)).orElse(GONE);
+    }
+
+    private void leave(Follower follower) {
+        games.computeIfPresent(follower.gameId, (id, followers) -> {
+            followers.members.remove(follower);
+            return followers.members.isEmpty() ? null : followers;
+        });
+    }
+
+    @PreDestroy
+    @Override
+    public void close() {
+        pusher.shutdownNow();
+    }
+
+    private static final class Followers {
+
+        final String gameId;
+        final Set<Follower> members = ConcurrentHashMap.newKeySet();
+        final AtomicBoolean pushScheduled = new AtomicBoolean();
+
+        Followers(String gameId) {
+            this.gameId = gameId;
+        }
+    }
+
+    /**
+     * One subscriber: the score waiting to be sent, if any, and the number of scores it requested.
+     */
+    private final class Follower implements Subscription {
+
+        final String gameId;
+        final Subscriber<? super ScoreResponse> subscriber;
+        // The one score buffered for the subscriber; a newer score replaces it
+        final AtomicInteger pending = new AtomicInteger(NONE);
+        final AtomicLong requested = new AtomicLong();
+        // Counts the threads asking to drain, so only one thread at a time calls the subscriber
+        final AtomicInteger drainRequests = new AtomicInteger();
+        // Read and written only by the draining thread
+        int lastSent = NONE;
+        volatile boolean done;
+
+        Follower(String gameId, Subscriber<? super ScoreResponse> subscriber) {
+            this.gameId = gameId;
+            this.subscriber = subscriber;
+        }
+
+        void offer(int state) {
+            pending.set(state);
+            drain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancel();
+                subscriber.onError(new IllegalArgumentException("Requested " + n + " scores, must be positive"));
+                return;
+            }
+            requested.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            done = true;
+            leave(this);
+        }
+
+        private void drain() {
+            if (drainRequests.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                while (!done && pending.get() != NONE) {
+                    int state = pending.get();
+                    if (state == GONE) {
+                        cancel();
+                        subscriber.onComplete();
+                        break;
+                    }
+                    if (state == lastSent) {
+                        pending.compareAndSet(state, NONE);
+                        continue;
+                    }
+                    if (requested.get() == 0) {
+                        break;
+                    }
+                    if (!pending.compareAndSet(state, NONE)) {
+                        continue;
+                    }
+                    requested.decrementAndGet();
+                    lastSent = state;
+                    subscriber.onNext(ScoreResponse.of(gameId, state));
+                    if (TennisScoreEngine.isOver(state)) {
+                        cancel();
+                        subscriber.onComplete();
+                    }
+                }
+                missed = drainRequests.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package tennis.app;
+
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.serde.annotation.Serdeable;
+
+import java.util.List;
+
+/**
+ * Body of {@code POST /game/{id}/points}: the winner of each point in order, 1 or 2.
+ */
+@Serdeable
+public record ScorePointsRequest(@Nullable List<Integer> points) {
+}
@@ -0,0 +1,18 @@
+package tennis.app;
+
+import io.micronaut.serde.annotation.Serdeable;
+
+/**
+ * The score of a game as returned by the JSON API.
+ *
+ * @param id    The id of the game.
+ * @param score The score in tennis terminology, e.g. "Thirty-Fifteen" or "Game Player 1".
+ * @param over  Whether a player has won the game.
+ */
+@Serdeable
+public record ScoreResponse(String id, String score, boolean over) {
+
+    static ScoreResponse of(String id, int state) {
+        return new ScoreResponse(id, TennisScoreEngine.score(state), TennisScoreEngine.isOver(state));
+    }
+}
@@ -0,0 +1,96 @@
+package tennis.app;
+
+/**
+ * The rules a match is played under: how many sets it lasts, whether a set at 6-6 is decided by a tie-break and
+ * whether games are played with advantage.
+ * <p>
+ * A format fits in three bits ({@link #encode()}), so it travels inside the state of a {@link TennisMatch}.
+ */
+public final class TennisFormat {
+
+    /**
+     * Best of three sets with tie-breaks and advantage games.
+     */
+    public static final TennisFormat BEST_OF_3 = new TennisFormat(3, true, false);
+
+    /**
+     * Best of five sets with tie-breaks and advantage games.
+     */
+    public static final TennisFormat BEST_OF_5 = new TennisFormat(5, true, false);
+
+    static final int BITS = 3;
+    private static final int BEST_OF_5_BIT = 1;
+    private static final int TIE_BREAK_BIT = 1 << 1;
+    private static final int NO_AD_BIT = 1 << 2;
+
+    private final int bestOf;
+    private final boolean tieBreak;
+    private final boolean noAd;
+
+    /**
+     * @param bestOf   3 or 5: the number of sets the match lasts at most.
+     * @param tieBreak Whether a set reaching 6-6 is decided by a tie-break; otherwise it goes on until a player leads
+     *                 by two games.
+     * @param noAd     Whether the point played at Deuce decides the game.
+     */
+    public TennisFormat(int bestOf, boolean tieBreak, boolean noAd) {
+        if (bestOf != 3 && bestOf != 5) {
+            throw new IllegalArgumentException("A match is best of 3 or 5 sets, was " + bestOf);
+        }
+        this.bestOf = bestOf;
+        this.tieBreak = tieBreak;
+        this.noAd = noAd;
+    }
+
+    /**
+     * @param bits Bits returned by {@link #encode()}.
+     */
+    static TennisFormat decode(int bits) {
+        return new TennisFormat((bits & BEST_OF_5_BIT) != 0 ? 5 : 3, (bits & TIE_BREAK_BIT) != 0, (bits & NO_AD_BIT) != 0);
+    }
+
+    int encode() {
+        return (bestOf == 5 ? BEST_OF_5_BIT : 0) | (tieBreak ? TIE_BREAK_BIT : 0) | (noAd ? NO_AD_BIT : 0);
+    }
+
+    public int getBestOf() {
+        return bestOf;
+    }
+
+    /**
+     * @return The number of sets a player needs to win the match.
+     */
+    public int getSetsToWin() {
+        return bestOf / 2 + 1;
+    }
+
+    public boolean isTieBreak() {
+        return tieBreak;
+    }
+
+    public boolean isNoAd() {
+        return noAd;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TennisFormat)) {
+            return false;
+        }
+        TennisFormat that = (TennisFormat) o;
+        return bestOf == that.bestOf && tieBreak == that.tieBreak && noAd == that.noAd;
+    }
+
+    @Override
+    public int hashCode() {
+        return encode();
+    }
+
+    @Override
+    public String toString() {
+        return "Best of " + bestOf + (tieBreak ? ", tie-break" : ", advantage sets") + (noAd ? ", no-ad" : "");
+    }
+}
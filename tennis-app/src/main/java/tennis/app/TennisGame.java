@@ -3,34 +3,45 @@ package tennis.app;
 /**
  * Represents a single game of Tennis.
  * This class tracks the score of two players and determines the game's state.
+ * The whole state is one {@link TennisScoreEngine} state, so a game can be stored as a single {@code int}
+ * ({@link #getState()}) and restored from it ({@link #fromState(int)}).
  */
 public class TennisGame {
 
-    private int player1Score;
-    private int player2Score;
-    // currentServer might be added in a future iteration if needed for serve-specific logic
-    // private String currentServer;
+    private int state;
 
     /**
      * Constructs a new TennisGame, initializing scores to Love-All (0-0).
      */
     public TennisGame() {
-        this.player1Score = 0;
-        this.player2Score = 0;
+        this.state = TennisScoreEngine.NEW_GAME;
     }
 
     /**
-     * Awards a point to Player 1.
+     * @param state A state obtained from {@link #getState()} or {@link TennisScoreEngine}.
+     * @return The game in that state.
+     */
+    public static TennisGame fromState(int state) {
+        if (!TennisScoreEngine.isValid(state)) {
+            throw new IllegalArgumentException("Not a tennis game state: " + state);
+        }
+        TennisGame game = new TennisGame();
+        game.state = state;
+        return game;
+    }
+
+    /**
+     * Awards a point to Player 1. Points scored after the game is won are ignored.
      */
     public void player1ScoresPoint() {
-        player1Score++;
+        state = TennisScoreEngine.pointTo(state, TennisScoreEngine.PLAYER_1);
     }
 
     /**
-     * Awards a point to Player 2.
+     * Awards a point to Player 2. Points scored after the game is won are ignored.
      */
     public void player2ScoresPoint() {
-        player2Score++;
+        state = TennisScoreEngine.pointTo(state, TennisScoreEngine.PLAYER_2);
     }
 
     /**
@@ -39,55 +50,14 @@ public class TennisGame {
      * @return The score string (e.g., "Love-All", "Fifteen-Love", "Deuce", "Advantage Player 1", "Game Player 1").
      */
     public String getScore() {
-        if (hasWinner()) {
-            return "Game " + leadingPlayerName();
-        }
-
-        if (isDeuce()) {
-            return "Deuce";
-        }
-
-        if (hasAdvantage()) {
-            return "Advantage " + leadingPlayerName();
-        }
-
-        return formatScore(player1Score) + "-" + (player1Score == player2Score ? "All" : formatScore(player2Score));
+        return TennisScoreEngine.score(state);
     }
 
-    private boolean hasWinner() {
-        return (player1Score >= 4 || player2Score >= 4) && Math.abs(player1Score - player2Score) >= 2;
-    }
-
-    private boolean isDeuce() {
-        return player1Score >= 3 && player1Score == player2Score;
-    }
-
-    private boolean hasAdvantage() {
-        return (player1Score >= 3 || player2Score >= 3) && Math.abs(player1Score - player2Score) == 1;
-    }
-
-    private String leadingPlayerName() {
-        if (player1Score > player2Score) {
-            return "Player 1";
-        } else {
-            return "Player 2";
-        }
-    }
-
-    private String formatScore(int score) {
-        switch (score) {
-            case 0:
-                return "Love";
-            case 1:
-                return "Fifteen";
-            case 2:
-                return "Thirty";
-            case 3:
-                return "Forty";
-            default:
-                // Should not be reached if game logic is correct (handled by Deuce, Advantage, Game)
-                return "";
-        }
+    /**
+     * @return The encoded state of the game; see {@link TennisScoreEngine}.
+     */
+    public int getState() {
+        return state;
     }
 
     // Main method for basic verification as requested (optional)
@@ -0,0 +1,241 @@
+package tennis.app;
+
+/**
+ * Represents a match of Tennis under a {@link TennisFormat}: best of three or five sets.
+ * <p>
+ * The whole match, format included, is one {@code long} ({@link #getState()}), so it can be kept in a session and
+ * restored with {@link #fromState(long)}. Each point updates it in constant time:
+ * <ul>
+ *     <li>bits 0-25: the current set, a {@link TennisSet} state</li>
+ *     <li>bit 26: whether the match is best of five</li>
+ *     <li>bits 27-29: the number of completed sets</li>
+ *     <li>bits 30-61: the completed sets, eight bits each: the winner in the high bit and the games of the loser below
+ *     it, from which the games of the winner follow</li>
+ * </ul>
+ * The set that decides the match stays the current set, so at most four sets are ever completed.
+ * Replaying a recorded match ({@link #replay(TennisFormat, byte[])}) allocates nothing per point.
+ */
+public class TennisMatch {
+
+    private static final long SET_MASK = (1L << TennisSet.BITS) - 1;
+    private static final long BEST_OF_5_FLAG = 1L << 26;
+    private static final int COMPLETED_SHIFT = 27;
+    private static final long COMPLETED_MASK = 7L << COMPLETED_SHIFT;
+    private static final int SETS_SHIFT = 30;
+    private static final int SET_RECORD_BITS = 8;
+    private static final int PLAYER_2_WON_BIT = 1 << 7;
+    private static final int LOSING_GAMES_MASK = PLAYER_2_WON_BIT - 1;
+    private static final int MAX_COMPLETED_SETS = 4;
+    private static final int BITS = SETS_SHIFT + MAX_COMPLETED_SETS * SET_RECORD_BITS;
+    // The winner bit of every completed set
+    private static final long PLAYER_2_WON_BITS = 0x80808080L << SETS_SHIFT;
+
+    private long state;
+
+    /**
+     * Constructs a new match, before its first point.
+     */
+    public TennisMatch(TennisFormat format) {
+        this.state = newMatch(format);
+    }
+
+    private TennisMatch(long state) {
+        this.state = state;
+    }
+
+    /**
+     * @param state A state obtained from {@link #getState()}.
+     * @return The match in that state.
+     */
+    public static TennisMatch fromState(long state) {
+        if (!isValid(state)) {
+            throw new IllegalArgumentException("Not a tennis match state: " + state);
+        }
+        return new TennisMatch(state);
+    }
+
+    /**
+     * Plays a recorded match from its first point.
+     *
+     * @param points The winner of each point in order, {@link TennisScoreEngine#PLAYER_1} or
+     *               {@link TennisScoreEngine#PLAYER_2}.
+     * @return The match after those points.
+     */
+    public static TennisMatch replay(TennisFormat format, byte[] points) {
+        TennisMatch match = new TennisMatch(format);
+        match.scorePoints(points, 0, points.length);
+        return match;
+    }
+
+    /**
+     * Awards a point to Player 1. Points scored after the match is won are ignored.
+     */
+    public void player1ScoresPoint() {
+        state = pointTo(state, TennisScoreEngine.PLAYER_1);
+    }
+
+    /**
+     * Awards a point to Player 2. Points scored after the match is won are ignored.
+     */
+    public void player2ScoresPoint() {
+        state = pointTo(state, TennisScoreEngine.PLAYER_2);
+    }
+
+    /**
+     * Awards a sequence of points. Points scored after the match is won are ignored.
+     *
+     * @param points The winner of each point in order, {@link TennisScoreEngine#PLAYER_1} or
+     *               {@link TennisScoreEngine#PLAYER_2}.
+     */
+    public void scorePoints(byte[] points, int offset, int length) {
+        long match = state;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            match = pointTo(match, points[i]);
+        }
+        state = match;
+    }
+
+    public TennisFormat getFormat() {
+        int set = currentSet(state);
+        return new TennisFormat((state & BEST_OF_5_FLAG) != 0 ? 5 : 3, TennisSet.hasTieBreak(set), TennisSet.isNoAd(set));
+    }
+
+    public int getPlayer1Sets() {
+        return setsWon(state, TennisScoreEngine.PLAYER_1);
+    }
+
+    public int getPlayer2Sets() {
+        return setsWon(state, TennisScoreEngine.PLAYER_2);
+    }
+
+    /**
+     * @return The set being played, or the one that decided the match once it is over.
+     */
+    public TennisSet getCurrentSet() {
+        return TennisSet.fromState(currentSet(state));
+    }
+
+    public boolean isOver() {
+        return getWinner() != 0;
+    }
+
+    /**
+     * @return {@link TennisScoreEngine#PLAYER_1} or {@link TennisScoreEngine#PLAYER_2} once the match is won, 0 while
+     *         it is in progress.
+     */
+    public int getWinner() {
+        return TennisSet.winner(currentSet(state));
+    }
+
+    /**
+     * @return The games of every set and the current game, e.g. "6-4, 3-6, 2-1, Thirty-Fifteen", or the winner, e.g.
+     *         "6-4, 7-6, Match Player 1".
+     */
+    public String getScore() {
+        StringBuilder score = new StringBuilder();
+        boolean tieBreak = TennisSet.hasTieBreak(currentSet(state));
+        for (int i = 0; i < completedSets(state); i++) {
+            int record = setRecord(state, i);
+            int losingGames = record & LOSING_GAMES_MASK;
+            int winningGames = TennisSet.winningGames(losingGames, tieBreak);
+            if ((record & PLAYER_2_WON_BIT) == 0) {
+                score.append(winningGames).append('-').append(losingGames);
+            } else {
+                score.append(losingGames).append('-').append(winningGames);
+            }
+            score.append(", ");
+        }
+        int set = currentSet(state);
+        score.append(TennisSet.games(set)).append(", ");
+        int winner = TennisSet.winner(set);
+        return score.append(winner != 0 ? "Match Player " + winner : TennisSet.gameScore(set)).toString();
+    }
+
+    /**
+     * @return The encoded state of the match, including its format.
+     */
+    public long getState() {
+        return state;
+    }
+
+    static long newMatch(TennisFormat format) {
+        return TennisSet.newSet(format.isTieBreak(), format.isNoAd()) | (format.getBestOf() == 5 ? BEST_OF_5_FLAG : 0);
+    }
+
+    /**
+     * @return The state after the player won a point; a finished match is returned unchanged.
+     */
+    static long pointTo(long match, int player) {
+        if (player != TennisScoreEngine.PLAYER_1 && player != TennisScoreEngine.PLAYER_2) {
+            throw new IllegalArgumentException("Player must be 1 or 2, was " + player);
+        }
+        int set = currentSet(match);
+        int next = TennisSet.pointTo(set, player);
+        int setWinner = TennisSet.winner(next);
+        if (setWinner == 0 || completedSetsWon(match, setWinner) + 1 == setsToWin(match)) {
+            // Still playing the set, or the set decided the match and stays the current one
+            return match & ~SET_MASK | next;
+        }
+        int completed = completedSets(match);
+        long record = (setWinner == TennisScoreEngine.PLAYER_2 ? PLAYER_2_WON_BIT : 0)
+                | Math.min(TennisSet.player1Games(next), TennisSet.player2Games(next));
+        return match & ~(SET_MASK | COMPLETED_MASK)
+                | (long) (completed + 1) << COMPLETED_SHIFT
+                | record << SETS_SHIFT + completed * SET_RECORD_BITS
+                | TennisSet.nextSet(set);
+    }
+
+    private static int currentSet(long match) {
+        return (int) (match & SET_MASK);
+    }
+
+    private static int completedSets(long match) {
+        return (int) ((match & COMPLETED_MASK) >>> COMPLETED_SHIFT);
+    }
+
+    private static int setRecord(long match, int index) {
+        return (int) (match >>> SETS_SHIFT + index * SET_RECORD_BITS) & ((1 << SET_RECORD_BITS) - 1);
+    }
+
+    private static int setsToWin(long match) {
+        return (match & BEST_OF_5_FLAG) != 0 ? 3 : 2;
+    }
+
+    // Completed sets only; the set that decided the match is counted by the caller
+    private static int completedSetsWon(long match, int player) {
+        int player2 = Long.bitCount(match & PLAYER_2_WON_BITS);
+        return player == TennisScoreEngine.PLAYER_2 ? player2 : completedSets(match) - player2;
+    }
+
+    private static int setsWon(long match, int player) {
+        return completedSetsWon(match, player) + (TennisSet.winner(currentSet(match)) == player ? 1 : 0);
+    }
+
+    /**
+     * @return Whether the value is a state some sequence of points leads to.
+     */
+    static boolean isValid(long match) {
+        if (match >>> BITS != 0 || !TennisSet.isValid(currentSet(match))) {
+            return false;
+        }
+        int completed = completedSets(match);
+        if (completed > 2 * (setsToWin(match) - 1) || (match >>> SETS_SHIFT + completed * SET_RECORD_BITS) != 0) {
+            return false;
+        }
+        boolean tieBreak = TennisSet.hasTieBreak(currentSet(match));
+        for (int i = 0; i < completed; i++) {
+            int losingGames = setRecord(match, i) & LOSING_GAMES_MASK;
+            if (losingGames > (tieBreak ? 6 : LOSING_GAMES_MASK - 2)) {
+                return false;
+            }
+        }
+        int setsToWin = setsToWin(match);
+        if (completedSetsWon(match, TennisScoreEngine.PLAYER_1) >= setsToWin
+                || completedSetsWon(match, TennisScoreEngine.PLAYER_2) >= setsToWin) {
+            return false;
+        }
+        // A won set that did not decide the match would have been completed
+        int setWinner = TennisSet.winner(currentSet(match));
+        return setWinner == 0 || completedSetsWon(match, setWinner) + 1 == setsToWin;
+    }
+}
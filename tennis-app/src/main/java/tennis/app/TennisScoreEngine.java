@@ -0,0 +1,198 @@
+package tennis.app;
+
+/**
+ * Stateless scoring of a single tennis game on a compact encoded state.
+ * <p>
+ * A state is an {@code int} holding both point counters, three bits each: {@code player1Points << 3 | player2Points}.
+ * Once both players reach three points, only the difference between them matters, so the counters are reduced to
+ * Deuce (3-3), Advantage (4-3 / 3-4) or Game (5-3 / 3-5) and never grow beyond five. Every reachable state is
+ * therefore below {@value #STATE_COUNT}, and {@link #score(int)} and {@link #pointTo(int, int)} are lookups in tables
+ * built once when the class loads.
+ */
+public final class TennisScoreEngine {
+
+    /**
+     * State of a game before the first point: Love-All.
+     */
+    public static final int NEW_GAME = 0;
+    public static final int PLAYER_1 = 1;
+    public static final int PLAYER_2 = 2;
+
+    static final int STATE_COUNT = 64;
+    private static final int POINTS_BITS = 3;
+    private static final int POINTS_MASK = (1 << POINTS_BITS) - 1;
+    static final int DEUCE = 3 << POINTS_BITS | 3;
+
+    // Indexed by state; null for states no game can reach
+    private static final String[] SCORES = new String[STATE_COUNT];
+    // Indexed by (player - 1) * STATE_COUNT + state
+    private static final byte[] NEXT = new byte[2 * STATE_COUNT];
+
+    static {
+        // Walks every state reachable from a new game, so the states no game can reach stay null
+        int[] pending = new int[STATE_COUNT];
+        int pendingCount = 0;
+        pending[pendingCount++] = NEW_GAME;
+        SCORES[NEW_GAME] = format(NEW_GAME);
+        while (pendingCount > 0) {
+            int state = pending[--pendingCount];
+            for (int player = PLAYER_1; player <= PLAYER_2; player++) {
+                int next = computeNext(state, player);
+                NEXT[(player - 1) * STATE_COUNT + state] = (byte) next;
+                if (SCORES[next] == null) {
+                    SCORES[next] = format(next);
+                    pending[pendingCount++] = next;
+                }
+            }
+        }
+    }
+
+    private TennisScoreEngine() {
+    }
+
+    /**
+     * @param state A state returned by this class.
+     * @return The score in tennis terminology, e.g. "Fifteen-Love", "Deuce", "Advantage Player 1" or
+     *         "Game Player 2". The strings are shared constants, so nothing is allocated.
+     */
+    public static String score(int state) {
+        checkState(state);
+        return SCORES[state];
+    }
+
+    /**
+     * @param player {@link #PLAYER_1} or {@link #PLAYER_2}.
+     * @return The state after the player won a point; a finished game is returned unchanged.
+     */
+    public static int pointTo(int state, int player) {
+        checkState(state);
+        checkPlayer(player);
+        return NEXT[(player - 1) * STATE_COUNT + state];
+    }
+
+    /**
+     * @param noAd Whether the game is played without advantage: the point played at Deuce decides the game.
+     * @return The state after the player won a point; a finished game is returned unchanged.
+     */
+    public static int pointTo(int state, int player, boolean noAd) {
+        if (noAd && state == DEUCE) {
+            // Deciding point: jumps straight to the Game state two points ahead
+            checkPlayer(player);
+            return player == PLAYER_1 ? encode(5, 3) : encode(3, 5);
+        }
+        return pointTo(state, player);
+    }
+
+    /**
+     * @return Whether a player has won the game.
+     */
+    public static boolean isOver(int state) {
+        return winner(state) != 0;
+    }
+
+    /**
+     * @return {@link #PLAYER_1} or {@link #PLAYER_2} once the game is won, 0 while it is in progress.
+     */
+    public static int winner(int state) {
+        checkState(state);
+        return winnerOf(state);
+    }
+
+    private static int winnerOf(int state) {
+        int player1 = player1Points(state);
+        int player2 = player2Points(state);
+        if (player1 >= 4 && player1 - player2 >= 2) {
+            return PLAYER_1;
+        }
+        if (player2 >= 4 && player2 - player1 >= 2) {
+            return PLAYER_2;
+        }
+        return 0;
+    }
+
+    /**
+     * @return Whether the value is a state some sequence of points leads to.
+     */
+    public static boolean isValid(int state) {
+        return state >= 0 && state < STATE_COUNT && SCORES[state] != null;
+    }
+
+    /**
+     * @return Whether a player is one point from winning the game after Deuce.
+     */
+    static boolean isAdvantage(int state) {
+        int player1 = player1Points(state);
+        int player2 = player2Points(state);
+        return player1 + player2 >= 7 && Math.abs(player1 - player2) == 1;
+    }
+
+    static int player1Points(int state) {
+        return state >>> POINTS_BITS;
+    }
+
+    static int player2Points(int state) {
+        return state & POINTS_MASK;
+    }
+
+    private static int encode(int player1Points, int player2Points) {
+        return player1Points << POINTS_BITS | player2Points;
+    }
+
+    private static void checkState(int state) {
+        if (!isValid(state)) {
+            throw new IllegalArgumentException("Not a tennis game state: " + state);
+        }
+    }
+
+    private static void checkPlayer(int player) {
+        if (player != PLAYER_1 && player != PLAYER_2) {
+            throw new IllegalArgumentException("Player must be 1 or 2, was " + player);
+        }
+    }
+
+    private static int computeNext(int state, int player) {
+        if (winnerOf(state) != 0) {
+            return state;
+        }
+        int player1 = player1Points(state) + (player == PLAYER_1 ? 1 : 0);
+        int player2 = player2Points(state) + (player == PLAYER_2 ? 1 : 0);
+        // Past Deuce only the difference counts: 4-4 is Deuce again
+        int surplus = Math.min(player1, player2) - 3;
+        if (surplus > 0) {
+            player1 -= surplus;
+            player2 -= surplus;
+        }
+        return encode(player1, player2);
+    }
+
+    private static String format(int state) {
+        int player1 = player1Points(state);
+        int player2 = player2Points(state);
+        int winner = winnerOf(state);
+        if (winner != 0) {
+            return "Game Player " + winner;
+        }
+        if (player1 >= 3 && player1 == player2) {
+            return "Deuce";
+        }
+        if (isAdvantage(state)) {
+            return "Advantage Player " + (player1 > player2 ? PLAYER_1 : PLAYER_2);
+        }
+        return pointName(player1) + "-" + (player1 == player2 ? "All" : pointName(player2));
+    }
+
+    private static String pointName(int points) {
+        switch (points) {
+            case 0:
+                return "Love";
+            case 1:
+                return "Fifteen";
+            case 2:
+                return "Thirty";
+            case 3:
+                return "Forty";
+            default:
+                throw new IllegalStateException("No point name for " + points + " points");
+        }
+    }
+}
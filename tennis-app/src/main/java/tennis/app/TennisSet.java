@@ -0,0 +1,265 @@
+package tennis.app;
+
+/**
+ * Represents a set of Tennis: games up to six, won by two games or, at 6-6, by a tie-break if the format has one.
+ * <p>
+ * The whole set is one {@code int} ({@link #getState()}), updated in constant time per point:
+ * <ul>
+ *     <li>bits 0-9: the current game, a {@link TennisScoreEngine} state, or both tie-break counters, five bits each</li>
+ *     <li>bits 10-16 and 17-23: the games won by Player 1 and Player 2</li>
+ *     <li>bits 24 and 25: whether the set has a tie-break and whether its games are played without advantage</li>
+ * </ul>
+ * A tie-break counter that would pass 31 is moved back two points together with the other one, which keeps who
+ * serves next. A set without a tie-break is limited to 127 games per player.
+ */
+public class TennisSet {
+
+    static final int BITS = 26;
+
+    private static final int POINTS_MASK = (1 << 10) - 1;
+    private static final int TIE_BREAK_POINTS_BITS = 5;
+    private static final int TIE_BREAK_POINTS_MASK = (1 << TIE_BREAK_POINTS_BITS) - 1;
+    private static final int GAMES_BITS = 7;
+    private static final int GAMES_MASK = (1 << GAMES_BITS) - 1;
+    private static final int PLAYER_1_GAMES_SHIFT = 10;
+    private static final int PLAYER_2_GAMES_SHIFT = PLAYER_1_GAMES_SHIFT + GAMES_BITS;
+    private static final int TIE_BREAK_FLAG = 1 << 24;
+    private static final int NO_AD_FLAG = 1 << 25;
+    private static final int RULES_MASK = TIE_BREAK_FLAG | NO_AD_FLAG;
+
+    private int state;
+
+    /**
+     * Constructs a new set at 0-0, played under the tie-break and advantage rules of the format.
+     */
+    public TennisSet(TennisFormat format) {
+        this.state = newSet(format.isTieBreak(), format.isNoAd());
+    }
+
+    private TennisSet(int state) {
+        this.state = state;
+    }
+
+    /**
+     * @param state A state obtained from {@link #getState()}.
+     * @return The set in that state.
+     */
+    public static TennisSet fromState(int state) {
+        if (!isValid(state)) {
+            throw new IllegalArgumentException("Not a tennis set state: " + state);
+        }
+        return new TennisSet(state);
+    }
+
+    /**
+     * Awards a point to Player 1. Points scored after the set is won are ignored.
+     */
+    public void player1ScoresPoint() {
+        state = pointTo(state, TennisScoreEngine.PLAYER_1);
+    }
+
+    /**
+     * Awards a point to Player 2. Points scored after the set is won are ignored.
+     */
+    public void player2ScoresPoint() {
+        state = pointTo(state, TennisScoreEngine.PLAYER_2);
+    }
+
+    public int getPlayer1Games() {
+        return player1Games(state);
+    }
+
+    public int getPlayer2Games() {
+        return player2Games(state);
+    }
+
+    /**
+     * @return Whether the set is at 6-6 and being decided by a tie-break.
+     */
+    public boolean isTieBreak() {
+        return inTieBreak(state);
+    }
+
+    public boolean isOver() {
+        return winner(state) != 0;
+    }
+
+    /**
+     * @return {@link TennisScoreEngine#PLAYER_1} or {@link TennisScoreEngine#PLAYER_2} once the set is won, 0 while it
+     *         is in progress.
+     */
+    public int getWinner() {
+        return winner(state);
+    }
+
+    /**
+     * @return The score of the current game, e.g. "Thirty-Fifteen" or, in a tie-break, "Tie-break 5-3".
+     */
+    public String getGameScore() {
+        return gameScore(state);
+    }
+
+    /**
+     * @return The games and the current game, e.g. "4-3, Thirty-Fifteen", or the winner, e.g. "6-4, Set Player 1".
+     */
+    public String getScore() {
+        return games(state) + ", " + (isOver() ? "Set Player " + winner(state) : gameScore(state));
+    }
+
+    /**
+     * @return The encoded state of the set.
+     */
+    public int getState() {
+        return state;
+    }
+
+    static int newSet(boolean tieBreak, boolean noAd) {
+        return (tieBreak ? TIE_BREAK_FLAG : 0) | (noAd ? NO_AD_FLAG : 0);
+    }
+
+    /**
+     * @return The state after the player won a point; a finished set is returned unchanged.
+     */
+    static int pointTo(int set, int player) {
+        if (winner(set) != 0) {
+            return set;
+        }
+        int points = set & POINTS_MASK;
+        if (inTieBreak(set)) {
+            return tieBreakPointTo(set, points, player);
+        }
+        int game = TennisScoreEngine.pointTo(points, player, isNoAd(set));
+        int gameWinner = TennisScoreEngine.winner(game);
+        if (gameWinner == 0) {
+            return set & ~POINTS_MASK | game;
+        }
+        int player1Games = player1Games(set) + (gameWinner == TennisScoreEngine.PLAYER_1 ? 1 : 0);
+        int player2Games = player2Games(set) + (gameWinner == TennisScoreEngine.PLAYER_2 ? 1 : 0);
+        if (player1Games > GAMES_MASK || player2Games > GAMES_MASK) {
+            throw new IllegalStateException("A set cannot be longer than " + GAMES_MASK + " games per player");
+        }
+        return withGames(set, player1Games, player2Games);
+    }
+
+    private static int tieBreakPointTo(int set, int points, int player) {
+        if (player != TennisScoreEngine.PLAYER_1 && player != TennisScoreEngine.PLAYER_2) {
+            throw new IllegalArgumentException("Player must be 1 or 2, was " + player);
+        }
+        int player1 = (points >>> TIE_BREAK_POINTS_BITS) + (player == TennisScoreEngine.PLAYER_1 ? 1 : 0);
+        int player2 = (points & TIE_BREAK_POINTS_MASK) + (player == TennisScoreEngine.PLAYER_2 ? 1 : 0);
+        int tieBreakWinner = tieBreakWinner(player1, player2);
+        if (tieBreakWinner != 0) {
+            return tieBreakWinner == TennisScoreEngine.PLAYER_1 ? withGames(set, 7, 6) : withGames(set, 6, 7);
+        }
+        if (Math.max(player1, player2) > TIE_BREAK_POINTS_MASK) {
+            player1 -= 2;
+            player2 -= 2;
+        }
+        return set & ~POINTS_MASK | player1 << TIE_BREAK_POINTS_BITS | player2;
+    }
+
+    private static int tieBreakWinner(int player1, int player2) {
+        if (player1 >= 7 && player1 - player2 >= 2) {
+            return TennisScoreEngine.PLAYER_1;
+        }
+        if (player2 >= 7 && player2 - player1 >= 2) {
+            return TennisScoreEngine.PLAYER_2;
+        }
+        return 0;
+    }
+
+    // Starts the next game, or leaves the finished set at its final games
+    private static int withGames(int set, int player1Games, int player2Games) {
+        return set & RULES_MASK | player1Games << PLAYER_1_GAMES_SHIFT | player2Games << PLAYER_2_GAMES_SHIFT;
+    }
+
+    /**
+     * @return A new set played under the same rules.
+     */
+    static int nextSet(int set) {
+        return set & RULES_MASK;
+    }
+
+    static int player1Games(int set) {
+        return set >>> PLAYER_1_GAMES_SHIFT & GAMES_MASK;
+    }
+
+    static int player2Games(int set) {
+        return set >>> PLAYER_2_GAMES_SHIFT & GAMES_MASK;
+    }
+
+    static boolean hasTieBreak(int set) {
+        return (set & TIE_BREAK_FLAG) != 0;
+    }
+
+    static boolean isNoAd(int set) {
+        return (set & NO_AD_FLAG) != 0;
+    }
+
+    static boolean inTieBreak(int set) {
+        return hasTieBreak(set) && player1Games(set) == 6 && player2Games(set) == 6;
+    }
+
+    static int winner(int set) {
+        int player1 = player1Games(set);
+        int player2 = player2Games(set);
+        if (hasTieBreak(set)) {
+            if (player1 == 7 && player2 == 6) {
+                return TennisScoreEngine.PLAYER_1;
+            }
+            if (player2 == 7 && player1 == 6) {
+                return TennisScoreEngine.PLAYER_2;
+            }
+        }
+        if (player1 >= 6 && player1 - player2 >= 2) {
+            return TennisScoreEngine.PLAYER_1;
+        }
+        if (player2 >= 6 && player2 - player1 >= 2) {
+            return TennisScoreEngine.PLAYER_2;
+        }
+        return 0;
+    }
+
+    /**
+     * @return The games the winner of a set needs against the games of the loser.
+     */
+    static int winningGames(int losingGames, boolean tieBreak) {
+        return tieBreak && losingGames == 6 ? 7 : Math.max(6, losingGames + 2);
+    }
+
+    static String games(int set) {
+        return player1Games(set) + "-" + player2Games(set);
+    }
+
+    static String gameScore(int set) {
+        int points = set & POINTS_MASK;
+        if (inTieBreak(set)) {
+            return "Tie-break " + (points >>> TIE_BREAK_POINTS_BITS) + "-" + (points & TIE_BREAK_POINTS_MASK);
+        }
+        return TennisScoreEngine.score(points);
+    }
+
+    /**
+     * @return Whether the value is a state some sequence of points leads to.
+     */
+    static boolean isValid(int set) {
+        if (set >>> BITS != 0) {
+            return false;
+        }
+        int points = set & POINTS_MASK;
+        int player1 = player1Games(set);
+        int player2 = player2Games(set);
+        int winner = winner(set);
+        if (winner != 0) {
+            return points == 0 && Math.max(player1, player2) == winningGames(Math.min(player1, player2), hasTieBreak(set));
+        }
+        if (hasTieBreak(set) && (player1 > 6 || player2 > 6)) {
+            return false;
+        }
+        if (inTieBreak(set)) {
+            return tieBreakWinner(points >>> TIE_BREAK_POINTS_BITS, points & TIE_BREAK_POINTS_MASK) == 0;
+        }
+        return TennisScoreEngine.isValid(points) && !TennisScoreEngine.isOver(points)
+                && !(isNoAd(set) && TennisScoreEngine.isAdvantage(points));
+    }
+}
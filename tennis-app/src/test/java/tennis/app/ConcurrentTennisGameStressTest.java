@@ -0,0 +1,81 @@
+package tennis.app;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Scores the same game from several threads at once, many times over.
+ * Three points for each player give Deuce in any order, so any other final score means a point was lost.
+ */
+class ConcurrentTennisGameStressTest {
+
+    private static final int ROUNDS = 20_000;
+    private static final int POINTS_PER_PLAYER = 3;
+
+    @Test
+    void testConcurrentPointsAreNeverLost() throws Exception {
+        AtomicReference<ConcurrentTennisGame> game = new AtomicReference<>(new ConcurrentTennisGame());
+        AtomicInteger lostRounds = new AtomicInteger();
+        // Runs between rounds, once every thread scored its point
+        CyclicBarrier roundEnd = new CyclicBarrier(2 * POINTS_PER_PLAYER, () -> {
+            if (!game.get().getScore().equals("Deuce")) {
+                lostRounds.incrementAndGet();
+            }
+            game.set(new ConcurrentTennisGame());
+        });
+        CyclicBarrier roundStart = new CyclicBarrier(2 * POINTS_PER_PLAYER);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 2 * POINTS_PER_PLAYER; i++) {
+            int player = i % 2 == 0 ? TennisScoreEngine.PLAYER_1 : TennisScoreEngine.PLAYER_2;
+            Thread thread = new Thread(() -> {
+                try {
+                    for (int round = 0; round < ROUNDS; round++) {
+                        roundStart.await();
+                        game.get().scorePoint(player);
+                        roundEnd.await();
+                    }
+                } catch (Exception e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertNull(failure.get());
+        assertEquals(0, lostRounds.get());
+    }
+
+    @Test
+    void testPointsAfterTheGameIsWonAreIgnored() throws Exception {
+        ConcurrentTennisGame game = new ConcurrentTennisGame();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(() -> {
+                for (int point = 0; point < 1000; point++) {
+                    game.player1ScoresPoint();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals("Game Player 1", game.getScore());
+    }
+}
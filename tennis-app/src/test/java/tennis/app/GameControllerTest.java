@@ -0,0 +1,142 @@
+package tennis.app;
+
+import io.micronaut.context.annotation.Property;
+import io.micronaut.http.HttpHeaders;
+import io.micronaut.http.HttpRequest;
+import io.micronaut.http.HttpResponse;
+import io.micronaut.http.HttpStatus;
+import io.micronaut.http.MutableHttpRequest;
+import io.micronaut.http.client.HttpClient;
+import io.micronaut.http.client.annotation.Client;
+import io.micronaut.http.client.exceptions.HttpClientResponseException;
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import org.junit.jupiter.api.Test;
+
+import jakarta.inject.Inject;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@MicronautTest
+@Property(name = "micronaut.http.client.follow-redirects", value = "false")
+class GameControllerTest {
+
+    @Inject
+    @Client("/")
+    HttpClient client;
+
+    @Inject
+    InMemoryGameStore store;
+
+    @Test
+    void testStartPageDoesNotCreateAGame() {
+        int games = store.size();
+
+        HttpResponse<String> response = client.toBlocking().exchange(HttpRequest.GET("/game/"), String.class);
+
+        assertEquals(HttpStatus.OK, response.getStatus());
+        assertTrue(response.body().contains("method=\"post\""));
+        assertEquals(games, store.size());
+    }
+
+    @Test
+    void testNewGameIsCreatedByPost() {
+        int games = store.size();
+
+        HttpResponse<?> response = client.toBlocking().exchange(HttpRequest.POST("/game/", ""));
+
+        assertEquals(HttpStatus.SEE_OTHER, response.getStatus());
+        assertTrue(response.header(HttpHeaders.LOCATION).startsWith("/game/"));
+        assertEquals(games + 1, store.size());
+    }
+
+    @Test
+    void testUnknownGameRedirectsToTheStartPage() {
+        int games = store.size();
+
+        HttpResponse<?> response = client.toBlocking().exchange(HttpRequest.GET("/game/unknown"));
+
+        assertEquals(HttpStatus.SEE_OTHER, response.getStatus());
+        assertEquals("/game/", response.header(HttpHeaders.LOCATION));
+        assertEquals(games, store.size());
+    }
+
+    @Test
+    void testReplayedIdempotencyKeyGetsTheFirstResponse() {
+        String game = newGame();
+
+        ScoreResponse first = scorePoints(game, "feed-1", List.of(1, 1));
+        ScoreResponse replayed = scorePoints(game, "feed-1", List.of(1, 1));
+
+        assertEquals(new ScoreResponse(game.substring("/game/".length()), "Thirty-Love", false), first);
+        assertEquals(first, replayed);
+        assertEquals("Thirty-Love", scorePoints(game, null, List.of()).score());
+    }
+
+    @Test
+    void testIdempotencyKeyReusedForOtherPointsIsRejected() {
+        String game = newGame();
+        scorePoints(game, "feed-1", List.of(1));
+
+        HttpClientResponseException e = assertThrows(HttpClientResponseException.class,
+                () -> scorePoints(game, "feed-1", List.of(2)));
+
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, e.getStatus());
+        assertEquals("Fifteen-Love", scorePoints(game, null, List.of()).score());
+    }
+
+    @Test
+    void testGamePageIsRenderedFromTheTemplate() {
+        String game = newGame();
+        scorePoints(game, null, List.of(1));
+
+        HttpResponse<String> response = client.toBlocking().exchange(HttpRequest.GET(game), String.class);
+
+        assertEquals(HttpStatus.OK, response.getStatus());
+        assertTrue(response.getContentType().orElseThrow().getName().startsWith("text/html"));
+        String html = response.body();
+        assertTrue(html.contains("<p id=\"score\">Fifteen-Love</p>"));
+        assertTrue(html.contains("action=\"" + game + "/player1-scores\""));
+        assertTrue(html.contains("action=\"" + game + "/player2-scores\""));
+    }
+
+    @Test
+    void testPageWithTheCurrentETagIsNotSentAgain() {
+        String game = newGame();
+        String etag = client.toBlocking().exchange(HttpRequest.GET(game), String.class).header(HttpHeaders.ETAG);
+        assertNotNull(etag);
+
+        HttpResponse<String> revalidated = client.toBlocking()
+                .exchange(HttpRequest.GET(game).header(HttpHeaders.IF_NONE_MATCH, etag), String.class);
+
+        assertEquals(HttpStatus.NOT_MODIFIED, revalidated.getStatus());
+        assertEquals(etag, revalidated.header(HttpHeaders.ETAG));
+        assertTrue(revalidated.getBody().map(String::isEmpty).orElse(true));
+
+        scorePoints(game, null, List.of(2));
+        HttpResponse<String> changed = client.toBlocking()
+                .exchange(HttpRequest.GET(game).header(HttpHeaders.IF_NONE_MATCH, etag), String.class);
+
+        assertEquals(HttpStatus.OK, changed.getStatus());
+        assertNotEquals(etag, changed.header(HttpHeaders.ETAG));
+        assertTrue(changed.body().contains("Love-Fifteen"));
+    }
+
+    // Starts a game and returns its path
+    private String newGame() {
+        return client.toBlocking().exchange(HttpRequest.POST("/game/", "")).header(HttpHeaders.LOCATION);
+    }
+
+    private ScoreResponse scorePoints(String game, String idempotencyKey, List<Integer> points) {
+        MutableHttpRequest<ScorePointsRequest> request = HttpRequest.POST(game + "/points", new ScorePointsRequest(points));
+        if (idempotencyKey != null) {
+            request.header("Idempotency-Key", idempotencyKey);
+        }
+        return client.toBlocking().retrieve(request, ScoreResponse.class);
+    }
+}
@@ -0,0 +1,82 @@
+package tennis.app;
+
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.When;
+import io.cucumber.java.en.Then;
+import io.micronaut.http.HttpRequest;
+import io.micronaut.views.ViewsRenderer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GamePageStepDefinitions {
+
+    private GamePageCache pageCache;
+    private GamePageCache.Page page;
+    private String etag;
+
+    @Given("a game page cache")
+    public void a_game_page_cache() {
+        pageCache = new GamePageCache(new TemplateStandIn(), true);
+    }
+
+    @When("the page of game {string} at {string} is requested")
+    public void the_page_of_game_at_is_requested(String gameId, String score) {
+        assertTrue(pageCache.isCacheable(gameId));
+        page = pageCache.page(score, null);
+    }
+
+    @When("the ETag of the page is kept")
+    public void the_etag_of_the_page_is_kept() {
+        etag = page.etag();
+    }
+
+    @Then("the page of game {string} should be {string}")
+    public void the_page_of_game_should_be(String gameId, String html) {
+        assertEquals(html, new String(page.html(gameId), StandardCharsets.UTF_8));
+    }
+
+    @Then("the template should have been rendered {int} time(s)")
+    public void the_template_should_have_been_rendered_times(Integer times) {
+        assertEquals(times.longValue(), pageCache.getRenderCount());
+    }
+
+    @Then("a request with the kept ETag should get a 304")
+    public void a_request_with_the_kept_etag_should_get_a_304() {
+        assertEquals(etag, page.etag());
+        assertTrue(page.matches(etag));
+        assertTrue(page.matches("\"other\", W/" + etag));
+    }
+
+    @Then("a request with the kept ETag should get the page")
+    public void a_request_with_the_kept_etag_should_get_the_page() {
+        assertNotEquals(etag, page.etag());
+        assertFalse(page.matches(etag));
+        assertFalse(page.matches(null));
+    }
+
+    @Then("the page of game {string} should not be cached")
+    public void the_page_of_game_should_not_be_cached(String gameId) {
+        assertFalse(pageCache.isCacheable(gameId));
+    }
+
+    // Renders a small page using the model the way the game view does
+    private static final class TemplateStandIn implements ViewsRenderer<Map<String, Object>, HttpRequest<?>> {
+
+        @Override
+        public io.micronaut.core.io.Writable render(String viewName, Map<String, Object> data, HttpRequest<?> request) {
+            return writer -> writer.write("<p>" + data.get("score") + "</p><form action=/game/" + data.get("gameId")
+                    + "/player1-scores></form><script>/game/" + data.get("gameId") + "/scores</script>");
+        }
+
+        @Override
+        public boolean exists(String viewName) {
+            return GamePageCache.VIEW.equals(viewName);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package tennis.app;
+
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.When;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.After;
+import io.micronaut.http.exceptions.HttpStatusException;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GameRegistryStepDefinitions {
+
+    // Read by the store as System.nanoTime(), so a scenario can let time pass without waiting
+    private final AtomicLong nanoTime = new AtomicLong();
+    private InMemoryGameStore store;
+    // Pushes live scores right away; a scenario waits for it to be idle before checking what spectators received
+    private final ScheduledExecutorService pusher = Executors.newSingleThreadScheduledExecutor();
+    private CountDownLatch pusherResumed = new CountDownLatch(0);
+    private final List<Spectator> spectators = new ArrayList<>();
+    private LiveScores liveScores;
+    private GameRegistry registry;
+    private GameController controller;
+    private String gameId;
+    private ScoreResponse response;
+    private HttpStatusException rejection;
+
+    @Given("a game registry evicting games idle for {int} minutes")
+    public void a_game_registry_evicting_games_idle_for_minutes(Integer minutes) {
+        store = new InMemoryGameStore(Duration.ofMinutes(minutes), nanoTime::get, event -> liveScores.onApplicationEvent(event));
+        liveScores = new LiveScores(store, Duration.ZERO, pusher);
+        registry = new GameRegistry(store, liveScores);
+        // The pages are not rendered here, so the page cache needs no renderer
+        controller = new GameController(registry, new IdempotencyKeys(Duration.ofMinutes(10), nanoTime::get), liveScores,
+                new GamePageCache(null, false));
+    }
+
+    @After
+    public void tearDown() {
+        pusherResumed.countDown();
+        pusher.shutdownNow();
+    }
+
+    @Given("a new game in the registry")
+    public void a_new_game_in_the_registry() {
+        gameId = registry.newGame();
+    }
+
+    @When("player {int} scores {int} point(s) in the registered game")
+    public void player_scores_points_in_the_registered_game(Integer player, Integer points) {
+        for (int i = 0; i < points; i++) {
+            assertTrue(registry.scorePoint(gameId, player).isPresent());
+        }
+    }
+
+    @When("the points {string} are submitted to the registered game")
+    public void the_points_are_submitted_to_the_registered_game(String points) {
+        submit(points, null);
+    }
+
+    @When("the points {string} are submitted to the registered game with idempotency key {string}")
+    public void the_points_are_submitted_with_idempotency_key(String points, String idempotencyKey) {
+        submit(points, idempotencyKey);
+    }
+
+    private void submit(String points, String idempotencyKey) {
+        List<Integer> players = new ArrayList<>();
+        for (String player : points.split(",")) {
+            if (!player.isBlank()) {
+                players.add(Integer.valueOf(player.trim()));
+            }
+        }
+        response = null;
+        rejection = null;
+        try {
+            response = controller.scorePoints(gameId, idempotencyKey, new ScorePointsRequest(players));
+        } catch (HttpStatusException e) {
+            rejection = e;
+        }
+    }
+
+    @When("{int} spectator(s) follow(s) the registered game")
+    public void spectators_follow_the_registered_game(Integer count) {
+        for (int i = 0; i < count; i++) {
+            follow(Long.MAX_VALUE);
+        }
+    }
+
+    @When("a slow spectator follows the registered game")
+    public void a_slow_spectator_follows_the_registered_game() {
+        follow(1);
+    }
+
+    private void follow(long initialRequest) {
+        Spectator spectator = new Spectator(initialRequest);
+        spectators.add(spectator);
+        liveScores.follow(gameId).subscribe(spectator);
+    }
+
+    @When("the spectator requests {int} more score(s)")
+    public void the_spectator_requests_more_scores(Integer scores) {
+        spectator().subscription.request(scores);
+    }
+
+    @When("the spectator stops following")
+    public void the_spectator_stops_following() {
+        spectator().subscription.cancel();
+    }
+
+    @When("the live score pusher is busy")
+    public void the_live_score_pusher_is_busy() {
+        CountDownLatch resumed = new CountDownLatch(1);
+        pusherResumed = resumed;
+        pusher.execute(() -> {
+            try {
+                resumed.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    @When("the live score pusher catches up")
+    public void the_live_score_pusher_catches_up() throws Exception {
+        pusherResumed.countDown();
+        // Runs after every push scheduled so far
+        pusher.submit(() -> { }).get(10, TimeUnit.SECONDS);
+    }
+
+    @Then("the spectator should have received {string}")
+    public void the_spectator_should_have_received(String scores) {
+        assertEquals(scores, spectator().received());
+    }
+
+    @Then("every spectator should have received {string}")
+    public void every_spectator_should_have_received(String scores) {
+        for (Spectator spectator : spectators) {
+            assertEquals(scores, spectator.received());
+        }
+    }
+
+    @Then("the spectator's stream should be complete")
+    public void the_spectators_stream_should_be_complete() {
+        assertTrue(spectator().complete);
+    }
+
+    @Then("{int} game(s) should be followed")
+    public void games_should_be_followed(Integer games) {
+        assertEquals(games.intValue(), liveScores.followedGames());
+    }
+
+    private Spectator spectator() {
+        return spectators.get(spectators.size() - 1);
+    }
+
+    @When("{int} minutes pass")
+    public void minutes_pass(Integer minutes) {
+        nanoTime.addAndGet(TimeUnit.MINUTES.toNanos(minutes));
+    }
+
+    @When("idle games are evicted")
+    public void idle_games_are_evicted() {
+        store.evictIdleGames();
+    }
+
+    @Then("the registered game score should be {string}")
+    public void the_registered_game_score_should_be(String expectedScore) {
+        assertEquals(expectedScore, TennisScoreEngine.score(registry.gameState(gameId).orElseThrow()));
+    }
+
+    @Then("the registered game should be gone")
+    public void the_registered_game_should_be_gone() {
+        assertTrue(registry.gameState(gameId).isEmpty());
+        assertTrue(registry.scorePoint(gameId, TennisScoreEngine.PLAYER_1).isEmpty());
+    }
+
+    @Then("the response score should be {string}")
+    public void the_response_score_should_be(String expectedScore) {
+        assertEquals(expectedScore, response.score());
+        assertEquals(gameId, response.id());
+    }
+
+    @Then("the submission should be rejected with status {int}")
+    public void the_submission_should_be_rejected_with_status(Integer status) {
+        assertEquals(status.intValue(), rejection.getStatus().getCode());
+    }
+
+    @Then("the registry should hold {int} game(s)")
+    public void the_registry_should_hold_games(Integer games) {
+        assertEquals(games.intValue(), store.size());
+    }
+
+    private static final class Spectator implements Subscriber<ScoreResponse> {
+
+        private final long initialRequest;
+        private final List<String> scores = new ArrayList<>();
+        private Subscription subscription;
+        private volatile boolean complete;
+
+        Spectator(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(initialRequest);
+        }
+
+        @Override
+        public synchronized void onNext(ScoreResponse score) {
+            scores.add(score.score());
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            throw new AssertionError(error);
+        }
+
+        @Override
+        public void onComplete() {
+            complete = true;
+        }
+
+        synchronized String received() {
+            return String.join("; ", scores);
+        }
+    }
+}
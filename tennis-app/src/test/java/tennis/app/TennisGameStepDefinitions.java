@@ -4,6 +4,7 @@ import io.cucumber.java.en.Given;
 import io.cucumber.java.en.When;
 import io.cucumber.java.en.Then;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class TennisGameStepDefinitions {
 
@@ -24,20 +25,41 @@ public class TennisGameStepDefinitions {
         game.player2ScoresPoint();
     }
 
-    @When("player 1 scores {int} points")
+    @When("player 1 scores {int} point(s)")
     public void player_1_scores_points(Integer points) {
         for (int i = 0; i < points; i++) {
             game.player1ScoresPoint();
         }
     }
 
-    @When("player 2 scores {int} points")
+    @When("player 2 scores {int} point(s)")
     public void player_2_scores_points(Integer points) {
         for (int i = 0; i < points; i++) {
             game.player2ScoresPoint();
         }
     }
 
+    @When("the players alternate {int} points")
+    public void the_players_alternate_points(Integer points) {
+        for (int i = 0; i < points; i++) {
+            if (i % 2 == 0) {
+                game.player1ScoresPoint();
+            } else {
+                game.player2ScoresPoint();
+            }
+        }
+    }
+
+    @When("the game is restored from its encoded state")
+    public void the_game_is_restored_from_its_encoded_state() {
+        game = TennisGame.fromState(game.getState());
+    }
+
+    @Then("the encoded game state should be below {int}")
+    public void the_encoded_game_state_should_be_below(Integer bound) {
+        assertTrue(game.getState() >= 0 && game.getState() < bound, "state " + game.getState());
+    }
+
     @Then("the score should be {string}")
     public void the_score_should_be(String expectedScore) {
         assertEquals(expectedScore, game.getScore());
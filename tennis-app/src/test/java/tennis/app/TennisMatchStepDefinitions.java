@@ -0,0 +1,98 @@
+package tennis.app;
+
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.When;
+import io.cucumber.java.en.Then;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TennisMatchStepDefinitions {
+
+    private TennisFormat format;
+    private TennisMatch match;
+    // Every point scored, so a scenario can replay the match
+    private final ByteArrayOutputStream pointLog = new ByteArrayOutputStream();
+
+    @Given("a new best of {int} match")
+    public void a_new_best_of_match(Integer bestOf) {
+        startMatch(new TennisFormat(bestOf, true, false));
+    }
+
+    @Given("a new best of {int} match without tie-breaks")
+    public void a_new_best_of_match_without_tie_breaks(Integer bestOf) {
+        startMatch(new TennisFormat(bestOf, false, false));
+    }
+
+    @Given("a new best of {int} match with no-ad games")
+    public void a_new_best_of_match_with_no_ad_games(Integer bestOf) {
+        startMatch(new TennisFormat(bestOf, true, true));
+    }
+
+    private void startMatch(TennisFormat format) {
+        this.format = format;
+        match = new TennisMatch(format);
+        pointLog.reset();
+    }
+
+    @When("player {int} wins {int} point(s)")
+    public void player_wins_points(Integer player, Integer points) {
+        for (int i = 0; i < points; i++) {
+            if (player == 1) {
+                match.player1ScoresPoint();
+            } else {
+                match.player2ScoresPoint();
+            }
+            pointLog.write(player);
+        }
+    }
+
+    @When("player {int} wins {int} game(s)")
+    public void player_wins_games(Integer player, Integer games) {
+        player_wins_points(player, games * 4);
+    }
+
+    @When("the players alternate games to {int}-{int}")
+    public void the_players_alternate_games_to(Integer player1Games, Integer player2Games) {
+        // Player 1 serves first, so they win the odd games until one of the players reaches their count
+        int player1Won = 0;
+        int player2Won = 0;
+        while (player1Won < player1Games || player2Won < player2Games) {
+            if (player1Won < player1Games && (player1Won <= player2Won || player2Won == player2Games)) {
+                player_wins_games(1, 1);
+                player1Won++;
+            } else {
+                player_wins_games(2, 1);
+                player2Won++;
+            }
+        }
+    }
+
+    @When("the players alternate {int} points in the match")
+    public void the_players_alternate_points_in_the_match(Integer points) {
+        for (int i = 0; i < points; i++) {
+            player_wins_points(i % 2 == 0 ? 1 : 2, 1);
+        }
+    }
+
+    @When("the match is restored from its encoded state")
+    public void the_match_is_restored_from_its_encoded_state() {
+        match = TennisMatch.fromState(match.getState());
+    }
+
+    @Then("the match score should be {string}")
+    public void the_match_score_should_be(String expectedScore) {
+        assertEquals(expectedScore, match.getScore());
+    }
+
+    @Then("player {int} should have won the match")
+    public void player_should_have_won_the_match(Integer player) {
+        assertEquals(player.intValue(), match.getWinner());
+    }
+
+    @Then("replaying the point log should give {string}")
+    public void replaying_the_point_log_should_give(String expectedScore) {
+        assertEquals(expectedScore, TennisMatch.replay(format, pointLog.toByteArray()).getScore());
+    }
+}
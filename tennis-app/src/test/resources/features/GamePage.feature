@@ -0,0 +1,33 @@
+Feature: Pre-rendered Game Page
+  As the web interface
+  I want the game page rendered once per score
+  So that showing a game does not evaluate the template every time
+
+  Background:
+    Given a game page cache
+
+  Scenario: The page shows the score and the game id
+    When the page of game "game-1" at "Fifteen-Love" is requested
+    Then the page of game "game-1" should be "<p>Fifteen-Love</p><form action=/game/game-1/player1-scores></form><script>/game/game-1/scores</script>"
+
+  Scenario: A score is rendered once for every game
+    When the page of game "game-1" at "Deuce" is requested
+    And the page of game "game-2" at "Deuce" is requested
+    Then the page of game "game-2" should be "<p>Deuce</p><form action=/game/game-2/player1-scores></form><script>/game/game-2/scores</script>"
+    And the template should have been rendered 1 time
+
+  Scenario: A client with the current page gets a 304
+    When the page of game "game-1" at "Thirty-All" is requested
+    And the ETag of the page is kept
+    And the page of game "game-1" at "Thirty-All" is requested
+    Then a request with the kept ETag should get a 304
+
+  Scenario: A new score gets a new ETag
+    When the page of game "game-1" at "Thirty-All" is requested
+    And the ETag of the page is kept
+    And the page of game "game-1" at "Forty-Thirty" is requested
+    Then a request with the kept ETag should get the page
+    And the template should have been rendered 2 times
+
+  Scenario: A game id that would need escaping is rendered every time
+    Then the page of game "<script>" should not be cached
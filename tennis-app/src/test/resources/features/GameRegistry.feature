@@ -0,0 +1,70 @@
+Feature: Server-side Game Registry
+  As the web interface
+  I want games kept under their id on the server
+  So that scoring a point does not go through the session
+
+  Background:
+    Given a game registry evicting games idle for 30 minutes
+
+  Scenario: A new game starts at Love-All
+    Given a new game in the registry
+    Then the registered game score should be "Love-All"
+
+  Scenario: Points update the registered game
+    Given a new game in the registry
+    When player 1 scores 3 points in the registered game
+    And player 2 scores 1 point in the registered game
+    Then the registered game score should be "Forty-Fifteen"
+
+  Scenario: Every new game gets its own id
+    Given a new game in the registry
+    When player 1 scores 1 point in the registered game
+    And a new game in the registry
+    Then the registered game score should be "Love-All"
+    And the registry should hold 2 games
+
+  Scenario: A game in use is not evicted
+    Given a new game in the registry
+    When 20 minutes pass
+    And player 2 scores 1 point in the registered game
+    And 20 minutes pass
+    And idle games are evicted
+    Then the registered game score should be "Love-Fifteen"
+
+  Scenario: An idle game is evicted
+    Given a new game in the registry
+    When 31 minutes pass
+    And idle games are evicted
+    Then the registered game should be gone
+    And the registry should hold 0 games
+
+  Scenario: A batch of points is scored at once
+    Given a new game in the registry
+    When the points "1,1,2,1" are submitted to the registered game
+    Then the response score should be "Forty-Fifteen"
+    And the registered game score should be "Forty-Fifteen"
+
+  Scenario: Points in a batch after the game is won are ignored
+    Given a new game in the registry
+    When the points "1,1,1,1,2,2" are submitted to the registered game
+    Then the response score should be "Game Player 1"
+
+  Scenario: A retried batch is scored only once
+    Given a new game in the registry
+    When the points "2,2" are submitted to the registered game with idempotency key "feed-42"
+    And the points "2,2" are submitted to the registered game with idempotency key "feed-42"
+    Then the response score should be "Love-Thirty"
+    And the registered game score should be "Love-Thirty"
+
+  Scenario: An idempotency key cannot be reused for different points
+    Given a new game in the registry
+    When the points "1" are submitted to the registered game with idempotency key "feed-42"
+    And the points "2" are submitted to the registered game with idempotency key "feed-42"
+    Then the submission should be rejected with status 422
+    And the registered game score should be "Fifteen-Love"
+
+  Scenario: A point must be won by player 1 or 2
+    Given a new game in the registry
+    When the points "1,3" are submitted to the registered game
+    Then the submission should be rejected with status 400
+    And the registered game score should be "Love-All"
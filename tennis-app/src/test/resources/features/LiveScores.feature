@@ -0,0 +1,71 @@
+Feature: Live Score Push
+  As a spectator
+  I want new scores pushed to me as they happen
+  So that I do not have to reload the game page
+
+  Background:
+    Given a game registry evicting games idle for 30 minutes
+    And a new game in the registry
+
+  Scenario: A spectator gets the current score, then every new one
+    When player 1 scores 1 point in the registered game
+    And 1 spectator follows the registered game
+    And the live score pusher catches up
+    And player 2 scores 1 point in the registered game
+    And the live score pusher catches up
+    Then the spectator should have received "Fifteen-Love; Fifteen-All"
+
+  Scenario: Every spectator of a game gets the score
+    When 3 spectators follow the registered game
+    And the live score pusher catches up
+    And player 1 scores 1 point in the registered game
+    And the live score pusher catches up
+    And player 2 scores 1 point in the registered game
+    And the live score pusher catches up
+    Then every spectator should have received "Love-All; Fifteen-Love; Fifteen-All"
+    And 1 game should be followed
+
+  Scenario: Points scored while a push is pending are sent as one score
+    When 1 spectator follows the registered game
+    And the live score pusher catches up
+    And the live score pusher is busy
+    And the points "1,2,2" are submitted to the registered game
+    And player 1 scores 1 point in the registered game
+    And the live score pusher catches up
+    Then the spectator should have received "Love-All; Thirty-All"
+
+  Scenario: A slow spectator only gets the latest score once it asks for more
+    When a slow spectator follows the registered game
+    And the live score pusher catches up
+    And player 1 scores 1 point in the registered game
+    And the live score pusher catches up
+    And player 1 scores 1 point in the registered game
+    And the live score pusher catches up
+    Then the spectator should have received "Love-All"
+    When the spectator requests 5 more scores
+    Then the spectator should have received "Love-All; Thirty-Love"
+
+  Scenario: The stream ends once the game is won
+    When 1 spectator follows the registered game
+    And the points "2,2,2,2" are submitted to the registered game
+    And the live score pusher catches up
+    Then the spectator's stream should be complete
+    And 0 games should be followed
+
+  Scenario: The stream ends once the game is evicted
+    When 1 spectator follows the registered game
+    And the live score pusher catches up
+    And 31 minutes pass
+    And idle games are evicted
+    And the live score pusher catches up
+    Then the spectator's stream should be complete
+    And 0 games should be followed
+
+  Scenario: A spectator that stops following gets nothing more
+    When 1 spectator follows the registered game
+    And the live score pusher catches up
+    And the spectator stops following
+    And player 1 scores 1 point in the registered game
+    And the live score pusher catches up
+    Then the spectator should have received "Love-All"
+    And 0 games should be followed
@@ -112,3 +112,46 @@ Feature: Tennis Game Score Calculation
     And player 2 scores a point
     And player 1 scores a point
     Then the score should be "Deuce"
+
+  Scenario: Player 1 leads Forty-Thirty
+    Given a new tennis game
+    When player 1 scores 3 points
+    And player 2 scores 2 points
+    Then the score should be "Forty-Thirty"
+
+  Scenario: Player 2 leads Thirty-Forty
+    Given a new tennis game
+    When player 1 scores 2 points
+    And player 2 scores 3 points
+    Then the score should be "Thirty-Forty"
+
+  Scenario: A long deuce battle keeps a compact state
+    Given a new tennis game
+    When player 1 scores 3 points
+    And player 2 scores 3 points
+    And the players alternate 40 points
+    Then the score should be "Deuce"
+    And the encoded game state should be below 64
+
+  Scenario: Advantage after a long deuce battle
+    Given a new tennis game
+    When player 1 scores 3 points
+    And player 2 scores 3 points
+    And the players alternate 21 points
+    Then the score should be "Advantage Player 1"
+
+  Scenario: Points scored after the game is won are ignored
+    Given a new tennis game
+    When player 1 scores 4 points
+    And player 2 scores 2 points
+    Then the score should be "Game Player 1"
+
+  Scenario: A game restored from its encoded state keeps its score
+    Given a new tennis game
+    When player 1 scores 3 points
+    And player 2 scores 3 points
+    And player 2 scores a point
+    And the game is restored from its encoded state
+    Then the score should be "Advantage Player 2"
+    When player 2 scores a point
+    Then the score should be "Game Player 2"
@@ -0,0 +1,107 @@
+Feature: Tennis Match Score Calculation
+  As a player
+  I want sets and matches to be scored point by point
+  So that the scoreboard shows the whole match
+
+  Scenario: Starting a new match
+    Given a new best of 3 match
+    Then the match score should be "0-0, Love-All"
+
+  Scenario: Points carry into the current game of the set
+    Given a new best of 3 match
+    When player 1 wins 2 games
+    And player 2 wins 1 game
+    And player 1 wins 2 points
+    Then the match score should be "2-1, Thirty-Love"
+
+  Scenario: Winning a set starts the next one
+    Given a new best of 3 match
+    When player 1 wins 6 games
+    Then the match score should be "6-0, 0-0, Love-All"
+
+  Scenario: A set at 5-5 needs two more games
+    Given a new best of 3 match
+    When the players alternate games to 5-5
+    And player 1 wins 1 game
+    Then the match score should be "6-5, Love-All"
+    When player 1 wins 1 game
+    Then the match score should be "7-5, 0-0, Love-All"
+
+  Scenario: A player serving for the set at 5-4 wins it with one more game
+    Given a new best of 3 match
+    When the players alternate games to 5-4
+    Then the match score should be "5-4, Love-All"
+    When player 1 wins 1 game
+    Then the match score should be "6-4, 0-0, Love-All"
+
+  Scenario: A set at 6-6 is decided by a tie-break
+    Given a new best of 3 match
+    When the players alternate games to 6-6
+    And player 2 wins 3 points
+    Then the match score should be "6-6, Tie-break 0-3"
+    When player 2 wins 4 points
+    Then the match score should be "6-7, 0-0, Love-All"
+
+  Scenario: A tie-break is won by two points
+    Given a new best of 3 match
+    When the players alternate games to 6-6
+    And the players alternate 12 points in the match
+    Then the match score should be "6-6, Tie-break 6-6"
+    When player 1 wins 1 point
+    Then the match score should be "6-6, Tie-break 7-6"
+    When player 1 wins 1 point
+    Then the match score should be "7-6, 0-0, Love-All"
+
+  Scenario: A set without tie-break goes on until a player leads by two games
+    Given a new best of 3 match without tie-breaks
+    When the players alternate games to 8-8
+    And player 2 wins 2 games
+    Then the match score should be "8-10, 0-0, Love-All"
+
+  Scenario: The point at Deuce decides a no-ad game
+    Given a new best of 3 match with no-ad games
+    When the players alternate 6 points in the match
+    Then the match score should be "0-0, Deuce"
+    When player 2 wins 1 point
+    Then the match score should be "0-1, Love-All"
+
+  Scenario: Winning two sets wins a best of 3 match
+    Given a new best of 3 match
+    When player 1 wins 6 games
+    And player 2 wins 6 games
+    And player 1 wins 6 games
+    Then the match score should be "6-0, 0-6, 6-0, Match Player 1"
+    And player 1 should have won the match
+
+  Scenario: A best of 5 match needs three sets
+    Given a new best of 5 match
+    When player 2 wins 12 games
+    Then the match score should be "0-6, 0-6, 0-0, Love-All"
+    When player 2 wins 6 games
+    Then the match score should be "0-6, 0-6, 0-6, Match Player 2"
+    And player 2 should have won the match
+
+  Scenario: Points after the match is won are ignored
+    Given a new best of 3 match
+    When player 1 wins 12 games
+    And player 2 wins 5 points
+    Then the match score should be "6-0, 6-0, Match Player 1"
+
+  Scenario: A restored match keeps its score and format
+    Given a new best of 5 match with no-ad games
+    When player 1 wins 6 games
+    And player 2 wins 3 games
+    And the players alternate 6 points in the match
+    And the match is restored from its encoded state
+    Then the match score should be "6-0, 0-3, Deuce"
+    When player 1 wins 1 point
+    Then the match score should be "6-0, 1-3, Love-All"
+
+  Scenario: Replaying the point log gives the same score
+    Given a new best of 5 match
+    When the players alternate games to 6-6
+    And player 1 wins 7 points
+    And player 2 wins 9 games
+    And the players alternate 7 points in the match
+    Then the match score should be "7-6, 0-6, 0-3, Advantage Player 1"
+    And replaying the point log should give "7-6, 0-6, 0-3, Advantage Player 1"